@@ -40,6 +40,12 @@ public class AxisComponentModel extends AspectModel<AxisComponentModel.Aspect> i
    */
   private boolean myFirstUpdate = true;
 
+  /**
+   * Whether the ranges or settings of the axis changed since the last update. The axis only depends on those, so it can skip the frames
+   * in which nothing changed (e.g. while the view range is paused).
+   */
+  private boolean myDirty = true;
+
   /**
    * @param range     a Range object this AxisComponent listens to for the min/max values.
    * @param formatter formatter used for determining the tick marker and labels that need to be rendered.
@@ -47,10 +53,18 @@ public class AxisComponentModel extends AspectModel<AxisComponentModel.Aspect> i
   public AxisComponentModel(@NotNull Range range, @NotNull BaseAxisFormatter formatter) {
     myRange = range;
     myFormatter = formatter;
+    myRange.addDependency(this).onChange(Range.Aspect.RANGE, this::markDirty);
+  }
+
+  @Override
+  public boolean needsUpdate() {
+    return myDirty;
   }
 
   @Override
   public void update(long elapsedNs) {
+    // Cleared first, so that a range still being interpolated below marks the axis as dirty again.
+    myDirty = false;
     // During the animate/updateData phase, the axis updates the range's max to a new target based on whether myClampToMajorTicks is enabled
     //    - This would increase the max to an integral multiplier of the major interval.
     if (myClampToMajorTicks) {
@@ -79,7 +93,14 @@ public class AxisComponentModel extends AspectModel<AxisComponentModel.Aspect> i
    * @param globalRange sets the global range on the AxisComponent. The global range also sets the relative zero point.
    */
   public void setGlobalRange(@NotNull Range globalRange) {
+    if (myGlobalRange != null && myGlobalRange != myRange) {
+      myGlobalRange.removeDependencies(this);
+    }
     myGlobalRange = globalRange;
+    if (myGlobalRange != myRange) {
+      myGlobalRange.addDependency(this).onChange(Range.Aspect.RANGE, this::markDirty);
+    }
+    markDirty();
   }
 
   /**
@@ -87,6 +108,7 @@ public class AxisComponentModel extends AspectModel<AxisComponentModel.Aspect> i
    */
   public void setLabel(@NotNull String label) {
     myLabel = label;
+    markDirty();
   }
 
   /**
@@ -94,6 +116,11 @@ public class AxisComponentModel extends AspectModel<AxisComponentModel.Aspect> i
    */
   public void setClampToMajorTicks(boolean clampToMajorTicks) {
     myClampToMajorTicks = clampToMajorTicks;
+    markDirty();
+  }
+
+  private void markDirty() {
+    myDirty = true;
   }
 
   @NotNull
@@ -18,9 +18,8 @@ package com.android.tools.adtui.model;
 import gnu.trove.TLongArrayList;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 
 public abstract class BaseDataSeries<E> implements DataSeries<E> {
@@ -29,9 +28,11 @@ public abstract class BaseDataSeries<E> implements DataSeries<E> {
 
   @NotNull
   private List<SeriesData<E>> getDataSubList(final int fromIndex, final int toIndex) {
-    return IntStream.range(fromIndex, toIndex).mapToObj(index ->
-      new SeriesData<>(getX(index), getY(index))
-    ).collect(Collectors.toList());
+    List<SeriesData<E>> data = new ArrayList<>(toIndex - fromIndex);
+    for (int index = fromIndex; index < toIndex; index++) {
+      data.add(new SeriesData<>(getX(index), getY(index)));
+    }
+    return data;
   }
 
   @Override
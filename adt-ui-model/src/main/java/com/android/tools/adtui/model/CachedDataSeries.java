@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import gnu.trove.TLongArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * A {@link DataSeries} decorator which remembers the data already fetched from the underlying series, so that consecutive queries over
+ * overlapping ranges (e.g. a view range that moves forward a little every frame) only ask the underlying series for the missing edges.
+ *
+ * The newest point of every fetch is not considered final, as more data may still be arriving around it, so it is fetched again by the
+ * next query that reaches it. Data further than the retention padding away from the most recently queried range is evicted.
+ *
+ * Like {@link BaseDataSeries}, the returned data includes the closest point on each side outside of the queried range, if known.
+ *
+ * The cached points are kept in columns rather than as {@link SeriesData} objects: the x values in a primitive array, and the values in a
+ * {@link ValueColumn}, which {@link CachedLongDataSeries} also keeps in a primitive array.
+ */
+public class CachedDataSeries<E> implements DataSeries<E> {
+  @NotNull private final DataSeries<E> mySource;
+  private final long myRetentionPadding;
+
+  // Cached points, sorted by x. The value of the point at myXs.get(i) is myValues.get(i).
+  @NotNull private final TLongArrayList myXs = new TLongArrayList();
+  @NotNull private final ValueColumn<E> myValues;
+
+  // The cached points returned for the range of the last call to cacheDataForXRange are [myRangeStartIndex, myRangeEndIndex).
+  private int myRangeStartIndex;
+  private int myRangeEndIndex;
+
+  // The cached data is complete within [myCoveredMin, myCoveredMax). Nothing is covered if myCoveredMin >= myCoveredMax.
+  private long myCoveredMin;
+  private long myCoveredMax;
+
+  private long myHitCount;
+  private long myPartialHitCount;
+  private long myMissCount;
+
+  /**
+   * @param retentionPadding how far (in x units) beyond each end of the last queried range cached data is kept.
+   */
+  public CachedDataSeries(@NotNull DataSeries<E> source, long retentionPadding) {
+    this(source, retentionPadding, new ObjectColumn<>());
+  }
+
+  CachedDataSeries(@NotNull DataSeries<E> source, long retentionPadding, @NotNull ValueColumn<E> values) {
+    assert retentionPadding >= 0;
+    mySource = source;
+    myRetentionPadding = retentionPadding;
+    myValues = values;
+  }
+
+  @NotNull
+  public DataSeries<E> getSource() {
+    return mySource;
+  }
+
+  @Override
+  public synchronized List<SeriesData<E>> getDataForXRange(Range xRange) {
+    int count = cacheDataForXRange(xRange);
+    List<SeriesData<E>> data = new ArrayList<>(count);
+    for (int i = myRangeStartIndex; i < myRangeEndIndex; i++) {
+      data.add(new SeriesData<>(myXs.get(i), myValues.get(i)));
+    }
+    return data;
+  }
+
+  /**
+   * Brings the cache up to date with the range and returns the number of points {@link #getDataForXRange(Range)} returns for it, which
+   * are the cached points from {@link #getRangeStartIndex()} on. Must be called while holding the lock of this series.
+   */
+  final int cacheDataForXRange(@NotNull Range xRange) {
+    assert Thread.holdsLock(this);
+    myRangeStartIndex = 0;
+    myRangeEndIndex = 0;
+    if (xRange.isEmpty()) {
+      return 0;
+    }
+
+    long min = (long)xRange.getMin();
+    long max = (long)xRange.getMax();
+    if (myCoveredMin >= myCoveredMax || max < myCoveredMin || min >= myCoveredMax) {
+      myMissCount++;
+      clear();
+      long lastX = fetch(min, max);
+      myCoveredMin = min;
+      myCoveredMax = lastX == Long.MIN_VALUE ? min : lastX;
+    }
+    else if (min >= myCoveredMin && max < myCoveredMax) {
+      myHitCount++;
+    }
+    else {
+      myPartialHitCount++;
+      if (min < myCoveredMin) {
+        // Historic data does not change, so the whole left edge is considered final.
+        fetch(min, myCoveredMin - 1);
+        myCoveredMin = min;
+      }
+      if (max >= myCoveredMax) {
+        myCoveredMax = Math.max(myCoveredMax, fetch(myCoveredMax, max));
+      }
+    }
+    evict(min, max);
+
+    myRangeStartIndex = Math.max(0, lowerBound(min) - 1);
+    myRangeEndIndex = Math.min(myXs.size(), upperBound(max) + 1);
+    return myRangeEndIndex - myRangeStartIndex;
+  }
+
+  /**
+   * @return the index of the first cached point returned for the range of the last call to {@link #cacheDataForXRange(Range)}.
+   */
+  final int getRangeStartIndex() {
+    assert Thread.holdsLock(this);
+    return myRangeStartIndex;
+  }
+
+  /**
+   * @return the number of cached points. Must be called while holding the lock of this series.
+   */
+  final int getCachedCount() {
+    assert Thread.holdsLock(this);
+    return myXs.size();
+  }
+
+  /**
+   * @return the x of the cached point at the index, the points being sorted by x. Must be called while holding the lock of this series.
+   */
+  final long getCachedX(int index) {
+    assert Thread.holdsLock(this);
+    return myXs.get(index);
+  }
+
+  /**
+   * Drops all the cached data, e.g. when the underlying data is known to have changed.
+   */
+  public synchronized void invalidate() {
+    clear();
+  }
+
+  /**
+   * @return a consistent snapshot of how well this cache has answered the queries so far.
+   */
+  @NotNull
+  public synchronized Statistics getStatistics() {
+    return new Statistics(myHitCount, myPartialHitCount, myMissCount, myXs.size());
+  }
+
+  /**
+   * Called, with the lock of this series held, after a point was added at the given index, after all the other cached points.
+   */
+  void pointAppended(int index) {
+  }
+
+  /**
+   * Called, with the lock of this series held, after cached points were inserted before the last one, replaced, or removed other than by
+   * evicting the oldest ones.
+   */
+  void pointsChanged() {
+  }
+
+  /**
+   * Called, with the lock of this series held, after the cached points before {@code minX} were evicted.
+   */
+  void oldestPointsEvicted(long minX) {
+  }
+
+  /**
+   * Replaces the cached points within [min, max] with the ones fetched from the source. Points the source returns outside of the range
+   * (e.g. padding) are kept too, but don't extend the covered range. Cached points that are fetched again unchanged are kept as they are.
+   *
+   * @return the x of the last fetched point within [min, max], or {@link Long#MIN_VALUE} if there is none.
+   */
+  private long fetch(long min, long max) {
+    List<SeriesData<E>> fetched = mySource.getDataForXRange(new Range(min, max));
+    long[] fetchedXs = new long[fetched.size()];
+    for (int i = 0; i < fetchedXs.length; i++) {
+      fetchedXs[i] = fetched.get(i).x;
+    }
+    Arrays.sort(fetchedXs);
+
+    boolean changed = false;
+    for (int i = upperBound(max) - 1; i >= 0 && myXs.get(i) >= min; i--) {
+      if (Arrays.binarySearch(fetchedXs, myXs.get(i)) < 0) {
+        removeRange(i, i + 1);
+        changed = true;
+      }
+    }
+
+    long lastX = Long.MIN_VALUE;
+    for (SeriesData<E> data : fetched) {
+      int index = lowerBound(data.x);
+      if (index < myXs.size() && myXs.get(index) == data.x) {
+        if (!Objects.equals(myValues.get(index), data.value)) {
+          myValues.set(index, data.value);
+          changed = true;
+        }
+      }
+      else if (index == myXs.size()) {
+        myXs.add(data.x);
+        myValues.add(data.value);
+        pointAppended(index);
+      }
+      else {
+        myXs.insert(index, data.x);
+        myValues.insert(index, data.value);
+        changed = true;
+      }
+      if (data.x >= min && data.x <= max) {
+        lastX = Math.max(lastX, data.x);
+      }
+    }
+    if (changed) {
+      pointsChanged();
+    }
+    return lastX;
+  }
+
+  private void evict(long min, long max) {
+    long keepMin = min >= Long.MIN_VALUE + myRetentionPadding ? min - myRetentionPadding : Long.MIN_VALUE;
+    long keepMax = max <= Long.MAX_VALUE - myRetentionPadding ? max + myRetentionPadding : Long.MAX_VALUE;
+    int keepToIndex = upperBound(keepMax);
+    if (keepToIndex < myXs.size()) {
+      removeRange(keepToIndex, myXs.size());
+      pointsChanged();
+    }
+    int keepFromIndex = lowerBound(keepMin);
+    if (keepFromIndex > 0) {
+      removeRange(0, keepFromIndex);
+      oldestPointsEvicted(keepMin);
+    }
+    myCoveredMin = Math.max(myCoveredMin, keepMin);
+    myCoveredMax = Math.min(myCoveredMax, keepMax);
+  }
+
+  private void clear() {
+    myXs.clear();
+    myValues.clear();
+    myCoveredMin = 0;
+    myCoveredMax = 0;
+    pointsChanged();
+  }
+
+  private void removeRange(int fromIndex, int toIndex) {
+    if (fromIndex < toIndex) {
+      myXs.remove(fromIndex, toIndex - fromIndex);
+      myValues.remove(fromIndex, toIndex - fromIndex);
+    }
+  }
+
+  /**
+   * @return the index of the first cached point with an x not less than the given one.
+   */
+  private int lowerBound(long x) {
+    int low = 0;
+    int high = myXs.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (myXs.get(mid) < x) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the index of the first cached point with an x greater than the given one.
+   */
+  private int upperBound(long x) {
+    return x == Long.MAX_VALUE ? myXs.size() : lowerBound(x + 1);
+  }
+
+  /**
+   * The values of the cached points, in the same order as their x values.
+   */
+  interface ValueColumn<E> {
+    int size();
+
+    E get(int index);
+
+    void set(int index, E value);
+
+    void add(E value);
+
+    void insert(int index, E value);
+
+    void remove(int fromIndex, int length);
+
+    void clear();
+  }
+
+  private static final class ObjectColumn<E> implements ValueColumn<E> {
+    @NotNull private final ArrayList<E> myValues = new ArrayList<>();
+
+    @Override
+    public int size() {
+      return myValues.size();
+    }
+
+    @Override
+    public E get(int index) {
+      return myValues.get(index);
+    }
+
+    @Override
+    public void set(int index, E value) {
+      myValues.set(index, value);
+    }
+
+    @Override
+    public void add(E value) {
+      myValues.add(value);
+    }
+
+    @Override
+    public void insert(int index, E value) {
+      myValues.add(index, value);
+    }
+
+    @Override
+    public void remove(int fromIndex, int length) {
+      myValues.subList(fromIndex, fromIndex + length).clear();
+    }
+
+    @Override
+    public void clear() {
+      myValues.clear();
+    }
+  }
+
+  /**
+   * How well a {@link CachedDataSeries} has answered the queries, as of the call to {@link #getStatistics()}.
+   */
+  public static final class Statistics {
+    private final long myHitCount;
+    private final long myPartialHitCount;
+    private final long myMissCount;
+    private final int myCachedPointCount;
+
+    Statistics(long hitCount, long partialHitCount, long missCount, int cachedPointCount) {
+      myHitCount = hitCount;
+      myPartialHitCount = partialHitCount;
+      myMissCount = missCount;
+      myCachedPointCount = cachedPointCount;
+    }
+
+    /**
+     * @return the number of queries answered from the cache alone.
+     */
+    public long getHitCount() {
+      return myHitCount;
+    }
+
+    /**
+     * @return the number of queries for which only the edges missing from the cache were fetched.
+     */
+    public long getPartialHitCount() {
+      return myPartialHitCount;
+    }
+
+    /**
+     * @return the number of queries for which the whole range was fetched.
+     */
+    public long getMissCount() {
+      return myMissCount;
+    }
+
+    /**
+     * @return the number of points in the cache.
+     */
+    public int getCachedPointCount() {
+      return myCachedPointCount;
+    }
+
+    /**
+     * @return the fraction of queries which did not need to fetch the whole range, or 0 if there haven't been any.
+     */
+    public double getHitRate() {
+      long total = myHitCount + myPartialHitCount + myMissCount;
+      return total == 0 ? 0 : (double)(myHitCount + myPartialHitCount) / total;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%d hits, %d partial hits, %d misses (%.1f%% hit rate), %d cached points",
+                           myHitCount, myPartialHitCount, myMissCount, getHitRate() * 100, myCachedPointCount);
+    }
+  }
+}
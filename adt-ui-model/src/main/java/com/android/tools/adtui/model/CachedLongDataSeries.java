@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import gnu.trove.TLongArrayList;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link CachedDataSeries} of {@code Long} values which can also copy the cached points straight into a {@link LongSeriesBuffer}, so
+ * readers of the cache don't need a list of them. The cached values are kept unboxed.
+ *
+ * It also answers zoomed out reads with a few points per pixel from {@link LongDataPyramid}s:
+ * <ul>
+ *   <li>The finer levels summarize the cached points, and are only built once read. New points are usually appended to the cache, and
+ *   evicted from its start, which the built levels follow as they go. Any other change to the cache (e.g. scrolling back into data that was
+ *   evicted) has them rebuilt by the next read that needs them.</li>
+ *   <li>The levels from {@link #FIRST_SESSION_LEVEL} on are kept for the lifetime of the series instead, as they are small compared to the
+ *   data they summarize. They are fed straight from the underlying series, which is only asked for the edges they don't cover yet, so
+ *   reading a long range zoomed out neither caches nor fetches again all of its points.</li>
+ * </ul>
+ */
+public class CachedLongDataSeries extends CachedDataSeries<Long> implements LongDataSource {
+  /**
+   * The finest level kept for the lifetime of the series. Its buckets are about a second wide for a series in microseconds.
+   */
+  static final int FIRST_SESSION_LEVEL = 5;
+
+  // The fields below are guarded by this.
+  @NotNull private final LongColumn myValues;
+  @NotNull private final LongDataPyramid myCachePyramid = new LongDataPyramid(0, 0);
+  @NotNull private final LongDataPyramid mySessionPyramid = new LongDataPyramid(FIRST_SESSION_LEVEL, LongDataPyramid.LEVEL_COUNT);
+
+  // mySessionPyramid is complete within [mySessionMin, mySessionMax), nothing being covered if mySessionMin >= mySessionMax. Like for the
+  // cache, the newest point fetched is not considered final. mySessionLastX is the x of the newest point summarized.
+  private long mySessionMin;
+  private long mySessionMax;
+  private long mySessionLastX = Long.MIN_VALUE;
+
+  public CachedLongDataSeries(@NotNull DataSeries<Long> source, long retentionPadding) {
+    this(source, retentionPadding, new LongColumn());
+  }
+
+  private CachedLongDataSeries(@NotNull DataSeries<Long> source, long retentionPadding, @NotNull LongColumn values) {
+    super(source, retentionPadding, values);
+    myValues = values;
+  }
+
+  @Override
+  public synchronized void getDataForXRange(@NotNull Range xRange, @NotNull LongSeriesBuffer buffer) {
+    int count = cacheDataForXRange(xRange);
+    int start = getRangeStartIndex();
+    int end = start + count;
+    for (int i = start; i < end; i++) {
+      buffer.add(getCachedX(i), myValues.getLong(i));
+    }
+  }
+
+  @Override
+  public synchronized void getDataForXRange(@NotNull Range xRange, long resolution, @NotNull LongSeriesBuffer buffer) {
+    buffer.clear();
+    int level = LongDataPyramid.getLevelForResolution(resolution);
+    if (level < 0) {
+      getDataForXRange(xRange, buffer);
+      buffer.downsample(resolution);
+      return;
+    }
+    if (level >= FIRST_SESSION_LEVEL) {
+      if (!xRange.isEmpty()) {
+        updateSessionPyramid((long)xRange.getMin(), (long)xRange.getMax());
+        mySessionPyramid.getDataForXRange(level, xRange, buffer);
+      }
+      return;
+    }
+
+    if (cacheDataForXRange(xRange) == 0) {
+      return;
+    }
+    if (!myCachePyramid.isBuilt(level)) {
+      myCachePyramid.build(level);
+      for (int i = 0; i < getCachedCount(); i++) {
+        myCachePyramid.add(level, getCachedX(i), myValues.getLong(i));
+      }
+    }
+    myCachePyramid.getDataForXRange(level, xRange, buffer);
+  }
+
+  @Override
+  public synchronized void invalidate() {
+    super.invalidate();
+    mySessionPyramid.clear();
+    mySessionMin = 0;
+    mySessionMax = 0;
+    mySessionLastX = Long.MIN_VALUE;
+  }
+
+  @Override
+  void pointAppended(int index) {
+    myCachePyramid.add(getCachedX(index), myValues.getLong(index));
+  }
+
+  @Override
+  void pointsChanged() {
+    myCachePyramid.dropLevels();
+  }
+
+  @Override
+  void oldestPointsEvicted(long minX) {
+    myCachePyramid.removeBefore(minX);
+  }
+
+  /**
+   * Extends the range mySessionPyramid covers to [min, max], fetching only the edges it doesn't cover yet.
+   */
+  private void updateSessionPyramid(long min, long max) {
+    if (mySessionMin >= mySessionMax) {
+      mySessionPyramid.clear();
+      mySessionLastX = addToPyramid(mySessionPyramid, min, max, Long.MIN_VALUE);
+      mySessionMin = min;
+      mySessionMax = mySessionLastX == Long.MIN_VALUE ? min : mySessionLastX;
+      return;
+    }
+
+    if (min < mySessionMin) {
+      // Historic data does not change, so the whole left edge is considered final.
+      LongDataPyramid earlier = new LongDataPyramid(FIRST_SESSION_LEVEL, LongDataPyramid.LEVEL_COUNT);
+      addToPyramid(earlier, min, mySessionMin - 1, Long.MIN_VALUE);
+      mySessionPyramid.prepend(earlier);
+      mySessionMin = min;
+    }
+    if (max >= mySessionMax) {
+      // The newest point summarized so far is fetched again, but not summarized twice.
+      mySessionLastX = Math.max(mySessionLastX, addToPyramid(mySessionPyramid, mySessionMax, max, mySessionLastX));
+      mySessionMax = Math.max(mySessionMax, mySessionLastX);
+    }
+  }
+
+  /**
+   * Adds to the pyramid the points of the underlying series within [min, max] which come after {@code afterX}.
+   *
+   * @return the x of the last point added, or {@code afterX} if there is none.
+   */
+  private long addToPyramid(@NotNull LongDataPyramid pyramid, long min, long max, long afterX) {
+    long lastX = afterX;
+    for (SeriesData<Long> data : getSource().getDataForXRange(new Range(min, max))) {
+      if (data.x >= min && data.x <= max && data.x > lastX) {
+        pyramid.add(data.x, data.value);
+        lastX = data.x;
+      }
+    }
+    return lastX;
+  }
+
+  private static final class LongColumn implements ValueColumn<Long> {
+    @NotNull private final TLongArrayList myValues = new TLongArrayList();
+
+    long getLong(int index) {
+      return myValues.get(index);
+    }
+
+    @Override
+    public int size() {
+      return myValues.size();
+    }
+
+    @Override
+    public Long get(int index) {
+      return myValues.get(index);
+    }
+
+    @Override
+    public void set(int index, Long value) {
+      myValues.set(index, value);
+    }
+
+    @Override
+    public void add(Long value) {
+      myValues.add(value);
+    }
+
+    @Override
+    public void insert(int index, Long value) {
+      myValues.insert(index, value);
+    }
+
+    @Override
+    public void remove(int fromIndex, int length) {
+      myValues.remove(fromIndex, length);
+    }
+
+    @Override
+    public void clear() {
+      myValues.clear();
+    }
+  }
+}
@@ -38,6 +38,12 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
    */
   private boolean myFirstUpdate = true;
 
+  /**
+   * Reused across series and updates to read the data without allocating.
+   */
+  @NotNull
+  private final LongSeriesBuffer myBuffer = new LongSeriesBuffer();
+
   @Override
   public void update(long elapsedNs) {
     Map<Range, Double> max = new HashMap<>();
@@ -46,9 +52,9 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
       Range range = ranged.getYRange();
       double yMax = Double.MIN_VALUE;
 
-      List<SeriesData<Long>> seriesList = ranged.getSeries();
-      for (int i = 0; i < seriesList.size(); i++) {
-        double value = seriesList.get(i).value;
+      ranged.getSeries(myBuffer);
+      for (int i = 0; i < myBuffer.size(); i++) {
+        double value = myBuffer.getY(i);
         if (yMax < value) {
           yMax = value;
         }
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A multi-resolution summary of a {@code Long} series whose samples arrive in increasing x order. Each level splits the x axis into
+ * buckets of a fixed width, 4 times wider than the buckets of the level below, and keeps the minimum, maximum and last sample of each
+ * bucket. Levels are updated as samples are added, and a zoomed out view can then be read from the coarsest level that still has a bucket
+ * per pixel, so the number of points drawn depends on the width of the chart rather than on the length of the series.
+ *
+ * A pyramid only builds some of the levels, e.g. the ones actually read, as a level whose buckets are narrower than the spacing of the
+ * samples holds about as many buckets as there are samples.
+ */
+public final class LongDataPyramid {
+  /**
+   * The buckets of the finest level are {@code 1 << FINEST_LEVEL_SHIFT} wide, e.g. about 1ms for a series in microseconds.
+   */
+  static final int FINEST_LEVEL_SHIFT = 10;
+  static final int LEVEL_SHIFT_STEP = 2;
+  static final int LEVEL_COUNT = 10;
+
+  /**
+   * The levels this pyramid builds, null for the others.
+   */
+  @NotNull private final Level[] myLevels = new Level[LEVEL_COUNT];
+
+  /**
+   * Creates a pyramid which builds every level.
+   */
+  public LongDataPyramid() {
+    this(0, LEVEL_COUNT);
+  }
+
+  /**
+   * Creates a pyramid which builds the levels in [firstLevel, endLevel). More levels can be built later with {@link #build(int)}.
+   */
+  public LongDataPyramid(int firstLevel, int endLevel) {
+    for (int i = firstLevel; i < endLevel; i++) {
+      build(i);
+    }
+  }
+
+  public boolean isBuilt(int level) {
+    return myLevels[level] != null;
+  }
+
+  /**
+   * Starts building the level, if it isn't already. The level is empty until samples are added with {@link #add(int, long, long)}.
+   */
+  public void build(int level) {
+    if (myLevels[level] == null) {
+      myLevels[level] = new Level(FINEST_LEVEL_SHIFT + level * LEVEL_SHIFT_STEP);
+    }
+  }
+
+  /**
+   * Stops building every level, freeing their buckets.
+   */
+  public void dropLevels() {
+    Arrays.fill(myLevels, null);
+  }
+
+  /**
+   * Adds a sample to every level this pyramid builds. The x must not be smaller than the x of the previously added sample.
+   */
+  public void add(long x, long y) {
+    for (Level level : myLevels) {
+      if (level != null) {
+        level.add(x, y);
+      }
+    }
+  }
+
+  /**
+   * Adds a sample to the given level only, e.g. to fill a level that just started being built.
+   */
+  public void add(int level, long x, long y) {
+    myLevels[level].add(x, y);
+  }
+
+  /**
+   * Merges into this pyramid the buckets of a pyramid whose samples all come before the samples of this one, in the levels both build.
+   */
+  public void prepend(@NotNull LongDataPyramid earlier) {
+    for (int i = 0; i < LEVEL_COUNT; i++) {
+      if (myLevels[i] != null && earlier.myLevels[i] != null) {
+        myLevels[i].prepend(earlier.myLevels[i]);
+      }
+    }
+  }
+
+  /**
+   * Drops the buckets that only hold samples before {@code x}. The bucket {@code x} falls into is kept whole, so it may still summarize
+   * some samples before {@code x}.
+   */
+  public void removeBefore(long x) {
+    for (Level level : myLevels) {
+      if (level != null) {
+        level.removeBefore(x);
+      }
+    }
+  }
+
+  public void clear() {
+    for (Level level : myLevels) {
+      if (level != null) {
+        level.clear();
+      }
+    }
+  }
+
+  public static long getBucketWidth(int level) {
+    return 1L << (FINEST_LEVEL_SHIFT + level * LEVEL_SHIFT_STEP);
+  }
+
+  /**
+   * Returns the coarsest level whose buckets are no wider than {@code resolution}, or -1 if even the finest level is too coarse and the
+   * raw samples should be used instead.
+   */
+  public static int getLevelForResolution(long resolution) {
+    int level = -1;
+    while (level + 1 < LEVEL_COUNT && getBucketWidth(level + 1) <= resolution) {
+      level++;
+    }
+    return level;
+  }
+
+  /**
+   * Appends to the buffer the minimum, maximum and last points of the buckets of the given level that overlap the range, plus the bucket
+   * on each side of it so the line reaches the edges of the range. Appends nothing if this pyramid doesn't build the level.
+   */
+  public void getDataForXRange(int level, @NotNull Range xRange, @NotNull LongSeriesBuffer buffer) {
+    if (myLevels[level] != null) {
+      myLevels[level].getDataForXRange(xRange, buffer);
+    }
+  }
+
+  /**
+   * The buckets of a level, in columns. The bucket of a sample is its x shifted right by myShift, so it is not stored but derived from the
+   * x of the last sample of the bucket. The x of the minimum and maximum samples are stored as offsets from the start of the bucket, which
+   * fit in an int as buckets are at most {@code 1 << 28} wide.
+   */
+  private static final class Level {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int myShift;
+    @NotNull private long[] myLastXs = new long[INITIAL_CAPACITY];
+    @NotNull private long[] myLastYs = new long[INITIAL_CAPACITY];
+    @NotNull private long[] myMinYs = new long[INITIAL_CAPACITY];
+    @NotNull private long[] myMaxYs = new long[INITIAL_CAPACITY];
+    @NotNull private int[] myMinXOffsets = new int[INITIAL_CAPACITY];
+    @NotNull private int[] myMaxXOffsets = new int[INITIAL_CAPACITY];
+    private int mySize;
+
+    Level(int shift) {
+      assert shift < Integer.SIZE - 1;
+      myShift = shift;
+    }
+
+    void add(long x, long y) {
+      long bucket = x >> myShift;
+      int last = mySize - 1;
+      if (last >= 0 && bucket <= getBucket(last)) {
+        assert bucket == getBucket(last) : "Samples must be added in x order";
+        int offset = (int)(x - (bucket << myShift));
+        if (y < myMinYs[last]) {
+          myMinXOffsets[last] = offset;
+          myMinYs[last] = y;
+        }
+        if (y >= myMaxYs[last]) {
+          myMaxXOffsets[last] = offset;
+          myMaxYs[last] = y;
+        }
+        myLastXs[last] = x;
+        myLastYs[last] = y;
+        return;
+      }
+
+      ensureCapacity(mySize + 1);
+      int offset = (int)(x - (bucket << myShift));
+      myLastXs[mySize] = x;
+      myLastYs[mySize] = myMinYs[mySize] = myMaxYs[mySize] = y;
+      myMinXOffsets[mySize] = myMaxXOffsets[mySize] = offset;
+      mySize++;
+    }
+
+    void prepend(@NotNull Level earlier) {
+      assert earlier.myShift == myShift;
+      if (earlier.mySize == 0) {
+        return;
+      }
+      int last = earlier.mySize - 1;
+      boolean merge = mySize > 0 && earlier.getBucket(last) == getBucket(0);
+      assert mySize == 0 || earlier.getBucket(last) <= getBucket(0) : "Prepended samples must come first";
+      if (merge) {
+        // Both hold samples of the same bucket, whose last sample is the one of this level.
+        if (earlier.myMinYs[last] <= myMinYs[0]) {
+          myMinXOffsets[0] = earlier.myMinXOffsets[last];
+          myMinYs[0] = earlier.myMinYs[last];
+        }
+        if (earlier.myMaxYs[last] > myMaxYs[0]) {
+          myMaxXOffsets[0] = earlier.myMaxXOffsets[last];
+          myMaxYs[0] = earlier.myMaxYs[last];
+        }
+      }
+      int added = merge ? last : earlier.mySize;
+      ensureCapacity(mySize + added);
+      System.arraycopy(myLastXs, 0, myLastXs, added, mySize);
+      System.arraycopy(myLastYs, 0, myLastYs, added, mySize);
+      System.arraycopy(myMinYs, 0, myMinYs, added, mySize);
+      System.arraycopy(myMaxYs, 0, myMaxYs, added, mySize);
+      System.arraycopy(myMinXOffsets, 0, myMinXOffsets, added, mySize);
+      System.arraycopy(myMaxXOffsets, 0, myMaxXOffsets, added, mySize);
+      System.arraycopy(earlier.myLastXs, 0, myLastXs, 0, added);
+      System.arraycopy(earlier.myLastYs, 0, myLastYs, 0, added);
+      System.arraycopy(earlier.myMinYs, 0, myMinYs, 0, added);
+      System.arraycopy(earlier.myMaxYs, 0, myMaxYs, 0, added);
+      System.arraycopy(earlier.myMinXOffsets, 0, myMinXOffsets, 0, added);
+      System.arraycopy(earlier.myMaxXOffsets, 0, myMaxXOffsets, 0, added);
+      mySize += added;
+    }
+
+    void removeBefore(long x) {
+      int index = getBucketIndex(x >> myShift);
+      // Keep the bucket of x, which is at index if it has samples.
+      int removed = index >= 0 && getBucket(index) == x >> myShift ? index : index + 1;
+      if (removed <= 0) {
+        return;
+      }
+      int size = mySize - removed;
+      System.arraycopy(myLastXs, removed, myLastXs, 0, size);
+      System.arraycopy(myLastYs, removed, myLastYs, 0, size);
+      System.arraycopy(myMinYs, removed, myMinYs, 0, size);
+      System.arraycopy(myMaxYs, removed, myMaxYs, 0, size);
+      System.arraycopy(myMinXOffsets, removed, myMinXOffsets, 0, size);
+      System.arraycopy(myMaxXOffsets, removed, myMaxXOffsets, 0, size);
+      mySize = size;
+    }
+
+    void clear() {
+      mySize = 0;
+    }
+
+    void getDataForXRange(@NotNull Range xRange, @NotNull LongSeriesBuffer buffer) {
+      if (mySize == 0 || xRange.isEmpty()) {
+        return;
+      }
+
+      int fromIndex = Math.max(0, getBucketIndex((long)xRange.getMin() >> myShift) - 1);
+      int toIndex = Math.min(mySize, getBucketIndex((long)xRange.getMax() >> myShift) + 2);
+      for (int i = fromIndex; i < toIndex; i++) {
+        long start = getBucket(i) << myShift;
+        buffer.addBucket(start + myMinXOffsets[i], myMinYs[i], start + myMaxXOffsets[i], myMaxYs[i], myLastXs[i], myLastYs[i]);
+      }
+    }
+
+    private long getBucket(int index) {
+      return myLastXs[index] >> myShift;
+    }
+
+    /**
+     * Returns the index of the given bucket, or of the last bucket before it if it has no samples (-1 if there is none).
+     */
+    private int getBucketIndex(long bucket) {
+      int low = 0;
+      int high = mySize;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (getBucket(mid) <= bucket) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low - 1;
+    }
+
+    private void ensureCapacity(int size) {
+      if (size <= myLastXs.length) {
+        return;
+      }
+      int capacity = Math.max(size, myLastXs.length * 2);
+      myLastXs = Arrays.copyOf(myLastXs, capacity);
+      myLastYs = Arrays.copyOf(myLastYs, capacity);
+      myMinYs = Arrays.copyOf(myMinYs, capacity);
+      myMaxYs = Arrays.copyOf(myMaxYs, capacity);
+      myMinXOffsets = Arrays.copyOf(myMinXOffsets, capacity);
+      myMaxXOffsets = Arrays.copyOf(myMaxXOffsets, capacity);
+    }
+  }
+}
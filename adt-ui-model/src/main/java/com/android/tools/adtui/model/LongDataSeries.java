@@ -18,7 +18,7 @@ package com.android.tools.adtui.model;
 import gnu.trove.TLongArrayList;
 import org.jetbrains.annotations.NotNull;
 
-public class LongDataSeries extends BaseDataSeries<Long> {
+public class LongDataSeries extends BaseDataSeries<Long> implements LongDataSource {
 
   @NotNull
   private final TLongArrayList mY = new TLongArrayList();
@@ -33,4 +33,17 @@ public class LongDataSeries extends BaseDataSeries<Long> {
   public Long getY(int index) {
     return mY.get(index);
   }
+
+  @Override
+  public void getDataForXRange(@NotNull Range xRange, @NotNull LongSeriesBuffer buffer) {
+    if (size() == 0 || xRange.isEmpty()) {
+      return;
+    }
+
+    int fromIndex = getNearestXIndex((long)xRange.getMin());
+    int toIndex = getNearestXIndex((long)xRange.getMax()) + 1;
+    for (int i = fromIndex; i < toIndex; i++) {
+      buffer.add(mX.get(i), mY.get(i));
+    }
+  }
 }
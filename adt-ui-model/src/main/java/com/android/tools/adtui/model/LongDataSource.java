@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Implemented by {@code Long} {@link DataSeries} which can hand out their data without boxing it into {@link SeriesData} objects.
+ */
+public interface LongDataSource {
+  /**
+   * Appends to the buffer the same points {@link DataSeries#getDataForXRange(Range)} would return for the range.
+   */
+  void getDataForXRange(@NotNull Range xRange, @NotNull LongSeriesBuffer buffer);
+
+  /**
+   * Fills the buffer with the points of the range, where points closer than {@code resolution} along the x axis may be summarized by their
+   * minimum, maximum and last values. Sources without a summary of their own read all the points and downsample them.
+   */
+  default void getDataForXRange(@NotNull Range xRange, long resolution, @NotNull LongSeriesBuffer buffer) {
+    buffer.clear();
+    getDataForXRange(xRange, buffer);
+    buffer.downsample(resolution);
+  }
+}
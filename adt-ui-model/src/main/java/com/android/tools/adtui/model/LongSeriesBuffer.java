@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A reusable pair of x and y arrays holding the points of a {@code Long} series, for consumers that walk a series every frame and don't
+ * want to create a {@link SeriesData} per point to do so. See {@link LongDataSource} and
+ * {@link RangedContinuousSeries#getSeries(LongSeriesBuffer)}.
+ */
+public final class LongSeriesBuffer {
+  private static final int INITIAL_CAPACITY = 64;
+
+  @NotNull private long[] myXs = new long[INITIAL_CAPACITY];
+  @NotNull private long[] myYs = new long[INITIAL_CAPACITY];
+  private int mySize;
+
+  public int size() {
+    return mySize;
+  }
+
+  public boolean isEmpty() {
+    return mySize == 0;
+  }
+
+  public long getX(int index) {
+    assert index < mySize;
+    return myXs[index];
+  }
+
+  public long getY(int index) {
+    assert index < mySize;
+    return myYs[index];
+  }
+
+  public void set(int index, long x, long y) {
+    assert index < mySize;
+    myXs[index] = x;
+    myYs[index] = y;
+  }
+
+  public void add(long x, long y) {
+    mySize = put(mySize, x, y);
+  }
+
+  /**
+   * Appends the minimum, maximum and last points of a bucket in x order, skipping the ones that are the same sample.
+   */
+  void addBucket(long minX, long minY, long maxX, long maxY, long lastX, long lastY) {
+    mySize = putBucket(mySize, minX, minY, maxX, maxY, lastX, lastY);
+  }
+
+  /**
+   * Replaces each run of points that fall into the same {@code bucketWidth} wide interval of the x axis with its minimum, maximum and last
+   * points, so that the buffer holds at most three points per bucket. Does nothing if {@code bucketWidth} is less than 2.
+   */
+  public void downsample(long bucketWidth) {
+    if (bucketWidth < 2 || mySize == 0) {
+      return;
+    }
+
+    int reducedSize = 0;
+    long bucket = Math.floorDiv(myXs[0], bucketWidth);
+    long minX = myXs[0], minY = myYs[0];
+    long maxX = minX, maxY = minY;
+    for (int i = 1; i < mySize; i++) {
+      long x = myXs[i];
+      long y = myYs[i];
+      long currentBucket = Math.floorDiv(x, bucketWidth);
+      if (currentBucket != bucket) {
+        // The points of the finished bucket all come before i, so writing them at reducedSize can't overwrite unread points.
+        reducedSize = putBucket(reducedSize, minX, minY, maxX, maxY, myXs[i - 1], myYs[i - 1]);
+        bucket = currentBucket;
+        minX = maxX = x;
+        minY = maxY = y;
+        continue;
+      }
+      if (y < minY) {
+        minX = x;
+        minY = y;
+      }
+      if (y >= maxY) {
+        maxX = x;
+        maxY = y;
+      }
+    }
+    mySize = putBucket(reducedSize, minX, minY, maxX, maxY, myXs[mySize - 1], myYs[mySize - 1]);
+  }
+
+  /**
+   * Drops the points after the first {@code size} ones.
+   */
+  public void truncate(int size) {
+    assert size <= mySize;
+    mySize = size;
+  }
+
+  /**
+   * Removes all the points. The underlying arrays are kept for reuse.
+   */
+  public void clear() {
+    mySize = 0;
+  }
+
+  private int putBucket(int index, long minX, long minY, long maxX, long maxY, long lastX, long lastY) {
+    long firstX = Math.min(minX, maxX), firstY = minX <= maxX ? minY : maxY;
+    long secondX = Math.max(minX, maxX), secondY = minX <= maxX ? maxY : minY;
+    index = put(index, firstX, firstY);
+    if (secondX != firstX) {
+      index = put(index, secondX, secondY);
+    }
+    if (lastX != secondX) {
+      index = put(index, lastX, lastY);
+    }
+    return index;
+  }
+
+  private int put(int index, long x, long y) {
+    if (index == myXs.length) {
+      int capacity = index * 2;
+      myXs = Arrays.copyOf(myXs, capacity);
+      myYs = Arrays.copyOf(myYs, capacity);
+    }
+    myXs[index] = x;
+    myYs[index] = y;
+    return index + 1;
+  }
+
+  public void copyFrom(@NotNull LongSeriesBuffer other) {
+    clear();
+    for (int i = 0; i < other.mySize; i++) {
+      add(other.myXs[i], other.myYs[i]);
+    }
+  }
+}
@@ -36,6 +36,78 @@ public class RangedContinuousSeries extends RangedSeries<Long> {
     myName = name;
   }
 
+  /**
+   * Fills the buffer with the same points {@link #getSeries()} returns. Series backed by a {@link LongDataSource} are read without creating
+   * an object per point.
+   */
+  public void getSeries(@NotNull LongSeriesBuffer buffer) {
+    buffer.clear();
+    readSeries(mXRange, buffer);
+  }
+
+  /**
+   * Fills the buffer with the points of the series in range, summarized so that there are at most a few points for each of the
+   * {@code widthInPixels} pixels the range is drawn on. Series backed by a {@link LongDataSource} may answer from a summary of their own
+   * (e.g. a {@link CachedLongDataSeries}), others are read in full and downsampled.
+   */
+  public void getSeries(@NotNull LongSeriesBuffer buffer, int widthInPixels) {
+    if (widthInPixels <= 0 || mXRange.isEmpty()) {
+      getSeries(buffer);
+      return;
+    }
+    readSeries(mXRange, getResolution(widthInPixels), buffer);
+  }
+
+  /**
+   * Fills the buffer with the points of the series from {@code fromX} to the end of the x range, for readers that kept what they read of
+   * the start of the range from earlier reads. The buffer may also hold a point just before {@code fromX}.
+   */
+  public void getSeriesFrom(@NotNull LongSeriesBuffer buffer, double fromX) {
+    if (fromX <= mXRange.getMin()) {
+      getSeries(buffer);
+      return;
+    }
+
+    Range range = new Range(Math.min(fromX, mXRange.getMax()), mXRange.getMax());
+    buffer.clear();
+    readSeries(range, buffer);
+  }
+
+  /**
+   * Appends the points of the underlying series within the range to the buffer, without creating an object per point if the series is a
+   * {@link LongDataSource}.
+   */
+  protected final void readSeries(@NotNull Range range, @NotNull LongSeriesBuffer buffer) {
+    if (mSeries instanceof LongDataSource) {
+      ((LongDataSource)mSeries).getDataForXRange(range, buffer);
+      return;
+    }
+    for (SeriesData<Long> data : mSeries.getDataForXRange(range)) {
+      buffer.add(data.x, data.value);
+    }
+  }
+
+  /**
+   * Fills the buffer with the points of the underlying series within the range, summarized to a few points per {@code resolution} along
+   * the x axis.
+   */
+  protected final void readSeries(@NotNull Range range, long resolution, @NotNull LongSeriesBuffer buffer) {
+    if (mSeries instanceof LongDataSource) {
+      ((LongDataSource)mSeries).getDataForXRange(range, resolution, buffer);
+      return;
+    }
+    buffer.clear();
+    readSeries(range, buffer);
+    buffer.downsample(resolution);
+  }
+
+  /**
+   * @return the length of the x range covered by a pixel when the range is drawn {@code widthInPixels} wide.
+   */
+  protected final long getResolution(int widthInPixels) {
+    return (long)(mXRange.getLength() / widthInPixels);
+  }
+
   @NotNull
   public Range getYRange() {
     return mYRange;
@@ -32,6 +32,14 @@ public interface Updatable {
    */
   void update(long elapsedNs);
 
+  /**
+   * Lets the {@link Updater} skip this {@link Updatable} for the current frame, e.g. because nothing it depends on changed or what it
+   * drives is not visible. The time elapsed during skipped frames is added to the {@code elapsedNs} of the next {@link #update(long)}.
+   */
+  default boolean needsUpdate() {
+    return true;
+  }
+
   /**
    * Triggered by the {@link Choreographer} after all components have finished animating.
    * This allows an {@link Updatable} to read any data modified by other components
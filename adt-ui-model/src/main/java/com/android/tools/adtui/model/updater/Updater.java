@@ -19,20 +19,37 @@ package com.android.tools.adtui.model.updater;
 import com.android.tools.adtui.model.StopwatchTimer;
 import com.google.common.annotations.VisibleForTesting;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 /**
  * An auxiliary object that synchronizes a group of {@link Updatable} via a simple update loop
  * running at a specific frame rate. This ensures all UI components and model classes are reading
  * and displaying consistent information at any given time.
+ *
+ * The loop keeps track of how long each {@link Updatable} takes to update. Once the updates of a
+ * frame have used up the frame budget, the remaining expensive components are deferred to the next
+ * frame, where they are updated with the time elapsed over both frames. A component is never
+ * deferred twice in a row, so the rest of the loop can't starve it.
  */
 public class Updater implements StopwatchTimer.TickHandler {
 
   public static final float DEFAULT_LERP_FRACTION = 0.99f;
   public static final float DEFAULT_LERP_THRESHOLD_PERCENTAGE = 0.001f;
 
+  /**
+   * Time the updates of a frame may take before expensive components get deferred, leaving the rest of a 60fps frame to painting.
+   */
+  public static final long DEFAULT_FRAME_BUDGET_NS = TimeUnit.MILLISECONDS.toNanos(8);
+
+  /**
+   * Components whose average update takes at least this fraction of the frame budget are considered expensive.
+   */
+  private static final int EXPENSIVE_UPDATE_BUDGET_DIVISOR = 8;
+
   private final List<Updatable> mComponents;
   private List<Updatable> mToRegister;
   private List<Updatable> mToUnregister;
@@ -41,6 +58,12 @@ public class Updater implements StopwatchTimer.TickHandler {
 
   private boolean mUpdating;
 
+  @NotNull private final Map<Updatable, UpdateStats> mStats = new IdentityHashMap<>();
+  @NotNull private final List<Updatable> mUpdatedThisFrame = new ArrayList<>();
+  @NotNull private LongSupplier mClock = System::nanoTime;
+  private long mFrameBudgetNs = DEFAULT_FRAME_BUDGET_NS;
+  private long mLastFrameUpdateNs;
+
   public Updater(@NotNull StopwatchTimer timer) {
     mComponents = new LinkedList<>();
     mToRegister = new LinkedList<>();
@@ -76,9 +99,48 @@ public class Updater implements StopwatchTimer.TickHandler {
       mToUnregister.add(updatable);
     } else {
       mComponents.remove(updatable);
+      mStats.remove(updatable);
     }
   }
 
+  public long getFrameBudgetNs() {
+    return mFrameBudgetNs;
+  }
+
+  public void setFrameBudgetNs(long frameBudgetNs) {
+    mFrameBudgetNs = frameBudgetNs;
+  }
+
+  @VisibleForTesting
+  void setClock(@NotNull LongSupplier clock) {
+    mClock = clock;
+  }
+
+  /**
+   * @return the update statistics of a registered {@link Updatable}, or null if it hasn't been through a frame yet.
+   */
+  @Nullable
+  public UpdateStats getUpdateStats(@NotNull Updatable updatable) {
+    return mStats.get(updatable);
+  }
+
+  /**
+   * @return up to {@code count} registered components, from the one with the highest average update time down.
+   */
+  @NotNull
+  public List<Updatable> getSlowestUpdatables(int count) {
+    List<Updatable> components = new ArrayList<>(mStats.keySet());
+    components.sort(Comparator.comparingDouble((Updatable component) -> mStats.get(component).getAverageUpdateNs()).reversed());
+    return components.subList(0, Math.min(count, components.size()));
+  }
+
+  /**
+   * @return the time the updates of the last frame took in total.
+   */
+  public long getLastFrameUpdateNs() {
+    return mLastFrameUpdateNs;
+  }
+
   public void stop() {
     if (mTimer.isRunning()) {
       mTimer.stop();
@@ -101,8 +163,39 @@ public class Updater implements StopwatchTimer.TickHandler {
       mReset = false;
     }
 
-    mComponents.forEach(component -> component.update(elapsedNs));
-    mComponents.forEach(Updatable::postUpdate);
+    long frameStartNs = mClock.getAsLong();
+    long expensiveUpdateNs = mFrameBudgetNs / EXPENSIVE_UPDATE_BUDGET_DIVISOR;
+    for (Updatable component : mComponents) {
+      UpdateStats stats = mStats.computeIfAbsent(component, key -> new UpdateStats());
+      long componentElapsedNs = elapsedNs + stats.mPendingElapsedNs;
+      if (!component.needsUpdate()) {
+        stats.mPendingElapsedNs = componentElapsedNs;
+        stats.mSkippedCount++;
+        continue;
+      }
+      if (!stats.mDeferredLastFrame && stats.mAverageUpdateNs >= expensiveUpdateNs &&
+          mClock.getAsLong() - frameStartNs > mFrameBudgetNs) {
+        stats.mPendingElapsedNs = componentElapsedNs;
+        stats.mDeferredLastFrame = true;
+        stats.mDeferredCount++;
+        continue;
+      }
+
+      long startNs = mClock.getAsLong();
+      component.update(componentElapsedNs);
+      stats.mFrameUpdateNs = mClock.getAsLong() - startNs;
+      stats.mPendingElapsedNs = 0;
+      stats.mDeferredLastFrame = false;
+      mUpdatedThisFrame.add(component);
+    }
+    for (Updatable component : mUpdatedThisFrame) {
+      UpdateStats stats = mStats.get(component);
+      long startNs = mClock.getAsLong();
+      component.postUpdate();
+      stats.record(stats.mFrameUpdateNs + mClock.getAsLong() - startNs);
+    }
+    mUpdatedThisFrame.clear();
+    mLastFrameUpdateNs = mClock.getAsLong() - frameStartNs;
     mUpdating = false;
 
     mToUnregister.forEach(this::unregister);
@@ -112,6 +205,62 @@ public class Updater implements StopwatchTimer.TickHandler {
     mToRegister.clear();
   }
 
+  /**
+   * How long an {@link Updatable} takes to update, {@link Updatable#postUpdate()} included, and how often it was left out of a frame.
+   */
+  public static final class UpdateStats {
+    // Weight of the latest update in the moving average.
+    private static final double AVERAGE_WEIGHT = 0.1;
+
+    private long mLastUpdateNs;
+    private double mAverageUpdateNs;
+    private long mMaxUpdateNs;
+    private long mUpdateCount;
+    private long mDeferredCount;
+    private long mSkippedCount;
+
+    private long mFrameUpdateNs;
+    private long mPendingElapsedNs;
+    private boolean mDeferredLastFrame;
+
+    private void record(long updateNs) {
+      mLastUpdateNs = updateNs;
+      mAverageUpdateNs = mUpdateCount == 0 ? updateNs : mAverageUpdateNs + AVERAGE_WEIGHT * (updateNs - mAverageUpdateNs);
+      mMaxUpdateNs = Math.max(mMaxUpdateNs, updateNs);
+      mUpdateCount++;
+    }
+
+    public long getLastUpdateNs() {
+      return mLastUpdateNs;
+    }
+
+    public double getAverageUpdateNs() {
+      return mAverageUpdateNs;
+    }
+
+    public long getMaxUpdateNs() {
+      return mMaxUpdateNs;
+    }
+
+    public long getUpdateCount() {
+      return mUpdateCount;
+    }
+
+    /**
+     * @return the number of frames the component was left out of because the frame budget was used up.
+     */
+    public long getDeferredCount() {
+      return mDeferredCount;
+    }
+
+    /**
+     * @return the number of frames the component was left out of because it didn't need an update.
+     */
+    public long getSkippedCount() {
+      return mSkippedCount;
+    }
+  }
+
   /**
    * A linear interpolation that accumulates over time. This gives an exponential effect where the
    * value {@code from} moves towards the value {@code to} at a rate of {@code fraction} per
@@ -19,7 +19,7 @@ import com.android.tools.adtui.model.formatter.SingleUnitAxisFormatter;
 import com.android.tools.adtui.model.updater.Updater;
 import org.junit.Test;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class AxisComponentModelTest {
 
@@ -60,4 +60,66 @@ public class AxisComponentModelTest {
     t.step();
     assertEquals(model.getRange().getMax(), 5.0, 0.0);  // after update.
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testUpdateIsSkippedWhileNothingChanges() {
+    SingleUnitAxisFormatter formatter = new SingleUnitAxisFormatter(1, 1, 10, "");
+    Range range = new Range(0, 5);
+    Range globalRange = new Range(0, 100);
+    FakeTimer t = new FakeTimer();
+    Updater choreographer = new Updater(t);
+
+    AxisComponentModel model = new AxisComponentModel(range, formatter);
+    model.setGlobalRange(globalRange);
+    choreographer.register(model);
+    int[] changes = new int[1];
+    AspectObserver observer = new AspectObserver();
+    model.addDependency(observer).onChange(AxisComponentModel.Aspect.AXIS, () -> changes[0]++);
+
+    t.step();
+    assertEquals(1, changes[0]);
+    t.step();
+    assertEquals(1, changes[0]);
+    assertFalse(model.needsUpdate());
+
+    range.setMax(8);
+    assertTrue(model.needsUpdate());
+    t.step();
+    assertEquals(2, changes[0]);
+
+    globalRange.setMin(-10);
+    t.step();
+    assertEquals(3, changes[0]);
+
+    model.setLabel("label");
+    t.step();
+    assertEquals(4, changes[0]);
+    t.step();
+    assertEquals(4, changes[0]);
+  }
+
+  @Test
+  public void testUpdatesUntilClampedToMajorTick() {
+    SingleUnitAxisFormatter formatter = new SingleUnitAxisFormatter(1, 1, 10, "");
+    Range range = new Range(0, 5);
+    FakeTimer t = new FakeTimer();
+    Updater choreographer = new Updater(t);
+
+    AxisComponentModel model = new AxisComponentModel(range, formatter);
+    model.setClampToMajorTicks(true);
+    choreographer.register(model);
+    t.step();
+    assertEquals(10.0, range.getMax(), 0.0);
+
+    // After the first update, the max is interpolated towards the next major tick, which takes several frames.
+    range.setMax(15);
+    int frames = 0;
+    while (model.needsUpdate()) {
+      t.step();
+      frames++;
+    }
+    assertTrue(frames > 1);
+    assertTrue(range.getMax() > 15);
+    assertEquals(0, range.getMax() % formatter.getMajorInterval(range.getLength()), 0.0);
+  }
+}
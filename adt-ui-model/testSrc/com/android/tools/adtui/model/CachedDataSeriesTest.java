@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class CachedDataSeriesTest {
+  private DefaultDataSeries<Long> myData;
+  private List<Range> myRequests;
+  private CachedDataSeries<Long> mySeries;
+
+  @Before
+  public void setUp() {
+    myData = new DefaultDataSeries<>();
+    myRequests = new ArrayList<>();
+    DataSeries<Long> source = range -> {
+      myRequests.add(new Range(range));
+      return myData.getDataForXRange(range);
+    };
+    mySeries = new CachedDataSeries<>(source, 100);
+  }
+
+  @Test
+  public void testOverlappingQueriesOnlyFetchMissingEdges() {
+    for (long x = 0; x <= 100; x += 10) {
+      myData.add(x, x);
+    }
+
+    assertThat(xs(mySeries.getDataForXRange(new Range(20, 60)))).containsExactly(20L, 30L, 40L, 50L, 60L).inOrder();
+    assertThat(myRequests).hasSize(1);
+    assertThat(mySeries.getStatistics().getMissCount()).isEqualTo(1);
+
+    // Fully inside of what was already fetched.
+    assertThat(xs(mySeries.getDataForXRange(new Range(25, 45)))).containsExactly(20L, 30L, 40L, 50L).inOrder();
+    assertThat(myRequests).hasSize(1);
+    assertThat(mySeries.getStatistics().getHitCount()).isEqualTo(1);
+
+    // Moving both ends only fetches the edges. The last point fetched before (60) is fetched again as it could still change.
+    assertThat(xs(mySeries.getDataForXRange(new Range(5, 80)))).containsExactly(0L, 10L, 20L, 30L, 40L, 50L, 60L, 70L, 80L).inOrder();
+    assertThat(myRequests).hasSize(3);
+    assertThat(myRequests.get(1).getMin()).isWithin(0).of(5);
+    assertThat(myRequests.get(1).getMax()).isWithin(0).of(19);
+    assertThat(myRequests.get(2).getMin()).isWithin(0).of(60);
+    assertThat(myRequests.get(2).getMax()).isWithin(0).of(80);
+    assertThat(mySeries.getStatistics().getPartialHitCount()).isEqualTo(1);
+    assertThat(mySeries.getStatistics().getHitRate()).isWithin(0.0001).of(2 / 3.0);
+  }
+
+  @Test
+  public void testNewestDataIsRefetched() {
+    myData.add(0, 0L);
+    myData.add(10, 1L);
+    assertThat(xs(mySeries.getDataForXRange(new Range(0, 50)))).containsExactly(0L, 10L).inOrder();
+
+    // Data arriving later, before the end of the range that was already queried, is still picked up.
+    myData.add(20, 2L);
+    assertThat(xs(mySeries.getDataForXRange(new Range(0, 50)))).containsExactly(0L, 10L, 20L).inOrder();
+    assertThat(mySeries.getDataForXRange(new Range(0, 50)).get(2).value).isEqualTo(2L);
+  }
+
+  @Test
+  public void testDisjointQueryRefetches() {
+    for (long x = 0; x <= 1000; x += 10) {
+      myData.add(x, x);
+    }
+    mySeries.getDataForXRange(new Range(0, 100));
+    assertThat(xs(mySeries.getDataForXRange(new Range(500, 520)))).containsExactly(500L, 510L, 520L).inOrder();
+    assertThat(mySeries.getStatistics().getMissCount()).isEqualTo(2);
+    assertThat(myRequests.get(1).getMin()).isWithin(0).of(500);
+  }
+
+  @Test
+  public void testDataOutsideOfRetentionIsEvicted() {
+    for (long x = 0; x <= 1000; x += 10) {
+      myData.add(x, x);
+    }
+    mySeries.getDataForXRange(new Range(0, 500));
+    mySeries.getDataForXRange(new Range(400, 600));
+    // The points fetched within [300, 700] are kept.
+    assertThat(mySeries.getStatistics().getCachedPointCount()).isEqualTo(31);
+    myRequests.clear();
+
+    // [0, 300) was evicted, so it has to be fetched again.
+    mySeries.getDataForXRange(new Range(200, 500));
+    assertThat(myRequests).hasSize(1);
+    assertThat(myRequests.get(0).getMin()).isWithin(0).of(200);
+    assertThat(myRequests.get(0).getMax()).isWithin(0).of(299);
+  }
+
+  @Test
+  public void testClosestPointsOutsideOfRangeAreIncluded() {
+    for (long x = 0; x <= 100; x += 10) {
+      myData.add(x, x);
+    }
+    mySeries.getDataForXRange(new Range(0, 100));
+    assertThat(xs(mySeries.getDataForXRange(new Range(25, 35)))).containsExactly(20L, 30L, 40L).inOrder();
+    assertThat(xs(mySeries.getDataForXRange(new Range(45, 45)))).containsExactly(40L, 50L).inOrder();
+  }
+
+  @Test
+  public void testInvalidate() {
+    myData.add(0, 0L);
+    myData.add(10, 1L);
+    mySeries.getDataForXRange(new Range(0, 5));
+    mySeries.invalidate();
+    mySeries.getDataForXRange(new Range(0, 5));
+    assertThat(mySeries.getStatistics().getMissCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testLongSeriesBufferMatchesList() {
+    for (long x = 0; x <= 1000; x += 10) {
+      myData.add(x, x * 2);
+    }
+    CachedLongDataSeries series = new CachedLongDataSeries(myData, 100);
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    for (Range range : new Range[]{new Range(0, 100), new Range(25, 135), new Range(700, 700), new Range(990, 2000)}) {
+      List<SeriesData<Long>> expected = mySeries.getDataForXRange(range);
+      buffer.clear();
+      series.getDataForXRange(range, buffer);
+      assertThat(buffer.size()).isEqualTo(expected.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertThat(buffer.getX(i)).isEqualTo(expected.get(i).x);
+        assertThat(buffer.getY(i)).isEqualTo(expected.get(i).value);
+      }
+    }
+  }
+
+  @Test
+  public void testSummaryFollowsAppendedAndEvictedPoints() {
+    CachedLongDataSeries series = new CachedLongDataSeries(myData, 10000);
+    LongDataPyramid expected = new LongDataPyramid();
+    LongSeriesBuffer expectedBuffer = new LongSeriesBuffer();
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    // Resolution of the finest level, whose buckets are narrower than the retention padding.
+    long resolution = LongDataPyramid.getBucketWidth(0);
+    long x = 0;
+    for (long max = 20000; max <= 200000; max += 5000) {
+      // Data arrives up to the end of the range, like in live mode.
+      for (; x <= max; x += 100) {
+        myData.add(x, (x / 100) % 7);
+        expected.add(x, (x / 100) % 7);
+      }
+      Range range = new Range(max - 20000, max);
+      series.getDataForXRange(range, resolution, buffer);
+      expectedBuffer.clear();
+      expected.getDataForXRange(0, range, expectedBuffer);
+      assertBuffersEqual(expectedBuffer, buffer);
+    }
+  }
+
+  @Test
+  public void testSummaryIsRebuiltWhenPointsAreInsertedBefore() {
+    for (long x = 0; x <= 60000; x += 100) {
+      myData.add(x, (x / 100) % 11);
+    }
+    CachedLongDataSeries series = new CachedLongDataSeries(myData, 1000000);
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    long resolution = LongDataPyramid.getBucketWidth(1);
+    series.getDataForXRange(new Range(50000, 60000), resolution, buffer);
+
+    // Scrolling back fetches points before the cached ones.
+    Range range = new Range(0, 60000);
+    series.getDataForXRange(range, resolution, buffer);
+    LongDataPyramid expected = new LongDataPyramid();
+    for (long x = 0; x <= 60000; x += 100) {
+      expected.add(x, (x / 100) % 11);
+    }
+    LongSeriesBuffer expectedBuffer = new LongSeriesBuffer();
+    expected.getDataForXRange(1, range, expectedBuffer);
+    assertBuffersEqual(expectedBuffer, buffer);
+  }
+
+  @Test
+  public void testSessionLevelsOnlyFetchTheEdgesTheyMiss() {
+    CachedLongDataSeries series = new CachedLongDataSeries(range -> {
+      myRequests.add(new Range(range));
+      return myData.getDataForXRange(range);
+    }, 0);
+    LongDataPyramid expected = new LongDataPyramid();
+    LongSeriesBuffer expectedBuffer = new LongSeriesBuffer();
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    int level = CachedLongDataSeries.FIRST_SESSION_LEVEL;
+    long resolution = LongDataPyramid.getBucketWidth(level);
+    long step = resolution / 3;
+    for (long x = 0; x <= 100 * resolution; x += step) {
+      myData.add(x, (x / step) % 13);
+      expected.add(x, (x / step) % 13);
+    }
+
+    // Read the middle of the data, then scroll both ways.
+    series.getDataForXRange(new Range(40 * resolution, 60 * resolution), resolution, buffer);
+    series.getDataForXRange(new Range(70 * resolution, 90 * resolution), resolution, buffer);
+    series.getDataForXRange(new Range(10 * resolution, 30 * resolution), resolution, buffer);
+    assertThat(myRequests).hasSize(3);
+    assertThat(myRequests.get(2).getMax()).isLessThan(40.0 * resolution);
+
+    // The whole range read so far is summarized, without asking for any of it again.
+    myRequests.clear();
+    Range range = new Range(11 * resolution, 85 * resolution);
+    series.getDataForXRange(range, resolution, buffer);
+    assertThat(myRequests).isEmpty();
+    expected.getDataForXRange(level, range, expectedBuffer);
+    assertBuffersEqual(expectedBuffer, buffer);
+
+    // The cache itself didn't keep the points.
+    assertThat(series.getStatistics().getCachedPointCount()).isEqualTo(0);
+  }
+
+  private static void assertBuffersEqual(LongSeriesBuffer expected, LongSeriesBuffer actual) {
+    assertThat(actual.size()).isEqualTo(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(actual.getX(i)).isEqualTo(expected.getX(i));
+      assertThat(actual.getY(i)).isEqualTo(expected.getY(i));
+    }
+  }
+
+  private static List<Long> xs(List<SeriesData<Long>> data) {
+    return data.stream().map(d -> d.x).collect(Collectors.toList());
+  }
+}
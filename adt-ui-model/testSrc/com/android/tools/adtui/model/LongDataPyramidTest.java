@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LongDataPyramidTest {
+  private static final long FINEST_WIDTH = LongDataPyramid.getBucketWidth(0);
+
+  private LongDataPyramid myPyramid;
+  private LongSeriesBuffer myBuffer;
+
+  @Before
+  public void setUp() {
+    myPyramid = new LongDataPyramid();
+    myBuffer = new LongSeriesBuffer();
+  }
+
+  @Test
+  public void levelForResolution() {
+    assertThat(LongDataPyramid.getLevelForResolution(0)).isEqualTo(-1);
+    assertThat(LongDataPyramid.getLevelForResolution(FINEST_WIDTH - 1)).isEqualTo(-1);
+    assertThat(LongDataPyramid.getLevelForResolution(FINEST_WIDTH)).isEqualTo(0);
+    assertThat(LongDataPyramid.getLevelForResolution(LongDataPyramid.getBucketWidth(1) - 1)).isEqualTo(0);
+    assertThat(LongDataPyramid.getLevelForResolution(LongDataPyramid.getBucketWidth(1))).isEqualTo(1);
+    assertThat(LongDataPyramid.getLevelForResolution(Long.MAX_VALUE)).isEqualTo(LongDataPyramid.LEVEL_COUNT - 1);
+  }
+
+  @Test
+  public void bucketKeepsMinMaxAndLastInOrder() {
+    myPyramid.add(0, 5);
+    myPyramid.add(1, 9);
+    myPyramid.add(2, 1);
+    myPyramid.add(3, 4);
+    myPyramid.add(FINEST_WIDTH, 7);
+
+    myPyramid.getDataForXRange(0, new Range(0, FINEST_WIDTH), myBuffer);
+    assertBufferEquals(new long[][]{{1, 9}, {2, 1}, {3, 4}, {FINEST_WIDTH, 7}}, myBuffer);
+  }
+
+  @Test
+  public void pointsAreNotRepeatedWhenMinMaxOrLastMatch() {
+    myPyramid.add(0, 5);
+    myPyramid.add(1, 2);
+    myPyramid.add(FINEST_WIDTH, 3);
+
+    myPyramid.getDataForXRange(0, new Range(0, FINEST_WIDTH), myBuffer);
+    assertBufferEquals(new long[][]{{0, 5}, {1, 2}, {FINEST_WIDTH, 3}}, myBuffer);
+  }
+
+  @Test
+  public void rangeIncludesNeighborBuckets() {
+    for (long i = 0; i < 10; i++) {
+      myPyramid.add(i * FINEST_WIDTH, i);
+    }
+
+    myPyramid.getDataForXRange(0, new Range(3 * FINEST_WIDTH + 1, 5 * FINEST_WIDTH + 1), myBuffer);
+    assertBufferEquals(new long[][]{
+      {2 * FINEST_WIDTH, 2}, {3 * FINEST_WIDTH, 3}, {4 * FINEST_WIDTH, 4}, {5 * FINEST_WIDTH, 5}, {6 * FINEST_WIDTH, 6}}, myBuffer);
+  }
+
+  @Test
+  public void coarseLevelSizeDependsOnRangeNotSampleCount() {
+    // One sample per finest bucket over 4096 finest buckets.
+    for (long i = 0; i < 4096; i++) {
+      myPyramid.add(i * FINEST_WIDTH, i % 7);
+    }
+
+    long width = LongDataPyramid.getBucketWidth(4);
+    myPyramid.getDataForXRange(4, new Range(0, 4096 * FINEST_WIDTH), myBuffer);
+    // 4096 finest buckets are 16 level 4 buckets, each contributing at most 3 points.
+    assertThat(4096 * FINEST_WIDTH / width).isEqualTo(16);
+    assertThat(myBuffer.size()).isAtMost(16 * 3);
+    assertThat(myBuffer.getX(0)).isEqualTo(0);
+    assertThat(myBuffer.getX(myBuffer.size() - 1)).isEqualTo(4095 * FINEST_WIDTH);
+    for (int i = 1; i < myBuffer.size(); i++) {
+      assertThat(myBuffer.getX(i)).isGreaterThan(myBuffer.getX(i - 1));
+    }
+  }
+
+  @Test
+  public void emptyRangeOrPyramidReturnsNothing() {
+    myPyramid.getDataForXRange(0, new Range(0, 100), myBuffer);
+    assertThat(myBuffer.isEmpty()).isTrue();
+
+    myPyramid.add(0, 1);
+    myPyramid.getDataForXRange(0, new Range(), myBuffer);
+    assertThat(myBuffer.isEmpty()).isTrue();
+
+    myPyramid.clear();
+    myPyramid.getDataForXRange(0, new Range(0, 100), myBuffer);
+    assertThat(myBuffer.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void removeBeforeKeepsTheBucketOfX() {
+    for (long i = 0; i < 10; i++) {
+      myPyramid.add(i * FINEST_WIDTH, i);
+    }
+
+    myPyramid.removeBefore(4 * FINEST_WIDTH + 1);
+    myPyramid.getDataForXRange(0, new Range(0, 5 * FINEST_WIDTH), myBuffer);
+    assertBufferEquals(new long[][]{{4 * FINEST_WIDTH, 4}, {5 * FINEST_WIDTH, 5}, {6 * FINEST_WIDTH, 6}}, myBuffer);
+
+    // Buckets without samples aren't kept, so removing before one of them drops everything up to it.
+    myPyramid.removeBefore(20 * FINEST_WIDTH);
+    myBuffer.clear();
+    myPyramid.getDataForXRange(0, new Range(0, 20 * FINEST_WIDTH), myBuffer);
+    assertThat(myBuffer.isEmpty()).isTrue();
+
+    myPyramid.add(21 * FINEST_WIDTH, 1);
+    myPyramid.getDataForXRange(0, new Range(0, 20 * FINEST_WIDTH), myBuffer);
+    assertBufferEquals(new long[][]{{21 * FINEST_WIDTH, 1}}, myBuffer);
+  }
+
+  @Test
+  public void prependMergesTheSharedBucket() {
+    LongDataPyramid earlier = new LongDataPyramid();
+    LongDataPyramid expected = new LongDataPyramid();
+    for (long i = 0; i < 10; i++) {
+      long y = (i * 5) % 7;
+      (i < 6 ? earlier : myPyramid).add(i * FINEST_WIDTH / 2, y);
+      expected.add(i * FINEST_WIDTH / 2, y);
+    }
+
+    // The samples 6 and 7 share a finest bucket with samples 4 and 5.
+    myPyramid.prepend(earlier);
+    for (int level = 0; level < LongDataPyramid.LEVEL_COUNT; level++) {
+      LongSeriesBuffer expectedBuffer = new LongSeriesBuffer();
+      expected.getDataForXRange(level, new Range(0, 5 * FINEST_WIDTH), expectedBuffer);
+      myBuffer.clear();
+      myPyramid.getDataForXRange(level, new Range(0, 5 * FINEST_WIDTH), myBuffer);
+      assertThat(myBuffer.size()).isEqualTo(expectedBuffer.size());
+      for (int i = 0; i < expectedBuffer.size(); i++) {
+        assertThat(myBuffer.getX(i)).isEqualTo(expectedBuffer.getX(i));
+        assertThat(myBuffer.getY(i)).isEqualTo(expectedBuffer.getY(i));
+      }
+    }
+  }
+
+  @Test
+  public void onlyBuiltLevelsAreUpdated() {
+    LongDataPyramid pyramid = new LongDataPyramid(2, 3);
+    pyramid.add(0, 1);
+    assertThat(pyramid.isBuilt(1)).isFalse();
+    pyramid.getDataForXRange(1, new Range(0, 100), myBuffer);
+    assertThat(myBuffer.isEmpty()).isTrue();
+
+    pyramid.build(1);
+    pyramid.add(1, 10, 2);
+    pyramid.getDataForXRange(1, new Range(0, 100), myBuffer);
+    assertBufferEquals(new long[][]{{10, 2}}, myBuffer);
+
+    pyramid.dropLevels();
+    assertThat(pyramid.isBuilt(1)).isFalse();
+    assertThat(pyramid.isBuilt(2)).isFalse();
+  }
+
+  static void assertBufferEquals(@NotNull long[][] expected, @NotNull LongSeriesBuffer actual) {
+    assertThat(actual.size()).isEqualTo(expected.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertThat(actual.getX(i)).isEqualTo(expected[i][0]);
+      assertThat(actual.getY(i)).isEqualTo(expected[i][1]);
+    }
+  }
+}
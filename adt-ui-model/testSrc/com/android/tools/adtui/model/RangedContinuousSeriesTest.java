@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class RangedContinuousSeriesTest {
+  @Test
+  public void bufferMatchesListForLongDataSeries() {
+    LongDataSeries data = new LongDataSeries();
+    for (long i = 0; i < 100; i++) {
+      data.add(i * 10, i * i);
+    }
+    checkBufferMatchesList(data);
+  }
+
+  @Test
+  public void bufferMatchesListForGenericSeries() {
+    DefaultDataSeries<Long> data = new DefaultDataSeries<>();
+    for (long i = 0; i < 100; i++) {
+      data.add(i * 10, i * i);
+    }
+    checkBufferMatchesList(data);
+  }
+
+  @Test
+  public void bufferIsClearedBetweenQueries() {
+    LongDataSeries data = new LongDataSeries();
+    data.add(0, 1L);
+    data.add(10, 2L);
+    Range xRange = new Range(0, 10);
+    RangedContinuousSeries series = new RangedContinuousSeries("test", xRange, new Range(), data);
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    series.getSeries(buffer);
+    assertThat(buffer.size()).isEqualTo(2);
+
+    xRange.set(5, 4);
+    series.getSeries(buffer);
+    assertThat(buffer.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void downsampledSeriesIsBoundedByWidth() {
+    DefaultDataSeries<Long> genericData = new DefaultDataSeries<>();
+    for (long i = 0; i < 100000; i++) {
+      genericData.add(i * 10, i % 13);
+    }
+    CachedLongDataSeries cachedData = new CachedLongDataSeries(genericData, 0);
+
+    Range xRange = new Range(0, 1000000);
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    for (DataSeries<Long> data : new DataSeries[]{cachedData, genericData}) {
+      RangedContinuousSeries series = new RangedContinuousSeries("test", xRange, new Range(), data);
+      series.getSeries(buffer, 100);
+      // Pyramid levels are 4 times apart, so there are at most 4 buckets per pixel, each contributing at most three points, plus the
+      // neighbor buckets on each side.
+      assertThat(buffer.size()).isAtMost((100 * 4 + 2) * 3);
+      assertThat(buffer.getX(0)).isEqualTo(0L);
+      assertThat(buffer.getX(buffer.size() - 1)).isEqualTo(999990L);
+      long min = Long.MAX_VALUE;
+      long max = Long.MIN_VALUE;
+      for (int i = 0; i < buffer.size(); i++) {
+        min = Math.min(min, buffer.getY(i));
+        max = Math.max(max, buffer.getY(i));
+      }
+      assertThat(min).isEqualTo(0L);
+      assertThat(max).isEqualTo(12L);
+    }
+  }
+
+  @Test
+  public void zoomedInSeriesIsNotDownsampled() {
+    LongDataSeries data = new LongDataSeries();
+    for (long i = 0; i < 100; i++) {
+      data.add(i * 10, i);
+    }
+    RangedContinuousSeries series = new RangedContinuousSeries("test", new Range(0, 990), new Range(), data);
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    series.getSeries(buffer, 1000);
+    assertThat(buffer.size()).isEqualTo(100);
+  }
+
+  private static void checkBufferMatchesList(@NotNull DataSeries<Long> data) {
+    Range xRange = new Range();
+    RangedContinuousSeries series = new RangedContinuousSeries("test", xRange, new Range(), data);
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    long[][] ranges = {{0, 990}, {15, 15}, {-100, 5}, {505, 2000}, {2000, 3000}, {-200, -100}};
+    for (long[] range : ranges) {
+      xRange.set(range[0], range[1]);
+      List<SeriesData<Long>> expected = series.getSeries();
+      series.getSeries(buffer);
+      assertThat(buffer.size()).isEqualTo(expected.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertThat(buffer.getX(i)).isEqualTo(expected.get(i).x);
+        assertThat(buffer.getY(i)).isEqualTo(expected.get(i).value.longValue());
+      }
+    }
+  }
+}
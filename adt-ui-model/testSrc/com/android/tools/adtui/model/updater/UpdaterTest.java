@@ -150,6 +150,92 @@ public class UpdaterTest {
     assertEquals(Arrays.asList(updatableA, updatableB), reset);
   }
 
+  @Test
+  public void testSkippedComponentsGetElapsedTimeOnNextUpdate() {
+    List<Long> elapsed = new ArrayList<>();
+    boolean[] needsUpdate = {false};
+    Updatable updatable = new Updatable() {
+      @Override
+      public void update(long elapsedNs) {
+        elapsed.add(elapsedNs);
+      }
+
+      @Override
+      public boolean needsUpdate() {
+        return needsUpdate[0];
+      }
+    };
+    myUpdater.register(updatable);
+
+    myUpdater.getTimer().tick(1);
+    myUpdater.getTimer().tick(2);
+    assertTrue(elapsed.isEmpty());
+
+    needsUpdate[0] = true;
+    myUpdater.getTimer().tick(3);
+    myUpdater.getTimer().tick(4);
+    assertEquals(Arrays.asList(6L, 4L), elapsed);
+    assertEquals(2, myUpdater.getUpdateStats(updatable).getSkippedCount());
+  }
+
+  @Test
+  public void testExpensiveComponentsDeferredWhenOverBudget() {
+    long[] clock = {0};
+    myUpdater.setClock(() -> clock[0]);
+    myUpdater.setFrameBudgetNs(8);
+
+    List<Updatable> updated = new ArrayList<>();
+    List<Long> expensiveElapsed = new ArrayList<>();
+    CostlyUpdatable slow = new CostlyUpdatable(updated, clock, 10);
+    CostlyUpdatable expensive = new CostlyUpdatable(updated, clock, 2) {
+      @Override
+      public void update(long elapsedNs) {
+        super.update(elapsedNs);
+        expensiveElapsed.add(elapsedNs);
+      }
+    };
+    CostlyUpdatable cheap = new CostlyUpdatable(updated, clock, 0);
+    myUpdater.register(Arrays.asList(slow, expensive, cheap));
+
+    // Nothing is known about the components' costs yet.
+    myUpdater.getTimer().tick(1);
+    assertEquals(Arrays.asList(slow, expensive, cheap), updated);
+    assertEquals(12, myUpdater.getLastFrameUpdateNs());
+
+    // "slow" uses up the budget, so "expensive" waits for the next frame, but "cheap" doesn't.
+    updated.clear();
+    myUpdater.getTimer().tick(1);
+    assertEquals(Arrays.asList(slow, cheap), updated);
+    assertEquals(1, myUpdater.getUpdateStats(expensive).getDeferredCount());
+
+    // A component is not deferred twice in a row, and catches up on the elapsed time.
+    updated.clear();
+    myUpdater.getTimer().tick(1);
+    assertEquals(Arrays.asList(slow, expensive, cheap), updated);
+    assertEquals(Arrays.asList(1L, 2L), expensiveElapsed);
+
+    assertEquals(Arrays.asList(slow, expensive), myUpdater.getSlowestUpdatables(2));
+    assertEquals(10, myUpdater.getUpdateStats(slow).getMaxUpdateNs());
+    assertEquals(3, myUpdater.getUpdateStats(slow).getUpdateCount());
+  }
+
+  private static class CostlyUpdatable extends FakeUpdatable {
+    private final long[] myClock;
+    private final long myCostNs;
+
+    private CostlyUpdatable(List<Updatable> updated, long[] clock, long costNs) {
+      super(updated);
+      myClock = clock;
+      myCostNs = costNs;
+    }
+
+    @Override
+    public void update(long elapsedNs) {
+      super.update(elapsedNs);
+      myClock[0] += myCostNs;
+    }
+  }
+
   private static class FakeUpdatable implements Updatable {
     private final List<Updatable> myUpdated;
 
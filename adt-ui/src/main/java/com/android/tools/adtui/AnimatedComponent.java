@@ -17,7 +17,10 @@ package com.android.tools.adtui;
 
 import com.android.tools.adtui.common.AdtUiUtils;
 import com.android.tools.adtui.model.AspectObserver;
+import com.android.tools.adtui.model.updater.Updatable;
+import com.android.tools.adtui.model.updater.Updater;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
@@ -33,6 +36,8 @@ import java.util.List;
  */
 public abstract class AnimatedComponent extends JComponent {
 
+  private static final int DEBUG_SLOWEST_UPDATABLES = 3;
+
   protected long mLastRenderTime;
 
   protected boolean mDrawDebugInfo;
@@ -46,6 +51,12 @@ public abstract class AnimatedComponent extends JComponent {
 
   private int mDrawCount;
 
+  /**
+   * If set, the update costs of its slowest components are listed in the debug info.
+   */
+  @Nullable
+  private Updater mDebugUpdater;
+
   public AnimatedComponent() {
     mDebugInfo = new LinkedList<>();
     mDefaultFontMetrics = getFontMetrics(AdtUiUtils.DEFAULT_FONT);
@@ -60,6 +71,10 @@ public abstract class AnimatedComponent extends JComponent {
     mDrawDebugInfo = drawDebugInfo;
   }
 
+  public final void setDebugUpdater(@Nullable Updater updater) {
+    mDebugUpdater = updater;
+  }
+
   @Override
   protected void paintComponent(Graphics g) {
     super.paintComponent(g);
@@ -85,6 +100,15 @@ public abstract class AnimatedComponent extends JComponent {
     debugDraw(g);
 
     addDebugInfo("Draw Count: %d", mDrawCount);
+    if (mDebugUpdater != null) {
+      for (Updatable updatable : mDebugUpdater.getSlowestUpdatables(DEBUG_SLOWEST_UPDATABLES)) {
+        Updater.UpdateStats stats = mDebugUpdater.getUpdateStats(updatable);
+        assert stats != null;
+        addDebugInfo("%s: %.2fms (%d deferred)", updatable.getClass().getSimpleName(), stats.getAverageUpdateNs() / 1e6,
+                     stats.getDeferredCount());
+      }
+      addDebugInfo("Update time: %.2fms", mDebugUpdater.getLastFrameUpdateNs() / 1e6);
+    }
 
     g.setFont(AdtUiUtils.DEFAULT_FONT);
     g.setColor(AdtUiUtils.DEFAULT_FONT_COLOR);
@@ -19,14 +19,16 @@ package com.android.tools.adtui.chart.linechart;
 import com.android.annotations.VisibleForTesting;
 import com.android.tools.adtui.AnimatedComponent;
 import com.android.tools.adtui.model.LineChartModel;
+import com.android.tools.adtui.model.LongSeriesBuffer;
 import com.android.tools.adtui.model.RangedContinuousSeries;
-import com.android.tools.adtui.model.SeriesData;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -47,6 +49,31 @@ public class LineChart extends AnimatedComponent {
     Path2D myPreviousDashPath;
   }
 
+  // A line drawn from the pixel columns of its series, see setIncrementalRendering.
+  private static class ColumnLine {
+    @NotNull final PixelColumnBuffer myColumns = new PixelColumnBuffer();
+    @NotNull int[] myXs = new int[64];
+    @NotNull int[] myYs = new int[64];
+    int mySize;
+    LineConfig myConfig;
+
+    // What the line was drawn with in the previous redraw, to tell whether only new columns need painting.
+    Color myColor;
+    Stroke myStroke;
+    double myYMin;
+    double myYLength;
+
+    void add(int x, int y) {
+      if (mySize == myXs.length) {
+        myXs = Arrays.copyOf(myXs, mySize * 2);
+        myYs = Arrays.copyOf(myYs, mySize * 2);
+      }
+      myXs[mySize] = x;
+      myYs[mySize] = y;
+      mySize++;
+    }
+  }
+
   @NotNull final LineChartModel myModel;
 
   /**
@@ -97,6 +124,49 @@ public class LineChart extends AnimatedComponent {
    */
   private boolean myFillEndGap;
 
+  /**
+   * If true, and every line can be drawn that way, the lines are drawn from the pixel columns of their series instead of from paths.
+   */
+  private boolean myIncrementalRendering;
+
+  /**
+   * Whether the last redraw built {@link #myColumnLines} rather than {@link #myLinePaths}, and the size it was built for.
+   */
+  private boolean myDrawColumns;
+  @NotNull private final Dimension myColumnsSize = new Dimension();
+
+  @NotNull private final Map<RangedContinuousSeries, ColumnLine> myColumnLines = new HashMap<>();
+  @NotNull private final List<ColumnLine> myOrderedColumnLines = new ArrayList<>();
+
+  /**
+   * The column lines as last painted, in device pixels, so that when the chart scrolls the image can be shifted and only the columns that
+   * changed painted again. Null when it has to be painted in full.
+   */
+  @Nullable private BufferedImage myColumnsImage;
+
+  /**
+   * How the column lines built by the last redraw differ from {@link #myColumnsImage}: the number of columns they scrolled by, and the x
+   * from which the image needs painting again (0 or less if all of it, the width if none of it).
+   */
+  private int myColumnsScroll;
+  private int myColumnsRepaintX;
+
+  /**
+   * Whether the column lines can be painted into {@link #myColumnsImage}. Dashed lines can't, as the dashes would not line up where the
+   * shifted part of the image meets the painted one.
+   */
+  private boolean myColumnsImageAllowed;
+
+  /**
+   * Column values of the stacked series added up so far, indexed from {@link #myStackFirstColumn}.
+   */
+  private long myStackFirstColumn;
+  @NotNull private long[] myStackFirstValues = new long[0];
+  @NotNull private long[] myStackLastValues = new long[0];
+  @NotNull private long[] myStackMinValues = new long[0];
+  @NotNull private long[] myStackMaxValues = new long[0];
+  @NotNull private boolean[] myStackHasData = new boolean[0];
+
   @NotNull
   private final LineChartReducer myReducer;
 
@@ -109,6 +179,12 @@ public class LineChart extends AnimatedComponent {
 
   private Map<LineConfig, DashInfo> myDashInfoCache = new HashMap<>();
 
+  /**
+   * Buffers reused by {@link #redraw(Dimension)}, so that walking the series doesn't allocate per point.
+   */
+  @NotNull private final LongSeriesBuffer mySeriesBuffer = new LongSeriesBuffer();
+  @NotNull private final LongSeriesBuffer myStackedSeriesBuffer = new LongSeriesBuffer();
+
   @VisibleForTesting
   public LineChart(@NotNull LineChartModel model, @NotNull LineChartReducer reducer) {
     myLinePaths = new ArrayList<>();
@@ -166,7 +242,7 @@ public class LineChart extends AnimatedComponent {
 
     // Store the last stacked series to use them to increment the Y values
     // of the current stacked series.
-    List<SeriesData<Long>> lastStackedSeries = null;
+    boolean hasStackedSeries = false;
 
     Deque<Path2D> orderedPaths = new ArrayDeque<>(myLinesConfig.size());
     Deque<RangedContinuousSeries> orderedSeries = new ArrayDeque<>(myLinesConfig.size());
@@ -178,10 +254,12 @@ public class LineChart extends AnimatedComponent {
       }
       final LineConfig config = getLineConfig(ranged);
 
-      List<SeriesData<Long>> seriesList = ranged.getSeries();
+      // Stacking adds up the points of consecutive series by index, so stacked series need all their points to stay aligned.
+      ranged.getSeries(mySeriesBuffer, config.isStacked() ? 0 : dim.width);
       if (config.isStacked()) {
-        if (lastStackedSeries == null) {
-          lastStackedSeries = new ArrayList<>(seriesList);
+        if (!hasStackedSeries) {
+          hasStackedSeries = true;
+          myStackedSeriesBuffer.copyFrom(mySeriesBuffer);
         }
         else {
           // If the current series is stacked, increment its value by the value of the last stacked
@@ -189,11 +267,11 @@ public class LineChart extends AnimatedComponent {
           // points than the last stacked series (meaning that the last one was populated in a
           // prior iteration). In this case, ignore the new points (i.e. we take only the intersection
           // across all series).
-          for (int i = 0; i < seriesList.size() && i < lastStackedSeries.size(); ++i) {
+          for (int i = 0; i < mySeriesBuffer.size() && i < myStackedSeriesBuffer.size(); ++i) {
             // An assumption is made here that the x values across series are aligned.
-            lastStackedSeries.get(i).value += seriesList.get(i).value;
+            myStackedSeriesBuffer.set(i, myStackedSeriesBuffer.getX(i), myStackedSeriesBuffer.getY(i) + mySeriesBuffer.getY(i));
           }
-          seriesList = lastStackedSeries;
+          mySeriesBuffer.copyFrom(myStackedSeriesBuffer);
         }
       }
 
@@ -207,17 +285,18 @@ public class LineChart extends AnimatedComponent {
       double firstXd = 0f;
       // Actual value of first point
       double firstX = 0;
-      seriesList = myReducer.reduceData(seriesList, config);
-      for (SeriesData<Long> data : seriesList) {
+      myReducer.reduceData(mySeriesBuffer, config);
+      for (int i = 0; i < mySeriesBuffer.size(); i++) {
+        long x = mySeriesBuffer.getX(i);
         // TODO: refactor to allow different types (e.g. double)
-        double xd = (data.x - xMin) / xLength;
+        double xd = (x - xMin) / xLength;
         // Swing's (0, 0) coordinate is in top-left. As we use bottom-left (0, 0), we need to adjust the y coordinate.
-        double yd = 1 - (data.value - yMin) / yLength;
+        double yd = 1 - (mySeriesBuffer.getY(i) - yMin) / yLength;
 
         if (path.getCurrentPoint() == null) {
           path.moveTo(xd, yd);
           firstXd = xd;
-          firstX = data.x;
+          firstX = x;
         }
         else {
           // If the chart is stepped, a horizontal line should be drawn from the current
@@ -282,7 +361,200 @@ public class LineChart extends AnimatedComponent {
     myLinePathSeries.clear();
     myLinePathSeries.addAll(orderedSeries);
 
-    addDebugInfo("postAnimate time: %d ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - duration));
+    addDebugInfo("Full redraw time: %d ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - duration));
+  }
+
+  /**
+   * Returns whether all the lines can be drawn from the pixel columns of their series. Stepped lines and lines that adjust their dash phase
+   * need the exact points, and custom renderers work on the lines' paths.
+   */
+  private boolean canDrawColumns() {
+    if (!myIncrementalRendering || !myCustomRenderers.isEmpty()) {
+      return false;
+    }
+    for (RangedContinuousSeries ranged : myModel.getSeries()) {
+      LineConfig config = getLineConfig(ranged);
+      if (config.isStepped() || (config.isDash() && config.isAdjustDash())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Builds the polylines (or polygons, for filled lines) of {@link #drawColumnLines(Graphics2D, Dimension)} in component coordinates. Each
+   * column in view becomes one point one pixel to the right of the previous column's, or two (its minimum and maximum, in the order the
+   * series went through them) when its values differ, and stacked series are added up column by column rather than point by point.
+   */
+  private void redrawColumns(@NotNull Dimension dim) {
+    long duration = System.nanoTime();
+    int computedColumns = 0;
+    boolean hasStackedSeries = false;
+    int height = dim.height - myTopPadding;
+    int bottom = height + myYOffset + myTopPadding;
+
+    // Whether the lines only scrolled since the previous redraw, and if so by how many columns and from where they changed.
+    boolean scrolled = dim.equals(myColumnsSize);
+    long scroll = -1;
+    int repaintX = dim.width;
+    myColumnsImageAllowed = true;
+
+    Deque<ColumnLine> orderedLines = new ArrayDeque<>(myLinesConfig.size());
+    for (RangedContinuousSeries ranged : myModel.getSeries()) {
+      if (ranged.getXRange().isEmpty() || ranged.getXRange().isPoint()
+          || ranged.getYRange().isEmpty() || ranged.getYRange().isPoint()) {
+        continue;
+      }
+      LineConfig config = getLineConfig(ranged);
+      ColumnLine line = myColumnLines.computeIfAbsent(ranged, series -> new ColumnLine());
+      PixelColumnBuffer columns = line.myColumns;
+      double xMin = ranged.getXRange().getMin();
+      double xLength = ranged.getXRange().getLength();
+      double yMin = ranged.getYRange().getMin();
+      double yLength = ranged.getYRange().getLength();
+
+      boolean unchanged = config == line.myConfig && config.getColor().equals(line.myColor) && config.getStroke().equals(line.myStroke)
+                          && yMin == line.myYMin && yLength == line.myYLength;
+      long previousFirstColumn = columns.getFirstColumn();
+
+      // Only the data of the columns that need computing is read.
+      ranged.getSeriesFrom(mySeriesBuffer, columns.getUpdateStart(xMin, xLength, dim.width));
+      columns.update(mySeriesBuffer, xMin, xLength, dim.width);
+      computedColumns += columns.getComputedColumnCount();
+
+      long lineScroll = columns.getFirstColumn() - previousFirstColumn;
+      if (!unchanged || lineScroll < 0 || (scroll >= 0 && lineScroll != scroll)) {
+        scrolled = false;
+      }
+      scroll = lineScroll;
+      // The segment leading to the first computed column changes too, and antialiasing and the stroke reach a bit further.
+      int strokeWidth = config.getStroke() instanceof BasicStroke ? (int)Math.ceil(((BasicStroke)config.getStroke()).getLineWidth()) : 1;
+      repaintX = Math.min(repaintX, (int)(columns.getComputedFromColumn() - 1 - columns.getFirstColumn()) + myXOffset - strokeWidth - 1);
+      myColumnsImageAllowed &= !config.isDash();
+
+      boolean stacked = config.isStacked();
+      if (stacked) {
+        addToStack(columns, !hasStackedSeries);
+        hasStackedSeries = true;
+      }
+
+      line.myConfig = config;
+      line.myColor = config.getColor();
+      line.myStroke = config.getStroke();
+      line.myYMin = yMin;
+      line.myYLength = yLength;
+      line.mySize = 0;
+      int firstX = 0, lastX = 0, lastY = 0;
+      for (long column = columns.getFirstColumn(); column <= columns.getLastColumn(); column++) {
+        int stackIndex = (int)(column - myStackFirstColumn);
+        if (stacked ? !hasStackedData(stackIndex) : !columns.hasData(column)) {
+          continue;
+        }
+        long first = stacked ? myStackFirstValues[stackIndex] : columns.getFirstValue(column);
+        long last = stacked ? myStackLastValues[stackIndex] : columns.getLastValue(column);
+        long min = stacked ? myStackMinValues[stackIndex] : columns.getMinValue(column);
+        long max = stacked ? myStackMaxValues[stackIndex] : columns.getMaxValue(column);
+
+        // Positioning columns at whole pixels from the first one is what lets the image of the lines scroll by whole pixels.
+        int x = (int)(column - columns.getFirstColumn()) + myXOffset;
+        if (line.mySize == 0) {
+          firstX = x;
+        }
+        lastX = x;
+        // Swing's (0, 0) coordinate is in top-left. As we use bottom-left (0, 0), we need to adjust the y coordinate.
+        int minY = (int)Math.round((1 - (min - yMin) / yLength) * height) + myYOffset + myTopPadding;
+        int maxY = (int)Math.round((1 - (max - yMin) / yLength) * height) + myYOffset + myTopPadding;
+        if (config.isFilled() || minY == maxY) {
+          // A filled area only needs its top edge.
+          line.add(x, maxY);
+          lastY = maxY;
+        }
+        else if (first <= last) {
+          line.add(x, minY);
+          line.add(x, maxY);
+          lastY = maxY;
+        }
+        else {
+          line.add(x, maxY);
+          line.add(x, minY);
+          lastY = minY;
+        }
+      }
+
+      if (myFillEndGap && line.mySize > 0) {
+        lastX = Math.max(lastX, dim.width + myXOffset);
+        line.add(lastX, lastY);
+      }
+
+      if (config.isFilled() && line.mySize > 0) {
+        line.add(lastX, bottom);
+        line.add(firstX, bottom);
+        // Filled lines are drawn first, in reverse order, for the same reasons as in redraw.
+        orderedLines.addFirst(line);
+      }
+      else {
+        orderedLines.addLast(line);
+      }
+    }
+    myColumnLines.keySet().retainAll(myModel.getSeries());
+
+    scrolled &= myOrderedColumnLines.equals(new ArrayList<>(orderedLines));
+    myColumnsScroll = scrolled ? (int)scroll : 0;
+    myColumnsRepaintX = scrolled ? repaintX : 0;
+
+    myOrderedColumnLines.clear();
+    myOrderedColumnLines.addAll(orderedLines);
+    myColumnsSize.setSize(dim);
+
+    addDebugInfo("Column redraw time: %d ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - duration));
+    addDebugInfo("Columns computed: %d", computedColumns);
+  }
+
+  /**
+   * Adds the columns of a stacked series to the ones of the stacked series before it, or starts over from them if {@code first}. Like
+   * {@link #redraw(Dimension)}, which takes the intersection of the stacked series' points, a column only has data if every stacked series
+   * so far has data there.
+   */
+  private void addToStack(@NotNull PixelColumnBuffer columns, boolean first) {
+    if (first) {
+      int size = (int)(columns.getLastColumn() - columns.getFirstColumn() + 1);
+      if (myStackHasData.length < size) {
+        myStackFirstValues = new long[size];
+        myStackLastValues = new long[size];
+        myStackMinValues = new long[size];
+        myStackMaxValues = new long[size];
+        myStackHasData = new boolean[size];
+      }
+      myStackFirstColumn = columns.getFirstColumn();
+      Arrays.fill(myStackHasData, false);
+    }
+
+    for (long column = columns.getFirstColumn(); column <= columns.getLastColumn(); column++) {
+      int index = (int)(column - myStackFirstColumn);
+      if (index < 0 || index >= myStackHasData.length) {
+        continue;
+      }
+      if (!columns.hasData(column)) {
+        myStackHasData[index] = false;
+      }
+      else if (first) {
+        myStackHasData[index] = true;
+        myStackFirstValues[index] = columns.getFirstValue(column);
+        myStackLastValues[index] = columns.getLastValue(column);
+        myStackMinValues[index] = columns.getMinValue(column);
+        myStackMaxValues[index] = columns.getMaxValue(column);
+      }
+      else if (myStackHasData[index]) {
+        myStackFirstValues[index] += columns.getFirstValue(column);
+        myStackLastValues[index] += columns.getLastValue(column);
+        myStackMinValues[index] += columns.getMinValue(column);
+        myStackMaxValues[index] += columns.getMaxValue(column);
+      }
+    }
+  }
+
+  private boolean hasStackedData(int index) {
+    return index >= 0 && index < myStackHasData.length && myStackHasData[index];
   }
 
   @Override
@@ -298,26 +570,41 @@ public class LineChart extends AnimatedComponent {
       myLastCount = now;
     }
     myDraws++;
-    if (myRedraw) {
+    if (myRedraw || (myDrawColumns && !dim.equals(myColumnsSize))) {
       myRedraw = false;
-      redraw(dim);
+      myDrawColumns = canDrawColumns();
+      if (myDrawColumns) {
+        redrawColumns(dim);
+      }
+      else {
+        myColumnLines.clear();
+        myOrderedColumnLines.clear();
+        myColumnsImage = null;
+        redraw(dim);
+      }
       myRedraws++;
     }
     else {
-      addDebugInfo("postAnimate time: 0 ms");
+      addDebugInfo("Redraw skipped, reusing last frame");
     }
     addDebugInfo("Draws in the last second %d", myLastDraws);
     addDebugInfo("Redraws in the last second %d", myLastRedraws);
 
     g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-    AffineTransform scale = new AffineTransform(dim.getWidth(), 0, 0, dim.getHeight() - myTopPadding, myXOffset, myYOffset + myTopPadding);
-
     if (myShowMaxLine) {
       g2d.setColor(myMaxLineColor);
       g2d.setStroke(new BasicStroke(1, CAP_SQUARE, JOIN_MITER, 10, new float[]{3.0f, 3.0f}, 0.0f));
       g2d.drawLine(myMaxLineMargin, 0, dim.width, 0);
     }
 
+    if (myDrawColumns) {
+      drawColumnLines(g2d, dim);
+      addDebugInfo("Draw time: %.2fms", (System.nanoTime() - drawStartTime) / 1e6);
+      return;
+    }
+
+    AffineTransform scale = new AffineTransform(dim.getWidth(), 0, 0, dim.getHeight() - myTopPadding, myXOffset, myYOffset + myTopPadding);
+
     // Cache the transformed line paths for reuse below.
     List<Path2D> transformedPaths = new ArrayList<>(myLinePaths.size());
     List<LineConfig> configs = new ArrayList<>(myLinePaths.size());
@@ -349,6 +636,79 @@ public class LineChart extends AnimatedComponent {
     addDebugInfo("Draw time: %.2fms", (System.nanoTime() - drawStartTime) / 1e6);
   }
 
+  /**
+   * Draws the column lines through {@link #myColumnsImage}, painting only the part of it that changed since the last draw, unless the
+   * lines can't be painted that way or the graphics' transform is not a whole scale, in which case they are painted directly.
+   */
+  private void drawColumnLines(@NotNull Graphics2D g2d, @NotNull Dimension dim) {
+    AffineTransform transform = g2d.getTransform();
+    double scale = transform.getScaleX();
+    if (!myColumnsImageAllowed || dim.width <= 0 || dim.height <= 0 || transform.getShearX() != 0 || transform.getShearY() != 0
+        || scale != transform.getScaleY() || scale < 1 || scale != Math.rint(scale)) {
+      myColumnsImage = null;
+      paintColumnLines(g2d);
+      return;
+    }
+
+    int imageScale = (int)scale;
+    int scroll = myColumnsScroll * imageScale;
+    int repaintX = myColumnsRepaintX;
+    // Until the next redraw, the image stays up to date.
+    myColumnsScroll = 0;
+    myColumnsRepaintX = dim.width;
+
+    int width = dim.width * imageScale;
+    int height = dim.height * imageScale;
+    if (myColumnsImage == null || myColumnsImage.getWidth() != width || myColumnsImage.getHeight() != height) {
+      myColumnsImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+      repaintX = 0;
+    }
+
+    if (repaintX < dim.width) {
+      Graphics2D g = myColumnsImage.createGraphics();
+      try {
+        repaintX = Math.max(0, repaintX);
+        // Translucent pixels have to replace the ones they are copied over, not be blended with them.
+        g.setComposite(AlphaComposite.Src);
+        if (repaintX > 0 && scroll > 0) {
+          g.copyArea(scroll, 0, width - scroll, height, -scroll, 0);
+        }
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(repaintX * imageScale, 0, width - repaintX * imageScale, height);
+        g.setComposite(AlphaComposite.SrcOver);
+        g.scale(imageScale, imageScale);
+        g.clipRect(repaintX, 0, dim.width - repaintX, dim.height);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        paintColumnLines(g);
+      }
+      finally {
+        g.dispose();
+      }
+    }
+    addDebugInfo("Repainted from x: %d", repaintX);
+    g2d.drawImage(myColumnsImage, 0, 0, dim.width, dim.height, null);
+  }
+
+  private void paintColumnLines(@NotNull Graphics2D g2d) {
+    int pointCount = 0;
+    for (ColumnLine line : myOrderedColumnLines) {
+      if (line.mySize == 0) {
+        continue;
+      }
+      LineConfig config = line.myConfig;
+      g2d.setColor(config.getColor());
+      g2d.setStroke(config.getStroke());
+      if (config.isFilled()) {
+        g2d.fillPolygon(line.myXs, line.myYs, line.mySize);
+      }
+      else {
+        g2d.drawPolyline(line.myXs, line.myYs, line.mySize);
+      }
+      pointCount += line.mySize;
+    }
+    addDebugInfo("# of points drawn: %d", pointCount);
+  }
+
   public static void drawLines(Graphics2D g2d, List<Path2D> transformedPaths, List<LineConfig> configs) {
     assert transformedPaths.size() == configs.size();
 
@@ -493,13 +853,29 @@ public class LineChart extends AnimatedComponent {
   public void setRenderOffset(int xOffset, int yOffset) {
     myXOffset = xOffset;
     myYOffset = yOffset;
+    myColumnsImage = null;
   }
 
   public void setTopPadding(int padding) {
     myTopPadding = padding;
+    myColumnsImage = null;
   }
 
   public void setFillEndGap(boolean fillEndGap) {
     myFillEndGap = fillEndGap;
+    myColumnsImage = null;
+  }
+
+  /**
+   * Draws the lines from a per pixel column summary of their series (the first, last, minimum and maximum values in each column) that is
+   * kept across frames, so that as a streaming chart scrolls only the data that came into view is reduced again, and the lines are drawn
+   * as polylines rather than paths. Unless they are dashed, the lines are also kept as an image which is shifted as the chart scrolls, so
+   * only the columns that changed are painted. Charts with stepped lines, lines adjusting their dash phase or custom renderers are drawn
+   * from paths regardless.
+   */
+  public void setIncrementalRendering(boolean incrementalRendering) {
+    myIncrementalRendering = incrementalRendering;
+    myRedraw = true;
+    myColumnsImage = null;
   }
 }
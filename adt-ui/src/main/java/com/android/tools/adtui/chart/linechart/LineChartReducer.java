@@ -15,9 +15,11 @@
  */
 package com.android.tools.adtui.chart.linechart;
 
+import com.android.tools.adtui.model.LongSeriesBuffer;
 import com.android.tools.adtui.model.SeriesData;
 
 import java.awt.geom.Path2D;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -31,6 +33,21 @@ public interface LineChartReducer {
    */
   List<SeriesData<Long>> reduceData(List<SeriesData<Long>> data, LineConfig config);
 
+  /**
+   * Same as {@link #reduceData(List, LineConfig)}, but reduces the data in place. This is what {@link LineChart} uses; the default
+   * implementation goes through the list based version, so implementations should override it to avoid the per-point allocations.
+   */
+  default void reduceData(LongSeriesBuffer data, LineConfig config) {
+    List<SeriesData<Long>> dataList = new ArrayList<>(data.size());
+    for (int i = 0; i < data.size(); i++) {
+      dataList.add(new SeriesData<>(data.getX(i), data.getY(i)));
+    }
+    data.clear();
+    for (SeriesData<Long> reduced : reduceData(dataList, config)) {
+      data.add(reduced.x, reduced.value);
+    }
+  }
+
   /**
    * Reduces the given path in a pixel level, i.e when dimensions are available.
    * The result shouldn't affect the looking of the line when it's drawn.
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.linechart;
+
+import com.android.tools.adtui.model.LongSeriesBuffer;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * The points of a series reduced to one column per pixel, each column holding the first, last, minimum and maximum values that fall in
+ * it. Columns are anchored to the x axis rather than to the component, so when a streaming chart scrolls, the columns still in view are
+ * kept and only the ones that scrolled in, plus the one that held the newest data, are computed again. Changing the length of the range
+ * or the width in pixels starts over, and so does scrolling backwards.
+ *
+ * This assumes data is only ever appended after the newest point, as it is for the series of a live session.
+ */
+final class PixelColumnBuffer {
+  private static final long NO_COLUMN = Long.MIN_VALUE;
+
+  private int myWidth;
+  private double myColumnLength;
+
+  /**
+   * Ring buffers holding the columns in view, indexed by the column number (the column's start divided by {@link #myColumnLength}) modulo
+   * their length.
+   */
+  @NotNull private long[] myFirstValues = new long[0];
+  @NotNull private long[] myLastValues = new long[0];
+  @NotNull private long[] myMinValues = new long[0];
+  @NotNull private long[] myMaxValues = new long[0];
+  @NotNull private boolean[] myHasData = new boolean[0];
+
+  private long myFirstColumn;
+  private long myLastColumn;
+
+  /**
+   * The column that held the newest data point during the last update, which is where the next update starts computing from, or
+   * {@link #NO_COLUMN} if there was no data in view.
+   */
+  private long myNewestDataColumn = NO_COLUMN;
+
+  private long myComputedFromColumn;
+
+  /**
+   * Returns where along the x axis the next {@link #update} with the same arguments starts computing columns, so that only the points from
+   * there on need to be read.
+   */
+  double getUpdateStart(double xMin, double xLength, int width) {
+    double columnLength = xLength / width;
+    if (width != myWidth || columnLength != myColumnLength) {
+      return xMin;
+    }
+    // Start a column early, in case rounding puts the first point of the column before its start.
+    return (getComputeFromColumn((long)Math.floor(xMin / columnLength)) - 1) * columnLength;
+  }
+
+  /**
+   * Brings the columns up to date with {@code data}, the points of the series in view from {@link #getUpdateStart} on (or all of them).
+   * {@code data} must be sorted by x.
+   *
+   * @param xMin    the start of the range in view
+   * @param xLength the length of the range in view
+   * @param width   the number of pixels the range is drawn on
+   */
+  void update(@NotNull LongSeriesBuffer data, double xMin, double xLength, int width) {
+    assert width > 0 && xLength > 0;
+    double columnLength = xLength / width;
+    if (width != myWidth || columnLength != myColumnLength) {
+      myWidth = width;
+      myColumnLength = columnLength;
+      // The start and end of the range can be up to a column off the column boundaries, so there may be one more column in view.
+      int capacity = width + 2;
+      myFirstValues = new long[capacity];
+      myLastValues = new long[capacity];
+      myMinValues = new long[capacity];
+      myMaxValues = new long[capacity];
+      myHasData = new boolean[capacity];
+      myNewestDataColumn = NO_COLUMN;
+    }
+
+    long firstColumn = (long)Math.floor(xMin / columnLength);
+    long lastColumn = (long)Math.floor((xMin + xLength) / columnLength);
+    long computeFrom = getComputeFromColumn(firstColumn);
+    long newestDataColumn = computeFrom > firstColumn ? myNewestDataColumn : NO_COLUMN;
+
+    for (long column = computeFrom; column <= lastColumn; column++) {
+      myHasData[index(column)] = false;
+    }
+
+    // Start a column early, in case rounding puts the first point of computeFrom before computeFrom * columnLength.
+    for (int i = lowerBound(data, (computeFrom - 1) * columnLength); i < data.size(); i++) {
+      long column = (long)Math.floor(data.getX(i) / columnLength);
+      if (column < computeFrom) {
+        continue;
+      }
+      if (column > lastColumn) {
+        break;
+      }
+      int index = index(column);
+      long y = data.getY(i);
+      if (!myHasData[index]) {
+        myHasData[index] = true;
+        myFirstValues[index] = myMinValues[index] = myMaxValues[index] = y;
+      }
+      else {
+        myMinValues[index] = Math.min(myMinValues[index], y);
+        myMaxValues[index] = Math.max(myMaxValues[index], y);
+      }
+      myLastValues[index] = y;
+      newestDataColumn = column;
+    }
+
+    myFirstColumn = firstColumn;
+    myLastColumn = lastColumn;
+    myNewestDataColumn = newestDataColumn;
+    myComputedFromColumn = computeFrom;
+  }
+
+  /**
+   * Forgets all the columns, so that the next {@link #update} computes them all again.
+   */
+  void invalidate() {
+    myNewestDataColumn = NO_COLUMN;
+    Arrays.fill(myHasData, false);
+  }
+
+  long getFirstColumn() {
+    return myFirstColumn;
+  }
+
+  long getLastColumn() {
+    return myLastColumn;
+  }
+
+  double getColumnLength() {
+    return myColumnLength;
+  }
+
+  boolean hasData(long column) {
+    return myHasData[index(column)];
+  }
+
+  long getFirstValue(long column) {
+    return myFirstValues[index(column)];
+  }
+
+  long getLastValue(long column) {
+    return myLastValues[index(column)];
+  }
+
+  long getMinValue(long column) {
+    return myMinValues[index(column)];
+  }
+
+  long getMaxValue(long column) {
+    return myMaxValues[index(column)];
+  }
+
+  /**
+   * Returns the first column the last {@link #update} computed from the data. The columns before it were kept from the previous update.
+   */
+  long getComputedFromColumn() {
+    return myComputedFromColumn;
+  }
+
+  int getComputedColumnCount() {
+    return (int)(myLastColumn - myComputedFromColumn + 1);
+  }
+
+  private int index(long column) {
+    return (int)Math.floorMod(column, (long)myHasData.length);
+  }
+
+  /**
+   * Returns the first column that needs computing when {@code firstColumn} is the first column in view: the one that held the newest data,
+   * which may have been only partly filled then, unless the view moved back or past it.
+   */
+  private long getComputeFromColumn(long firstColumn) {
+    if (myNewestDataColumn != NO_COLUMN && firstColumn >= myFirstColumn && firstColumn <= myNewestDataColumn) {
+      return myNewestDataColumn;
+    }
+    return firstColumn;
+  }
+
+  /**
+   * Returns the index of the first point at or after {@code x}.
+   */
+  private static int lowerBound(@NotNull LongSeriesBuffer data, double x) {
+    int low = 0;
+    int high = data.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (data.getX(mid) < x) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
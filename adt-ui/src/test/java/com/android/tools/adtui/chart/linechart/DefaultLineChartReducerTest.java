@@ -15,6 +15,7 @@
  */
 package com.android.tools.adtui.chart.linechart;
 
+import com.android.tools.adtui.model.LongSeriesBuffer;
 import com.android.tools.adtui.model.SeriesData;
 import com.google.common.collect.ImmutableList;
 import org.junit.Before;
@@ -89,6 +90,19 @@ public class DefaultLineChartReducerTest {
     assertSeriesEquals(expected, result);
   }
 
+  @Test
+  public void reduceDataInBuffer() {
+    long[][] data = {{0, 10}, {1, 10}, {2, 13}, {3, 13}, {4, 13}, {5, 13}, {6, 5}, {7, 5}};
+    LongSeriesBuffer buffer = toBuffer(data);
+    myReducer.reduceData(buffer, myConfig);
+    assertBufferEquals(new long[][]{{0, 10}, {1, 10}, {2, 13}, {5, 13}, {6, 5}, {7, 5}}, buffer);
+
+    buffer = toBuffer(data);
+    myConfig.setStepped(true);
+    myReducer.reduceData(buffer, myConfig);
+    assertBufferEquals(new long[][]{{0, 10}, {2, 13}, {6, 5}, {7, 5}}, buffer);
+  }
+
   @Test
   public void simpleReducePath() {
     float[][] given = {{0, 0}, {0.1f, 1}, {0.2f, 6}, {0.3f, 4}, {1, 2}, {1.1f, 5}};
@@ -242,4 +256,20 @@ public class DefaultLineChartReducerTest {
       assertThat(actual.get(i).value).isEqualTo(expected.get(i).value);
     }
   }
-}
\ No newline at end of file
+
+  private static LongSeriesBuffer toBuffer(long[][] points) {
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    for (long[] point : points) {
+      buffer.add(point[0], point[1]);
+    }
+    return buffer;
+  }
+
+  private static void assertBufferEquals(long[][] expected, LongSeriesBuffer actual) {
+    assertThat(actual.size()).isEqualTo(expected.length);
+    for (int i = 0; i < expected.length; ++i) {
+      assertThat(actual.getX(i)).isEqualTo(expected[i][0]);
+      assertThat(actual.getY(i)).isEqualTo(expected[i][1]);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.linechart;
+
+import com.android.tools.adtui.model.DefaultDataSeries;
+import com.android.tools.adtui.model.LineChartModel;
+import com.android.tools.adtui.model.Range;
+import com.android.tools.adtui.model.RangedContinuousSeries;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the frame rate a {@link LineChart} sustains while streaming 8 stacked, filled series sampled at 1 kHz, first drawing from paths
+ * and then with {@link LineChart#setIncrementalRendering(boolean)}. Each frame appends 16ms worth of samples to every series, scrolls the
+ * range, updates the model and paints the chart into an image, as fast as it can.
+ *
+ * This is not a test, run its main method (with {@code -Djava.awt.headless=true} where there is no display).
+ */
+public class LineChartBenchmark {
+  private static final int SERIES_COUNT = 8;
+  private static final int WIDTH = 1200;
+  private static final int HEIGHT = 300;
+  private static final long SAMPLE_PERIOD_US = 1000;
+  private static final long FRAME_US = TimeUnit.MILLISECONDS.toMicros(16);
+  private static final long VIEW_LENGTH_US = TimeUnit.SECONDS.toMicros(10);
+  private static final long WARM_UP_NS = TimeUnit.SECONDS.toNanos(2);
+  private static final long MEASURE_NS = TimeUnit.SECONDS.toNanos(5);
+
+  public static void main(String[] args) {
+    run(false);
+    run(true);
+  }
+
+  private static void run(boolean incremental) {
+    LineChartModel model = new LineChartModel();
+    Range xRange = new Range(0, VIEW_LENGTH_US);
+    Range yRange = new Range(0, 100);
+    LineChart chart = new LineChart(model);
+    List<DefaultDataSeries<Long>> series = new ArrayList<>(SERIES_COUNT);
+    for (int i = 0; i < SERIES_COUNT; i++) {
+      DefaultDataSeries<Long> data = new DefaultDataSeries<>();
+      RangedContinuousSeries ranged = new RangedContinuousSeries("Series " + i, xRange, yRange, data);
+      model.add(ranged);
+      chart.configure(ranged, new LineConfig(LineConfig.getColor(i)).setFilled(true).setStacked(true));
+      series.add(data);
+    }
+    chart.setIncrementalRendering(incremental);
+    chart.setSize(WIDTH, HEIGHT);
+
+    BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = image.createGraphics();
+    Random random = new Random(0);
+    long[] values = new long[SERIES_COUNT];
+    long now = addSamples(series, values, random, 0, VIEW_LENGTH_US);
+
+    long start = System.nanoTime();
+    long measureStart = start + WARM_UP_NS;
+    long frames = 0;
+    long paintNs = 0;
+    while (true) {
+      long frameStart = System.nanoTime();
+      if (frameStart >= measureStart + MEASURE_NS) {
+        break;
+      }
+      if (frameStart < measureStart) {
+        frames = 0;
+        paintNs = 0;
+      }
+
+      now = addSamples(series, values, random, now, FRAME_US);
+      xRange.set(now - VIEW_LENGTH_US, now);
+      model.update(TimeUnit.MICROSECONDS.toNanos(FRAME_US));
+      long paintStart = System.nanoTime();
+      chart.paint(g);
+      paintNs += System.nanoTime() - paintStart;
+      frames++;
+    }
+    g.dispose();
+
+    System.out.printf("%s: %.1f fps, %.2fms per paint%n", incremental ? "Incremental" : "Paths",
+                      frames / (MEASURE_NS / 1e9), paintNs / 1e6 / frames);
+  }
+
+  /**
+   * Appends {@code lengthUs} worth of samples to each series, a random walk between 0 and 12 so that the stacked series stay in range.
+   */
+  private static long addSamples(@NotNull List<DefaultDataSeries<Long>> series,
+                                 @NotNull long[] values,
+                                 @NotNull Random random,
+                                 long fromUs,
+                                 long lengthUs) {
+    long x = fromUs;
+    for (; x < fromUs + lengthUs; x += SAMPLE_PERIOD_US) {
+      for (int i = 0; i < series.size(); i++) {
+        values[i] = Math.max(0, Math.min(12, values[i] + random.nextInt(3) - 1));
+        series.get(i).add(x, values[i]);
+      }
+    }
+    return x;
+  }
+}
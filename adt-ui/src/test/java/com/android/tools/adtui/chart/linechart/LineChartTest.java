@@ -21,11 +21,14 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.util.concurrent.TimeUnit;
 
 import static java.awt.BasicStroke.CAP_SQUARE;
 import static java.awt.BasicStroke.JOIN_MITER;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 public class LineChartTest {
@@ -207,6 +210,49 @@ public class LineChartTest {
     Assert.assertEquals(0, config.getAdjustedDashPhase(), LineChart.EPSILON);
   }
 
+  @Test
+  public void testIncrementalRendering() throws Exception {
+    LineChartModel model = new LineChartModel();
+    DefaultDataSeries<Long> lineSeries = new DefaultDataSeries<>();
+    DefaultDataSeries<Long> filledSeries = new DefaultDataSeries<>();
+    for (int i = 0; i < 11; i++) {
+      lineSeries.add(i, (long)i);
+      filledSeries.add(i, (long)i);
+    }
+    RangedContinuousSeries rangedLineSeries = new RangedContinuousSeries("line", new Range(0, 10), new Range(0, 10), lineSeries);
+    RangedContinuousSeries rangedFilledSeries = new RangedContinuousSeries("filled", new Range(0, 10), new Range(0, 10), filledSeries);
+    model.add(rangedLineSeries);
+    model.add(rangedFilledSeries);
+
+    LineChart chart = new LineChart(model);
+    chart.configure(rangedLineSeries, new LineConfig(Color.BLACK));
+    chart.configure(rangedFilledSeries, new LineConfig(Color.WHITE).setFilled(true));
+    chart.setIncrementalRendering(true);
+    chart.setSize(100, 100);
+    Graphics2D fakeGraphics = mock(Graphics2D.class);
+    when(fakeGraphics.create()).thenReturn(fakeGraphics);
+    when(fakeGraphics.getTransform()).thenReturn(new AffineTransform());
+    chart.paint(fakeGraphics);
+
+    // The lines are painted into an image, which is then drawn.
+    verify(fakeGraphics, times(1)).drawImage(any(Image.class), eq(0), eq(0), eq(100), eq(100), any());
+    verify(fakeGraphics, never()).draw(any(Shape.class));
+
+    // Dashed lines are painted directly, as polylines or polygons.
+    chart.configure(rangedLineSeries, new LineConfig(Color.BLACK).setStroke(LineConfig.DEFAULT_DASH_STROKE).setAdjustDash(false));
+    model.update(TimeUnit.SECONDS.toNanos(1));
+    chart.paint(fakeGraphics);
+    verify(fakeGraphics, times(1)).drawPolyline(any(int[].class), any(int[].class), anyInt());
+    verify(fakeGraphics, times(1)).fillPolygon(any(int[].class), any(int[].class), anyInt());
+    verify(fakeGraphics, never()).draw(any(Shape.class));
+
+    // Stepped lines need their exact points, so the chart goes back to drawing paths.
+    chart.configure(rangedLineSeries, new LineConfig(Color.BLACK).setStepped(true));
+    model.update(TimeUnit.SECONDS.toNanos(1));
+    chart.paint(fakeGraphics);
+    verify(fakeGraphics, times(1)).draw(any(Shape.class));
+  }
+
   private void shiftRangeAndRepaintChart(@NotNull LineChart chart,
                                          @NotNull LineChartModel model,
                                          @NotNull Range range,
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.linechart;
+
+import com.android.tools.adtui.model.LongSeriesBuffer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class PixelColumnBufferTest {
+  private PixelColumnBuffer myColumns;
+  private LongSeriesBuffer myData;
+
+  @Before
+  public void setUp() {
+    myColumns = new PixelColumnBuffer();
+    myData = new LongSeriesBuffer();
+  }
+
+  @Test
+  public void columnsHoldFirstLastMinAndMax() {
+    myData.add(0, 5);
+    myData.add(3, 1);
+    myData.add(7, 9);
+    myData.add(9, 4);
+    myData.add(15, 2);
+    // 4 pixels for a range of 40, so each column is 10 long.
+    myColumns.update(myData, 0, 40, 4);
+
+    assertThat(myColumns.getFirstColumn()).isEqualTo(0);
+    assertThat(myColumns.getLastColumn()).isEqualTo(4);
+    assertThat(myColumns.hasData(0)).isTrue();
+    assertThat(myColumns.getFirstValue(0)).isEqualTo(5);
+    assertThat(myColumns.getLastValue(0)).isEqualTo(4);
+    assertThat(myColumns.getMinValue(0)).isEqualTo(1);
+    assertThat(myColumns.getMaxValue(0)).isEqualTo(9);
+    assertThat(myColumns.hasData(1)).isTrue();
+    assertThat(myColumns.getMinValue(1)).isEqualTo(2);
+    assertThat(myColumns.getMaxValue(1)).isEqualTo(2);
+    assertThat(myColumns.hasData(2)).isFalse();
+  }
+
+  @Test
+  public void scrollingOnlyComputesTheNewestColumns() {
+    for (long x = 0; x <= 40; x += 5) {
+      myData.add(x, x);
+    }
+    myColumns.update(myData, 0, 40, 4);
+    assertThat(myColumns.getComputedColumnCount()).isEqualTo(5);
+
+    myData.add(45, 45);
+    myData.add(50, 50);
+    myColumns.update(myData, 10, 40, 4);
+    // The column holding the previous newest point (40) and the one that scrolled in.
+    assertThat(myColumns.getComputedColumnCount()).isEqualTo(2);
+    assertThat(myColumns.getFirstColumn()).isEqualTo(1);
+    assertThat(myColumns.getLastColumn()).isEqualTo(5);
+    assertThat(myColumns.getMinValue(1)).isEqualTo(10);
+    assertThat(myColumns.getMaxValue(1)).isEqualTo(15);
+    assertThat(myColumns.getMinValue(4)).isEqualTo(40);
+    assertThat(myColumns.getMaxValue(4)).isEqualTo(45);
+    assertThat(myColumns.getMinValue(5)).isEqualTo(50);
+  }
+
+  @Test
+  public void dataArrivingAfterItsColumnWasComputedIsPickedUp() {
+    myData.add(5, 1);
+    myColumns.update(myData, 0, 40, 4);
+    assertThat(myColumns.hasData(2)).isFalse();
+
+    myData.add(25, 3);
+    myColumns.update(myData, 0, 40, 4);
+    assertThat(myColumns.hasData(2)).isTrue();
+    assertThat(myColumns.getLastValue(2)).isEqualTo(3);
+  }
+
+  @Test
+  public void zoomingOrScrollingBackComputesAllColumns() {
+    for (long x = 0; x <= 60; x += 5) {
+      myData.add(x, x);
+    }
+    myColumns.update(myData, 20, 40, 4);
+
+    myColumns.update(myData, 10, 40, 4);
+    assertThat(myColumns.getComputedColumnCount()).isEqualTo(5);
+    assertThat(myColumns.getMinValue(1)).isEqualTo(10);
+
+    myColumns.update(myData, 10, 20, 4);
+    assertThat(myColumns.getComputedColumnCount()).isEqualTo(5);
+    assertThat(myColumns.getFirstColumn()).isEqualTo(2);
+    assertThat(myColumns.getMaxValue(2)).isEqualTo(10);
+
+    myColumns.invalidate();
+    myColumns.update(myData, 10, 20, 4);
+    assertThat(myColumns.getComputedColumnCount()).isEqualTo(5);
+  }
+}
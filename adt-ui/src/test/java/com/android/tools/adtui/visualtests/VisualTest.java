@@ -109,6 +109,7 @@ public abstract class VisualTest {
   public void setDebug(boolean isDebug) {
     for (AnimatedComponent component : getDebugInfoComponents()) {
       component.setDrawDebugInfo(isDebug);
+      component.setDebugUpdater(isDebug ? myUpdater : null);
     }
   }
 
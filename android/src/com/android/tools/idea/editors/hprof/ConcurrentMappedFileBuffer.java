@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.hprof;
+
+import com.android.tools.perflib.captures.DataBuffer;
+import org.jetbrains.annotations.NotNull;
+import sun.nio.ch.DirectBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only, memory mapped {@link DataBuffer} that can be read from several threads at once. perflib's own
+ * {@link com.android.tools.perflib.captures.MemoryMappedFileBuffer} keeps a single read position, so a {@link
+ * com.android.tools.perflib.heap.Snapshot} backed by it can only be used by one thread at a time. Here every thread has its own
+ * position, and reads never modify the shared mappings, which lets the analyzers, and the views, read the same snapshot concurrently.
+ */
+public class ConcurrentMappedFileBuffer implements DataBuffer {
+  // hprof files are big endian.
+  private static final ByteOrder BYTE_ORDER = ByteOrder.BIG_ENDIAN;
+  private static final int DEFAULT_SHARD_SIZE = 1 << 30;
+  // Each shard overlaps the next one by this much, so that reads of primitives never straddle two shards.
+  private static final int PADDING = 1024;
+
+  private final int myShardSize;
+  private final long myLength;
+  @NotNull private final ByteBuffer[] myShards;
+  @NotNull private final ThreadLocal<Cursor> myCursor = ThreadLocal.withInitial(Cursor::new);
+
+  public ConcurrentMappedFileBuffer(@NotNull File file) throws IOException {
+    this(file, DEFAULT_SHARD_SIZE);
+  }
+
+  ConcurrentMappedFileBuffer(@NotNull File file, int shardSize) throws IOException {
+    myShardSize = shardSize;
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+      FileChannel channel = randomAccessFile.getChannel();
+      myLength = channel.size();
+      int shards = (int)((myLength + shardSize - 1) / shardSize);
+      myShards = new ByteBuffer[shards];
+      for (int i = 0; i < shards; i++) {
+        long offset = (long)i * shardSize;
+        myShards[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(myLength - offset, (long)shardSize + PADDING));
+        myShards[i].order(BYTE_ORDER);
+      }
+    }
+  }
+
+  /**
+   * Releases the mappings right away rather than when the buffers are garbage collected, so the file is not kept locked (e.g. on Windows)
+   * once the snapshot is closed. Nothing guards the reads against the unmapping: a read that runs concurrently with, or after, this call
+   * on another thread can crash the VM. The owner of the buffer has to stop all its readers first, like {@link HprofEditor#dispose()}
+   * does with the analyzers.
+   */
+  @Override
+  public void dispose() {
+    for (int i = 0; i < myShards.length; i++) {
+      ByteBuffer shard = myShards[i];
+      // Lets later reads from this thread fail with a clear error. Other threads may still see the shard, hence the contract above.
+      myShards[i] = null;
+      try {
+        if (shard != null) {
+          ((DirectBuffer)shard).cleaner().clean();
+        }
+      }
+      catch (Exception ex) {
+        // ignore, this is a best effort attempt.
+      }
+    }
+  }
+
+  @Override
+  public void append(@NotNull byte[] data) {
+    throw new UnsupportedOperationException("The buffer is read only");
+  }
+
+  @Override
+  public void setPosition(long position) {
+    myCursor.get().myPosition = position;
+  }
+
+  @Override
+  public long position() {
+    return myCursor.get().myPosition;
+  }
+
+  @Override
+  public boolean hasRemaining() {
+    return position() < myLength;
+  }
+
+  @Override
+  public long remaining() {
+    return myLength - position();
+  }
+
+  @Override
+  public byte readByte() {
+    Cursor cursor = myCursor.get();
+    byte value = shard(cursor.myPosition).get(offset(cursor.myPosition));
+    cursor.myPosition += Byte.BYTES;
+    return value;
+  }
+
+  @Override
+  public void read(@NotNull byte[] b) {
+    readSubSequence(b, 0, b.length);
+  }
+
+  /**
+   * Skips {@code sourceStart} bytes, then reads {@code length} bytes into the start of {@code b}.
+   */
+  @Override
+  public void readSubSequence(@NotNull byte[] b, int sourceStart, int length) {
+    Cursor cursor = myCursor.get();
+    long position = cursor.myPosition + sourceStart;
+    int copied = 0;
+    while (copied < length) {
+      int offset = (int)(position % myShardSize);
+      // Bulk reads move the position of the buffer, so they go through a duplicate.
+      ByteBuffer view = shard(position).duplicate();
+      view.position(offset);
+      // Stop at the start of the next shard's padding, so every byte is read from the shard that owns it.
+      int count = (int)Math.min(length - copied, Math.min(view.limit(), myShardSize) - offset);
+      view.get(b, copied, count);
+      copied += count;
+      position += count;
+    }
+    cursor.myPosition = position;
+  }
+
+  @Override
+  public char readChar() {
+    Cursor cursor = myCursor.get();
+    char value = shard(cursor.myPosition).getChar(offset(cursor.myPosition));
+    cursor.myPosition += Character.BYTES;
+    return value;
+  }
+
+  @Override
+  public short readShort() {
+    Cursor cursor = myCursor.get();
+    short value = shard(cursor.myPosition).getShort(offset(cursor.myPosition));
+    cursor.myPosition += Short.BYTES;
+    return value;
+  }
+
+  @Override
+  public int readInt() {
+    Cursor cursor = myCursor.get();
+    int value = shard(cursor.myPosition).getInt(offset(cursor.myPosition));
+    cursor.myPosition += Integer.BYTES;
+    return value;
+  }
+
+  @Override
+  public long readLong() {
+    Cursor cursor = myCursor.get();
+    long value = shard(cursor.myPosition).getLong(offset(cursor.myPosition));
+    cursor.myPosition += Long.BYTES;
+    return value;
+  }
+
+  @Override
+  public float readFloat() {
+    return Float.intBitsToFloat(readInt());
+  }
+
+  @Override
+  public double readDouble() {
+    return Double.longBitsToDouble(readLong());
+  }
+
+  @NotNull
+  private ByteBuffer shard(long position) {
+    ByteBuffer shard = myShards[(int)(position / myShardSize)];
+    if (shard == null) {
+      throw new IllegalStateException("The buffer has been disposed");
+    }
+    return shard;
+  }
+
+  private int offset(long position) {
+    return (int)(position % myShardSize);
+  }
+
+  /**
+   * The read position of one thread. It must not reference the buffer, or the thread would keep the mappings alive.
+   */
+  private static final class Cursor {
+    private long myPosition;
+  }
+}
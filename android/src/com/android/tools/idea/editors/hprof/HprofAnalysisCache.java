@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.hprof;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Results of the heap analyzers for an hprof file, stored in the IDE system directory so reopening the capture does not need to run them
+ * again. The results are keyed by a hash of the contents of the hprof file and by the set of tasks that produced them. Instances are
+ * referred to by id, to be looked up in the snapshot again. Only the caches of the {@link #MAX_CACHED_CAPTURES} most recently opened
+ * captures are kept.
+ */
+public class HprofAnalysisCache {
+  @NotNull private static final Logger LOG = Logger.getInstance(HprofAnalysisCache.class);
+  private static final String CACHE_DIRECTORY = "hprof-analysis";
+  private static final String EXTENSION = ".analysis";
+  private static final int VERSION = 1;
+  @VisibleForTesting static final int MAX_CACHED_CAPTURES = 20;
+  private static final int HASH_BUFFER_SIZE = 1 << 16;
+
+  @NotNull private final File myFile;
+  @NotNull private final String myContentHash;
+  @NotNull private final Map<String, List<Result>> myResults = new HashMap<>();
+
+  private HprofAnalysisCache(@NotNull File file, @NotNull String contentHash) {
+    myFile = file;
+    myContentHash = contentHash;
+  }
+
+  /**
+   * @return a hash of the contents of the hprof file, which identifies the capture even if it has been moved or renamed. Interrupting
+   * the thread stops the hashing, which would otherwise read the whole file.
+   */
+  @NotNull
+  public static String hashContents(@NotNull File hprofFile) throws IOException {
+    Hasher hasher = Hashing.sha1().newHasher();
+    byte[] buffer = new byte[HASH_BUFFER_SIZE];
+    try (InputStream in = new FileInputStream(hprofFile)) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedIOException("Stopped hashing " + hprofFile);
+        }
+        hasher.putBytes(buffer, 0, read);
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Reads the cache of the hprof file with the given {@link #hashContents(File) hash}. The cache is empty if it does not exist yet.
+   */
+  @NotNull
+  public static HprofAnalysisCache load(@NotNull String contentHash) {
+    return load(new File(PathManager.getSystemPath(), CACHE_DIRECTORY), contentHash);
+  }
+
+  @VisibleForTesting
+  @NotNull
+  static HprofAnalysisCache load(@NotNull File cacheDirectory, @NotNull String contentHash) {
+    HprofAnalysisCache cache = new HprofAnalysisCache(new File(cacheDirectory, contentHash + EXTENSION), contentHash);
+    if (!cache.myFile.isFile()) {
+      return cache;
+    }
+    // Marks the cache as recently used, so it is the last to be pruned.
+    //noinspection ResultOfMethodCallIgnored
+    cache.myFile.setLastModified(System.currentTimeMillis());
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cache.myFile)))) {
+      if (in.readInt() != VERSION || !contentHash.equals(in.readUTF())) {
+        return cache;
+      }
+      int taskSets = in.readInt();
+      for (int i = 0; i < taskSets; i++) {
+        String key = in.readUTF();
+        int resultCount = in.readInt();
+        List<Result> results = new ArrayList<>(resultCount);
+        for (int j = 0; j < resultCount; j++) {
+          results.add(Result.read(in));
+        }
+        cache.myResults.put(key, results);
+      }
+    }
+    catch (IOException ex) {
+      LOG.info("Ignoring unreadable analysis cache " + cache.myFile, ex);
+      cache.myResults.clear();
+    }
+    return cache;
+  }
+
+  /**
+   * @return the results of a previous run of exactly these tasks, or null if they have not been run on this capture.
+   */
+  @Nullable
+  public synchronized List<Result> get(@NotNull Collection<String> taskNames) {
+    List<Result> results = myResults.get(getKey(taskNames));
+    return results == null ? null : Collections.unmodifiableList(results);
+  }
+
+  public synchronized void put(@NotNull Collection<String> taskNames, @NotNull List<Result> results) {
+    myResults.put(getKey(taskNames), new ArrayList<>(results));
+  }
+
+  public synchronized void remove(@NotNull Collection<String> taskNames) {
+    myResults.remove(getKey(taskNames));
+  }
+
+  /**
+   * Writes the cache to its file. The file is replaced as a whole, so a concurrent reader never sees a partial cache.
+   */
+  public void save() throws IOException {
+    Map<String, List<Result>> results;
+    synchronized (this) {
+      results = new HashMap<>(myResults);
+    }
+    FileUtil.createParentDirs(myFile);
+    File temp = new File(myFile.getPath() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+      out.writeInt(VERSION);
+      out.writeUTF(myContentHash);
+      out.writeInt(results.size());
+      for (Map.Entry<String, List<Result>> entry : results.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeInt(entry.getValue().size());
+        for (Result result : entry.getValue()) {
+          result.write(out);
+        }
+      }
+    }
+    FileUtil.rename(temp, myFile);
+    prune(myFile.getParentFile(), MAX_CACHED_CAPTURES);
+  }
+
+  /**
+   * Deletes all but the {@code maxCaches} most recently used caches in the directory.
+   */
+  @VisibleForTesting
+  static void prune(@NotNull File cacheDirectory, int maxCaches) {
+    File[] caches = cacheDirectory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+    if (caches == null || caches.length <= maxCaches) {
+      return;
+    }
+    Arrays.sort(caches, Comparator.comparingLong(File::lastModified).reversed());
+    for (int i = maxCaches; i < caches.length; i++) {
+      FileUtil.delete(caches[i]);
+    }
+  }
+
+  @NotNull
+  private static String getKey(@NotNull Collection<String> taskNames) {
+    List<String> sorted = new ArrayList<>(taskNames);
+    Collections.sort(sorted);
+    return String.join("\n", sorted);
+  }
+
+  /**
+   * One analysis result: either a group of instances sharing a description, such as duplicated strings, or a single instance.
+   */
+  public static final class Result {
+    @NotNull private final String myCategory;
+    @Nullable private final String myDescription;
+    @NotNull private final long[] myInstanceIds;
+
+    public Result(@NotNull String category, @Nullable String description, @NotNull long[] instanceIds) {
+      myCategory = category;
+      myDescription = description;
+      myInstanceIds = instanceIds;
+    }
+
+    @NotNull
+    public String getCategory() {
+      return myCategory;
+    }
+
+    /**
+     * @return the description of a group of instances, or null if the result is a single instance.
+     */
+    @Nullable
+    public String getDescription() {
+      return myDescription;
+    }
+
+    @NotNull
+    public long[] getInstanceIds() {
+      return myInstanceIds;
+    }
+
+    private void write(@NotNull DataOutput out) throws IOException {
+      out.writeUTF(myCategory);
+      // Descriptions can be arbitrarily long strings, which writeUTF does not support.
+      byte[] description = myDescription == null ? null : myDescription.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(description == null ? -1 : description.length);
+      if (description != null) {
+        out.write(description);
+      }
+      out.writeInt(myInstanceIds.length);
+      for (long id : myInstanceIds) {
+        out.writeLong(id);
+      }
+    }
+
+    @NotNull
+    private static Result read(@NotNull DataInput in) throws IOException {
+      String category = in.readUTF();
+      int descriptionLength = in.readInt();
+      String description = null;
+      if (descriptionLength >= 0) {
+        byte[] bytes = new byte[descriptionLength];
+        in.readFully(bytes);
+        description = new String(bytes, StandardCharsets.UTF_8);
+      }
+      long[] ids = new long[in.readInt()];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = in.readLong();
+      }
+      return new Result(category, description, ids);
+    }
+  }
+}
@@ -20,13 +20,14 @@ import com.android.tools.idea.editors.hprof.views.HprofAnalysisContentsDelegate;
 import com.android.tools.idea.profiling.view.CaptureEditor;
 import com.android.tools.idea.profiling.view.CapturePanel;
 import com.android.tools.perflib.analyzer.AnalysisReport;
+import com.android.tools.perflib.analyzer.AnalysisResultEntry;
 import com.android.tools.perflib.analyzer.AnalyzerTask;
 import com.android.tools.perflib.analyzer.CaptureGroup;
-import com.android.tools.perflib.captures.MemoryMappedFileBuffer;
 import com.android.tools.perflib.heap.Snapshot;
 import com.android.tools.perflib.heap.analysis.ComputationProgress;
 import com.android.tools.perflib.heap.memoryanalyzer.DuplicatedStringsAnalyzerTask;
 import com.android.tools.perflib.heap.memoryanalyzer.LeakedActivityAnalyzerTask;
+import com.android.tools.perflib.heap.memoryanalyzer.MemoryAnalysisResultEntry;
 import com.android.tools.perflib.heap.memoryanalyzer.MemoryAnalyzer;
 import com.google.common.base.Throwables;
 import com.intellij.codeHighlighting.BackgroundEditorHighlighter;
@@ -43,6 +44,7 @@ import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.impl.status.InlineProgressIndicator;
+import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.ui.UIUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -50,13 +52,23 @@ import org.jetbrains.annotations.Nullable;
 import javax.swing.*;
 import java.beans.PropertyChangeListener;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.Executors;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
 
 public class HprofEditor extends CaptureEditor {
   @NotNull private static final Logger LOG = Logger.getInstance(HprofEditor.class);
+  // The analyzers run on threads of their own rather than on the shared pool, so that dispose can stop them, and wait for them to stop,
+  // before the snapshot is unmapped.
+  @NotNull private final ExecutorService myAnalysisExecutor = createAnalysisExecutor();
   @Nullable private HprofView myView;
   @Nullable private Snapshot mySnapshot;
+  @Nullable private HprofAnalysisContentsDelegate myAnalysisDelegate;
+  @Nullable private HprofAnalysisCache myAnalysisCache;
   private boolean myIsValid = true;
 
   public HprofEditor(@NotNull final Project project, @NotNull final VirtualFile file) {
@@ -68,12 +80,17 @@ public class HprofEditor extends CaptureEditor {
       final InlineProgressIndicator indicator = myPanel.getProgressIndicator();
       assert indicator != null;
 
+      // The hash that keys the analysis cache is computed while the snapshot is being parsed.
+      Future<String> contentHash =
+        ApplicationManager.getApplication().executeOnPooledThread(() -> HprofAnalysisCache.hashContents(hprofFile));
+
       final Snapshot snapshot;
       try {
         updateIndicator(indicator, 0.01, "Parsing hprof file...");
-        snapshot = Snapshot.createSnapshot(new MemoryMappedFileBuffer(hprofFile));
+        snapshot = Snapshot.createSnapshot(new ConcurrentMappedFileBuffer(hprofFile));
       }
       catch (Throwable t) {
+        contentHash.cancel(true);
         showErrorWhileProcessingFile(project, indicator, t);
         return;
       }
@@ -90,6 +107,8 @@ public class HprofEditor extends CaptureEditor {
         snapshot.computeDominators();
       }
       catch (Throwable t) {
+        contentHash.cancel(true);
+        snapshot.dispose();
         showErrorWhileProcessingFile(project, indicator, t);
         return;
       }
@@ -97,14 +116,25 @@ public class HprofEditor extends CaptureEditor {
         timer.stop();
       }
 
+      HprofAnalysisCache analysisCache = null;
+      try {
+        analysisCache = HprofAnalysisCache.load(contentHash.get());
+      }
+      catch (InterruptedException | ExecutionException ex) {
+        LOG.info("Analysis results of " + hprofFile + " will not be cached", ex);
+      }
+      final HprofAnalysisCache cache = analysisCache;
+
       ApplicationManager.getApplication().invokeLater(() -> {
         if (!isValid()) {
           snapshot.dispose();
         }
         else {
           mySnapshot = snapshot;
+          myAnalysisCache = cache;
           myView = new HprofView(project, this, snapshot);
-          HprofAnalysisContentsDelegate delegate = new HprofAnalysisContentsDelegate(this);
+          HprofAnalysisContentsDelegate delegate = new HprofAnalysisContentsDelegate(this, snapshot);
+          myAnalysisDelegate = delegate;
           myPanel.setEditorPanel(myView.getComponent(), delegate);
 
           Disposer.register(this, myView);
@@ -199,10 +229,25 @@ public class HprofEditor extends CaptureEditor {
   @Override
   public void dispose() {
     myIsValid = false;
-    if (mySnapshot != null) {
-      mySnapshot.dispose();
+    myAnalysisExecutor.shutdownNow();
+    Snapshot snapshot = mySnapshot;
+    if (snapshot != null) {
+      // Unmapping the snapshot while an analyzer still reads it would crash the VM, so it waits for the analyzers, off the UI thread.
+      ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        try {
+          while (!myAnalysisExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+            LOG.info("Waiting for the heap analysis to stop before closing the snapshot");
+          }
+          snapshot.dispose();
+        }
+        catch (InterruptedException ex) {
+          // The mappings are then released when they are garbage collected.
+          Thread.currentThread().interrupt();
+        }
+      });
     }
     mySnapshot = null;
+    myAnalysisDelegate = null;
     myPanel = null;
   }
 
@@ -212,11 +257,25 @@ public class HprofEditor extends CaptureEditor {
     return myPanel;
   }
 
-  @NotNull
+  /**
+   * Shows the cached results if these tasks have already been run on this capture. Otherwise runs them, in parallel: the snapshot is
+   * backed by a {@link ConcurrentMappedFileBuffer}, so the tasks can all read it at once, and each task reports its results as soon as it
+   * is done. The tasks are stopped when the editor is disposed.
+   */
+  @Nullable
   @Override
   public AnalysisReport performAnalysis(@NotNull Set<? extends AnalyzerTask> tasks, @NotNull Set<AnalysisReport.Listener> listeners) {
     ApplicationManager.getApplication().assertIsDispatchThread();
 
+    List<String> taskNames = tasks.stream().map(AnalyzerTask::getTaskName).collect(Collectors.toList());
+    assert myAnalysisDelegate != null;
+    if (myAnalysisCache != null) {
+      List<HprofAnalysisCache.Result> results = myAnalysisCache.get(taskNames);
+      if (results != null && myAnalysisDelegate.showCachedResults(results)) {
+        return null;
+      }
+    }
+
     CaptureGroup captureGroup = new CaptureGroup();
     assert mySnapshot != null;
     captureGroup.addCapture(mySnapshot);
@@ -224,8 +283,21 @@ public class HprofEditor extends CaptureEditor {
     MemoryAnalyzer memoryAnalyzer = new MemoryAnalyzer();
     assert memoryAnalyzer.accept(captureGroup);
 
-    // TODO change this back to PooledThreadExecutor.INSTANCE once multi-reader problem has been solved in Snapshot
-    return memoryAnalyzer.analyze(captureGroup, listeners, tasks, EdtExecutor.INSTANCE, Executors.newSingleThreadExecutor());
+    Set<AnalysisReport.Listener> allListeners = new HashSet<>(listeners);
+    if (myAnalysisCache != null) {
+      allListeners.add(new CachingListener(myAnalysisCache, taskNames));
+    }
+    return memoryAnalyzer.analyze(captureGroup, allListeners, tasks, EdtExecutor.INSTANCE, myAnalysisExecutor);
+  }
+
+  @NotNull
+  private static ExecutorService createAnalysisExecutor() {
+    int threads = Runtime.getRuntime().availableProcessors();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                                                         ConcurrencyUtil.newNamedThreadFactory("HprofEditor analysis"));
+    // The threads only live while an analysis runs.
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
   }
 
   private static void updateIndicator(@NotNull final InlineProgressIndicator indicator, final double fraction, @NotNull final String text) {
@@ -242,4 +314,51 @@ public class HprofEditor extends CaptureEditor {
     indicator.cancel();
     ApplicationManager.getApplication().invokeLater(() -> Messages.showErrorDialog(project, errorMessage, getName()));
   }
+
+  /**
+   * Collects the results of a run of the analyzers, and saves them in the cache once all the tasks have completed.
+   */
+  private static class CachingListener implements AnalysisReport.Listener {
+    @NotNull private final HprofAnalysisCache myCache;
+    @NotNull private final List<String> myTaskNames;
+    @NotNull private final List<HprofAnalysisCache.Result> myResults = new ArrayList<>();
+    private boolean myCacheable = true;
+
+    private CachingListener(@NotNull HprofAnalysisCache cache, @NotNull List<String> taskNames) {
+      myCache = cache;
+      myTaskNames = taskNames;
+    }
+
+    @Override
+    public void onResultsAdded(@NotNull List<AnalysisResultEntry<?>> entries) {
+      for (AnalysisResultEntry<?> entry : entries) {
+        if (entry instanceof MemoryAnalysisResultEntry) {
+          myResults.add(HprofAnalysisContentsDelegate.toCacheResult(entry));
+        }
+        else {
+          myCacheable = false;
+        }
+      }
+    }
+
+    @Override
+    public void onAnalysisComplete() {
+      if (!myCacheable) {
+        return;
+      }
+      myCache.put(myTaskNames, myResults);
+      ApplicationManager.getApplication().executeOnPooledThread(() -> {
+        try {
+          myCache.save();
+        }
+        catch (IOException ex) {
+          LOG.info("Failed to save the analysis results", ex);
+        }
+      });
+    }
+
+    @Override
+    public void onAnalysisCancelled() {
+    }
+  }
 }
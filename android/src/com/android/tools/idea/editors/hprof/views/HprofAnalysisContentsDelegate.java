@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.editors.hprof.views;
 
+import com.android.tools.idea.editors.hprof.HprofAnalysisCache;
 import com.android.tools.idea.editors.hprof.HprofEditor;
 import com.android.tools.idea.editors.hprof.HprofView;
 import com.android.tools.idea.profiling.view.AnalysisContentsDelegate;
@@ -37,15 +38,19 @@ import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.TreePath;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.android.tools.perflib.heap.memoryanalyzer.DuplicatedStringsAnalyzerTask.DuplicatedStringsEntry;
 import static com.android.tools.perflib.heap.memoryanalyzer.LeakedActivityAnalyzerTask.LeakedActivityEntry;
 
 public class HprofAnalysisContentsDelegate extends AnalysisContentsDelegate {
   @NotNull private static final Logger LOG = Logger.getInstance(HprofAnalysisContentsDelegate.class);
+  @NotNull private final Snapshot mySnapshot;
 
-  public HprofAnalysisContentsDelegate(@NotNull HprofEditor editor) {
+  public HprofAnalysisContentsDelegate(@NotNull HprofEditor editor, @NotNull Snapshot snapshot) {
     super(editor.getCapturePanel());
+    mySnapshot = snapshot;
 
     HprofView hprofView = editor.getView();
     assert hprofView != null;
@@ -89,16 +94,11 @@ public class HprofAnalysisContentsDelegate extends AnalysisContentsDelegate {
     if (value instanceof DefaultMutableTreeNode) {
       Object userObject = ((DefaultMutableTreeNode)value).getUserObject();
       if (userObject instanceof EntryListItem) {
-        int index = ((EntryListItem)userObject).myIndex;
-        AnalysisResultEntry resultEntry = ((EntryListItem)userObject).myEntry;
-        if (resultEntry instanceof DuplicatedStringsEntry) {
-          DuplicatedStringsEntry entry = (DuplicatedStringsEntry)resultEntry;
-          append(Integer.toString(index), XDebuggerUIConstants.VALUE_NAME_ATTRIBUTES);
-          append(" = ", SimpleTextAttributes.REGULAR_ATTRIBUTES);
-          append(String.format("\"%s\" (%d instances)", entry.getOffender().getOffendingDescription(),
-                               entry.getOffender().getOffenders().size()),
-                 SimpleTextAttributes.fromTextAttributes(DebuggerUIUtil.getColorScheme(null).getAttributes(JavaHighlightingColors.STRING)));
-        }
+        EntryListItem item = (EntryListItem)userObject;
+        append(Integer.toString(item.myIndex), XDebuggerUIConstants.VALUE_NAME_ATTRIBUTES);
+        append(" = ", SimpleTextAttributes.REGULAR_ATTRIBUTES);
+        append(String.format("\"%s\" (%d instances)", item.myDescription, item.myInstanceCount),
+               SimpleTextAttributes.fromTextAttributes(DebuggerUIUtil.getColorScheme(null).getAttributes(JavaHighlightingColors.STRING)));
       }
       else if (userObject instanceof InstanceListItem) {
         int index = ((InstanceListItem)userObject).myIndex;
@@ -155,24 +155,88 @@ public class HprofAnalysisContentsDelegate extends AnalysisContentsDelegate {
       return null;
     }
 
-    DefaultMutableTreeNode subtreeRoot = new DefaultMutableTreeNode();
+    return getNodeForResult(index, toCacheResult(entry), entry.getOffender().getOffenders());
+  }
+
+  /**
+   * Shows the results of an earlier analysis of the same capture.
+   *
+   * @return false if the results do not match the snapshot, in which case nothing is shown.
+   */
+  public boolean showCachedResults(@NotNull List<HprofAnalysisCache.Result> results) {
+    List<ResolvedResult> resolved = new ArrayList<>(results.size());
+    for (HprofAnalysisCache.Result result : results) {
+      List<Instance> instances = new ArrayList<>(result.getInstanceIds().length);
+      for (long id : result.getInstanceIds()) {
+        Instance instance = mySnapshot.findInstance(id);
+        if (instance == null) {
+          return false;
+        }
+        instances.add(instance);
+      }
+      resolved.add(new ResolvedResult(result, instances));
+    }
+
+    addResults(resolved, new ResultNodeFactory<ResolvedResult>() {
+      @NotNull
+      @Override
+      public String getCategory(@NotNull ResolvedResult result) {
+        return result.myResult.getCategory();
+      }
+
+      @NotNull
+      @Override
+      public DefaultMutableTreeNode createNode(int index, @NotNull ResolvedResult result) {
+        return getNodeForResult(index, result.myResult, result.myInstances);
+      }
+    });
+    return true;
+  }
+
+  /**
+   * Converts a result of one of the analyzers to the form it is cached in.
+   */
+  @NotNull
+  public static HprofAnalysisCache.Result toCacheResult(@NotNull AnalysisResultEntry<?> entry) {
     if (entry instanceof DuplicatedStringsEntry) {
       DuplicatedStringsEntry duplicatedStringsEntry = (DuplicatedStringsEntry)entry;
-      subtreeRoot.setUserObject(new EntryListItem(index, duplicatedStringsEntry));
-      for (Instance instance : duplicatedStringsEntry.getOffender().getOffenders()) {
-        subtreeRoot.add(new DefaultMutableTreeNode(new InstanceListItem(subtreeRoot.getChildCount(), instance)));
-      }
+      List<Instance> offenders = duplicatedStringsEntry.getOffender().getOffenders();
+      return new HprofAnalysisCache.Result(entry.getCategory(), duplicatedStringsEntry.getOffender().getOffendingDescription(),
+                                           getIds(offenders));
     }
     else if (entry instanceof LeakedActivityEntry) {
       LeakedActivityEntry leakedActivityEntry = (LeakedActivityEntry)entry;
-      subtreeRoot.setUserObject(new InstanceListItem(index, leakedActivityEntry.getOffender().getOffenders().get(0)));
+      Instance activity = leakedActivityEntry.getOffender().getOffenders().get(0);
+      return new HprofAnalysisCache.Result(entry.getCategory(), null, new long[]{activity.getUniqueId()});
     }
-    else {
-      throw new RuntimeException("Failed to handle a subtype of MemoryAnalysisResultEntry \"" +
-                                 entry.getClass().getSimpleName() +
-                                 "\". Perhaps this method needs to be updated?");
+    throw new RuntimeException("Failed to handle a subtype of MemoryAnalysisResultEntry \"" +
+                               entry.getClass().getSimpleName() +
+                               "\". Perhaps this method needs to be updated?");
+  }
+
+  @NotNull
+  private static long[] getIds(@NotNull List<Instance> instances) {
+    long[] ids = new long[instances.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = instances.get(i).getUniqueId();
     }
+    return ids;
+  }
 
+  @NotNull
+  private static DefaultMutableTreeNode getNodeForResult(int index,
+                                                         @NotNull HprofAnalysisCache.Result result,
+                                                         @NotNull List<? extends Instance> instances) {
+    DefaultMutableTreeNode subtreeRoot = new DefaultMutableTreeNode();
+    if (result.getDescription() != null) {
+      subtreeRoot.setUserObject(new EntryListItem(index, result.getDescription(), instances.size()));
+      for (Instance instance : instances) {
+        subtreeRoot.add(new DefaultMutableTreeNode(new InstanceListItem(subtreeRoot.getChildCount(), instance)));
+      }
+    }
+    else {
+      subtreeRoot.setUserObject(new InstanceListItem(index, instances.get(0)));
+    }
     return subtreeRoot;
   }
 
@@ -186,13 +250,25 @@ public class HprofAnalysisContentsDelegate extends AnalysisContentsDelegate {
     }
   }
 
+  private static class ResolvedResult {
+    @NotNull public final HprofAnalysisCache.Result myResult;
+    @NotNull public final List<Instance> myInstances;
+
+    public ResolvedResult(@NotNull HprofAnalysisCache.Result result, @NotNull List<Instance> instances) {
+      myResult = result;
+      myInstances = instances;
+    }
+  }
+
   private static class EntryListItem {
     public int myIndex;
-    public AnalysisResultEntry myEntry;
+    public String myDescription;
+    public int myInstanceCount;
 
-    public EntryListItem(int index, @NotNull AnalysisResultEntry entry) {
+    public EntryListItem(int index, @NotNull String description, int instanceCount) {
       myIndex = index;
-      myEntry = entry;
+      myDescription = description;
+      myInstanceCount = instanceCount;
     }
   }
 }
@@ -213,10 +213,7 @@ public abstract class AnalysisContentsDelegate extends ColoredTreeCellRenderer i
                                    .setCategory(EventCategory.PROFILING)
                                    .setKind(EventKind.PROFILING_ANALYSIS_RUN));
 
-    final DefaultTreeModel model = (DefaultTreeModel)myResultsTree.getModel();
-    final DefaultMutableTreeNode root = (DefaultMutableTreeNode)model.getRoot();
-    root.removeAllChildren();
-    myCategoryNodes.clear();
+    clearResults();
 
     Set<AnalysisReport.Listener> singletonListener = Collections.<AnalysisReport.Listener>singleton(new AnalysisReport.Listener() {
       @Override
@@ -224,37 +221,19 @@ public abstract class AnalysisContentsDelegate extends ColoredTreeCellRenderer i
         UIUtil.invokeLaterIfNeeded(new Runnable() {
           @Override
           public void run() {
-            boolean rootChanged = false;
-            Set<DefaultMutableTreeNode> changedCategories = new HashSet<DefaultMutableTreeNode>();
-
-            for (AnalysisResultEntry<?> entry : entries) {
-              String category = entry.getCategory();
-              DefaultMutableTreeNode categoryNode;
-              if (!myCategoryNodes.containsKey(category)) {
-                categoryNode = new DefaultMutableTreeNode(new String(category));
-                myCategoryNodes.put(category, categoryNode);
-                root.add(categoryNode);
-                rootChanged = true;
-              }
-              else {
-                categoryNode = myCategoryNodes.get(category);
+            addResults(entries, new ResultNodeFactory<AnalysisResultEntry<?>>() {
+              @Override
+              @NotNull
+              public String getCategory(@NotNull AnalysisResultEntry<?> entry) {
+                return entry.getCategory();
               }
 
-              DefaultMutableTreeNode node = myCapturePanel.getContentsDelegate().getNodeForEntry(categoryNode.getChildCount(), entry);
-              if (node != null) {
-                changedCategories.add(categoryNode);
-                categoryNode.add(node);
-              }
-            }
-
-            if (rootChanged) {
-              model.nodeStructureChanged(root);
-            }
-            else {
-              for (DefaultMutableTreeNode categoryNode : changedCategories) {
-                model.nodeStructureChanged(categoryNode);
+              @Override
+              @Nullable
+              public DefaultMutableTreeNode createNode(int index, @NotNull AnalysisResultEntry<?> entry) {
+                return myCapturePanel.getContentsDelegate().getNodeForEntry(index, entry);
               }
-            }
+            });
           }
         });
       }
@@ -273,6 +252,68 @@ public abstract class AnalysisContentsDelegate extends ColoredTreeCellRenderer i
     myCapturePanel.performAnalysis(myEnabledTasks, singletonListener);
   }
 
+  /**
+   * Removes all the results from the results tree.
+   */
+  protected void clearResults() {
+    DefaultTreeModel model = (DefaultTreeModel)myResultsTree.getModel();
+    DefaultMutableTreeNode root = (DefaultMutableTreeNode)model.getRoot();
+    root.removeAllChildren();
+    myCategoryNodes.clear();
+    model.nodeStructureChanged(root);
+  }
+
+  /**
+   * Adds the nodes of the given results to the results tree, under the node of their category. Must be called on the EDT.
+   */
+  protected <T> void addResults(@NotNull List<T> results, @NotNull ResultNodeFactory<T> factory) {
+    DefaultTreeModel model = (DefaultTreeModel)myResultsTree.getModel();
+    DefaultMutableTreeNode root = (DefaultMutableTreeNode)model.getRoot();
+    boolean rootChanged = false;
+    Set<DefaultMutableTreeNode> changedCategories = new HashSet<DefaultMutableTreeNode>();
+
+    for (T result : results) {
+      String category = factory.getCategory(result);
+      DefaultMutableTreeNode categoryNode;
+      if (!myCategoryNodes.containsKey(category)) {
+        categoryNode = new DefaultMutableTreeNode(new String(category));
+        myCategoryNodes.put(category, categoryNode);
+        root.add(categoryNode);
+        rootChanged = true;
+      }
+      else {
+        categoryNode = myCategoryNodes.get(category);
+      }
+
+      DefaultMutableTreeNode node = factory.createNode(categoryNode.getChildCount(), result);
+      if (node != null) {
+        changedCategories.add(categoryNode);
+        categoryNode.add(node);
+      }
+    }
+
+    if (rootChanged) {
+      model.nodeStructureChanged(root);
+    }
+    else {
+      for (DefaultMutableTreeNode categoryNode : changedCategories) {
+        model.nodeStructureChanged(categoryNode);
+      }
+    }
+  }
+
   @Nullable
   public abstract DefaultMutableTreeNode getNodeForEntry(int index, @NotNull AnalysisResultEntry<?> entry);
+
+  protected interface ResultNodeFactory<T> {
+    @NotNull
+    String getCategory(@NotNull T result);
+
+    /**
+     * @param index the index of the result within its category.
+     * @return the node of the result, or null if it should not be shown.
+     */
+    @Nullable
+    DefaultMutableTreeNode createNode(int index, @NotNull T result);
+  }
 }
@@ -21,6 +21,7 @@ import com.intellij.designer.DesignerEditorPanelFacade;
 import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.util.UserDataHolderBase;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Set;
 
@@ -30,7 +31,10 @@ public abstract class CaptureEditor extends UserDataHolderBase implements FileEd
   @NotNull
   public abstract DesignerEditorPanelFacade getFacade();
 
-  @NotNull
+  /**
+   * @return the report of the analysis, or null if the results did not need to be computed.
+   */
+  @Nullable
   public abstract AnalysisReport performAnalysis(@NotNull Set<? extends AnalyzerTask> tasks,
                                                  @NotNull Set<AnalysisReport.Listener> listeners);
 
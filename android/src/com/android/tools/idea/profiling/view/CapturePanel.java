@@ -135,7 +135,7 @@ public class CapturePanel extends JPanel implements DesignerEditorPanelFacade {
     return myTasks;
   }
 
-  @NotNull
+  @Nullable
   public AnalysisReport performAnalysis(Set<? extends AnalyzerTask> tasks, @NotNull Set<AnalysisReport.Listener> listeners) {
     return myEditor.performAnalysis(tasks, listeners);
   }
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.tools.idea.layoutlib.LayoutLibrary;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Executor that runs all the layoutlib actions for {@link RenderService}.
+ * <p/>
+ * Every {@link LayoutLibrary} instance shares the same {@code Bridge} and framework classes (only {@code android.os.Build} is defined
+ * per instance) and layoutlib keeps static state in them, so all the actions are run sequentially in a single thread. Pending actions
+ * are ordered by {@link RenderService.Priority} and, within the same priority, by submission order. Priorities age: each priority level
+ * is worth a fixed amount of waiting time, so an action only goes ahead of lower priority actions submitted less than that long before
+ * it, and a steady stream of high priority renders cannot starve the low priority ones. Actions whose future is cancelled before they
+ * start are removed from the queue right away so stale requests do not delay newer ones.
+ * <p/>
+ * The executor also keeps track of the queue depth and of the time actions spend waiting in the queue and running, which can be used
+ * to diagnose slow previews.
+ */
+public class RenderExecutor {
+  /** Waiting time that makes up for one priority level, see {@link PrioritizedTask#compareTo}. */
+  static final long DEFAULT_AGING_STEP_MS = 1000;
+
+  private final AtomicReference<Thread> myRenderingThread = new AtomicReference<>();
+  private final ThreadPoolExecutor myExecutor;
+  private final AtomicLong mySequence = new AtomicLong();
+  private final long myAgingStepNanos;
+
+  private final AtomicLong myCompletedCount = new AtomicLong();
+  private final AtomicLong myCancelledCount = new AtomicLong();
+  private final AtomicLong myTotalWaitNanos = new AtomicLong();
+  private final AtomicLong myMaxWaitNanos = new AtomicLong();
+  private final AtomicLong myTotalRunNanos = new AtomicLong();
+  private final AtomicLong myMaxRunNanos = new AtomicLong();
+
+  RenderExecutor(@NotNull String threadName, long idleTimeoutMs) {
+    this(threadName, idleTimeoutMs, DEFAULT_AGING_STEP_MS);
+  }
+
+  RenderExecutor(@NotNull String threadName, long idleTimeoutMs, long agingStepMs) {
+    myAgingStepNanos = TimeUnit.MILLISECONDS.toNanos(agingStepMs);
+    myExecutor = new ThreadPoolExecutor(0, 1,
+                                        idleTimeoutMs, TimeUnit.MILLISECONDS,
+                                        new PriorityBlockingQueue<>(),
+                                        (Runnable r) -> {
+                                          Thread renderingThread = new Thread(null, r, threadName);
+                                          renderingThread.setDaemon(true);
+                                          myRenderingThread.set(renderingThread);
+
+                                          return renderingThread;
+                                        });
+  }
+
+  /**
+   * Queues the given action with the given priority. Cancelling the returned future before the action starts removes it from the queue.
+   */
+  @NotNull
+  <T> ListenableFuture<T> submit(@NotNull Callable<T> callable, @NotNull RenderService.Priority priority) {
+    ListenableFutureTask<T> future = ListenableFutureTask.create(callable);
+    PrioritizedTask task = new PrioritizedTask(future, priority, mySequence.getAndIncrement(), System.nanoTime());
+    future.addListener(() -> {
+      if (future.isCancelled() && myExecutor.remove(task)) {
+        myCancelledCount.incrementAndGet();
+      }
+    }, MoreExecutors.directExecutor());
+    myExecutor.execute(task);
+
+    return future;
+  }
+
+  /**
+   * Returns the thread currently used to run the actions or null if there is none.
+   */
+  @Nullable
+  Thread getRenderingThread() {
+    return myRenderingThread.get();
+  }
+
+  boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+    return myExecutor.awaitTermination(timeout, unit);
+  }
+
+  /**
+   * Cancels all the pending actions and interrupts the rendering thread.
+   */
+  void shutdownNow() {
+    myExecutor.shutdownNow();
+    Thread currentThread = myRenderingThread.getAndSet(null);
+    if (currentThread != null) {
+      currentThread.interrupt();
+    }
+  }
+
+  /**
+   * Returns the number of actions waiting to be run.
+   */
+  public int getQueueDepth() {
+    return myExecutor.getQueue().size();
+  }
+
+  /**
+   * Returns the number of actions that have been run.
+   */
+  public long getCompletedCount() {
+    return myCompletedCount.get();
+  }
+
+  /**
+   * Returns the number of actions that were cancelled and removed from the queue before they started.
+   */
+  public long getCancelledCount() {
+    return myCancelledCount.get();
+  }
+
+  /**
+   * Returns the average time, in milliseconds, that the completed actions spent waiting in the queue.
+   */
+  public long getAverageWaitMs() {
+    return average(myTotalWaitNanos.get());
+  }
+
+  /**
+   * Returns the maximum time, in milliseconds, that a completed action spent waiting in the queue.
+   */
+  public long getMaxWaitMs() {
+    return TimeUnit.NANOSECONDS.toMillis(myMaxWaitNanos.get());
+  }
+
+  /**
+   * Returns the average time, in milliseconds, that the completed actions took to run.
+   */
+  public long getAverageRunMs() {
+    return average(myTotalRunNanos.get());
+  }
+
+  /**
+   * Returns the maximum time, in milliseconds, that a completed action took to run.
+   */
+  public long getMaxRunMs() {
+    return TimeUnit.NANOSECONDS.toMillis(myMaxRunNanos.get());
+  }
+
+  private long average(long totalNanos) {
+    long count = myCompletedCount.get();
+    return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos / count);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("RenderExecutor{queue=%d, completed=%d, cancelled=%d, wait(avg/max)=%d/%dms, run(avg/max)=%d/%dms}",
+                         getQueueDepth(), getCompletedCount(), getCancelledCount(), getAverageWaitMs(), getMaxWaitMs(),
+                         getAverageRunMs(), getMaxRunMs());
+  }
+
+  private class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+    private final ListenableFutureTask<?> myFuture;
+    private final RenderService.Priority myPriority;
+    private final long mySequence;
+    private final long mySubmitNanos;
+    private final long myDeadlineNanos;
+
+    private PrioritizedTask(@NotNull ListenableFutureTask<?> future,
+                            @NotNull RenderService.Priority priority,
+                            long sequence,
+                            long submitNanos) {
+      myFuture = future;
+      myPriority = priority;
+      mySequence = sequence;
+      mySubmitNanos = submitNanos;
+      myDeadlineNanos = submitNanos + priority.ordinal() * myAgingStepNanos;
+    }
+
+    @Override
+    public void run() {
+      if (myFuture.isDone()) {
+        // Cancelled after it was taken from the queue
+        return;
+      }
+
+      long startNanos = System.nanoTime();
+      try {
+        myFuture.run();
+      }
+      finally {
+        long endNanos = System.nanoTime();
+        record(myTotalWaitNanos, myMaxWaitNanos, startNanos - mySubmitNanos);
+        record(myTotalRunNanos, myMaxRunNanos, endNanos - startNanos);
+        myCompletedCount.incrementAndGet();
+      }
+    }
+
+    private void record(@NotNull AtomicLong total, @NotNull AtomicLong max, long nanos) {
+      total.addAndGet(nanos);
+      max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Orders the tasks by their submission time, delayed by one aging step per level below {@link RenderService.Priority#HIGH}. The key
+     * is fixed at submission, so the order of the queued tasks never changes while they wait.
+     */
+    @Override
+    public int compareTo(@NotNull PrioritizedTask other) {
+      int result = Long.compare(myDeadlineNanos - other.myDeadlineNanos, 0);
+      return result != 0 ? result : Long.compare(mySequence, other.mySequence);
+    }
+  }
+}
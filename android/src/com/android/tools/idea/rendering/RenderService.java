@@ -32,7 +32,6 @@ import com.android.tools.idea.project.AndroidProjectInfo;
 import com.android.tools.idea.ui.designer.EditorDesignSurface;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListenableFutureTask;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
@@ -56,7 +55,6 @@ import org.jetbrains.annotations.TestOnly;
 import java.io.IOException;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 
 import static com.android.SdkConstants.TAG_PREFERENCE_SCREEN;
 import static com.intellij.lang.annotation.HighlightSeverity.ERROR;
@@ -76,10 +74,21 @@ public class RenderService extends AndroidFacetScopedService {
 
   @VisibleForTesting
   public static long ourRenderThreadTimeoutMs = DEFAULT_RENDER_THREAD_TIMEOUT_MS;
-  private static final AtomicReference<Thread> ourRenderingThread = new AtomicReference<>();
-  private static ExecutorService ourRenderingExecutor;
+  private static RenderExecutor ourRenderingExecutor;
   private static final AtomicInteger ourTimeoutExceptionCounter = new AtomicInteger(0);
 
+  /**
+   * Priority of a render action. When several actions are waiting for the render thread, the ones with higher priority run first,
+   * unless a lower priority one has been waiting for long enough (see {@link RenderExecutor}).
+   */
+  public enum Priority {
+    /** Actions for the editor the user is currently looking at */
+    HIGH,
+    NORMAL,
+    /** Background work like thumbnails or previews that are not immediately visible */
+    LOW
+  }
+
   private static final Key<RenderService> KEY = Key.create(RenderService.class.getName());
 
   static {
@@ -89,17 +98,7 @@ public class RenderService extends AndroidFacetScopedService {
   }
 
   private static void innerInitializeRenderExecutor() {
-    ourRenderingExecutor = new ThreadPoolExecutor(0, 1,
-                             RENDER_THREAD_IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS,
-                             new LinkedBlockingQueue<>(),
-                             (Runnable r) -> {
-                               Thread renderingThread =
-                                 new Thread(null, r, "Layoutlib Render Thread");
-                               renderingThread.setDaemon(true);
-                               ourRenderingThread.set(renderingThread);
-
-                               return renderingThread;
-                             });
+    ourRenderingExecutor = new RenderExecutor("Layoutlib Render Thread", RENDER_THREAD_IDLE_TIMEOUT_MS);
   }
 
   @TestOnly
@@ -111,10 +110,14 @@ public class RenderService extends AndroidFacetScopedService {
 
   private static void shutdownRenderExecutor() {
     ourRenderingExecutor.shutdownNow();
-    Thread currentThread = ourRenderingThread.getAndSet(null);
-    if (currentThread != null) {
-      currentThread.interrupt();
-    }
+  }
+
+  /**
+   * Returns the {@link RenderExecutor} used to run the render actions. It can be used to query the queue depth and latency metrics.
+   */
+  @NotNull
+  public static RenderExecutor getRenderExecutor() {
+    return ourRenderingExecutor;
   }
 
   /**
@@ -368,13 +371,26 @@ public class RenderService extends AndroidFacetScopedService {
    * method.
    */
   public static <T> T runRenderAction(@NotNull Callable<T> callable) throws Exception {
+    return runRenderAction(callable, Priority.NORMAL);
+  }
+
+  /**
+   * Runs a action that requires the rendering lock with the given {@link Priority}. Layoutlib is not thread safe so any rendering actions
+   * should be called using this method.
+   */
+  public static <T> T runRenderAction(@NotNull Callable<T> callable, @NotNull Priority priority) throws Exception {
+    ListenableFuture<T> future = null;
     try {
       // If the number of timeouts exceeds a certain threshold, stop waiting so the caller doesn't block. We try to submit a task that
       // clean-up the timeout counter instead. If it goes through, it means the queue is free.
       if (ourTimeoutExceptionCounter.get() > 3) {
-        ourRenderingExecutor.submit(() -> ourTimeoutExceptionCounter.set(0)).get(50, TimeUnit.MILLISECONDS);
+        ourRenderingExecutor.submit(() -> {
+          ourTimeoutExceptionCounter.set(0);
+          return null;
+        }, priority).get(50, TimeUnit.MILLISECONDS);
       }
-      T result = ourRenderingExecutor.submit(callable).get(ourRenderThreadTimeoutMs, TimeUnit.MILLISECONDS);
+      future = ourRenderingExecutor.submit(callable, priority);
+      T result = future.get(ourRenderThreadTimeoutMs, TimeUnit.MILLISECONDS);
       // The executor seems to be taking tasks so reset the counter
       ourTimeoutExceptionCounter.set(0);
 
@@ -382,8 +398,12 @@ public class RenderService extends AndroidFacetScopedService {
     }
     catch (TimeoutException e) {
       ourTimeoutExceptionCounter.incrementAndGet();
+      if (future != null) {
+        // Nobody is waiting for the result anymore so, if the action has not started yet, drop it from the queue
+        future.cancel(false);
+      }
 
-      Thread renderingThread = ourRenderingThread.get();
+      Thread renderingThread = ourRenderingExecutor.getRenderingThread();
       TimeoutException timeoutException = new TimeoutException("Preview timed out while rendering the layout.\n" +
                                                                "This typically happens when there is an infinite loop or unbounded recursion in one of the custom views.");
       if (renderingThread != null) {
@@ -402,10 +422,19 @@ public class RenderService extends AndroidFacetScopedService {
    */
   @NotNull
   public static <T> ListenableFuture<T> runAsyncRenderAction(@NotNull Callable<T> callable) {
-    ListenableFutureTask<T> future = ListenableFutureTask.create(callable);
-    ourRenderingExecutor.submit(future);
+    return runAsyncRenderAction(callable, Priority.NORMAL);
+  }
 
-    return future;
+  /**
+   * Runs an action that requires the rendering lock with the given {@link Priority}. Layoutlib is not thread safe so any rendering actions
+   * should be called using this method.
+   * <p/>
+   * This method will run the passed action asynchronously and return a {@link ListenableFuture}. Cancelling the future before the action
+   * starts removes it from the render queue.
+   */
+  @NotNull
+  public static <T> ListenableFuture<T> runAsyncRenderAction(@NotNull Callable<T> callable, @NotNull Priority priority) {
+    return ourRenderingExecutor.submit(callable, priority);
   }
 
   /**
@@ -415,7 +444,7 @@ public class RenderService extends AndroidFacetScopedService {
    * This method will run the passed action asynchronously
    */
   public static void runAsyncRenderAction(@NotNull Runnable runnable) {
-    ourRenderingExecutor.submit(runnable);
+    runAsyncRenderAction(Executors.callable(runnable));
   }
 
 
@@ -130,6 +130,9 @@ public class RenderTask implements IImageFactory {
 
   private long myTimeout;
 
+  @NotNull
+  private RenderService.Priority myPriority = RenderService.Priority.NORMAL;
+
   @Nullable
   private EditorDesignSurface mySurface;
 
@@ -355,6 +358,20 @@ public class RenderTask implements IImageFactory {
     return this;
   }
 
+  /**
+   * Sets the priority of the render actions of this task when they are waiting for the render thread. The default is
+   * {@link RenderService.Priority#NORMAL}.
+   *
+   * @param priority the priority to use for the render actions
+   * @return this (such that chains of setters can be stringed together)
+   */
+  @SuppressWarnings("UnusedReturnValue")
+  @NotNull
+  public RenderTask setPriority(@NotNull RenderService.Priority priority) {
+    myPriority = priority;
+    return this;
+  }
+
   /**
    * Sets the overriding background color to be used, if any. The color should be a
    * bitmask of AARRGGBB. The default is null.
@@ -642,7 +659,7 @@ public class RenderTask implements IImageFactory {
     }
 
     synchronized (myRunningFutures) {
-      ListenableFuture<V> newFuture = RenderService.runAsyncRenderAction(callable);
+      ListenableFuture<V> newFuture = RenderService.runAsyncRenderAction(callable, myPriority);
       Futures.addCallback(newFuture, new FutureCallback<V>() {
         @Override
         public void onSuccess(@Nullable V result) {
@@ -685,7 +702,7 @@ public class RenderTask implements IImageFactory {
 
         //noinspection UndesirableClassUsage
         return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-      }));
+      }), myPriority);
     }
     catch (final Exception e) {
       String message = e.getMessage();
@@ -896,7 +913,7 @@ public class RenderTask implements IImageFactory {
     }
 
     try {
-      Result result = RenderService.runRenderAction(() -> myLayoutLib.renderDrawable(params));
+      Result result = RenderService.runRenderAction(() -> myLayoutLib.renderDrawable(params), myPriority);
 
       if (result != null && result.isSuccess()) {
         Object data = result.getData();
@@ -1007,7 +1024,7 @@ public class RenderTask implements IImageFactory {
     Map<XmlTag, ViewInfo> map = Maps.newHashMap();
     RenderSession session = null;
     try {
-      session = RenderService.runRenderAction(() -> measure(modelParser));
+      session = RenderService.runRenderAction(() -> measure(modelParser), myPriority);
     }
     catch (Exception ignored) {
     }
@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res;
+
+import com.android.ide.common.rendering.api.ResourceValue;
+import com.android.ide.common.res2.ResourceFile;
+import com.android.ide.common.res2.ResourceItem;
+import com.android.ide.common.resources.configuration.FolderConfiguration;
+import com.android.resources.ResourceType;
+import com.android.utils.XmlUtils;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static com.android.SdkConstants.TAG_RESOURCES;
+import static com.android.SdkConstants.XMLNS;
+
+/**
+ * A compact, versioned index of the resources of an expanded AAR {@code res/} folder, which {@link FileResourceRepository} loads
+ * instead of parsing the folder again.
+ *
+ * <p>The index is a table of the distinct strings (names, types, qualifiers and file paths), followed by one record per resource
+ * file with the type, name and value offset of each of its items. Building the items only reads these tables. The values of items
+ * from values folders are stored at the end of the file as the XML of their element, and are kept in memory as one byte array: an
+ * element is only parsed when the value of its item is first asked for, with the same parser {@link ResourceItem} uses, so the values
+ * are the same as those of a parsed repository. The array is read rather than memory mapped, so the index file is closed, and can be
+ * replaced or deleted, as soon as it is loaded.
+ */
+final class AarResourceIndex {
+  static final String FILE_NAME = "aar_resource_index.dat";
+  private static final int MAGIC = 0x41524949;
+  private static final int VERSION = 1;
+
+  private AarResourceIndex() {
+  }
+
+  /**
+   * Returns the resource directory the index in {@code cacheDir} was built from, or null if there is no complete index.
+   */
+  @Nullable
+  static File getResourceDirectory(@NotNull File cacheDir) {
+    File indexFile = new File(cacheDir, FILE_NAME);
+    if (!indexFile.isFile()) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+      return in.readInt() == MAGIC && in.readInt() == VERSION ? new File(in.readUTF()) : null;
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Writes an index of the given items, which were parsed from {@code resourceDir}. The index is written to a temporary file first
+   * and then renamed, so a concurrent reader never sees a partial index.
+   */
+  static void write(@NotNull File cacheDir,
+                    @NotNull File resourceDir,
+                    @NotNull String fingerprint,
+                    @Nullable String libraryName,
+                    @NotNull Collection<ResourceItem> items) throws IOException {
+    // Values files hold many items, so group the items by the file they come from.
+    Map<ResourceFile, List<ResourceItem>> itemsByFile = new LinkedHashMap<>();
+    for (ResourceItem item : items) {
+      ResourceFile source = item.getSource();
+      if (source != null) {
+        itemsByFile.computeIfAbsent(source, file -> new ArrayList<>()).add(item);
+      }
+    }
+
+    Map<String, Integer> strings = new LinkedHashMap<>();
+    ByteArrayOutputStream values = new ByteArrayOutputStream();
+    ByteArrayOutputStream files = new ByteArrayOutputStream();
+    DataOutputStream filesOut = new DataOutputStream(files);
+    Transformer transformer = createTransformer();
+    filesOut.writeInt(itemsByFile.size());
+    for (Map.Entry<ResourceFile, List<ResourceItem>> entry : itemsByFile.entrySet()) {
+      ResourceFile source = entry.getKey();
+      String path = FileUtil.getRelativePath(resourceDir, source.getFile());
+      if (path == null) {
+        throw new IOException(source.getFile() + " is not in " + resourceDir);
+      }
+      Node firstValue = entry.getValue().get(0).getValue();
+      filesOut.writeInt(indexOf(strings, FileUtil.toSystemIndependentName(path)));
+      filesOut.writeInt(indexOf(strings, source.getQualifiers()));
+      filesOut.writeInt(firstValue != null ? indexOf(strings, getRootStartTag(firstValue)) : -1);
+      filesOut.writeInt(entry.getValue().size());
+      for (ResourceItem item : entry.getValue()) {
+        filesOut.writeInt(indexOf(strings, item.getType().getName()));
+        filesOut.writeInt(indexOf(strings, item.getName()));
+        Node value = item.getValue();
+        if (value == null) {
+          filesOut.writeInt(-1);
+          filesOut.writeInt(0);
+        }
+        else {
+          byte[] xml = toXml(transformer, value);
+          filesOut.writeInt(values.size());
+          filesOut.writeInt(xml.length);
+          values.write(xml);
+        }
+      }
+    }
+
+    FileUtil.ensureExists(cacheDir);
+    File temp = FileUtil.createTempFile(cacheDir, FILE_NAME, null, true, true);
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(resourceDir.getPath());
+        out.writeUTF(fingerprint);
+        out.writeBoolean(libraryName != null);
+        if (libraryName != null) {
+          out.writeUTF(libraryName);
+        }
+        out.writeInt(strings.size());
+        for (String string : strings.keySet()) {
+          out.writeUTF(string);
+        }
+        files.writeTo(out);
+        out.writeInt(values.size());
+        values.writeTo(out);
+      }
+      FileUtil.rename(temp, new File(cacheDir, FILE_NAME));
+    }
+    finally {
+      FileUtil.delete(temp);
+    }
+  }
+
+  /**
+   * Reads the items of the index in {@code cacheDir}, or returns null if there is no index for {@code resourceDir} in its current state.
+   * The items of each resource file get their {@link ResourceFile} as source.
+   */
+  @Nullable
+  static List<ResourceItem> load(@NotNull File cacheDir,
+                                 @NotNull File resourceDir,
+                                 @NotNull String fingerprint,
+                                 @Nullable String namespace,
+                                 @Nullable String libraryName) throws IOException {
+    File indexFile = new File(cacheDir, FILE_NAME);
+    if (!indexFile.isFile()) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || !FileUtil.filesEqual(new File(in.readUTF()), resourceDir) ||
+          !fingerprint.equals(in.readUTF()) || !Objects.equals(in.readBoolean() ? in.readUTF() : null, libraryName)) {
+        return null;
+      }
+      String[] strings = new String[in.readInt()];
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = in.readUTF();
+      }
+
+      List<IndexedFile> files = new ArrayList<>();
+      int fileCount = in.readInt();
+      for (int i = 0; i < fileCount; i++) {
+        IndexedFile file = new IndexedFile(strings[in.readInt()], strings[in.readInt()], in.readInt());
+        int itemCount = in.readInt();
+        file.myItems = new int[itemCount * 4];
+        for (int j = 0; j < file.myItems.length; j++) {
+          file.myItems[j] = in.readInt();
+        }
+        files.add(file);
+      }
+      byte[] values = new byte[in.readInt()];
+      in.readFully(values);
+
+      List<ResourceItem> items = new ArrayList<>();
+      Map<String, FolderConfiguration> configurations = new HashMap<>();
+      for (IndexedFile file : files) {
+        FolderConfiguration configuration = configurations.computeIfAbsent(file.myQualifiers, qualifiers -> {
+          FolderConfiguration config = FolderConfiguration.getConfigForQualifierString(qualifiers);
+          return config != null ? config : new FolderConfiguration();
+        });
+        List<ResourceItem> fileItems = new ArrayList<>(file.myItems.length / 4);
+        for (int j = 0; j < file.myItems.length; j += 4) {
+          ResourceType type = ResourceType.getEnum(strings[file.myItems[j]]);
+          if (type == null) {
+            return null;
+          }
+          String name = ResourceStorageUtil.internName(strings[file.myItems[j + 1]]);
+          int offset = file.myItems[j + 2];
+          if (offset < 0) {
+            fileItems.add(new ResourceItem(name, namespace, type, null, libraryName));
+          }
+          else {
+            fileItems.add(new IndexedValueResourceItem(name, namespace, type, libraryName, values, strings[file.myRootTag], offset,
+                                                       file.myItems[j + 3]));
+          }
+        }
+        File source = new File(resourceDir, FileUtil.toSystemDependentName(file.myPath));
+        if (fileItems.size() == 1) {
+          new ResourceFile(source, fileItems.get(0), file.myQualifiers, configuration);
+        }
+        else {
+          new ResourceFile(source, fileItems, file.myQualifiers, configuration);
+        }
+        items.addAll(fileItems);
+      }
+      return items;
+    }
+  }
+
+  private static int indexOf(@NotNull Map<String, Integer> strings, @NotNull String string) {
+    return strings.computeIfAbsent(string, s -> strings.size());
+  }
+
+  /**
+   * Returns the start tag of the {@code <resources>} element of a values file, with its namespace declarations, so that the value
+   * elements can be parsed on their own.
+   */
+  @NotNull
+  private static String getRootStartTag(@NotNull Node value) {
+    StringBuilder tag = new StringBuilder("<").append(TAG_RESOURCES);
+    Element root = value.getOwnerDocument().getDocumentElement();
+    NamedNodeMap attributes = root.getAttributes();
+    for (int i = 0; i < attributes.getLength(); i++) {
+      Attr attribute = (Attr)attributes.item(i);
+      if (attribute.getName().startsWith(XMLNS)) {
+        tag.append(' ').append(attribute.getName()).append("=\"").append(XmlUtils.toXmlAttributeValue(attribute.getValue())).append('"');
+      }
+    }
+    return tag.append('>').toString();
+  }
+
+  @NotNull
+  private static Transformer createTransformer() throws IOException {
+    try {
+      Transformer transformer = TransformerFactory.newInstance().newTransformer();
+      transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+      transformer.setOutputProperty(OutputKeys.ENCODING, StandardCharsets.UTF_8.name());
+      return transformer;
+    }
+    catch (TransformerException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @NotNull
+  private static byte[] toXml(@NotNull Transformer transformer, @NotNull Node node) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      transformer.transform(new DOMSource(node), new StreamResult(out));
+    }
+    catch (TransformerException e) {
+      throw new IOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  private static final class IndexedFile {
+    @NotNull private final String myPath;
+    @NotNull private final String myQualifiers;
+    private final int myRootTag;
+    // Type, name, value offset and value length of each item.
+    private int[] myItems;
+
+    private IndexedFile(@NotNull String path, @NotNull String qualifiers, int rootTag) {
+      myPath = path;
+      myQualifiers = qualifiers;
+      myRootTag = rootTag;
+    }
+  }
+
+  /**
+   * An item of a values file whose element is parsed from the index the first time its value is asked for. The value is then computed
+   * by a {@link ResourceItem} holding the parsed element, exactly as for an item created by the resource merger.
+   */
+  private static final class IndexedValueResourceItem extends ResourceItem {
+    @Nullable private final String myNamespace;
+    @NotNull private final byte[] myValues;
+    @NotNull private final String myRootStartTag;
+    private final int myOffset;
+    private final int myLength;
+    @Nullable private ResourceItem myParsedItem;
+
+    private IndexedValueResourceItem(@NotNull String name,
+                                     @Nullable String namespace,
+                                     @NotNull ResourceType type,
+                                     @Nullable String libraryName,
+                                     @NotNull byte[] values,
+                                     @NotNull String rootStartTag,
+                                     int offset,
+                                     int length) {
+      super(name, namespace, type, null, libraryName);
+      myNamespace = namespace;
+      myValues = values;
+      myRootStartTag = rootStartTag;
+      myOffset = offset;
+      myLength = length;
+    }
+
+    @NotNull
+    private synchronized ResourceItem getParsedItem() {
+      if (myParsedItem == null) {
+        String xml = myRootStartTag + new String(myValues, myOffset, myLength, StandardCharsets.UTF_8) + "</" + TAG_RESOURCES + ">";
+        Document document = XmlUtils.parseDocumentSilently(xml, true);
+        Node value = document != null ? XmlUtils.getFirstSubTag(document.getDocumentElement()) : null;
+        ResourceItem parsed = new ResourceItem(getName(), myNamespace, getType(), value, getLibraryName());
+        ResourceFile source = getSource();
+        if (source != null) {
+          new ResourceFile(source.getFile(), parsed, source.getQualifiers(), source.getFolderConfiguration());
+        }
+        myParsedItem = parsed;
+      }
+      return myParsedItem;
+    }
+
+    @Nullable
+    @Override
+    public Node getValue() {
+      return getParsedItem().getValue();
+    }
+
+    @Nullable
+    @Override
+    public String getValueText() {
+      return getParsedItem().getValueText();
+    }
+
+    /**
+     * Computes the value under the lock of the item, like the parsed element, as items are shared by the threads that resolve
+     * resources.
+     */
+    @Nullable
+    @Override
+    public synchronized ResourceValue getResourceValue(boolean isFrameworks) {
+      if (mResourceValue == null) {
+        mResourceValue = getParsedItem().getResourceValue(isFrameworks);
+      }
+      return mResourceValue;
+    }
+  }
+}
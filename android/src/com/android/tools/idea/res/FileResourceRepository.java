@@ -21,9 +21,13 @@ import com.android.ide.common.res2.*;
 import com.android.resources.ResourceType;
 import com.android.tools.log.LogWrapper;
 import com.android.utils.ILogger;
+import com.google.common.base.Strings;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.vfs.VfsUtil;
@@ -33,9 +37,9 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.util.Collection;
-import java.util.Map;
-import java.util.Set;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.android.SdkConstants.FN_RESOURCE_TEXT;
 
@@ -47,6 +51,11 @@ import static com.android.SdkConstants.FN_RESOURCE_TEXT;
  *
  * <p>Most of the implementation is based on {@link ResourceMerger} which means the behavior is highly
  * consistent with what will happen at build time.
+ *
+ * <p>Since the contents of an {@code .aar} directory don't change once expanded, the parsed items are saved as an
+ * {@link AarResourceIndex} in {@link ResourceFolderRepositoryFileCache#getAarDir} after the first parse, together with a
+ * fingerprint of the directory contents. Later sessions, and other projects using the same directory, load the index
+ * instead of parsing, and only parse the values that are used.
  */
 public class FileResourceRepository extends LocalResourceRepository {
   private static final Logger LOG = Logger.getInstance(FileResourceRepository.class);
@@ -69,6 +78,8 @@ public class FileResourceRepository extends LocalResourceRepository {
   @Nullable private File myResourceTextFile;
 
   private final static Map<File, FileResourceRepository> ourCache = ContainerUtil.createSoftValueMap();
+  // The number of resource folders parsed by the merger rather than loaded from their index, for tests.
+  private static final AtomicInteger ourParseCount = new AtomicInteger();
 
   private FileResourceRepository(@NotNull File file, @Nullable String namespace, @Nullable String libraryName) {
     super(file.getName());
@@ -97,10 +108,41 @@ public class FileResourceRepository extends LocalResourceRepository {
 
   @NotNull
   private static FileResourceRepository create(@NotNull final File file, @Nullable String namespace, @Nullable String libraryName) {
+    File cacheDir = null;
+    Application application = ApplicationManager.getApplication();
+    // Like ResourceFolderRepository, don't touch the file cache from unit tests.
+    if (application != null && !application.isUnitTestMode()) {
+      cacheDir = ResourceFolderRepositoryFileCacheService.get().getAarDir(file);
+    }
+    return create(file, namespace, libraryName, cacheDir);
+  }
+
+  @NotNull
+  @VisibleForTesting
+  static FileResourceRepository create(@NotNull final File file, @Nullable String namespace, @Nullable String libraryName,
+                                       @Nullable File cacheDir) {
     final FileResourceRepository repository = new FileResourceRepository(file, namespace, libraryName);
     try {
-      ResourceMerger resourceMerger = createResourceMerger(file, namespace, libraryName);
-      repository.getItems().update(resourceMerger);
+      String fingerprint = cacheDir != null ? computeFingerprint(file, namespace) : null;
+      List<ResourceItem> indexedItems = fingerprint != null ? loadIndex(cacheDir, file, namespace, libraryName, fingerprint) : null;
+      if (indexedItems == null) {
+        ResourceMerger resourceMerger = createResourceMerger(file, namespace, libraryName);
+        repository.getItems().update(resourceMerger);
+        if (fingerprint != null && saveIndex(repository, cacheDir, file, libraryName, fingerprint)) {
+          // The merger items keep the DOM of their values files, including a copy of every name, so use the items of the index
+          // instead, which share their names and only parse the values that are used.
+          indexedItems = loadIndex(cacheDir, file, namespace, libraryName, fingerprint);
+          if (indexedItems != null) {
+            repository.myFullTable.clear();
+          }
+        }
+      }
+      if (indexedItems != null) {
+        for (ResourceItem item : indexedItems) {
+          repository.getMap(namespace, item.getType(), true).put(item.getName(), item);
+        }
+      }
+      ResourceStorageUtil.trimToSize(repository.myFullTable);
     }
     catch (Exception e) {
       LOG.error("Failed to initialize resources", e);
@@ -118,6 +160,80 @@ public class FileResourceRepository extends LocalResourceRepository {
     return repository;
   }
 
+  /**
+   * Computes a fingerprint of the given resource directory from the relative path, size and modification time of every
+   * file in it. This only needs to stat the files, so it is much cheaper than parsing them.
+   */
+  @NotNull
+  @VisibleForTesting
+  static String computeFingerprint(@NotNull File resourceDir, @Nullable String namespace) {
+    Hasher hasher = Hashing.sha1().newHasher();
+    hasher.putUnencodedChars(Strings.nullToEmpty(namespace));
+    addToFingerprint(hasher, resourceDir, "");
+    return hasher.hash().toString();
+  }
+
+  private static void addToFingerprint(@NotNull Hasher hasher, @NotNull File dir, @NotNull String relativePath) {
+    File[] children = dir.listFiles();
+    if (children == null) {
+      return;
+    }
+    Arrays.sort(children);
+    for (File child : children) {
+      String childPath = relativePath + '/' + child.getName();
+      hasher.putUnencodedChars(childPath);
+      if (child.isDirectory()) {
+        addToFingerprint(hasher, child, childPath);
+      }
+      else {
+        hasher.putLong(child.length());
+        hasher.putLong(child.lastModified());
+      }
+    }
+  }
+
+  @Nullable
+  private static List<ResourceItem> loadIndex(@NotNull File cacheDir,
+                                              @NotNull File resourceDir,
+                                              @Nullable String namespace,
+                                              @Nullable String libraryName,
+                                              @NotNull String fingerprint) {
+    try {
+      return AarResourceIndex.load(cacheDir, resourceDir, fingerprint, namespace, libraryName);
+    }
+    catch (IOException e) {
+      LOG.warn("Failed to load the resource index of " + resourceDir + " from " + cacheDir, e);
+      return null;
+    }
+  }
+
+  private static boolean saveIndex(@NotNull FileResourceRepository repository,
+                                   @NotNull File cacheDir,
+                                   @NotNull File resourceDir,
+                                   @Nullable String libraryName,
+                                   @NotNull String fingerprint) {
+    List<ResourceItem> items = new ArrayList<>();
+    for (ListMultimap<String, ResourceItem> map : repository.myFullTable.values()) {
+      items.addAll(map.values());
+    }
+    try {
+      AarResourceIndex.write(cacheDir, resourceDir, fingerprint, libraryName, items);
+      return true;
+    }
+    catch (IOException e) {
+      LOG.warn("Failed to save the resource index of " + resourceDir + " to " + cacheDir, e);
+      return false;
+    }
+  }
+
+  /**
+   * Returns the resource directory the index in {@code cacheDir} was built from, or null if there is no complete index.
+   */
+  @Nullable
+  static File getCachedResourceDirectory(@NotNull File cacheDir) {
+    return AarResourceIndex.getResourceDirectory(cacheDir);
+  }
+
   @NotNull
   public static FileResourceRepository createForTest(@NotNull final File file, @Nullable String namespace, @Nullable String libraryName) {
     assert ApplicationManager.getApplication().isUnitTestMode();
@@ -133,6 +249,11 @@ public class FileResourceRepository extends LocalResourceRepository {
     ourCache.clear();
   }
 
+  @VisibleForTesting
+  static int getParseCount() {
+    return ourParseCount.get();
+  }
+
   @NotNull
   public File getResourceDirectory() {
     return myFile;
@@ -145,6 +266,7 @@ public class FileResourceRepository extends LocalResourceRepository {
   }
 
   private static ResourceMerger createResourceMerger(File file, String namespace, String libraryName) {
+    ourParseCount.incrementAndGet();
     ILogger logger = new LogWrapper(LOG).alwaysLogAsDebug(true).allowVerbose(false);
     ResourceMerger merger = new ResourceMerger(0);
 
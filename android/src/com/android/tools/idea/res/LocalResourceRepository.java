@@ -46,6 +46,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -111,10 +112,12 @@ import static com.android.tools.lint.detector.api.LintUtils.stripIdPrefix;
  * since a resource folder can only be in a single module. The parent reference is used to quickly
  * invalidate the cache of the parent {@link MultiResourceRepository}. For example, let's say the
  * project has two flavors. When the PSI change event is used to update the name of a string resource,
- * the repository will also notify the parent that its {@link ResourceType#ID} map is out of date.
- * The {@linkplain MultiResourceRepository} will use this to null out its map cache of strings, and
- * on the next read, it will merge in the string maps from all its {@linkplain ResourceFolderRepository}
- * children.
+ * the repository will also notify the parent that the old and new names in its {@link ResourceType#STRING}
+ * map are out of date. The {@linkplain MultiResourceRepository} will use this to merge the items for just
+ * those names from all its {@linkplain ResourceFolderRepository} children into its cached map of strings,
+ * and pass the same names on to its own parents. Changes which can't be described by names (e.g. a full
+ * rescan of a file) null out the cached map instead, and on the next read the parent will merge in the
+ * string maps from all its children.
  * </p>
  * <p>
  * One common type of "update" is changing the current variant in the IDE. With the above scheme,
@@ -218,37 +221,57 @@ public abstract class LocalResourceRepository extends AbstractResourceRepository
     }
   }
 
-  /** If this repository has not already been visited, merge its items of the given type into result. */
+  /**
+   * Like {@link #invalidateParentCaches(String, ResourceType...)}, but only the items with the given names have been added, removed
+   * or replaced. This lets the parents update just those names in their merged views rather than merging the whole type again.
+   */
+  protected void invalidateParentCaches(@Nullable String namespace, @NotNull ResourceType type, @NotNull Collection<String> names) {
+    synchronized (ITEM_MAP_LOCK) {
+      if (myParents != null) {
+        for (MultiResourceRepository parent : myParents) {
+          parent.invalidateCache(this, namespace, type, names);
+        }
+      }
+    }
+  }
+
+  /**
+   * If this repository has not already been visited, merge its items of the given type into result.
+   *
+   * @param name if not null, only merge the items with this name
+   */
   protected final void merge(@NotNull Set<LocalResourceRepository> visited,
                              @Nullable String namespace,
                              @NotNull ResourceType type,
+                             @Nullable String name,
                              @NotNull SetMultimap<String, String> seenQualifiers,
                              @NotNull ListMultimap<String, ResourceItem> result) {
     if (visited.contains(this)) {
       return;
     }
     visited.add(this);
-    doMerge(visited, namespace, type, seenQualifiers, result);
+    doMerge(visited, namespace, type, name, seenQualifiers, result);
   }
 
   protected void doMerge(@NotNull Set<LocalResourceRepository> visited,
                          @Nullable String namespace,
                          @NotNull ResourceType type,
+                         @Nullable String name,
                          @NotNull SetMultimap<String, String> seenQualifiers,
                          @NotNull ListMultimap<String, ResourceItem> result) {
     ListMultimap<String, ResourceItem> items = getMap(namespace, type, false);
     if (items == null) {
       return;
     }
-    for (ResourceItem item : items.values()) {
-      String name = item.getName();
+    for (ResourceItem item : name == null ? items.values() : items.get(name)) {
+      String itemName = item.getName();
       String qualifiers = item.getQualifiers();
-      if (!result.containsKey(name) || type == ResourceType.DECLARE_STYLEABLE || type == ResourceType.ID || !seenQualifiers.containsEntry(name, qualifiers)) {
+      if (!result.containsKey(itemName) || type == ResourceType.DECLARE_STYLEABLE || type == ResourceType.ID || !seenQualifiers.containsEntry(itemName, qualifiers)) {
         // We only add a duplicate item if there isn't an item with the same qualifiers (and it's
         // not an id; id's are allowed to be defined in multiple places even with the same
         // qualifiers)
-        result.put(name, item);
-        seenQualifiers.put(name, qualifiers);
+        result.put(itemName, item);
+        seenQualifiers.put(itemName, qualifiers);
       }
     }
   }
@@ -31,6 +31,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.annotation.concurrent.GuardedBy;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -241,7 +242,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
       Set<LocalResourceRepository> visited = Sets.newHashSet();
       SetMultimap<String, String> seenQualifiers = HashMultimap.create();
       // Merge all items of the given type
-      merge(visited, namespace, type, seenQualifiers, map);
+      merge(visited, namespace, type, null, seenQualifiers, map);
 
       myCachedMaps.put(namespace, type, map);
 
@@ -253,11 +254,12 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
   protected void doMerge(@NotNull Set<LocalResourceRepository> visited,
                          @Nullable String namespace,
                          @NotNull ResourceType type,
+                         @Nullable String name,
                          @NotNull SetMultimap<String, String> seenQualifiers,
                          @NotNull ListMultimap<String, ResourceItem> result) {
     synchronized (ITEM_MAP_LOCK) {
       for (int i = myChildren.size() - 1; i >= 0; i--) {
-        myChildren.get(i).merge(visited, namespace, type, seenQualifiers, result);
+        myChildren.get(i).merge(visited, namespace, type, name, seenQualifiers, result);
       }
     }
   }
@@ -348,6 +350,54 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
     }
   }
 
+  /**
+   * Notifies this delegating repository that the given dependent repository has added, removed or replaced the items with the given
+   * names. Instead of dropping the cached map for the type, the items for just those names are merged again from all children, in
+   * the usual override order, so the cost is proportional to the number of changed names rather than to the number of items.
+   *
+   * <p>Maps returned by {@link #getMap} and {@link #getFullTable} are read by callers outside of {@code ITEM_MAP_LOCK}, so they are
+   * never modified once published. The names are merged into a copy of the cached map, which then replaces it.
+   */
+  public void invalidateCache(@NotNull LocalResourceRepository repository,
+                              @Nullable String namespace,
+                              @NotNull ResourceType type,
+                              @NotNull Collection<String> names) {
+    synchronized (ITEM_MAP_LOCK) {
+      assert myChildren.contains(repository) : repository;
+
+      ListMultimap<String, ResourceItem> previous = myCachedMaps.get(namespace, type);
+      ListMultimap<String, ResourceItem> map = null;
+      if (previous != null) {
+        map = ArrayListMultimap.create(previous);
+        for (String name : names) {
+          map.removeAll(name);
+          Set<LocalResourceRepository> visited = Sets.newHashSet();
+          SetMultimap<String, String> seenQualifiers = HashMultimap.create();
+          merge(visited, namespace, type, name, seenQualifiers, map);
+        }
+        myCachedMaps.put(namespace, type, map);
+      }
+      myCachedNamespaces = null;
+      if (ResourceNamespaces.isDefaultNamespace(namespace)) {
+        myCachedHasResourcesOfType.remove(type);
+      }
+
+      if (map != null && myFullTable != null && myFullTable.get(namespace, type) == previous) {
+        // Only the one map changed; share the others with the previous table instead of merging every type again.
+        ResourceTable fullTable = new ResourceTable();
+        fullTable.putAll(myFullTable);
+        fullTable.put(namespace, type, map);
+        myFullTable = fullTable;
+      }
+      else {
+        myFullTable = null;
+      }
+      setModificationCount(ourModificationCounter.incrementAndGet());
+
+      invalidateParentCaches(namespace, type, names);
+    }
+  }
+
   @Override
   @VisibleForTesting
   public boolean isScanPending(@NonNull PsiFile psiFile) {
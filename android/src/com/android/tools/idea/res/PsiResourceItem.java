@@ -46,7 +46,7 @@ class PsiResourceItem extends ResourceItem {
 
   PsiResourceItem(@NonNull String name, @NonNull ResourceType type, @Nullable String namespace, @Nullable XmlTag tag, @NonNull PsiFile file) {
     // TODO: Actually figure out the namespace.
-    super(name, namespace, type, null, null);
+    super(ResourceStorageUtil.internName(name), namespace, type, null, null);
     myTag = tag;
     myFile = file;
   }
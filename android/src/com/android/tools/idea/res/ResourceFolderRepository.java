@@ -49,6 +49,7 @@ import com.intellij.psi.impl.PsiTreeChangeEventImpl;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.xml.*;
 import com.intellij.util.ArrayUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.android.resourceManagers.ModuleResourceManagers;
@@ -61,6 +62,12 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.android.SdkConstants.*;
@@ -106,6 +113,12 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
   @VisibleForTesting
   static int ourFullRescans;
 
+  /**
+   * Initial scans without a file cache which find at least this many XML files parse them on a pool; see {@link #parseInParallel}.
+   */
+  @VisibleForTesting
+  static int ourParallelScanMinFiles = 32;
+
   private ResourceFolderRepository(@NotNull AndroidFacet facet, @NotNull VirtualFile resourceDir, @Nullable String namespace) {
     super(resourceDir.getName());
     myFacet = facet;
@@ -122,6 +135,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
     if (!hasFreshFileCache() && !app.isUnitTestMode()) {
       saveStateToFile();
     }
+    ResourceStorageUtil.trimToSize(myFullTable);
     // Clear some unneeded state (myInitialScanState's resource merger holds a second map of items).
     // Skip for unit tests, which may need to test saving separately (saving is normally skipped for unit tests).
     if (!app.isUnitTestMode()) {
@@ -256,11 +270,16 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
 
   private ResourceMerger createFreshResourceMerger() {
     ResourceMerger merger = new ResourceMerger(0 /* minSdk */);
-    ResourceSet myData = new ResourceSet(myResourceDir.getName(), myNamespace, getLibraryName(), false /* validateEnabled */);
+    merger.addDataSet(createResourceSet());
+    return merger;
+  }
+
+  @NotNull
+  private ScanResourceSet createResourceSet() {
+    ScanResourceSet myData = new ScanResourceSet(myResourceDir.getName(), myNamespace, getLibraryName());
     File resourceDir = VfsUtilCore.virtualToIoFile(myResourceDir);
     myData.addSource(resourceDir);
-    merger.addDataSet(myData);
-    return merger;
+    return myData;
   }
 
   /**
@@ -292,18 +311,25 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
     final File myResourceDir;
     final Collection<PsiFileResourceQueueEntry> myPsiFileResourceQueue = new ArrayList<>();
     final Collection<PsiValueResourceQueueEntry> myPsiValueResourceQueue = new ArrayList<>();
+    /** Files parsed ahead of the scan by {@link #parseInParallel}, waiting to be picked up by {@link #loadFile}. */
+    private final Map<File, ParsedFile> myParsedFiles = new ConcurrentHashMap<>();
 
     public InitialScanState(ResourceMerger merger, File resourceDir) {
       myResourceMerger = merger;
       assert myResourceMerger.getDataSets().size() == 1;
-      myResourceSet = myResourceMerger.getDataSets().get(0);
-      myResourceSet.setShouldParseResourceIds(true);
-      myResourceSet.setDontNormalizeQualifiers(true);
-      myResourceSet.setTrackSourcePositions(false);
+      myResourceSet = configure(myResourceMerger.getDataSets().get(0));
       myILogger = new LogWrapper(LOG).alwaysLogAsDebug(true).allowVerbose(false);
       myResourceDir = resourceDir;
     }
 
+    @NotNull
+    private static ResourceSet configure(@NotNull ResourceSet resourceSet) {
+      resourceSet.setShouldParseResourceIds(true);
+      resourceSet.setDontNormalizeQualifiers(true);
+      resourceSet.setTrackSourcePositions(false);
+      return resourceSet;
+    }
+
     public void countCacheHit() {
       ++numXml;
     }
@@ -322,9 +348,65 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
      */
     @Nullable
     ResourceFile loadFile(File file) throws MergingException {
+      ParsedFile parsedFile = myParsedFiles.remove(file);
+      if (parsedFile != null) {
+        ResourceFile resourceFile = parsedFile.get();
+        if (resourceFile != null) {
+          // Moves the file out of the worker's set, so that it is saved with the rest of the state.
+          ((ScanResourceSet)myResourceSet).addParsedFile(myResourceDir, resourceFile);
+        }
+        return resourceFile;
+      }
       return myResourceSet.loadFile(myResourceDir, file, myILogger);
     }
 
+    /**
+     * Whether the files of the scan can be parsed by {@link #parseInParallel}, which is the case when the scan starts from scratch.
+     */
+    boolean canParseInParallel() {
+      return myResourceSet instanceof ScanResourceSet;
+    }
+
+    /**
+     * Parses the given files on a bounded pool, ahead of the sequential scan. ResourceSet isn't thread safe, so each worker parses into
+     * a scratch set of its own. The scan then picks up the results in {@link #loadFile} in its usual order, and adds them to the one set
+     * of the merger, so the repository and its saved state end up with the same items in the same order either way.
+     */
+    void parseInParallel(@NotNull List<File> files, @NotNull Supplier<ResourceSet> resourceSetFactory) {
+      // Cap the threads like ResourceFolderRegistry does.
+      int numWorkers = Math.min(Math.min(4, Runtime.getRuntime().availableProcessors()), files.size());
+      ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("ResourceFolderRepository", numWorkers);
+      AtomicInteger nextFile = new AtomicInteger();
+      List<Future<?>> workers = new ArrayList<>(numWorkers);
+      for (int i = 0; i < numWorkers; i++) {
+        workers.add(executor.submit(() -> {
+          ResourceSet resourceSet = configure(resourceSetFactory.get());
+          for (int index = nextFile.getAndIncrement(); index < files.size(); index = nextFile.getAndIncrement()) {
+            File file = files.get(index);
+            try {
+              myParsedFiles.put(file, new ParsedFile(resourceSet.loadFile(myResourceDir, file, myILogger), null));
+            }
+            catch (MergingException e) {
+              myParsedFiles.put(file, new ParsedFile(null, e));
+            }
+          }
+        }));
+      }
+      for (Future<?> worker : workers) {
+        try {
+          worker.get();
+        }
+        catch (ExecutionException e) {
+          // Files the worker didn't get to are parsed by the sequential scan instead.
+          LOG.warn("Failed to parse resources in parallel", e);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+
     public void queuePsiFileResourceScan(PsiFileResourceQueueEntry data) {
       myPsiFileResourceQueue.add(data);
     }
@@ -334,6 +416,41 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
     }
   }
 
+  /**
+   * The resource set of a scan that starts from scratch, which also takes in the files parsed by the workers of
+   * {@link InitialScanState#parseInParallel}.
+   */
+  private static final class ScanResourceSet extends ResourceSet {
+    ScanResourceSet(@NotNull String name, @Nullable String namespace, @Nullable String libraryName) {
+      super(name, namespace, libraryName, false /* validateEnabled */);
+    }
+
+    void addParsedFile(@NotNull File sourceFolder, @NotNull ResourceFile resourceFile) throws MergingException {
+      processNewDataFile(sourceFolder, resourceFile, false /* setTouched */);
+    }
+  }
+
+  /**
+   * The outcome of parsing a file in {@link InitialScanState#parseInParallel}: what {@link ResourceSet#loadFile} returned or threw.
+   */
+  private static class ParsedFile {
+    @Nullable private final ResourceFile myResourceFile;
+    @Nullable private final MergingException myException;
+
+    ParsedFile(@Nullable ResourceFile resourceFile, @Nullable MergingException exception) {
+      myResourceFile = resourceFile;
+      myException = exception;
+    }
+
+    @Nullable
+    ResourceFile get() throws MergingException {
+      if (myException != null) {
+        throw myException;
+      }
+      return myResourceFile;
+    }
+  }
+
   /**
    * Tracks file-based resources where init via VirtualFile failed. We retry init via PSI for these files.
    */
@@ -372,6 +489,10 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
       return;
     }
     ApplicationManager.getApplication().runReadAction(() -> getPsiDirsForListener(myResourceDir));
+    // Without a file cache every XML file is parsed, so it is worth doing that in parallel.
+    if (myResourceFiles.isEmpty() && myInitialScanState.canParseInParallel()) {
+      parseInParallel(myResourceDir);
+    }
     scanResFolder(myResourceDir);
     ApplicationManager.getApplication().runReadAction(this::scanQueuedPsiResources);
   }
@@ -453,6 +574,35 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
     }
   }
 
+  /**
+   * Parses the XML files which {@link #scanResFolder} will load (values files, and files in id generating folders) on a pool, if there
+   * are enough of them. Only the parsing happens off the calling thread; {@link #scanResFolder} still merges the results into the
+   * repository, and {@link #scanQueuedPsiResources} still handles files which need Psi.
+   */
+  private void parseInParallel(@NotNull VirtualFile resDir) {
+    List<File> files = new ArrayList<>();
+    for (VirtualFile subDir : resDir.getChildren()) {
+      if (subDir.isValid() && subDir.isDirectory()) {
+        String name = subDir.getName();
+        ResourceFolderType folderType = getFolderType(name);
+        if (folderType == null || FolderConfiguration.getConfigForFolder(name) == null) {
+          continue;
+        }
+        if (folderType != VALUES && !FolderTypeRelationship.isIdGeneratingFolderType(folderType)) {
+          continue;
+        }
+        for (VirtualFile file : subDir.getChildren()) {
+          if (file.isValid() && !file.isDirectory() && file.getFileType() == StdFileTypes.XML) {
+            files.add(VfsUtilCore.virtualToIoFile(file));
+          }
+        }
+      }
+    }
+    if (files.size() >= ourParallelScanMinFiles) {
+      myInitialScanState.parseInParallel(files, this::createResourceSet);
+    }
+  }
+
   private static String getQualifiers(String dirName) {
     int index = dirName.indexOf('-');
     return index != -1 ? dirName.substring(index + 1) : "";
@@ -562,7 +712,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
     else {
       // We create the items without adding it to the resource set / resource merger.
       // No need to write these out to blob files, as the item is easily reconstructed from the filename.
-      String name = ResourceHelper.getResourceName(file);
+      String name = ResourceStorageUtil.internName(ResourceHelper.getResourceName(file));
       ResourceItem item = new ResourceItem(name, myNamespace, type, null, getLibraryName());
       map.put(name, item);
       resourceFile = new ResourceFile(VfsUtilCore.virtualToIoFile(file), item, qualifiers, folderConfiguration);
@@ -838,6 +988,15 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
     }
   }
 
+  @NotNull
+  private static Set<String> getNames(@NotNull Collection<ResourceItem> items) {
+    Set<String> names = Sets.newHashSetWithExpectedSize(items.size());
+    for (ResourceItem item : items) {
+      names.add(item.getName());
+    }
+    return names;
+  }
+
   private void scanValueResFolder(@NotNull VirtualFile directory, String qualifiers, FolderConfiguration folderConfiguration) {
     //noinspection ConstantConditions
     assert directory.getName().startsWith(FD_RES_VALUES);
@@ -1151,7 +1310,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
           }
           scanDataBinding(resourceFile, getModificationCount());
           // Identities may have changed even if the ids are the same, so update maps
-          invalidateParentCaches(myNamespace, ResourceType.ID);
+          invalidateParentCaches(myNamespace, ResourceType.ID, Sets.union(idsBefore, idsAfter));
         }
       } else {
         // Remove old items first, if switching to Psi. Rescan below to add back, but with a possibly different multimap list order.
@@ -1303,7 +1462,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                       map.put(name, item);
                       resourceFile.addItems(Collections.singletonList(item));
                       setModificationCount(ourModificationCounter.incrementAndGet());
-                      invalidateParentCaches(myNamespace, type);
+                      invalidateParentCaches(myNamespace, type, Collections.singleton(name));
                       return;
                     }
                   }
@@ -1366,7 +1525,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                     PsiResourceFile resourceFile = (PsiResourceFile)resFile;
                     resourceFile.addItems(ids);
                     setModificationCount(ourModificationCounter.incrementAndGet());
-                    invalidateParentCaches(myNamespace, ResourceType.ID);
+                    invalidateParentCaches(myNamespace, ResourceType.ID, getNames(ids));
                   }
                 }
                 return;
@@ -1514,7 +1673,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                       }
                       if (removeItems(resourceFile, type, name, true)) {
                         setModificationCount(ourModificationCounter.incrementAndGet());
-                        invalidateParentCaches(myNamespace, type);
+                        invalidateParentCaches(myNamespace, type, Collections.singleton(name));
                       }
                     }
                   }
@@ -1697,7 +1856,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                               resourceFile.addItem(newItem);
                             }
                             setModificationCount(ourModificationCounter.incrementAndGet());
-                            invalidateParentCaches(myNamespace, ResourceType.ID);
+                            invalidateParentCaches(myNamespace, ResourceType.ID, ImmutableSet.of(oldName, newName));
                             return;
                           }
                         }
@@ -1745,7 +1904,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                             resourceFile.addItem(newItem);
                           }
                           setModificationCount(ourModificationCounter.incrementAndGet());
-                          invalidateParentCaches(myNamespace, ResourceType.ID);
+                          invalidateParentCaches(myNamespace, ResourceType.ID, ImmutableSet.of(oldName, newName));
                           return;
                         }
                       }
@@ -1869,7 +2028,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
                           }
                         }
                         setModificationCount(ourModificationCounter.incrementAndGet());
-                        invalidateParentCaches(myNamespace, type);
+                        invalidateParentCaches(myNamespace, type, ImmutableSet.of(oldName, newName));
 
                         // Invalidate surrounding declare styleable if any
                         if (type == ResourceType.ATTR) {
@@ -36,6 +36,16 @@ public interface ResourceFolderRepositoryFileCache {
    */
   @Nullable File getResourceDir(@NotNull Project project, @NotNull VirtualFile resourceDir);
 
+  /**
+   * Returns the directory that should be used to read/write the resource index for the given AAR resource directory.
+   * Unlike {@link #getResourceDir}, the directory is not tied to a project, so projects which reference the same
+   * AAR (e.g. through the shared build cache) share its cache. If cache is invalidated returns null.
+   *
+   * @param resourceDir the AAR resource directory which is the source of truth
+   * @return the cache directory, or null if all caches are invalidated
+   */
+  @Nullable File getAarDir(@NotNull File resourceDir);
+
   /**
    * Returns the root directory where caches for all projects are stored.
    * Doesn't matter if the cache is invalidated.
@@ -43,6 +43,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Manages a local file cache for ResourceFolderRepository state, for faster project reload.
@@ -50,6 +51,7 @@ import java.util.Set;
 class ResourceFolderRepositoryFileCacheImpl implements ResourceFolderRepositoryFileCache {
 
   private static final String CACHE_DIRECTORY = "resource_folder_cache";
+  private static final String AAR_CACHE_DIRECTORY = "aar_cache";
   private static final String INVALIDATE_CACHE_STAMP = "invalidate_caches_stamp.dat";
 
   static final int EXPECTED_CACHE_VERSION = 1;
@@ -90,6 +92,23 @@ class ResourceFolderRepositoryFileCacheImpl implements ResourceFolderRepositoryF
     return projectComponent.resolve(dirComponent).toFile();
   }
 
+  @Override
+  @Nullable
+  public File getAarDir(@NotNull File resourceDir) {
+    if (!isValid()) {
+      return null;
+    }
+    File rootDir = getRootDir();
+    if (rootDir == null) {
+      return null;
+    }
+    // As for project resource directories, the AarResourceIndex records the original resourceDir, so a hash collision
+    // is detected during load.
+    String dirComponent = FileUtil.sanitizeFileName(resourceDir.getParentFile().getName() + "_" +
+                                                    Integer.toHexString(FileUtil.fileHashCode(resourceDir)));
+    return new File(new File(rootDir, AAR_CACHE_DIRECTORY), dirComponent);
+  }
+
   @Override
   @Nullable
   public File getRootDir() {
@@ -234,6 +253,7 @@ class ResourceFolderRepositoryFileCacheImpl implements ResourceFolderRepositoryF
    * - When a project opens, it will place the project in the front of the LRU queue, and delete
    * caches for projects that have been bumped out of the queue. This helps limit the storage
    * used to be up to only N projects at a time.
+   * - It deletes AAR caches whose resource directory no longer exists.
    */
   static class ManageLruProjectFilesTask extends DumbModeTask {
     @NotNull private final Project myProject;
@@ -243,6 +263,9 @@ class ResourceFolderRepositoryFileCacheImpl implements ResourceFolderRepositoryF
 
     private static final int MAX_PROJECT_CACHES = 12;
 
+    /** How long an AAR cache directory is left alone after it was last written, since another project may be writing it. */
+    private static final long AAR_CACHE_WRITE_GRACE_PERIOD_MS = TimeUnit.HOURS.toMillis(1);
+
     public ManageLruProjectFilesTask(@NotNull Project project) {
       myProject = project;
     }
@@ -271,6 +294,7 @@ class ResourceFolderRepositoryFileCacheImpl implements ResourceFolderRepositoryF
           List<File> projectsToRemove = updateLRUList(myProject, projectsList, maxProjectCaches);
           pruneOldProjects(cacheRootDir, projectsToRemove);
           writeListOfProjectCaches(cacheRootDir, projectsList);
+          pruneStaleAarCaches(cacheRootDir);
         }
         catch (IOException e) {
           getLogger().error("Failed to maintain projects LRU cache for dir " + cacheRootDir, e);
@@ -359,6 +383,37 @@ class ResourceFolderRepositoryFileCacheImpl implements ResourceFolderRepositoryF
         }
       }
     }
+
+    private static void pruneStaleAarCaches(@NotNull File cacheRootDir) {
+      File[] aarCaches = new File(cacheRootDir, AAR_CACHE_DIRECTORY).listFiles();
+      if (aarCaches == null) {
+        return;
+      }
+      long now = System.currentTimeMillis();
+      for (File aarCache : aarCaches) {
+        // A directory without an index may still be being written by another project, so leave recent ones alone.
+        if (now - getLastModified(aarCache) < AAR_CACHE_WRITE_GRACE_PERIOD_MS) {
+          continue;
+        }
+        File resourceDir = FileResourceRepository.getCachedResourceDirectory(aarCache);
+        if (resourceDir == null || !resourceDir.isDirectory()) {
+          if (!FileUtil.delete(aarCache)) {
+            getLogger().error(String.format("Failed to prune dir %1$s", aarCache));
+          }
+        }
+      }
+    }
+
+    private static long getLastModified(@NotNull File aarCache) {
+      long lastModified = aarCache.lastModified();
+      File[] files = aarCache.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          lastModified = Math.max(lastModified, file.lastModified());
+        }
+      }
+      return lastModified;
+    }
   }
 
   /**
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res;
+
+import com.android.ide.common.res2.ResourceItem;
+import com.android.ide.common.res2.ResourceTable;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.ListMultimap;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Helpers which keep the item maps of the leaf repositories ({@link ResourceFolderRepository} and {@link FileResourceRepository})
+ * compact. Projects often have hundreds of thousands of items, most of them string translations, so the same resource name shows up
+ * in every locale folder of every module and library.
+ */
+final class ResourceStorageUtil {
+  /**
+   * Names of the items created by the IDE itself: {@link PsiResourceItem}s, file based items and the items of an {@link AarResourceIndex}.
+   * Items created by the resource merger are not covered, since their names are the attribute values of the DOM they hold on to.
+   */
+  private static final Interner<String> ourNames = Interners.newWeakInterner();
+
+  private ResourceStorageUtil() {
+  }
+
+  /**
+   * Returns the canonical instance of the given resource name, so that items with the same name in different folders and repositories
+   * share it.
+   */
+  @NotNull
+  static String internName(@NotNull String name) {
+    return ourNames.intern(name);
+  }
+
+  /**
+   * Trims the item lists of the given table to their sizes. Lists are created with room for a few items, but most names have a single
+   * item per folder, while names with one item per locale grow well past their size. Meant to be called once the initial load of a
+   * repository is done, since later additions grow the lists again.
+   */
+  static void trimToSize(@NotNull ResourceTable table) {
+    for (ListMultimap<String, ResourceItem> map : table.values()) {
+      if (map instanceof ArrayListMultimap) {
+        ((ArrayListMultimap<String, ResourceItem>)map).trimToSize();
+      }
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.hprof;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class ConcurrentMappedFileBufferTest {
+  // Small shards, so the test data spans several of them.
+  private static final int SHARD_SIZE = 4096;
+  private static final int LONG_COUNT = 4 * SHARD_SIZE / Long.BYTES;
+
+  private File myFile;
+
+  @Before
+  public void setUp() throws Exception {
+    myFile = File.createTempFile("ConcurrentMappedFileBufferTest", "hprof");
+    // A single byte first, so that the longs are not aligned with the shards.
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(myFile))) {
+      out.writeByte(42);
+      for (long i = 0; i < LONG_COUNT; i++) {
+        out.writeLong(i * 31);
+      }
+    }
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    myFile.delete();
+  }
+
+  @Test
+  public void testReadsAcrossShards() throws Exception {
+    ConcurrentMappedFileBuffer buffer = new ConcurrentMappedFileBuffer(myFile, SHARD_SIZE);
+    assertThat(buffer.remaining()).isEqualTo(1 + LONG_COUNT * Long.BYTES);
+    assertThat(buffer.readByte()).isEqualTo((byte)42);
+    for (long i = 0; i < LONG_COUNT; i++) {
+      assertThat(buffer.readLong()).isEqualTo(i * 31);
+    }
+    assertThat(buffer.hasRemaining()).isFalse();
+
+    // A bulk read that covers whole shards.
+    byte[] bytes = new byte[3 * SHARD_SIZE];
+    buffer.setPosition(0);
+    buffer.readSubSequence(bytes, 1, bytes.length);
+    assertThat(buffer.position()).isEqualTo(1 + bytes.length);
+    for (int i = 0; i < bytes.length / Long.BYTES; i++) {
+      long value = 0;
+      for (int j = 0; j < Long.BYTES; j++) {
+        value = (value << 8) | (bytes[i * Long.BYTES + j] & 0xFF);
+      }
+      assertThat(value).isEqualTo(i * 31L);
+    }
+  }
+
+  @Test
+  public void testDisposeReleasesTheMappings() throws Exception {
+    ConcurrentMappedFileBuffer buffer = new ConcurrentMappedFileBuffer(myFile, SHARD_SIZE);
+    assertThat(buffer.readByte()).isEqualTo((byte)42);
+    buffer.dispose();
+
+    // Reading a disposed buffer from the thread that disposed it fails with an error, rather than reading memory that is no longer mapped.
+    try {
+      buffer.readLong();
+      fail();
+    }
+    catch (IllegalStateException expected) {
+    }
+    try {
+      buffer.read(new byte[8]);
+      fail();
+    }
+    catch (IllegalStateException expected) {
+    }
+    // Nothing maps the file anymore, so it can be replaced.
+    assertThat(myFile.delete()).isTrue();
+  }
+
+  @Test
+  public void testThreadsHaveTheirOwnPosition() throws Exception {
+    ConcurrentMappedFileBuffer buffer = new ConcurrentMappedFileBuffer(myFile, SHARD_SIZE);
+    int threadCount = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    CyclicBarrier barrier = new CyclicBarrier(threadCount);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int t = 0; t < threadCount; t++) {
+        int thread = t;
+        results.add(executor.submit(() -> {
+          barrier.await();
+          for (int round = 0; round < 20; round++) {
+            // Each thread walks the longs from a different starting point.
+            for (int i = 0; i < LONG_COUNT; i++) {
+              long index = (i + thread * 97) % LONG_COUNT;
+              buffer.setPosition(1 + index * Long.BYTES);
+              if (buffer.readLong() != index * 31 || buffer.position() != 1 + (index + 1) * Long.BYTES) {
+                return false;
+              }
+            }
+          }
+          return true;
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertThat(result.get()).isTrue();
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.editors.hprof;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+public class HprofAnalysisCacheTest {
+  private static final List<String> TASKS = Arrays.asList("Leaked Activities", "Duplicated Strings");
+
+  private File myHprofFile;
+  private File myCacheDirectory;
+
+  @Before
+  public void setUp() throws Exception {
+    myHprofFile = File.createTempFile("HprofAnalysisCacheTest", ".hprof");
+    Files.write(myHprofFile.toPath(), new byte[]{1, 2, 3, 4});
+    myCacheDirectory = FileUtil.createTempDirectory("HprofAnalysisCacheTest", null);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtil.delete(myCacheDirectory);
+    myHprofFile.delete();
+  }
+
+  @Test
+  public void testResultsAreSaved() throws Exception {
+    String hash = HprofAnalysisCache.hashContents(myHprofFile);
+    HprofAnalysisCache cache = HprofAnalysisCache.load(myCacheDirectory, hash);
+    assertThat(cache.get(TASKS)).isNull();
+
+    cache.put(TASKS, Arrays.asList(new HprofAnalysisCache.Result("Duplicated Strings", "foo", new long[]{1, 2, 3}),
+                                   new HprofAnalysisCache.Result("Leaked Activities", null, new long[]{4})));
+    cache.save();
+
+    // The order of the tasks does not matter.
+    List<HprofAnalysisCache.Result> results =
+      HprofAnalysisCache.load(myCacheDirectory, hash).get(Arrays.asList(TASKS.get(1), TASKS.get(0)));
+    assertThat(results).hasSize(2);
+    assertThat(results.get(0).getCategory()).isEqualTo("Duplicated Strings");
+    assertThat(results.get(0).getDescription()).isEqualTo("foo");
+    assertThat(results.get(0).getInstanceIds()).isEqualTo(new long[]{1, 2, 3});
+    assertThat(results.get(1).getDescription()).isNull();
+    assertThat(results.get(1).getInstanceIds()).isEqualTo(new long[]{4});
+    assertThat(HprofAnalysisCache.load(myCacheDirectory, hash).get(TASKS.subList(0, 1))).isNull();
+  }
+
+  @Test
+  public void testCacheOfOtherContentsIsIgnored() throws Exception {
+    HprofAnalysisCache cache = HprofAnalysisCache.load(myCacheDirectory, HprofAnalysisCache.hashContents(myHprofFile));
+    cache.put(TASKS, Arrays.asList(new HprofAnalysisCache.Result("Leaked Activities", null, new long[]{4})));
+    cache.save();
+
+    Files.write(myHprofFile.toPath(), new byte[]{5, 6, 7, 8});
+    assertThat(HprofAnalysisCache.load(myCacheDirectory, HprofAnalysisCache.hashContents(myHprofFile)).get(TASKS)).isNull();
+  }
+
+  @Test
+  public void testCacheIsNotWrittenNextToTheCapture() throws Exception {
+    String hash = HprofAnalysisCache.hashContents(myHprofFile);
+    HprofAnalysisCache cache = HprofAnalysisCache.load(myCacheDirectory, hash);
+    cache.put(TASKS, Arrays.asList(new HprofAnalysisCache.Result("Leaked Activities", null, new long[]{4})));
+    cache.save();
+
+    assertThat(Arrays.asList(myHprofFile.getParentFile().list((dir, name) -> name.startsWith(myHprofFile.getName() + ".")))).isEmpty();
+    // The cache is keyed by contents, so it is found again if the capture is moved.
+    File moved = new File(myCacheDirectory, "moved.hprof");
+    FileUtil.copy(myHprofFile, moved);
+    assertThat(HprofAnalysisCache.load(myCacheDirectory, HprofAnalysisCache.hashContents(moved)).get(TASKS)).hasSize(1);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedCachesArePruned() throws Exception {
+    for (int i = 0; i < HprofAnalysisCache.MAX_CACHED_CAPTURES; i++) {
+      HprofAnalysisCache cache = HprofAnalysisCache.load(myCacheDirectory, "hash" + i);
+      cache.put(TASKS, Arrays.asList(new HprofAnalysisCache.Result("Leaked Activities", null, new long[]{i})));
+      cache.save();
+      assertThat(new File(myCacheDirectory, "hash" + i + ".analysis").setLastModified(1000L * (i + 1))).isTrue();
+    }
+    // Opening the oldest capture again makes it recently used.
+    assertThat(HprofAnalysisCache.load(myCacheDirectory, "hash0").get(TASKS)).hasSize(1);
+
+    HprofAnalysisCache cache = HprofAnalysisCache.load(myCacheDirectory, "new");
+    cache.put(TASKS, Arrays.asList(new HprofAnalysisCache.Result("Leaked Activities", null, new long[]{4})));
+    cache.save();
+
+    assertThat(myCacheDirectory.list((dir, name) -> name.endsWith(".analysis"))).hasLength(HprofAnalysisCache.MAX_CACHED_CAPTURES);
+    assertThat(HprofAnalysisCache.load(myCacheDirectory, "hash1").get(TASKS)).isNull();
+    assertThat(HprofAnalysisCache.load(myCacheDirectory, "hash0").get(TASKS)).hasSize(1);
+    assertThat(HprofAnalysisCache.load(myCacheDirectory, "new").get(TASKS)).hasSize(1);
+  }
+
+  @Test
+  public void testHashingStopsWhenInterrupted() throws Exception {
+    Thread.currentThread().interrupt();
+    try {
+      HprofAnalysisCache.hashContents(myHprofFile);
+      fail();
+    }
+    catch (InterruptedIOException expected) {
+    }
+    finally {
+      Thread.interrupted();
+    }
+  }
+}
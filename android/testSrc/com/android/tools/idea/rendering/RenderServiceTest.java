@@ -16,9 +16,14 @@
 package com.android.tools.idea.rendering;
 
 import com.android.ide.common.rendering.api.ViewInfo;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import junit.framework.TestCase;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -79,4 +84,85 @@ public class RenderServiceTest extends TestCase {
     future.get();
     assertTrue(called.get());
   }
+
+  /**
+   * Queues an action that keeps the render thread busy until the returned latch is released
+   */
+  private static CountDownLatch blockRenderThread() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    RenderService.runAsyncRenderAction(() -> {
+      started.countDown();
+      release.await();
+      return null;
+    });
+    started.await();
+    return release;
+  }
+
+  public void testRenderActionPriorities() throws Exception {
+    CountDownLatch release = blockRenderThread();
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    List<ListenableFuture<Boolean>> futures = Arrays.asList(
+      RenderService.runAsyncRenderAction(() -> order.add("low"), RenderService.Priority.LOW),
+      RenderService.runAsyncRenderAction(() -> order.add("normal1"), RenderService.Priority.NORMAL),
+      RenderService.runAsyncRenderAction(() -> order.add("high"), RenderService.Priority.HIGH),
+      RenderService.runAsyncRenderAction(() -> order.add("normal2"), RenderService.Priority.NORMAL));
+    assertEquals(4, RenderService.getRenderExecutor().getQueueDepth());
+
+    release.countDown();
+    Futures.allAsList(futures).get();
+    assertEquals(Arrays.asList("high", "normal1", "normal2", "low"), order);
+  }
+
+  public void testCancelledRenderActionsAreRemoved() throws Exception {
+    RenderExecutor executor = RenderService.getRenderExecutor();
+    CountDownLatch release = blockRenderThread();
+    long cancelledCount = executor.getCancelledCount();
+    long completedCount = executor.getCompletedCount();
+
+    AtomicBoolean called = new AtomicBoolean(false);
+    ListenableFuture<Void> stale = RenderService.runAsyncRenderAction(() -> {
+      called.set(true);
+      return null;
+    });
+    assertEquals(1, executor.getQueueDepth());
+    stale.cancel(false);
+    assertEquals(0, executor.getQueueDepth());
+    assertEquals(cancelledCount + 1, executor.getCancelledCount());
+
+    release.countDown();
+    RenderService.runRenderAction(() -> null);
+    assertFalse(called.get());
+    // The blocking action has finished and been recorded
+    assertTrue(executor.getCompletedCount() > completedCount);
+  }
+
+  public void testLowPriorityActionsAge() throws Exception {
+    RenderExecutor executor = new RenderExecutor("Aging Test Render Thread", 1000, 10);
+    try {
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      executor.submit(() -> {
+        started.countDown();
+        release.await();
+        return null;
+      }, RenderService.Priority.NORMAL);
+      started.await();
+
+      List<String> order = Collections.synchronizedList(new ArrayList<>());
+      ListenableFuture<Boolean> low = executor.submit(() -> order.add("low"), RenderService.Priority.LOW);
+      // Longer than the two aging steps that separate LOW from HIGH
+      Thread.sleep(50);
+      ListenableFuture<Boolean> normal = executor.submit(() -> order.add("normal"), RenderService.Priority.NORMAL);
+      ListenableFuture<Boolean> high = executor.submit(() -> order.add("high"), RenderService.Priority.HIGH);
+
+      release.countDown();
+      Futures.allAsList(low, normal, high).get();
+      assertEquals(Arrays.asList("low", "high", "normal"), order);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
 }
\ No newline at end of file
@@ -29,7 +29,10 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import static com.android.tools.idea.gradle.project.model.AndroidModuleModel.EXPLODED_AAR;
 import static com.google.common.truth.Truth.assertThat;
@@ -89,6 +92,128 @@ public class FileResourceRepositoryTest extends TestCase {
     }
   }
 
+  public void testResourceIndex() throws IOException {
+    File resDir = Files.createTempDir();
+    File cacheDir = Files.createTempDir();
+    try {
+      FileUtil.copyDir(getTestRepository().getResourceDirectory(), resDir);
+      FileResourceRepository.create(resDir, null, LIBRARY_NAME, cacheDir);
+      assertTrue(FileUtil.filesEqual(resDir, FileResourceRepository.getCachedResourceDirectory(cacheDir)));
+
+      FileResourceRepository parsed = FileResourceRepository.create(resDir, null, LIBRARY_NAME, null);
+      FileResourceRepository loaded = FileResourceRepository.create(resDir, null, LIBRARY_NAME, cacheDir);
+      for (ResourceType type : parsed.getItems().columnKeySet()) {
+        assertThat(loaded.getItemsOfType(type)).containsExactlyElementsIn(parsed.getItemsOfType(type));
+      }
+      List<ResourceItem> items = loaded.getResourceItem(ResourceType.STRING, "hello");
+      assertNotNull(items);
+      assertThat(items).hasSize(3);
+      assertThat(items.get(0).getLibraryName()).isEqualTo(LIBRARY_NAME);
+      assertThat(getValues(items)).containsExactlyElementsIn(getValues(parsed.getResourceItem(ResourceType.STRING, "hello")));
+    }
+    finally {
+      FileUtil.delete(resDir);
+      FileUtil.delete(cacheDir);
+    }
+  }
+
+  public void testResourceIndexIsLoadedInsteadOfParsing() throws IOException {
+    File resDir = Files.createTempDir();
+    File cacheDir = Files.createTempDir();
+    try {
+      writeLocalizedStrings(resDir, 20, 500);
+      int parseCount = FileResourceRepository.getParseCount();
+      FileResourceRepository.create(resDir, null, LIBRARY_NAME, cacheDir);
+      assertThat(FileResourceRepository.getParseCount()).isEqualTo(parseCount + 1);
+
+      // Later loads only read the index.
+      FileResourceRepository loaded = FileResourceRepository.create(resDir, null, LIBRARY_NAME, cacheDir);
+      assertThat(FileResourceRepository.getParseCount()).isEqualTo(parseCount + 1);
+      assertThat(loaded.getItemsOfType(ResourceType.STRING)).hasSize(500);
+
+      // A changed folder no longer matches its index, so it is parsed again.
+      writeLocalizedStrings(resDir, 1, 10);
+      FileResourceRepository.create(resDir, null, LIBRARY_NAME, cacheDir);
+      assertThat(FileResourceRepository.getParseCount()).isEqualTo(parseCount + 2);
+    }
+    finally {
+      FileUtil.delete(resDir);
+      FileUtil.delete(cacheDir);
+    }
+  }
+
+  public void testIndexedItemsShareNames() throws IOException {
+    File resDir = Files.createTempDir();
+    File cacheDir = Files.createTempDir();
+    try {
+      writeLocalizedStrings(resDir, 20, 500);
+      Set<String> parsedNames = getNameInstances(FileResourceRepository.create(resDir, null, LIBRARY_NAME, null));
+      // Both the first parse, which writes the index, and later loads use the items of the index.
+      Set<String> indexedNames = getNameInstances(FileResourceRepository.create(resDir, null, LIBRARY_NAME, cacheDir));
+      Set<String> loadedNames = getNameInstances(FileResourceRepository.create(resDir, null, LIBRARY_NAME, cacheDir));
+
+      // Each item parsed by the merger has its own copy of its name, while the items of the index share them.
+      assertThat(parsedNames).hasSize(20 * 500);
+      assertThat(indexedNames).hasSize(500);
+      assertThat(loadedNames).containsExactlyElementsIn(indexedNames);
+    }
+    finally {
+      FileUtil.delete(resDir);
+      FileUtil.delete(cacheDir);
+    }
+  }
+
+  public void testFingerprintTracksContents() throws IOException {
+    File resDir = Files.createTempDir();
+    try {
+      File values = new File(resDir, "values" + separatorChar + "strings.xml");
+      FileUtil.writeToFile(values, "<resources><string name=\"hello\">hello</string></resources>");
+      String fingerprint = FileResourceRepository.computeFingerprint(resDir, null);
+      assertThat(FileResourceRepository.computeFingerprint(resDir, null)).isEqualTo(fingerprint);
+
+      FileUtil.writeToFile(values, "<resources><string name=\"hello\">hello world</string></resources>");
+      assertThat(FileResourceRepository.computeFingerprint(resDir, null)).isNotEqualTo(fingerprint);
+    }
+    finally {
+      FileUtil.delete(resDir);
+    }
+  }
+
+  /** Writes {@code stringCount} strings, with the same names, in each of {@code folderCount} values folders. */
+  private static void writeLocalizedStrings(@NotNull File resDir, int folderCount, int stringCount) throws IOException {
+    for (int i = 0; i < folderCount; i++) {
+      StringBuilder xml = new StringBuilder("<resources>\n");
+      for (int j = 0; j < stringCount; j++) {
+        xml.append("  <string name=\"string_").append(j).append("\">Value ").append(i).append('_').append(j).append("</string>\n");
+      }
+      xml.append("</resources>\n");
+      FileUtil.writeToFile(new File(resDir, "values-v" + (i + 1) + separatorChar + "strings.xml"), xml.toString());
+    }
+  }
+
+  /** Returns the distinct name instances of the string items of the given repository. */
+  @NotNull
+  private static Set<String> getNameInstances(@NotNull FileResourceRepository repository) {
+    Set<String> names = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (ListMultimap<String, ResourceItem> multimap : repository.getItems().values()) {
+      for (ResourceItem item : multimap.values()) {
+        if (item.getType() == ResourceType.STRING) {
+          names.add(item.getName());
+        }
+      }
+    }
+    return names;
+  }
+
+  @NotNull
+  private static List<String> getValues(@NotNull List<ResourceItem> items) {
+    return ContainerUtil.map(items, item -> {
+      ResourceValue value = item.getResourceValue(false);
+      assertNotNull(value);
+      return value.getValue();
+    });
+  }
+
   @NotNull
   static FileResourceRepository getTestRepository() throws IOException {
     String aarPath = AndroidTestBase.getTestDataPath() + separatorChar +
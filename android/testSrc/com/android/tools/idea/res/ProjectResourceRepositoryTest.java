@@ -16,7 +16,9 @@
 package com.android.tools.idea.res;
 
 import com.android.ide.common.rendering.api.ResourceValue;
+import com.android.ide.common.res2.ResourceFile;
 import com.android.ide.common.res2.ResourceItem;
+import com.android.ide.common.resources.configuration.FolderConfiguration;
 import com.android.resources.ResourceType;
 import com.android.tools.idea.gradle.TestProjects;
 import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
@@ -25,6 +27,7 @@ import com.android.tools.idea.gradle.stubs.android.AndroidLibraryStub;
 import com.android.tools.idea.gradle.stubs.android.AndroidProjectStub;
 import com.android.tools.idea.gradle.stubs.android.VariantStub;
 import com.android.tools.idea.testing.Modules;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.WriteCommandAction;
@@ -235,6 +238,64 @@ public class ProjectResourceRepositoryTest extends AndroidTestCase {
     assertHasExactResourceTypes(resources, typesWithoutRes3);
   }
 
+  public void testIncrementalCacheUpdates() {
+    TestLocalResourceRepository lower = new TestLocalResourceRepository();
+    TestLocalResourceRepository upper = new TestLocalResourceRepository();
+    ResourceItem lowerA = addStringItem(lower, "a", "");
+    ResourceItem lowerAFr = addStringItem(lower, "a", "fr");
+    ResourceItem lowerB = addStringItem(lower, "b", "");
+    ResourceItem upperA = addStringItem(upper, "a", "");
+    // Later children override earlier ones.
+    ProjectResourceRepository resources = ProjectResourceRepository.createForTest(myFacet, Arrays.asList(lower, upper));
+    assertEquals(Arrays.asList(upperA, lowerAFr), resources.getResourceItem(ResourceType.STRING, "a"));
+    assertEquals(Collections.singletonList(lowerB), resources.getResourceItem(ResourceType.STRING, "b"));
+
+    long generation = resources.getModificationCount();
+    ListMultimap<String, ResourceItem> published = resources.getMap(null, ResourceType.STRING, false);
+    assertSame(published, resources.getFullTable().get(null, ResourceType.STRING));
+    ResourceItem upperC = addStringItem(upper, "c", "");
+    upper.invalidateParentCaches(null, ResourceType.STRING, Collections.singleton("c"));
+    lower.getMap(null, ResourceType.STRING, false).remove("b", lowerB);
+    lower.invalidateParentCaches(null, ResourceType.STRING, Collections.singleton("b"));
+    assertTrue(generation < resources.getModificationCount());
+    assertEquals(Collections.singletonList(upperC), resources.getResourceItem(ResourceType.STRING, "c"));
+    assertFalse(resources.hasResourceItem(ResourceType.STRING, "b"));
+    assertEquals(Arrays.asList(upperA, lowerAFr), resources.getResourceItem(ResourceType.STRING, "a"));
+
+    // Maps already handed out are not modified; the updated map replaces them, also in the full table.
+    assertEquals(new HashSet<>(Arrays.asList("a", "b")), published.keySet());
+    assertEquals(Collections.singletonList(lowerB), published.get("b"));
+    ListMultimap<String, ResourceItem> updated = resources.getMap(null, ResourceType.STRING, false);
+    assertNotSame(published, updated);
+    assertSame(updated, resources.getFullTable().get(null, ResourceType.STRING));
+
+    // Removing the overriding item exposes the overridden one again.
+    upper.getMap(null, ResourceType.STRING, false).remove("a", upperA);
+    upper.invalidateParentCaches(null, ResourceType.STRING, Collections.singleton("a"));
+    assertEquals(Arrays.asList(lowerA, lowerAFr), resources.getResourceItem(ResourceType.STRING, "a"));
+
+    // The patched view matches a full merge.
+    Map<String, List<ResourceItem>> patched = new HashMap<>();
+    for (String name : resources.getItemsOfType(ResourceType.STRING)) {
+      patched.put(name, new ArrayList<>(resources.getResourceItem(ResourceType.STRING, name)));
+    }
+    resources.invalidateCache(lower);
+    for (String name : resources.getItemsOfType(ResourceType.STRING)) {
+      assertEquals(patched.remove(name), resources.getResourceItem(ResourceType.STRING, name));
+    }
+    assertTrue(patched.isEmpty());
+  }
+
+  @NotNull
+  private static ResourceItem addStringItem(@NotNull TestLocalResourceRepository repository, @NotNull String name,
+                                            @NotNull String qualifiers) {
+    ResourceItem item = new ResourceItem(name, null, ResourceType.STRING, null, null);
+    String folderName = qualifiers.isEmpty() ? "values" : "values-" + qualifiers;
+    new ResourceFile(new File(folderName, "strings.xml"), item, qualifiers, FolderConfiguration.getConfigForQualifierString(qualifiers));
+    repository.getMap(null, ResourceType.STRING, true).put(name, item);
+    return item;
+  }
+
   private void addArchiveLibraries() {
     // Add in some Android projects too
     myFacet.getProperties().ALLOW_USER_CONFIGURATION = false; // make it a Gradle project
@@ -36,6 +36,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests the ResourceFolderRepositoryFileCache.
@@ -103,6 +104,42 @@ public class ResourceFolderRepositoryFileCacheTest extends AndroidTestCase {
     assertTrue(cache.isValid());
   }
 
+  public void testAarDirIsSharedAndInvalidated() throws Exception {
+    ResourceFolderRepositoryFileCache cache = ResourceFolderRepositoryFileCacheService.get();
+    File aarResDir = new File(myFixture.getTempDirPath(), "my_aar_lib" + File.separatorChar + "res");
+
+    File aarCacheDir = cache.getAarDir(aarResDir);
+    assertNotNull(aarCacheDir);
+    Path projectDir = cache.getProjectDir(getProject());
+    assertNotNull(projectDir);
+    assertFalse(FileUtil.isAncestor(projectDir.toFile(), aarCacheDir, false));
+    assertTrue(FileUtil.isAncestor(cache.getRootDir(), aarCacheDir, true));
+
+    cache.invalidate();
+    assertNull(cache.getAarDir(aarResDir));
+    cache.delete();
+    assertEquals(aarCacheDir, cache.getAarDir(aarResDir));
+  }
+
+  public void testPruneKeepsAarCachesBeingWritten() throws Exception {
+    ResourceFolderRepositoryFileCache cache = ResourceFolderRepositoryFileCacheService.get();
+    File staleCacheDir = cache.getAarDir(new File(myFixture.getTempDirPath(), "stale_aar_lib" + File.separatorChar + "res"));
+    File newCacheDir = cache.getAarDir(new File(myFixture.getTempDirPath(), "new_aar_lib" + File.separatorChar + "res"));
+    assertNotNull(staleCacheDir);
+    assertNotNull(newCacheDir);
+    // Neither directory has a complete index; only the one that was not written to recently may be pruned.
+    File staleFile = new File(staleCacheDir, "partial.tmp");
+    FileUtil.writeToFile(staleFile, "stale");
+    long twoDaysAgo = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2);
+    assertTrue(staleFile.setLastModified(twoDaysAgo));
+    assertTrue(staleCacheDir.setLastModified(twoDaysAgo));
+    FileUtil.writeToFile(new File(newCacheDir, "partial.tmp"), "new");
+
+    new ManageLruProjectFilesTask(getProject()).maintainLRUCache(3);
+    assertFalse(staleCacheDir.exists());
+    assertTrue(newCacheDir.exists());
+  }
+
   public void testLRUListManagement() throws Exception {
     ResourceFolderRepositoryFileCache cache = ResourceFolderRepositoryFileCacheService.get();
     File rootDir = cache.getRootDir();
@@ -20,6 +20,7 @@ import com.android.ide.common.rendering.api.*;
 import com.android.ide.common.res2.DataBindingResourceType;
 import com.android.ide.common.res2.ResourceFile;
 import com.android.ide.common.res2.ResourceItem;
+import com.android.ide.common.res2.ResourceSet;
 import com.android.ide.common.resources.configuration.FolderConfiguration;
 import com.android.resources.Density;
 import com.android.resources.ResourceFolderType;
@@ -3891,6 +3892,104 @@ public class ResourceFolderRepositoryTest extends AndroidTestCase {
     assertTrue(fromBlob.equalFilesItems(resources));
   }
 
+  /**
+   * Copies the fixtures into a resource directory shaped like a large app: a strings file for each of many locales, and the given
+   * number of layouts with a landscape variant each.
+   */
+  private void createScaledUpResources(int layoutCount) {
+    String[] locales = {"ar", "bg", "ca", "cs", "da", "de", "el", "es", "et", "fa", "fi", "fr", "hi", "hr", "hu", "in", "it", "iw", "ja",
+      "ko", "lt", "lv", "nb", "nl", "pl", "pt", "ro", "ru", "sk", "sl", "sr", "sv", "th", "tl", "tr", "uk", "vi", "zh"};
+    myFixture.copyFileToProject(VALUES1, "res/values/myvalues.xml");
+    myFixture.copyFileToProject(STRINGS, "res/values/strings.xml");
+    for (String locale : locales) {
+      myFixture.copyFileToProject(STRINGS, "res/values-" + locale + "/strings.xml");
+    }
+    for (int i = 0; i < layoutCount; i++) {
+      myFixture.copyFileToProject(LAYOUT1, "res/layout/layout" + i + ".xml");
+      myFixture.copyFileToProject(LAYOUT2, "res/layout-land/layout" + i + ".xml");
+    }
+    myFixture.copyFileToProject(DRAWABLE, "res/drawable/logo.png");
+  }
+
+  public void testParallelInitialScan() throws Exception {
+    createScaledUpResources(20);
+    int oldMinFiles = ResourceFolderRepository.ourParallelScanMinFiles;
+    try {
+      ResourceFolderRepository.ourParallelScanMinFiles = Integer.MAX_VALUE;
+      ResourceFolderRepository sequential = createRepository();
+      assertNotNull(sequential);
+      ResourceFolderRegistry.reset();
+
+      ResourceFolderRepository.ourParallelScanMinFiles = 0;
+      ResourceFolderRepository parallel = createRepository();
+      assertNotNull(parallel);
+      assertNotSame(sequential, parallel);
+      assertEquals(sequential.getInitialScanState().numXml, parallel.getInitialScanState().numXml);
+      assertTrue(parallel.equalFilesItems(sequential));
+      assertTrue(parallel.hasResourceItem(ResourceType.LAYOUT, "layout19"));
+      assertTrue(parallel.hasResourceItem(ResourceType.ID, "noteArea"));
+      assertTrue(parallel.hasResourceItem(ResourceType.STRING, "hello_world"));
+
+      // Check that the state of a parallel scan is all saved and loaded again.
+      parallel.saveStateToFile();
+      ResourceFolderRegistry.reset();
+      ResourceFolderRepository fromBlob = createRepository();
+      assertNotNull(fromBlob);
+      assertTrue(fromBlob.hasFreshFileCache());
+      assertEquals(0, fromBlob.getInitialScanState().numXmlReparsed);
+      assertTrue(fromBlob.equalFilesItems(sequential));
+    }
+    finally {
+      ResourceFolderRepository.ourParallelScanMinFiles = oldMinFiles;
+    }
+  }
+
+  public void testParallelInitialScanSavesOneResourceSet() throws Exception {
+    createScaledUpResources(20);
+    int oldMinFiles = ResourceFolderRepository.ourParallelScanMinFiles;
+    try {
+      ResourceFolderRepository.ourParallelScanMinFiles = Integer.MAX_VALUE;
+      ResourceFolderRepository sequential = createRepository();
+      assertNotNull(sequential);
+      ResourceFolderRegistry.reset();
+
+      ResourceFolderRepository.ourParallelScanMinFiles = 0;
+      ResourceFolderRepository parallel = createRepository();
+      assertNotNull(parallel);
+      // The files parsed by the workers are moved into the one set of the merger, which then holds the same items as after a
+      // sequential scan.
+      List<ResourceSet> resourceSets = parallel.getInitialScanState().myResourceMerger.getDataSets();
+      assertEquals(1, resourceSets.size());
+      assertEquals(sequential.getInitialScanState().myResourceSet.getDataMap().size(), resourceSets.get(0).getDataMap().size());
+      parallel.saveStateToFile();
+      ResourceFolderRegistry.reset();
+
+      // A file changed since the save is parsed again into that set, and saving again keeps only its new items.
+      File strings = new File(VfsUtilCore.virtualToIoFile(parallel.getResourceDir()), "values/strings.xml");
+      FileUtil.writeToFile(strings, FileUtilRt.loadFile(strings).replace("hello_world", "hello_there"));
+      if (!strings.setLastModified(strings.lastModified() + 2000)) {
+        // Not supported on this platform?
+        return;
+      }
+      ResourceFolderRepository reparsed = createRepository();
+      assertNotNull(reparsed);
+      assertEquals(1, reparsed.getInitialScanState().myResourceMerger.getDataSets().size());
+      reparsed.saveStateToFile();
+      ResourceFolderRegistry.reset();
+
+      ResourceFolderRepository fromBlob = createRepository();
+      assertNotNull(fromBlob);
+      assertEquals(0, fromBlob.getInitialScanState().numXmlReparsed);
+      List<ResourceItem> items = fromBlob.getResourceItem(ResourceType.STRING, "hello_there");
+      assertNotNull(items);
+      assertEquals(1, items.size());
+      assertTrue(fromBlob.equalFilesItems(reparsed));
+    }
+    finally {
+      ResourceFolderRepository.ourParallelScanMinFiles = oldMinFiles;
+    }
+  }
+
   public void testInvalidateCache() throws Exception {
     myFixture.copyFileToProject(LAYOUT1, "res/layout/layout.xml");
     myFixture.copyFileToProject(LAYOUT1, "res/layout-xlarge-land/layout.xml");
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res;
+
+import com.android.ide.common.res2.ResourceItem;
+import com.android.ide.common.res2.ResourceTable;
+import com.android.resources.ResourceType;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import junit.framework.TestCase;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ResourceStorageUtilTest extends TestCase {
+  @SuppressWarnings("RedundantStringConstructorCall")
+  public void testInternName() {
+    String name = ResourceStorageUtil.internName(new String("app_name"));
+    assertSame(name, ResourceStorageUtil.internName(new String("app_name")));
+    assertEquals("app_name", name);
+  }
+
+  public void testTrimToSizeKeepsItems() {
+    ResourceItem hello = new ResourceItem("hello", null, ResourceType.STRING, null, null);
+    ResourceItem helloFr = new ResourceItem("hello", null, ResourceType.STRING, null, null);
+    ResourceItem icon = new ResourceItem("icon", null, ResourceType.DRAWABLE, null, null);
+    ResourceTable table = new ResourceTable();
+    ListMultimap<String, ResourceItem> strings = ArrayListMultimap.create();
+    strings.put("hello", hello);
+    strings.put("hello", helloFr);
+    table.put(null, ResourceType.STRING, strings);
+    // Maps of other kinds are left alone.
+    ListMultimap<String, ResourceItem> drawables = LinkedListMultimap.create();
+    drawables.put("icon", icon);
+    table.put(null, ResourceType.DRAWABLE, drawables);
+
+    ResourceStorageUtil.trimToSize(table);
+    assertThat(table.get(null, ResourceType.STRING).get("hello")).containsExactly(hello, helloFr).inOrder();
+    assertThat(table.get(null, ResourceType.DRAWABLE).get("icon")).containsExactly(icon);
+
+    // The lists still grow after trimming.
+    ResourceItem helloDe = new ResourceItem("hello", null, ResourceType.STRING, null, null);
+    strings.put("hello", helloDe);
+    assertThat(strings.get("hello")).containsExactly(hello, helloFr, helloDe).inOrder();
+  }
+}
@@ -91,6 +91,9 @@ public class IconPreviewFactory implements Disposable {
       RenderService renderService = RenderService.getInstance(facet);
       RenderLogger logger = renderService.createLogger();
       myRenderTask = renderService.createTask(null, configuration, logger, null);
+      if (myRenderTask != null) {
+        myRenderTask.setPriority(RenderService.Priority.LOW);
+      }
     }
 
     return myRenderTask;
@@ -87,7 +87,9 @@ public class LayoutlibSceneManager extends SceneManager {
   private MergingUpdateQueue myRenderingQueue;
   private static final int RENDER_DELAY_MS = 10;
   private RenderTask myRenderTask;
-  private static final Object RENDERING_LOCK = new Object();
+  // Serializes the inflate, layout and render calls of this scene manager on myRenderTask. The layoutlib calls of all the scene managers
+  // already run one at a time on the render thread of RenderService, so scene managers do not need to wait for each other.
+  private final Object myRenderingLock = new Object();
   private ResourceNotificationManager.ResourceVersion myRenderedVersion;
   private final ReentrantReadWriteLock myRenderResultLock = new ReentrantReadWriteLock();
   @GuardedBy("myRenderResultLock")
@@ -193,7 +195,7 @@ public class LayoutlibSceneManager extends SceneManager {
     super.dispose();
     // dispose is called by the project close using the read lock. Invoke the render task dispose later without the lock.
     ApplicationManager.getApplication().invokeLater(() -> {
-      synchronized (RENDERING_LOCK) {
+      synchronized (myRenderingLock) {
         if (myRenderTask != null) {
           myRenderTask.dispose();
           myRenderTask = null;
@@ -493,7 +495,7 @@ public class LayoutlibSceneManager extends SceneManager {
   @Override
   public void layout(boolean animate) {
     if (myRenderTask != null) {
-      synchronized (RENDERING_LOCK) {
+      synchronized (myRenderingLock) {
         RenderResult result = null;
         try {
           result = myRenderTask.layout().get();
@@ -583,7 +585,7 @@ public class LayoutlibSceneManager extends SceneManager {
     LayoutPullParsers.saveFileIfNecessary(getModel().getFile());
 
     RenderResult result = null;
-    synchronized (RENDERING_LOCK) {
+    synchronized (myRenderingLock) {
       if (myRenderTask != null && !force) {
         // No need to inflate
         return false;
@@ -601,6 +603,8 @@ public class LayoutlibSceneManager extends SceneManager {
       myRenderTask = renderService.createTask(getModel().getFile(), configuration, logger, getDesignSurface());
       setupRenderTask(myRenderTask);
       if (myRenderTask != null) {
+        // This is the editor the user is looking at so it goes ahead of any background rendering
+        myRenderTask.setPriority(RenderService.Priority.HIGH);
         myRenderTask.getLayoutlibCallback().setAdaptiveIconMaskPath(((NlDesignSurface)getDesignSurface()).getAdaptiveIconShape().getPathDescription());
         if (!isRenderViewPort()) {
           myRenderTask.useDesignMode(getModel().getFile());
@@ -697,7 +701,7 @@ public class LayoutlibSceneManager extends SceneManager {
     long renderStartTimeMs = System.currentTimeMillis();
     boolean inflated = inflate(false);
 
-    synchronized (RENDERING_LOCK) {
+    synchronized (myRenderingLock) {
       if (myRenderTask != null) {
         if (myElapsedFrameTimeMs != -1) {
           myRenderTask.setElapsedFrameTimeNanos(TimeUnit.MILLISECONDS.toNanos(myElapsedFrameTimeMs));
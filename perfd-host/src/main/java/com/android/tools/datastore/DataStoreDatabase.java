@@ -15,31 +15,50 @@
  */
 package com.android.tools.datastore;
 
+import com.android.tools.datastore.database.DataStoreTable;
 import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
 public class DataStoreDatabase {
   public enum Characteristic {
     // TODO handle potential db file name clashes
     DURABLE,
-    PERFORMANT
+    PERFORMANT,
+    /**
+     * Same as {@link #DURABLE}, except that time series samples (CPU usage, memory stats, network speed...) are kept in in-memory
+     * columns instead of SQL tables. See {@link com.android.tools.datastore.database.ColumnarTimeSeriesStorage}.
+     */
+    COLUMNAR
   }
 
+  /**
+   * How often pending table writes are flushed and the open transaction is committed.
+   */
+  private static final long COMMIT_PERIOD_MS = TimeUnit.SECONDS.toMillis(1);
+
   private static Logger getLogger() {
     return Logger.getInstance(DataStoreDatabase.class);
   }
 
   private final Connection myConnection;
+  @NotNull private final Characteristic myCharacteristic;
+  // Null for in-memory databases, whose transaction nothing else reads, so there is nothing to commit periodically.
+  @Nullable private final Timer myCommitTimer;
 
   /**
    * @param dbPath the path to the backing DB file, if {@link Characteristic#DURABLE}.
    */
   public DataStoreDatabase(@NotNull String dbPath, @NotNull Characteristic characteristic) {
+    myCharacteristic = characteristic;
     Connection connection = null;
     try {
       // For older versions of the JDBC we need to force load the sqlite.JDBC driver to trigger static initializer's and register
@@ -51,6 +70,7 @@ public class DataStoreDatabase {
           connection = DriverManager.getConnection("jdbc:sqlite::memory:");
           break;
         case DURABLE:
+        case COLUMNAR:
           File dbFile = new File(dbPath);
           File parent = dbFile.getParentFile();
           if (parent != null) {
@@ -64,18 +84,47 @@ public class DataStoreDatabase {
           throw new RuntimeException("Characteristic not handled!");
       }
 
-      // Performance optimization.
-      // TODO: Create a timer and commit the database transaction every X seconds.
+      // Performance optimization: writes are batched by the tables and committed periodically by myCommitTimer.
       connection.setAutoCommit(false);
     }
     catch (ClassNotFoundException | SQLException e) {
       getLogger().error(e);
     }
     myConnection = connection;
+    if (characteristic == Characteristic.PERFORMANT) {
+      // The tables still batch their writes, and flush them before each query.
+      myCommitTimer = null;
+    }
+    else {
+      myCommitTimer = new Timer("DataStoreCommitTimer", true);
+      myCommitTimer.schedule(new CommitTimerTask(), COMMIT_PERIOD_MS, COMMIT_PERIOD_MS);
+    }
+  }
+
+  /**
+   * Flushes the write queues of all the tables using this database and commits the current transaction.
+   */
+  public synchronized void commit() {
+    try {
+      if (myConnection == null || myConnection.isClosed()) {
+        return;
+      }
+      // Skip the commit when the tables have not written anything since the last one.
+      if (DataStoreTable.flushTables(myConnection)) {
+        myConnection.commit();
+      }
+    }
+    catch (SQLException e) {
+      getLogger().error(e);
+    }
   }
 
-  public void disconnect() {
+  public synchronized void disconnect() {
+    if (myCommitTimer != null) {
+      myCommitTimer.cancel();
+    }
     try {
+      DataStoreTable.flushTables(myConnection);
       myConnection.commit();
     }
     catch (SQLException e) {
@@ -86,6 +135,7 @@ public class DataStoreDatabase {
         if (!myConnection.isClosed()) {
           myConnection.close();
         }
+        DataStoreTable.closeTables(myConnection);
       }
       catch (SQLException e) {
         getLogger().error(e);
@@ -96,4 +146,16 @@ public class DataStoreDatabase {
   public Connection getConnection() {
     return myConnection;
   }
+
+  @NotNull
+  public Characteristic getCharacteristic() {
+    return myCharacteristic;
+  }
+
+  private final class CommitTimerTask extends TimerTask {
+    @Override
+    public void run() {
+      commit();
+    }
+  }
 }
@@ -17,6 +17,9 @@ package com.android.tools.datastore;
 
 import com.android.annotations.VisibleForTesting;
 import com.android.tools.analytics.UsageTracker;
+import com.android.tools.datastore.archive.SessionArchiveReader;
+import com.android.tools.datastore.archive.SessionArchiveWriter;
+import com.android.tools.datastore.database.DataStoreTable;
 import com.android.tools.datastore.service.*;
 import com.android.tools.profiler.proto.*;
 import com.google.wireless.android.sdk.stats.AndroidProfilerDbStats;
@@ -28,6 +31,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -35,6 +39,7 @@ import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
+import static com.android.tools.datastore.DataStoreDatabase.Characteristic.COLUMNAR;
 import static com.android.tools.datastore.DataStoreDatabase.Characteristic.DURABLE;
 
 /**
@@ -52,8 +57,14 @@ public class DataStoreService {
   private static final long REPORT_INITIAL_DELAY = TimeUnit.MINUTES.toMillis(15);
   private static final long REPORT_PERIOD = TimeUnit.HOURS.toMillis(1);
 
+  /**
+   * System property which, when set to true, keeps the time series samples of the shared database in memory columns.
+   */
+  public static final String COLUMNAR_STORAGE_PROPERTY = "studio.profiler.datastore.columnar";
+
   public static class BackingNamespace {
-    public static final BackingNamespace DEFAULT_SHARED_NAMESPACE = new BackingNamespace("default.sql", DURABLE);
+    public static final BackingNamespace DEFAULT_SHARED_NAMESPACE =
+      new BackingNamespace("default.sql", Boolean.getBoolean(COLUMNAR_STORAGE_PROPERTY) ? COLUMNAR : DURABLE);
 
     @NotNull public final String myNamespace;
     @NotNull public final DataStoreDatabase.Characteristic myCharacteristic;
@@ -90,6 +101,8 @@ public class DataStoreService {
   private ProfilerService myProfilerService;
   private final ServerInterceptor myInterceptor;
   private final Map<Common.Session, DataStoreClient> myConnectedClients = new HashMap<>();
+  // The archives of the imported sessions, which are read in place while the session is loaded.
+  private final Map<Common.Session, SessionArchiveReader> myImportedSessions = new HashMap<>();
 
   private final Timer myReportTimer;
 
@@ -184,6 +197,7 @@ public class DataStoreService {
       DataStoreClient client = myConnectedClients.remove(session);
       client.shutdownNow();
       myProfilerService.stopMonitoring(client.getChannel());
+      DataStoreTable.endSession(getConnections(), session);
     }
   }
 
@@ -194,9 +208,80 @@ public class DataStoreService {
       client.shutdownNow();
     }
     myConnectedClients.clear();
+    for (Map.Entry<Common.Session, SessionArchiveReader> entry : myImportedSessions.entrySet()) {
+      DataStoreTable.closeSession(getConnections(), entry.getKey());
+      closeArchive(entry.getValue());
+    }
+    myImportedSessions.clear();
     myDatabases.forEach((name, db) -> db.disconnect());
   }
 
+  /**
+   * Writes everything stored for the session to a compact archive that can be loaded back with {@link #importSession(File)}.
+   * Time series that a {@link DataStoreDatabase.Characteristic#COLUMNAR} database keeps in memory are moved to SQL to be included.
+   */
+  public void exportSession(@NotNull Common.Session session, @NotNull File file) throws IOException {
+    if (!mySessionIdLookup.containsKey(session)) {
+      throw new IOException("Session not found: " + session);
+    }
+    try (SessionArchiveWriter writer = new SessionArchiveWriter(file, session)) {
+      DataStoreTable.exportSession(getConnections(), session, writer);
+    }
+    catch (SQLException ex) {
+      throw new IOException(ex);
+    }
+  }
+
+  /**
+   * Loads a session written by {@link #exportSession(Common.Session, File)}. The session is read-only: its time series are read from
+   * the archive in place, through the index of the archive, and only its few other rows are inserted into the database. The archive
+   * stays open until {@link #shutdown()}. The session shows up as a disconnected device with no client, so it is never polled.
+   *
+   * @return the imported session.
+   */
+  @NotNull
+  public Common.Session importSession(@NotNull File file) throws IOException {
+    SessionArchiveReader reader = new SessionArchiveReader(file);
+    Common.Session session = reader.getSession();
+    if (mySessionIdLookup.containsKey(session)) {
+      closeArchive(reader);
+      throw new IOException("Session is already loaded: " + session);
+    }
+    boolean imported = false;
+    try {
+      DataStoreTable.importSession(getConnections(), session, reader);
+      myDatabases.values().forEach(DataStoreDatabase::commit);
+      myImportedSessions.put(session, reader);
+      imported = true;
+      return session;
+    }
+    catch (SQLException ex) {
+      throw new IOException(ex);
+    }
+    finally {
+      if (!imported) {
+        DataStoreTable.closeSession(getConnections(), session);
+        closeArchive(reader);
+      }
+    }
+  }
+
+  private static void closeArchive(@NotNull SessionArchiveReader reader) {
+    try {
+      reader.close();
+    }
+    catch (IOException ex) {
+      LOG.warn(ex);
+    }
+  }
+
+  @NotNull
+  private List<Connection> getConnections() {
+    List<Connection> connections = new ArrayList<>();
+    myDatabases.values().forEach(db -> connections.add(db.getConnection()));
+    return connections;
+  }
+
   @VisibleForTesting
   List<ServicePassThrough> getRegisteredServices() {
     return myServices;
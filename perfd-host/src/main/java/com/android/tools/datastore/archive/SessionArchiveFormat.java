@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.archive;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Layout of a session archive:
+ * <pre>
+ *   header:  MAGIC, VERSION
+ *   chunks:  deflated column blocks, each holding up to {@link #CHUNK_ROWS} rows of one table
+ *   footer:  session, then for each table its name, column names and the offset, sizes and row count of each of its chunks, and
+ *            since version 2 the smallest and largest value of each integer column of the chunk
+ *   trailer: footer offset, MAGIC
+ * </pre>
+ * Within a chunk the values are stored column by column. Every column starts with its kind and a bitmap of the null rows, followed
+ * by the non-null values. Integer columns are delta encoded, as most of them are timestamps or ids that grow slowly from row to row.
+ * The value ranges in the footer let a reader skip the chunks that can't hold the rows it looks for, e.g. a time range of samples.
+ */
+final class SessionArchiveFormat {
+  static final int MAGIC = 0x50534146; // "PSAF"
+  static final int VERSION = 2;
+  /**
+   * Oldest version that can still be read. Version 1 archives have no value ranges, so all of their chunks are read.
+   */
+  static final int MIN_VERSION = 1;
+  static final int CHUNK_ROWS = 4096;
+  static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+  static final byte KIND_LONG = 0;
+  static final byte KIND_DOUBLE = 1;
+  static final byte KIND_TEXT = 2;
+  static final byte KIND_BLOB = 3;
+  static final byte KIND_MIXED = 4;
+
+  private SessionArchiveFormat() {
+  }
+
+  /**
+   * Writes the values of one column of a chunk.
+   */
+  static void writeColumn(@NotNull DataOutput out, @NotNull Object[] values, int count) throws IOException {
+    byte kind = -1;
+    byte[] nulls = new byte[(count + 7) / 8];
+    for (int i = 0; i < count; i++) {
+      if (values[i] == null) {
+        nulls[i / 8] |= 1 << (i % 8);
+        continue;
+      }
+      byte valueKind = kindOf(values[i]);
+      kind = kind == -1 || kind == valueKind ? valueKind : KIND_MIXED;
+    }
+    if (kind == -1) {
+      // All nulls, the kind does not matter.
+      kind = KIND_LONG;
+    }
+
+    out.writeByte(kind);
+    out.write(nulls);
+    long previous = 0;
+    for (int i = 0; i < count; i++) {
+      Object value = values[i];
+      if (value == null) {
+        continue;
+      }
+      if (kind == KIND_LONG) {
+        long current = ((Number)value).longValue();
+        writeVarLong(out, current - previous);
+        previous = current;
+      }
+      else {
+        if (kind == KIND_MIXED) {
+          out.writeByte(kindOf(value));
+        }
+        writeValue(out, value);
+      }
+    }
+  }
+
+  /**
+   * Reads a column written by {@link #writeColumn(DataOutput, Object[], int)} into {@code values}.
+   */
+  static void readColumn(@NotNull DataInput in, @NotNull Object[] values, int count) throws IOException {
+    byte kind = in.readByte();
+    byte[] nulls = new byte[(count + 7) / 8];
+    in.readFully(nulls);
+    long previous = 0;
+    for (int i = 0; i < count; i++) {
+      if ((nulls[i / 8] & (1 << (i % 8))) != 0) {
+        values[i] = null;
+      }
+      else if (kind == KIND_LONG) {
+        previous += readVarLong(in);
+        values[i] = previous;
+      }
+      else {
+        values[i] = readValue(in, kind == KIND_MIXED ? in.readByte() : kind);
+      }
+    }
+  }
+
+  /**
+   * Computes the smallest and largest value of a column, if all of its values are integers. Otherwise the range is left unbounded, as
+   * nothing can be skipped based on it. A column with no values at all gets an empty range.
+   */
+  static void computeRange(@NotNull Object[] values, int count, @NotNull long[] minValues, @NotNull long[] maxValues, int column) {
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (int i = 0; i < count; i++) {
+      Object value = values[i];
+      if (value == null) {
+        continue;
+      }
+      if (!(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)) {
+        min = Long.MIN_VALUE;
+        max = Long.MAX_VALUE;
+        break;
+      }
+      long current = ((Number)value).longValue();
+      min = Math.min(min, current);
+      max = Math.max(max, current);
+    }
+    minValues[column] = min;
+    maxValues[column] = max;
+  }
+
+  private static byte kindOf(@NotNull Object value) throws IOException {
+    if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      return KIND_LONG;
+    }
+    if (value instanceof Double || value instanceof Float) {
+      return KIND_DOUBLE;
+    }
+    if (value instanceof String) {
+      return KIND_TEXT;
+    }
+    if (value instanceof byte[]) {
+      return KIND_BLOB;
+    }
+    throw new IOException("Unsupported column value: " + value.getClass().getName());
+  }
+
+  private static void writeValue(@NotNull DataOutput out, @NotNull Object value) throws IOException {
+    switch (kindOf(value)) {
+      case KIND_LONG:
+        writeVarLong(out, ((Number)value).longValue());
+        break;
+      case KIND_DOUBLE:
+        out.writeDouble(((Number)value).doubleValue());
+        break;
+      case KIND_TEXT:
+        writeBytes(out, ((String)value).getBytes(StandardCharsets.UTF_8));
+        break;
+      default:
+        writeBytes(out, (byte[])value);
+        break;
+    }
+  }
+
+  @Nullable
+  private static Object readValue(@NotNull DataInput in, byte kind) throws IOException {
+    switch (kind) {
+      case KIND_LONG:
+        return readVarLong(in);
+      case KIND_DOUBLE:
+        return in.readDouble();
+      case KIND_TEXT:
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+      case KIND_BLOB:
+        return readBytes(in);
+      default:
+        throw new IOException("Corrupt session archive: unknown column kind " + kind);
+    }
+  }
+
+  private static void writeBytes(@NotNull DataOutput out, @NotNull byte[] bytes) throws IOException {
+    writeVarLong(out, bytes.length);
+    out.write(bytes);
+  }
+
+  @NotNull
+  private static byte[] readBytes(@NotNull DataInput in) throws IOException {
+    long length = readVarLong(in);
+    if (length < 0 || length > Integer.MAX_VALUE) {
+      throw new IOException("Corrupt session archive: invalid length " + length);
+    }
+    byte[] bytes = new byte[(int)length];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  /**
+   * Writes a zig-zag encoded variable length long, so that small negative deltas stay small too.
+   */
+  static void writeVarLong(@NotNull DataOutput out, long value) throws IOException {
+    long zigZag = (value << 1) ^ (value >> 63);
+    while ((zigZag & ~0x7FL) != 0) {
+      out.writeByte((int)((zigZag & 0x7F) | 0x80));
+      zigZag >>>= 7;
+    }
+    out.writeByte((int)zigZag);
+  }
+
+  static long readVarLong(@NotNull DataInput in) throws IOException {
+    long zigZag = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.readByte();
+      zigZag |= (long)(b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+      }
+    }
+    throw new IOException("Corrupt session archive: malformed varint");
+  }
+
+  /**
+   * Footer entry of a table: its columns and where each of its chunks is.
+   */
+  static final class TableIndex {
+    @NotNull final String myName;
+    @NotNull final List<String> myColumns;
+    @NotNull final List<ChunkIndex> myChunks = new ArrayList<>();
+
+    TableIndex(@NotNull String name, @NotNull List<String> columns) {
+      myName = name;
+      myColumns = columns;
+    }
+
+    int getRowCount() {
+      int rows = 0;
+      for (ChunkIndex chunk : myChunks) {
+        rows += chunk.myRows;
+      }
+      return rows;
+    }
+
+    void write(@NotNull DataOutput out) throws IOException {
+      out.writeUTF(myName);
+      out.writeInt(myColumns.size());
+      for (String column : myColumns) {
+        out.writeUTF(column);
+      }
+      out.writeInt(myChunks.size());
+      for (ChunkIndex chunk : myChunks) {
+        out.writeLong(chunk.myOffset);
+        out.writeInt(chunk.myCompressedSize);
+        out.writeInt(chunk.mySize);
+        out.writeInt(chunk.myRows);
+        for (int i = 0; i < myColumns.size(); i++) {
+          writeVarLong(out, chunk.myMinValues[i]);
+          writeVarLong(out, chunk.myMaxValues[i]);
+        }
+      }
+    }
+
+    @NotNull
+    static TableIndex read(@NotNull DataInput in, int version) throws IOException {
+      String name = in.readUTF();
+      int columnCount = in.readInt();
+      List<String> columns = new ArrayList<>(columnCount);
+      for (int i = 0; i < columnCount; i++) {
+        columns.add(in.readUTF());
+      }
+      TableIndex table = new TableIndex(name, columns);
+      int chunkCount = in.readInt();
+      for (int i = 0; i < chunkCount; i++) {
+        ChunkIndex chunk = new ChunkIndex(in.readLong(), in.readInt(), in.readInt(), in.readInt(), columnCount);
+        for (int column = 0; column < columnCount; column++) {
+          if (version >= 2) {
+            chunk.myMinValues[column] = readVarLong(in);
+            chunk.myMaxValues[column] = readVarLong(in);
+          }
+          else {
+            chunk.myMinValues[column] = Long.MIN_VALUE;
+            chunk.myMaxValues[column] = Long.MAX_VALUE;
+          }
+        }
+        table.myChunks.add(chunk);
+      }
+      return table;
+    }
+  }
+
+  static final class ChunkIndex {
+    final long myOffset;
+    final int myCompressedSize;
+    final int mySize;
+    final int myRows;
+    // The smallest and largest value of each column, see computeRange.
+    @NotNull final long[] myMinValues;
+    @NotNull final long[] myMaxValues;
+
+    ChunkIndex(long offset, int compressedSize, int size, int rows, int columnCount) {
+      myOffset = offset;
+      myCompressedSize = compressedSize;
+      mySize = size;
+      myRows = rows;
+      myMinValues = new long[columnCount];
+      myMaxValues = new long[columnCount];
+    }
+
+    /**
+     * @return false if none of the rows of the chunk has a value within [min, max] in the column.
+     */
+    boolean mayContain(int column, long min, long max) {
+      return myMinValues[column] <= max && myMaxValues[column] >= min;
+    }
+  }
+}
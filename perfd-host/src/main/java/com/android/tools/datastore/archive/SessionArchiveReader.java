@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.archive;
+
+import com.android.tools.datastore.archive.SessionArchiveFormat.ChunkIndex;
+import com.android.tools.datastore.archive.SessionArchiveFormat.TableIndex;
+import com.android.tools.profiler.proto.Common;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads an archive written by {@link SessionArchiveWriter}. Opening an archive only reads its index; the rows of a table are
+ * decompressed one chunk at a time while they are handed to a {@link RowConsumer}, so a table never needs to fit in memory.
+ * {@link #readRows(String, String, long, long, RowConsumer)} uses the value ranges of the index to only decompress the chunks that can
+ * hold the rows asked for, so an archive can be queried in place. Reads can happen from several threads at once.
+ */
+public class SessionArchiveReader implements Closeable {
+  @NotNull private final RandomAccessFile myFile;
+  @NotNull private final Common.Session mySession;
+  @NotNull private final Map<String, TableIndex> myTables = new LinkedHashMap<>();
+
+  public interface RowConsumer {
+    /**
+     * @param row the values of the row, in the order of {@link #getColumnNames(String)}. The array is not reused.
+     */
+    void accept(@NotNull Object[] row) throws IOException, SQLException;
+  }
+
+  public SessionArchiveReader(@NotNull File file) throws IOException {
+    myFile = new RandomAccessFile(file, "r");
+    try {
+      if (myFile.length() < 2 * Integer.BYTES + SessionArchiveFormat.TRAILER_SIZE ||
+          myFile.readInt() != SessionArchiveFormat.MAGIC) {
+        throw new IOException("Not a session archive: " + file);
+      }
+      int version = myFile.readInt();
+      if (version < SessionArchiveFormat.MIN_VERSION || version > SessionArchiveFormat.VERSION) {
+        throw new IOException("Unsupported session archive version: " + version);
+      }
+
+      myFile.seek(myFile.length() - SessionArchiveFormat.TRAILER_SIZE);
+      long footerOffset = myFile.readLong();
+      if (myFile.readInt() != SessionArchiveFormat.MAGIC || footerOffset < 0 || footerOffset > myFile.length()) {
+        throw new IOException("Session archive is incomplete: " + file);
+      }
+      myFile.seek(footerOffset);
+      byte[] session = new byte[myFile.readInt()];
+      myFile.readFully(session);
+      mySession = Common.Session.parseFrom(session);
+      int tableCount = myFile.readInt();
+      for (int i = 0; i < tableCount; i++) {
+        TableIndex table = TableIndex.read(myFile, version);
+        myTables.put(table.myName, table);
+      }
+    }
+    catch (IOException | RuntimeException ex) {
+      myFile.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * @return the session the archive was exported from.
+   */
+  @NotNull
+  public Common.Session getSession() {
+    return mySession;
+  }
+
+  /**
+   * @return the names of the tables in the archive, in the order they were written.
+   */
+  @NotNull
+  public Set<String> getTableNames() {
+    return Collections.unmodifiableSet(myTables.keySet());
+  }
+
+  @NotNull
+  public List<String> getColumnNames(@NotNull String table) {
+    return Collections.unmodifiableList(getTable(table).myColumns);
+  }
+
+  public int getRowCount(@NotNull String table) {
+    return getTable(table).getRowCount();
+  }
+
+  public boolean hasTable(@NotNull String table) {
+    return myTables.containsKey(table);
+  }
+
+  /**
+   * Decompresses the rows of {@code table} chunk by chunk and hands them to {@code consumer} in the order they were written.
+   */
+  public void readRows(@NotNull String table, @NotNull RowConsumer consumer) throws IOException, SQLException {
+    readChunks(getTable(table), -1, Long.MIN_VALUE, Long.MAX_VALUE, consumer);
+  }
+
+  /**
+   * Hands the rows of {@code table} to {@code consumer} like {@link #readRows(String, RowConsumer)}, but only reads the chunks in which
+   * some row has a value within [min, max] in {@code column}. The consumer still gets all the rows of those chunks, so it has to check
+   * the value itself.
+   */
+  public void readRows(@NotNull String table, @NotNull String column, long min, long max, @NotNull RowConsumer consumer)
+    throws IOException, SQLException {
+    TableIndex index = getTable(table);
+    int columnIndex = index.myColumns.indexOf(column);
+    if (columnIndex < 0) {
+      throw new IllegalArgumentException(String.format("No column %s in table %s", column, table));
+    }
+    readChunks(index, columnIndex, min, max, consumer);
+  }
+
+  private void readChunks(@NotNull TableIndex index, int rangeColumn, long min, long max, @NotNull RowConsumer consumer)
+    throws IOException, SQLException {
+    int columnCount = index.myColumns.size();
+    Object[][] columns = null;
+    for (ChunkIndex chunk : index.myChunks) {
+      if (rangeColumn >= 0 && !chunk.mayContain(rangeColumn, min, max)) {
+        continue;
+      }
+      if (chunk.myRows > SessionArchiveFormat.CHUNK_ROWS) {
+        throw new IOException("Corrupt session archive: chunk of " + chunk.myRows + " rows");
+      }
+      if (columns == null) {
+        columns = new Object[columnCount][SessionArchiveFormat.CHUNK_ROWS];
+      }
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(readChunk(chunk)));
+      for (Object[] values : columns) {
+        SessionArchiveFormat.readColumn(in, values, chunk.myRows);
+      }
+      for (int row = 0; row < chunk.myRows; row++) {
+        Object[] values = new Object[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+          values[column] = columns[column][row];
+        }
+        consumer.accept(values);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (myFile) {
+      myFile.close();
+    }
+  }
+
+  @NotNull
+  private TableIndex getTable(@NotNull String table) {
+    TableIndex index = myTables.get(table);
+    if (index == null) {
+      throw new IllegalArgumentException("No such table in session archive: " + table);
+    }
+    return index;
+  }
+
+  @NotNull
+  private byte[] readChunk(@NotNull ChunkIndex chunk) throws IOException {
+    byte[] compressed = new byte[chunk.myCompressedSize];
+    synchronized (myFile) {
+      myFile.seek(chunk.myOffset);
+      myFile.readFully(compressed);
+    }
+
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed);
+      byte[] bytes = new byte[chunk.mySize];
+      int size = 0;
+      while (size < bytes.length && !inflater.finished()) {
+        int read = inflater.inflate(bytes, size, bytes.length - size);
+        if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        size += read;
+      }
+      if (size != bytes.length) {
+        throw new IOException("Corrupt session archive: chunk at " + chunk.myOffset + " is truncated");
+      }
+      return bytes;
+    }
+    catch (DataFormatException ex) {
+      throw new IOException("Corrupt session archive: chunk at " + chunk.myOffset, ex);
+    }
+    finally {
+      inflater.end();
+    }
+  }
+}
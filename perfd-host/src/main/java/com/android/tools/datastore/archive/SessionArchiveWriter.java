@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.archive;
+
+import com.android.tools.datastore.archive.SessionArchiveFormat.ChunkIndex;
+import com.android.tools.datastore.archive.SessionArchiveFormat.TableIndex;
+import com.android.tools.profiler.proto.Common;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the rows of a profiling session to a compact archive that {@link SessionArchiveReader} can open without reading it all.
+ * Rows are streamed to the file in compressed chunks of {@link SessionArchiveFormat#CHUNK_ROWS}, so exporting a session only ever
+ * holds one chunk in memory. The index of the chunks is written by {@link #close()}; an archive that was not closed cannot be read.
+ */
+public class SessionArchiveWriter implements Closeable {
+  @NotNull private final Common.Session mySession;
+  @NotNull private final OutputStream myFile;
+  @NotNull private final Map<String, TableIndex> myTables = new LinkedHashMap<>();
+  @NotNull private final Deflater myDeflater = new Deflater(Deflater.BEST_SPEED);
+  private long myPosition;
+
+  public SessionArchiveWriter(@NotNull File file, @NotNull Common.Session session) throws IOException {
+    mySession = session;
+    myFile = new BufferedOutputStream(new FileOutputStream(file));
+    DataOutputStream header = new DataOutputStream(myFile);
+    header.writeInt(SessionArchiveFormat.MAGIC);
+    header.writeInt(SessionArchiveFormat.VERSION);
+    myPosition = header.size();
+  }
+
+  /**
+   * Writes every row of {@code results} as the rows of {@code table}, naming the columns after the columns of the result set.
+   */
+  public void writeTable(@NotNull String table, @NotNull ResultSet results) throws IOException, SQLException {
+    ResultSetMetaData metaData = results.getMetaData();
+    List<String> columns = new ArrayList<>(metaData.getColumnCount());
+    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+      columns.add(metaData.getColumnName(i));
+    }
+    TableWriter writer = new TableWriter(table, columns);
+    Object[] row = new Object[columns.size()];
+    while (results.next()) {
+      for (int i = 0; i < row.length; i++) {
+        row[i] = results.getObject(i + 1);
+      }
+      writer.addRow(row);
+    }
+    writer.finish();
+  }
+
+  /**
+   * Starts writing the rows of {@code table}. Rows are added with {@link TableWriter#addRow(Object[])}, and the table is complete once
+   * {@link TableWriter#finish()} is called.
+   */
+  @NotNull
+  public TableWriter startTable(@NotNull String table, @NotNull List<String> columns) {
+    return new TableWriter(table, columns);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      DataOutputStream out = new DataOutputStream(myFile);
+      byte[] session = mySession.toByteArray();
+      out.writeInt(session.length);
+      out.write(session);
+      out.writeInt(myTables.size());
+      for (TableIndex table : myTables.values()) {
+        table.write(out);
+      }
+      out.writeLong(myPosition);
+      out.writeInt(SessionArchiveFormat.MAGIC);
+      out.flush();
+    }
+    finally {
+      myDeflater.end();
+      myFile.close();
+    }
+  }
+
+  public final class TableWriter {
+    @NotNull private final TableIndex myIndex;
+    @NotNull private final Object[][] myColumnValues;
+    private int myRowCount;
+
+    private TableWriter(@NotNull String table, @NotNull List<String> columns) {
+      if (myTables.containsKey(table)) {
+        throw new IllegalArgumentException("Table already written: " + table);
+      }
+      myIndex = new TableIndex(table, new ArrayList<>(columns));
+      myTables.put(table, myIndex);
+      myColumnValues = new Object[columns.size()][SessionArchiveFormat.CHUNK_ROWS];
+    }
+
+    public void addRow(@NotNull Object[] row) throws IOException {
+      if (row.length != myColumnValues.length) {
+        throw new IllegalArgumentException(String.format("Expected %d columns, got %d", myColumnValues.length, row.length));
+      }
+      for (int i = 0; i < row.length; i++) {
+        myColumnValues[i][myRowCount] = row[i];
+      }
+      if (++myRowCount == SessionArchiveFormat.CHUNK_ROWS) {
+        writeChunk();
+      }
+    }
+
+    public void finish() throws IOException {
+      if (myRowCount > 0) {
+        writeChunk();
+      }
+    }
+
+    private void writeChunk() throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream columns = new DataOutputStream(bytes);
+      for (Object[] values : myColumnValues) {
+        SessionArchiveFormat.writeColumn(columns, values, myRowCount);
+      }
+      int size = columns.size();
+
+      myDeflater.reset();
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(size / 2);
+      try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed, myDeflater)) {
+        bytes.writeTo(deflater);
+      }
+      compressed.writeTo(myFile);
+
+      ChunkIndex chunk = new ChunkIndex(myPosition, compressed.size(), size, myRowCount, myColumnValues.length);
+      for (int i = 0; i < myColumnValues.length; i++) {
+        SessionArchiveFormat.computeRange(myColumnValues[i], myRowCount, chunk.myMinValues, chunk.myMaxValues, i);
+      }
+      myIndex.myChunks.add(chunk);
+      myPosition += compressed.size();
+      for (Object[] values : myColumnValues) {
+        Arrays.fill(values, 0, myRowCount, null);
+      }
+      myRowCount = 0;
+    }
+  }
+}
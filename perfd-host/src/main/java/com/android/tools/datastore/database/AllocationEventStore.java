@@ -0,0 +1,609 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import gnu.trove.TIntLongHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Off-heap store for the live allocation events of one process. Each allocation is a fixed-width record in a direct {@link ByteBuffer}
+ * segment, so millions of them cost neither Java objects nor SQL rows. Records are appended in arrival order; each segment keeps the
+ * range of alloc times it contains, which serves as a coarse interval index for range queries, and remembers whether its
+ * records are sorted by alloc time so those lookups can binary search.
+ *
+ * Frees are also appended to a log of (free time, tag) pairs kept sorted by free time, so deallocations can be streamed in the order they
+ * happened without collecting and sorting them first.
+ *
+ * Pruning drops the allocations that were freed the longest ago, taking them from the front of the free log and leaving a hole in their
+ * segment. A segment is released once it only holds holes, and copied into a smaller buffer once half of it is holes, so the cost of
+ * pruning is proportional to the number of pruned records.
+ *
+ * Reads copy the matching records out a page at a time while holding the lock of the store, and visit them after releasing it, so
+ * inserts are never blocked for the duration of a whole query.
+ */
+final class AllocationEventStore {
+  static final int DEFAULT_RECORDS_PER_SEGMENT = 64 * 1024;
+  private static final int FREE_LOG_CHUNK_SIZE = 1024;
+  private static final int FREED_PAGE_SIZE = 16 * 1024;
+
+  // Record layout.
+  private static final int TAG_OFFSET = 0;
+  private static final int CLASS_TAG_OFFSET = 4;
+  private static final int ALLOC_TIME_OFFSET = 8;
+  private static final int FREE_TIME_OFFSET = 16;
+  private static final int SIZE_OFFSET = 24;
+  private static final int LENGTH_OFFSET = 32;
+  private static final int THREAD_ID_OFFSET = 36;
+  private static final int STACK_ID_OFFSET = 40;
+  private static final int HEAP_ID_OFFSET = 44;
+  static final int RECORD_SIZE = 48;
+
+  /**
+   * Free time of an allocation that is still alive.
+   */
+  static final long ALIVE = Long.MAX_VALUE;
+  /**
+   * Free time of the hole left by a pruned allocation.
+   */
+  private static final long PRUNED = Long.MIN_VALUE;
+
+  interface RecordVisitor {
+    void visit(int tag, int classTag, long allocTime, long freeTime, long size, int length, int threadId, int stackId, int heapId);
+  }
+
+  private final int myRecordsPerSegment;
+  /**
+   * The segments by id, which is their arrival order. Releasing a segment doesn't shift the others, and a paged read can continue from
+   * the segment after the last one it copied.
+   */
+  private final TreeMap<Integer, Segment> mySegments = new TreeMap<>();
+  private Segment myTail;
+  /**
+   * Maps an allocation tag to the location of its record, see {@link #location(Segment, int)}.
+   */
+  private final TIntLongHashMap myTagLocations = new TIntLongHashMap();
+  private final FreeLog myFreeLog = new FreeLog();
+  private int myNextSegmentId;
+  private int myRecordCount;
+
+  AllocationEventStore() {
+    this(DEFAULT_RECORDS_PER_SEGMENT);
+  }
+
+  AllocationEventStore(int recordsPerSegment) {
+    myRecordsPerSegment = recordsPerSegment;
+  }
+
+  /**
+   * @return false if an allocation with the same tag is already stored, in which case nothing is inserted.
+   */
+  synchronized boolean insertAllocation(int tag, int classTag, long allocTime, long size, int length, int threadId, int stackId,
+                                        int heapId) {
+    if (myTagLocations.containsKey(tag)) {
+      return false;
+    }
+    if (myTail == null || myTail.mySize == myTail.getCapacity()) {
+      Segment previousTail = myTail;
+      myTail = new Segment(myNextSegmentId++, myRecordsPerSegment);
+      mySegments.put(myTail.myId, myTail);
+      if (previousTail != null) {
+        // Holes left while it was the tail were not released, as it was still being appended to.
+        releaseHoles(previousTail);
+      }
+    }
+    Segment tail = myTail;
+    int index = tail.mySize++;
+    int position = index * RECORD_SIZE;
+    ByteBuffer buffer = tail.myBuffer;
+    buffer.putInt(position + TAG_OFFSET, tag);
+    buffer.putInt(position + CLASS_TAG_OFFSET, classTag);
+    buffer.putLong(position + ALLOC_TIME_OFFSET, allocTime);
+    buffer.putLong(position + FREE_TIME_OFFSET, ALIVE);
+    buffer.putLong(position + SIZE_OFFSET, size);
+    buffer.putInt(position + LENGTH_OFFSET, length);
+    buffer.putInt(position + THREAD_ID_OFFSET, threadId);
+    buffer.putInt(position + STACK_ID_OFFSET, stackId);
+    buffer.putInt(position + HEAP_ID_OFFSET, heapId);
+    if (allocTime < tail.myMaxAllocTime) {
+      tail.mySortedByAllocTime = false;
+    }
+    tail.myMinAllocTime = Math.min(tail.myMinAllocTime, allocTime);
+    tail.myMaxAllocTime = Math.max(tail.myMaxAllocTime, allocTime);
+    myTagLocations.put(tag, location(tail, index));
+    myRecordCount++;
+    return true;
+  }
+
+  /**
+   * @return false if no allocation with the given tag is stored.
+   */
+  synchronized boolean insertFree(int tag, long freeTime) {
+    if (!myTagLocations.containsKey(tag)) {
+      return false;
+    }
+    long location = myTagLocations.get(tag);
+    Segment segment = mySegments.get((int)(location >>> 32));
+    int position = (int)location * RECORD_SIZE;
+    long previousFreeTime = segment.myBuffer.getLong(position + FREE_TIME_OFFSET);
+    if (previousFreeTime != ALIVE) {
+      myFreeLog.remove(tag, previousFreeTime);
+    }
+    myFreeLog.add(tag, freeTime);
+    segment.myBuffer.putLong(position + FREE_TIME_OFFSET, freeTime);
+    return true;
+  }
+
+  synchronized int getRecordCount() {
+    return myRecordCount;
+  }
+
+  /**
+   * Drops freed allocations, those freed the longest ago first, until at most recordLimit records are left or only live allocations
+   * remain.
+   */
+  synchronized void prune(int recordLimit) {
+    while (myRecordCount > recordLimit && !myFreeLog.isEmpty()) {
+      long location = myTagLocations.remove(myFreeLog.removeFirst());
+      Segment segment = mySegments.get((int)(location >>> 32));
+      segment.myBuffer.putLong((int)location * RECORD_SIZE + FREE_TIME_OFFSET, PRUNED);
+      segment.myHoleCount++;
+      myRecordCount--;
+      if (segment != myTail) {
+        releaseHoles(segment);
+      }
+    }
+  }
+
+  /**
+   * Visits, in arrival order, the allocations whose alloc time is within [startTime, endTime). The records are copied out one segment
+   * at a time, and the visitor is called without holding the lock of the store.
+   */
+  void forEachAllocatedIn(long startTime, long endTime, @NotNull RecordVisitor visitor) {
+    RecordPage page = new RecordPage();
+    for (int segmentId = 0; segmentId != -1; page.clear()) {
+      segmentId = copyAllocatedIn(startTime, endTime, segmentId, page);
+      page.forEach(visitor);
+    }
+  }
+
+  /**
+   * Visits, in free time order, the allocations whose free time is within [startTime, endTime). The records are copied out a page at a
+   * time, and the visitor is called without holding the lock of the store.
+   */
+  void forEachFreedIn(long startTime, long endTime, @NotNull RecordVisitor visitor) {
+    RecordPage page = new RecordPage();
+    for (long time = startTime; time < endTime; page.clear()) {
+      time = copyFreedIn(time, endTime, FREED_PAGE_SIZE, page);
+      page.forEach(visitor);
+    }
+  }
+
+  /**
+   * Copies the allocations whose alloc time is within [startTime, endTime) from the first segment with an id of at least fromSegmentId
+   * that has some.
+   *
+   * @return the segment id to continue from, or -1 if there are no further segments.
+   */
+  private synchronized int copyAllocatedIn(long startTime, long endTime, int fromSegmentId, @NotNull RecordPage page) {
+    for (Segment segment : mySegments.tailMap(fromSegmentId).values()) {
+      if (segment.mySize == segment.myHoleCount || segment.myMaxAllocTime < startTime || segment.myMinAllocTime >= endTime) {
+        continue;
+      }
+      if (segment.mySortedByAllocTime) {
+        for (int i = segment.lowerBoundAllocTime(startTime); i < segment.mySize; i++) {
+          if (segment.getLong(i, ALLOC_TIME_OFFSET) >= endTime) {
+            break;
+          }
+          if (segment.getLong(i, FREE_TIME_OFFSET) != PRUNED) {
+            page.add(segment.myBuffer, i);
+          }
+        }
+      }
+      else {
+        for (int i = 0; i < segment.mySize; i++) {
+          long allocTime = segment.getLong(i, ALLOC_TIME_OFFSET);
+          if (allocTime >= startTime && allocTime < endTime && segment.getLong(i, FREE_TIME_OFFSET) != PRUNED) {
+            page.add(segment.myBuffer, i);
+          }
+        }
+      }
+      return segment.myId + 1;
+    }
+    return -1;
+  }
+
+  /**
+   * Copies the allocations whose free time is within [startTime, endTime), in free time order, stopping after about maxRecords of them.
+   * A page never ends between two allocations freed at the same time.
+   *
+   * @return the free time to continue from, which is endTime if there is nothing left to copy.
+   */
+  private synchronized long copyFreedIn(long startTime, long endTime, int maxRecords, @NotNull RecordPage page) {
+    FreeLog.Cursor cursor = myFreeLog.lowerBound(startTime);
+    while (cursor.isValid()) {
+      long freeTime = cursor.getTime();
+      if (freeTime >= endTime) {
+        break;
+      }
+      if (page.mySize >= maxRecords && freeTime > page.myLastFreeTime) {
+        return freeTime;
+      }
+      long location = myTagLocations.get(cursor.getTag());
+      page.add(mySegments.get((int)(location >>> 32)).myBuffer, (int)location);
+      page.myLastFreeTime = freeTime;
+      cursor.next();
+    }
+    return endTime;
+  }
+
+  /**
+   * Drops the holes of a segment that is no longer appended to, once doing so costs at most as much as the pruning that left them.
+   */
+  private void releaseHoles(@NotNull Segment segment) {
+    if (segment.myHoleCount == segment.mySize) {
+      mySegments.remove(segment.myId);
+    }
+    else if (segment.myHoleCount * 2 >= segment.mySize) {
+      compactSegment(segment);
+    }
+  }
+
+  /**
+   * Copies the records of a segment that are not holes to a buffer of their size, keeping their order, and releases the old buffer.
+   */
+  private void compactSegment(@NotNull Segment segment) {
+    ByteBuffer buffer = segment.myBuffer;
+    int kept = segment.mySize - segment.myHoleCount;
+    ByteBuffer compacted = ByteBuffer.allocateDirect(kept * RECORD_SIZE);
+    int index = 0;
+    segment.myMinAllocTime = Long.MAX_VALUE;
+    segment.myMaxAllocTime = Long.MIN_VALUE;
+    for (int i = 0; i < segment.mySize; i++) {
+      int position = i * RECORD_SIZE;
+      if (buffer.getLong(position + FREE_TIME_OFFSET) == PRUNED) {
+        continue;
+      }
+      copyRecord(buffer, position, compacted, index * RECORD_SIZE);
+      myTagLocations.put(buffer.getInt(position + TAG_OFFSET), location(segment, index));
+      long allocTime = buffer.getLong(position + ALLOC_TIME_OFFSET);
+      segment.myMinAllocTime = Math.min(segment.myMinAllocTime, allocTime);
+      segment.myMaxAllocTime = Math.max(segment.myMaxAllocTime, allocTime);
+      index++;
+    }
+    segment.myBuffer = compacted;
+    segment.mySize = kept;
+    segment.myHoleCount = 0;
+  }
+
+  private static void copyRecord(@NotNull ByteBuffer source, int sourcePosition, @NotNull ByteBuffer target, int targetPosition) {
+    for (int offset = 0; offset < RECORD_SIZE; offset += Long.BYTES) {
+      target.putLong(targetPosition + offset, source.getLong(sourcePosition + offset));
+    }
+  }
+
+  private static void visit(@NotNull ByteBuffer buffer, int index, @NotNull RecordVisitor visitor) {
+    int position = index * RECORD_SIZE;
+    visitor.visit(buffer.getInt(position + TAG_OFFSET), buffer.getInt(position + CLASS_TAG_OFFSET),
+                  buffer.getLong(position + ALLOC_TIME_OFFSET), buffer.getLong(position + FREE_TIME_OFFSET),
+                  buffer.getLong(position + SIZE_OFFSET), buffer.getInt(position + LENGTH_OFFSET),
+                  buffer.getInt(position + THREAD_ID_OFFSET), buffer.getInt(position + STACK_ID_OFFSET),
+                  buffer.getInt(position + HEAP_ID_OFFSET));
+  }
+
+  private static long location(@NotNull Segment segment, int index) {
+    return ((long)segment.myId << 32) | (index & 0xFFFFFFFFL);
+  }
+
+  private static final class Segment {
+    private final int myId;
+    @NotNull private ByteBuffer myBuffer;
+    private int mySize;
+    private int myHoleCount;
+    private boolean mySortedByAllocTime = true;
+    private long myMinAllocTime = Long.MAX_VALUE;
+    private long myMaxAllocTime = Long.MIN_VALUE;
+
+    private Segment(int id, int capacity) {
+      myId = id;
+      myBuffer = ByteBuffer.allocateDirect(capacity * RECORD_SIZE);
+    }
+
+    private int getCapacity() {
+      return myBuffer.capacity() / RECORD_SIZE;
+    }
+
+    private long getLong(int index, int offset) {
+      return myBuffer.getLong(index * RECORD_SIZE + offset);
+    }
+
+    /**
+     * @return the index of the first record whose alloc time is not less than the given one.
+     */
+    private int lowerBoundAllocTime(long allocTime) {
+      int low = 0;
+      int high = mySize;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (getLong(mid, ALLOC_TIME_OFFSET) < allocTime) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+
+  /**
+   * Records copied out of the store, so they can be visited without holding its lock.
+   */
+  private static final class RecordPage {
+    private ByteBuffer myBuffer = ByteBuffer.allocate(1024 * RECORD_SIZE);
+    private int mySize;
+    private long myLastFreeTime;
+
+    private void add(@NotNull ByteBuffer source, int index) {
+      if ((mySize + 1) * RECORD_SIZE > myBuffer.capacity()) {
+        ByteBuffer grown = ByteBuffer.allocate(myBuffer.capacity() * 2);
+        grown.put(myBuffer.array(), 0, mySize * RECORD_SIZE);
+        myBuffer = grown;
+      }
+      copyRecord(source, index * RECORD_SIZE, myBuffer, mySize * RECORD_SIZE);
+      mySize++;
+    }
+
+    private void forEach(@NotNull RecordVisitor visitor) {
+      for (int i = 0; i < mySize; i++) {
+        visit(myBuffer, i, visitor);
+      }
+    }
+
+    private void clear() {
+      mySize = 0;
+    }
+  }
+
+  /**
+   * The free log: (free time, tag) pairs sorted by free time, in chunks of bounded size. Frees almost always arrive in order, so adding
+   * one is an append; one that arrives late only shifts the entries of its chunk. Pruning removes entries from the front, and emptied
+   * chunks are dropped in bulk once they make up half of the list.
+   */
+  private static final class FreeLog {
+    private final List<FreeChunk> myChunks = new ArrayList<>();
+    // The chunks before this one are empty. All the others hold at least one entry.
+    private int myFirstChunk;
+
+    private boolean isEmpty() {
+      return myFirstChunk == myChunks.size();
+    }
+
+    private void add(int tag, long freeTime) {
+      FreeChunk last = isEmpty() ? null : myChunks.get(myChunks.size() - 1);
+      if (last == null || last.myTimes[last.myEnd - 1] <= freeTime) {
+        if (last == null || last.myEnd == FREE_LOG_CHUNK_SIZE) {
+          last = new FreeChunk();
+          myChunks.add(last);
+        }
+        last.myTimes[last.myEnd] = freeTime;
+        last.myTags[last.myEnd] = tag;
+        last.myEnd++;
+        return;
+      }
+
+      // Insert after the entries with the same free time, to keep the arrival order among them.
+      int chunkIndex = findChunk(freeTime, true);
+      FreeChunk chunk = myChunks.get(chunkIndex);
+      int index = chunk.upperBound(freeTime);
+      if (chunk.myEnd == FREE_LOG_CHUNK_SIZE) {
+        if (chunk.myStart > 0) {
+          index -= chunk.myStart;
+          chunk.moveToStart();
+        }
+        else {
+          // Move the upper half into a new chunk, then insert into whichever half the entry belongs to.
+          int half = FREE_LOG_CHUNK_SIZE / 2;
+          FreeChunk upper = new FreeChunk();
+          System.arraycopy(chunk.myTimes, half, upper.myTimes, 0, FREE_LOG_CHUNK_SIZE - half);
+          System.arraycopy(chunk.myTags, half, upper.myTags, 0, FREE_LOG_CHUNK_SIZE - half);
+          upper.myEnd = FREE_LOG_CHUNK_SIZE - half;
+          chunk.myEnd = half;
+          myChunks.add(chunkIndex + 1, upper);
+          if (index > half) {
+            chunk = upper;
+            index -= half;
+          }
+        }
+      }
+      System.arraycopy(chunk.myTimes, index, chunk.myTimes, index + 1, chunk.myEnd - index);
+      System.arraycopy(chunk.myTags, index, chunk.myTags, index + 1, chunk.myEnd - index);
+      chunk.myTimes[index] = freeTime;
+      chunk.myTags[index] = tag;
+      chunk.myEnd++;
+    }
+
+    private void remove(int tag, long freeTime) {
+      for (Cursor cursor = lowerBound(freeTime); cursor.isValid() && cursor.getTime() == freeTime; cursor.next()) {
+        if (cursor.getTag() != tag) {
+          continue;
+        }
+        FreeChunk chunk = myChunks.get(cursor.myChunkIndex);
+        int index = cursor.myIndex;
+        System.arraycopy(chunk.myTimes, index + 1, chunk.myTimes, index, chunk.myEnd - index - 1);
+        System.arraycopy(chunk.myTags, index + 1, chunk.myTags, index, chunk.myEnd - index - 1);
+        chunk.myEnd--;
+        if (chunk.myStart == chunk.myEnd) {
+          if (cursor.myChunkIndex == myFirstChunk) {
+            dropFirstChunk();
+          }
+          else {
+            // A second free of the same allocation is rare, so shifting the list here is fine.
+            myChunks.remove(cursor.myChunkIndex);
+          }
+        }
+        return;
+      }
+    }
+
+    /**
+     * @return the tag of the entry with the earliest free time, which is removed.
+     */
+    private int removeFirst() {
+      FreeChunk chunk = myChunks.get(myFirstChunk);
+      int tag = chunk.myTags[chunk.myStart++];
+      if (chunk.myStart == chunk.myEnd) {
+        dropFirstChunk();
+      }
+      return tag;
+    }
+
+    private void dropFirstChunk() {
+      myFirstChunk++;
+      if (myFirstChunk * 2 >= myChunks.size()) {
+        myChunks.subList(0, myFirstChunk).clear();
+        myFirstChunk = 0;
+      }
+    }
+
+    /**
+     * @return a cursor at the first entry whose free time is not less than the given one.
+     */
+    @NotNull
+    private Cursor lowerBound(long freeTime) {
+      Cursor cursor = new Cursor(findChunk(freeTime, false), 0);
+      if (cursor.myChunkIndex < myChunks.size()) {
+        FreeChunk chunk = myChunks.get(cursor.myChunkIndex);
+        cursor.myIndex = chunk.lowerBound(freeTime);
+        if (cursor.myIndex == chunk.myEnd) {
+          cursor.myChunkIndex++;
+          cursor.myIndex = cursor.myChunkIndex < myChunks.size() ? myChunks.get(cursor.myChunkIndex).myStart : 0;
+        }
+      }
+      return cursor;
+    }
+
+    /**
+     * @return the index of the last non-empty chunk whose first free time is less than (or, if inclusive, equal to) the given one, or the
+     * first non-empty chunk if there is none.
+     */
+    private int findChunk(long freeTime, boolean inclusive) {
+      int low = myFirstChunk;
+      int high = myChunks.size() - 1;
+      while (low < high) {
+        int mid = (low + high + 1) >>> 1;
+        long first = myChunks.get(mid).first();
+        if (first < freeTime || (inclusive && first == freeTime)) {
+          low = mid;
+        }
+        else {
+          high = mid - 1;
+        }
+      }
+      return low;
+    }
+
+    private final class Cursor {
+      private int myChunkIndex;
+      private int myIndex;
+
+      private Cursor(int chunkIndex, int index) {
+        myChunkIndex = chunkIndex;
+        myIndex = index;
+      }
+
+      private boolean isValid() {
+        return myChunkIndex < myChunks.size();
+      }
+
+      private long getTime() {
+        return myChunks.get(myChunkIndex).myTimes[myIndex];
+      }
+
+      private int getTag() {
+        return myChunks.get(myChunkIndex).myTags[myIndex];
+      }
+
+      private void next() {
+        if (++myIndex == myChunks.get(myChunkIndex).myEnd) {
+          myChunkIndex++;
+          myIndex = myChunkIndex < myChunks.size() ? myChunks.get(myChunkIndex).myStart : 0;
+        }
+      }
+    }
+  }
+
+  /**
+   * A run of the free log. Its entries are at [myStart, myEnd); the ones before myStart were removed from the front.
+   */
+  private static final class FreeChunk {
+    private final long[] myTimes = new long[FREE_LOG_CHUNK_SIZE];
+    private final int[] myTags = new int[FREE_LOG_CHUNK_SIZE];
+    private int myStart;
+    private int myEnd;
+
+    private long first() {
+      return myTimes[myStart];
+    }
+
+    private void moveToStart() {
+      System.arraycopy(myTimes, myStart, myTimes, 0, myEnd - myStart);
+      System.arraycopy(myTags, myStart, myTags, 0, myEnd - myStart);
+      myEnd -= myStart;
+      myStart = 0;
+    }
+
+    /**
+     * @return the index of the first entry whose free time is not less than the given one.
+     */
+    private int lowerBound(long freeTime) {
+      int low = myStart;
+      int high = myEnd;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (myTimes[mid] < freeTime) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * @return the index of the first entry whose free time is greater than the given one.
+     */
+    private int upperBound(long freeTime) {
+      int low = myStart;
+      int high = myEnd;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (myTimes[mid] <= freeTime) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.tools.datastore.archive.SessionArchiveReader;
+import com.android.tools.profiler.proto.Common;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+
+/**
+ * A {@link TimeSeriesStorage} that serves the series of imported sessions straight from their session archive, and those of every
+ * other session from the storage it wraps. Range lookups only decompress the archive chunks whose timestamps overlap the range, so
+ * opening an archived session doesn't copy its samples into the database, and reading it only touches the part of it that is shown.
+ * Archived sessions are read-only.
+ */
+public class ArchivedTimeSeriesStorage<S> implements TimeSeriesStorage<S> {
+  private static final Logger LOG = Logger.getInstance(ArchivedTimeSeriesStorage.class);
+
+  public interface SampleParser<S> {
+    @NotNull
+    S parse(@NotNull byte[] data) throws IOException;
+  }
+
+  /**
+   * Where the samples of a series are in the SQL table they are exported from, and so in the archive.
+   */
+  public static final class Layout<S> {
+    @NotNull private final String myTable;
+    @NotNull private final String[] myKeyColumns;
+    @NotNull private final LongFunction<long[]> myKeyValues;
+    @NotNull private final String myTimestampColumn;
+    @NotNull private final String myDataColumn;
+    @NotNull private final SampleParser<S> myParser;
+
+    /**
+     * @param table           the table the samples are exported from.
+     * @param keyColumns      the columns of the table that identify a series.
+     * @param keyValues       splits the id of a series into the values of its key columns.
+     * @param timestampColumn the column holding the timestamp of a sample.
+     * @param dataColumn      the column holding the serialized sample.
+     */
+    public Layout(@NotNull String table,
+                  @NotNull String[] keyColumns,
+                  @NotNull LongFunction<long[]> keyValues,
+                  @NotNull String timestampColumn,
+                  @NotNull String dataColumn,
+                  @NotNull SampleParser<S> parser) {
+      myTable = table;
+      myKeyColumns = keyColumns;
+      myKeyValues = keyValues;
+      myTimestampColumn = timestampColumn;
+      myDataColumn = dataColumn;
+      myParser = parser;
+    }
+  }
+
+  @NotNull private final TimeSeriesStorage<S> myStorage;
+  @NotNull private final Layout<S> myLayout;
+  private final Map<Common.Session, SessionArchiveReader> myArchives = new ConcurrentHashMap<>();
+
+  /**
+   * @param storage the storage of the sessions that are not archived.
+   */
+  public ArchivedTimeSeriesStorage(@NotNull TimeSeriesStorage<S> storage, @NotNull Layout<S> layout) {
+    myStorage = storage;
+    myLayout = layout;
+  }
+
+  /**
+   * @return the SQL table the series are exported from.
+   */
+  @NotNull
+  public String getTable() {
+    return myLayout.myTable;
+  }
+
+  /**
+   * Serves the series of the session from the archive, until {@link #closeArchive(Common.Session)}. The archive must stay open meanwhile.
+   */
+  public void openArchive(@NotNull Common.Session session, @NotNull SessionArchiveReader archive) {
+    myArchives.put(session, archive);
+  }
+
+  public void closeArchive(@NotNull Common.Session session) {
+    myArchives.remove(session);
+  }
+
+  /**
+   * @return the archive the series of the session are served from, if any.
+   */
+  @Nullable
+  public SessionArchiveReader getArchive(@NotNull Common.Session session) {
+    return myArchives.get(session);
+  }
+
+  @Override
+  public void insert(@NotNull Common.Session session, long id, long timestamp, @NotNull S sample) {
+    if (myArchives.containsKey(session)) {
+      throw new UnsupportedOperationException("Archived sessions are read-only: " + session);
+    }
+    myStorage.insert(session, id, timestamp, sample);
+  }
+
+  @NotNull
+  @Override
+  public List<S> getRange(@NotNull Common.Session session, long id, long startTimestamp, long endTimestamp) {
+    SessionArchiveReader archive = myArchives.get(session);
+    if (archive == null) {
+      return myStorage.getRange(session, id, startTimestamp, endTimestamp);
+    }
+    List<S> samples = new ArrayList<>();
+    String table = myLayout.myTable;
+    if (startTimestamp >= endTimestamp || !archive.hasTable(table)) {
+      return samples;
+    }
+
+    List<String> columns = archive.getColumnNames(table);
+    int[] keyColumns = new int[myLayout.myKeyColumns.length];
+    for (int i = 0; i < keyColumns.length; i++) {
+      keyColumns[i] = columns.indexOf(myLayout.myKeyColumns[i]);
+    }
+    long[] keyValues = myLayout.myKeyValues.apply(id);
+    int timestampColumn = columns.indexOf(myLayout.myTimestampColumn);
+    int dataColumn = columns.indexOf(myLayout.myDataColumn);
+    if (timestampColumn < 0 || dataColumn < 0 || Arrays.stream(keyColumns).anyMatch(column -> column < 0)) {
+      LOG.warn(String.format("Table %s of the archive of %s lacks the columns of its series", table, session));
+      return samples;
+    }
+    try {
+      archive.readRows(table, myLayout.myTimestampColumn, startTimestamp + 1, endTimestamp, row -> {
+        for (int i = 0; i < keyColumns.length; i++) {
+          if (!(row[keyColumns[i]] instanceof Number) || ((Number)row[keyColumns[i]]).longValue() != keyValues[i]) {
+            return;
+          }
+        }
+        if (!(row[timestampColumn] instanceof Number) || !(row[dataColumn] instanceof byte[])) {
+          return;
+        }
+        long timestamp = ((Number)row[timestampColumn]).longValue();
+        if (timestamp > startTimestamp && timestamp <= endTimestamp) {
+          samples.add(myLayout.myParser.parse((byte[])row[dataColumn]));
+        }
+      });
+    }
+    catch (IOException | SQLException ex) {
+      LOG.error(ex);
+    }
+    return samples;
+  }
+
+  @Override
+  public void endSession(@NotNull Common.Session session) {
+    myStorage.endSession(session);
+  }
+
+  @Override
+  public void clear() {
+    myStorage.clear();
+  }
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.tools.profiler.proto.Common;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link TimeSeriesStorage} that keeps each series in memory as append-only chunks of primitive columns: one for the timestamps and
+ * one for each of the long values the samples are flattened into by {@link SampleColumns}. Range lookups are binary searches over the
+ * timestamps, so there is no SQL round trip and no protobuf parsing on the read path, and no sample objects are retained. Samples the
+ * columns can't represent are kept as objects in a per chunk overflow column, which is only allocated when needed.
+ * <p>
+ * Only the series of live sessions are kept in memory. When a session ends its samples are moved to the backing storage (the SQL table
+ * the storage stands in for), so they live as long as the rest of the session's data, and reads of series that are not in memory go to
+ * the backing storage too.
+ */
+public class ColumnarTimeSeriesStorage<S> implements TimeSeriesStorage<S> {
+  static final int CHUNK_SIZE = 1024;
+
+  @NotNull private final TimeSeriesStorage<S> myBackingStorage;
+  @NotNull private final SampleColumns<S> myColumns;
+  private final boolean myReplaceDuplicates;
+
+  // Everything below is guarded by mySeries.
+  private final Map<SeriesKey, Series> mySeries = new HashMap<>();
+  // The newest timestamp moved to the backing storage for each series whose session ended, in case the session resumes.
+  private final Map<SeriesKey, Long> myEvictedUntil = new HashMap<>();
+  // The values of the sample being written or read.
+  @NotNull private final long[] myRow;
+
+  /**
+   * @param backingStorage    where samples are moved to when their session ends.
+   * @param columns           how samples are flattened into the in-memory columns.
+   * @param replaceDuplicates whether a sample with the same timestamp as an existing one replaces it (INSERT OR REPLACE) or is
+   *                          dropped (INSERT OR IGNORE).
+   */
+  public ColumnarTimeSeriesStorage(@NotNull TimeSeriesStorage<S> backingStorage,
+                                   @NotNull SampleColumns<S> columns,
+                                   boolean replaceDuplicates) {
+    myBackingStorage = backingStorage;
+    myColumns = columns;
+    myReplaceDuplicates = replaceDuplicates;
+    myRow = new long[columns.getColumnCount()];
+  }
+
+  @Override
+  public void insert(@NotNull Common.Session session, long id, long timestamp, @NotNull S sample) {
+    SeriesKey key = new SeriesKey(session, id);
+    // The sample is added while holding the lock, so it can't be added to a series that endSession is moving out of memory.
+    synchronized (mySeries) {
+      Long evictedUntil = myEvictedUntil.get(key);
+      if (evictedUntil != null && timestamp <= evictedUntil) {
+        // Keep the samples in memory strictly newer than the evicted ones, so reads can simply append the two.
+        myBackingStorage.insert(session, id, timestamp, sample);
+        return;
+      }
+      Object overflow = myColumns.write(sample, myRow) ? null : sample;
+      mySeries.computeIfAbsent(key, k -> new Series(myRow.length)).insert(timestamp, myRow, overflow, myReplaceDuplicates);
+    }
+  }
+
+  @NotNull
+  @Override
+  public List<S> getRange(@NotNull Common.Session session, long id, long startTimestamp, long endTimestamp) {
+    SeriesKey key = new SeriesKey(session, id);
+    List<S> inMemory = new ArrayList<>();
+    Long evictedUntil;
+    // The in-memory part is collected under the lock, so endSession can't move the samples out from under the read.
+    synchronized (mySeries) {
+      Series series = mySeries.get(key);
+      if (series == null) {
+        inMemory = null;
+        evictedUntil = null;
+      }
+      else {
+        series.collect(startTimestamp, endTimestamp, this::readSample, inMemory);
+        evictedUntil = myEvictedUntil.get(key);
+      }
+    }
+    if (inMemory == null) {
+      return myBackingStorage.getRange(session, id, startTimestamp, endTimestamp);
+    }
+    if (evictedUntil == null || startTimestamp >= evictedUntil) {
+      return inMemory;
+    }
+
+    List<S> result = myBackingStorage.getRange(session, id, startTimestamp, Math.min(endTimestamp, evictedUntil));
+    result.addAll(inMemory);
+    return result;
+  }
+
+  @Override
+  public void endSession(@NotNull Common.Session session) {
+    synchronized (mySeries) {
+      Iterator<Map.Entry<SeriesKey, Series>> it = mySeries.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<SeriesKey, Series> entry = it.next();
+        SeriesKey key = entry.getKey();
+        if (!key.mySession.equals(session)) {
+          continue;
+        }
+        it.remove();
+        long last = entry.getValue().moveTo(myBackingStorage, this::readSample, session, key.myId);
+        if (last != Long.MIN_VALUE) {
+          myEvictedUntil.merge(key, last, Math::max);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void clear() {
+    synchronized (mySeries) {
+      mySeries.clear();
+      myEvictedUntil.clear();
+    }
+  }
+
+  /**
+   * @return the number of samples currently kept in memory.
+   */
+  int getSampleCount() {
+    synchronized (mySeries) {
+      return mySeries.values().stream().mapToInt(Series::size).sum();
+    }
+  }
+
+  /**
+   * @return the number of samples currently kept in memory as objects, because the columns can't represent them.
+   */
+  int getOverflowCount() {
+    synchronized (mySeries) {
+      return mySeries.values().stream().mapToInt(Series::overflowSize).sum();
+    }
+  }
+
+  @NotNull
+  @SuppressWarnings("unchecked")
+  private S readSample(@NotNull Chunk chunk, int index) {
+    Object overflow = chunk.myOverflow != null ? chunk.myOverflow[index] : null;
+    if (overflow != null) {
+      return (S)overflow;
+    }
+    for (int column = 0; column < myRow.length; column++) {
+      myRow[column] = chunk.myColumns[column][index];
+    }
+    return myColumns.read(myRow);
+  }
+
+  private static final class SeriesKey {
+    @NotNull private final Common.Session mySession;
+    private final long myId;
+
+    private SeriesKey(@NotNull Common.Session session, long id) {
+      mySession = session;
+      myId = id;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * mySession.hashCode() + Long.hashCode(myId);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof SeriesKey)) {
+        return false;
+      }
+      SeriesKey other = (SeriesKey)obj;
+      return myId == other.myId && mySession.equals(other.mySession);
+    }
+  }
+
+  private interface SampleReader<S> {
+    @NotNull
+    S read(@NotNull Chunk chunk, int index);
+  }
+
+  private static final class Chunk {
+    private final long[] myTimestamps = new long[CHUNK_SIZE];
+    private final long[][] myColumns;
+    // The samples the columns can't represent, allocated when the first such sample is added to the chunk.
+    private Object[] myOverflow;
+    private int mySize;
+
+    private Chunk(int columnCount) {
+      myColumns = new long[columnCount][CHUNK_SIZE];
+    }
+
+    private long first() {
+      return myTimestamps[0];
+    }
+
+    private long last() {
+      return myTimestamps[mySize - 1];
+    }
+
+    private void set(int index, @NotNull long[] row, Object overflow) {
+      if (overflow != null) {
+        if (myOverflow == null) {
+          myOverflow = new Object[CHUNK_SIZE];
+        }
+        myOverflow[index] = overflow;
+        return;
+      }
+      for (int column = 0; column < myColumns.length; column++) {
+        myColumns[column][index] = row[column];
+      }
+      if (myOverflow != null) {
+        myOverflow[index] = null;
+      }
+    }
+
+    /**
+     * Copies {@code length} rows starting at {@code from} to {@code to} in the given chunk, which may be this one.
+     */
+    private void copyRows(int from, @NotNull Chunk target, int to, int length) {
+      System.arraycopy(myTimestamps, from, target.myTimestamps, to, length);
+      for (int column = 0; column < myColumns.length; column++) {
+        System.arraycopy(myColumns[column], from, target.myColumns[column], to, length);
+      }
+      if (myOverflow != null) {
+        if (target.myOverflow == null) {
+          target.myOverflow = new Object[CHUNK_SIZE];
+        }
+        System.arraycopy(myOverflow, from, target.myOverflow, to, length);
+      }
+    }
+
+    private int overflowSize() {
+      if (myOverflow == null) {
+        return 0;
+      }
+      int size = 0;
+      for (int i = 0; i < mySize; i++) {
+        if (myOverflow[i] != null) {
+          size++;
+        }
+      }
+      return size;
+    }
+
+    /**
+     * @return the index of the first timestamp strictly greater than the given one.
+     */
+    private int upperBound(long timestamp) {
+      int low = 0;
+      int high = mySize;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (myTimestamps[mid] <= timestamp) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+
+  /**
+   * Samples of one series, sorted by timestamp. Devices report samples in order so inserts are almost always appends; an older sample
+   * is inserted in place, splitting its chunk if it is full. Guarded by the lock of the storage that owns it.
+   */
+  private static final class Series {
+    private final List<Chunk> myChunks = new ArrayList<>();
+    private final int myColumnCount;
+
+    private Series(int columnCount) {
+      myColumnCount = columnCount;
+    }
+
+    private void insert(long timestamp, @NotNull long[] row, Object overflow, boolean replaceDuplicates) {
+      Chunk tail = myChunks.isEmpty() ? null : myChunks.get(myChunks.size() - 1);
+      if (tail == null || timestamp > tail.last()) {
+        if (tail == null || tail.mySize == CHUNK_SIZE) {
+          tail = new Chunk(myColumnCount);
+          myChunks.add(tail);
+        }
+        tail.myTimestamps[tail.mySize] = timestamp;
+        tail.set(tail.mySize, row, overflow);
+        tail.mySize++;
+        return;
+      }
+
+      int chunkIndex = findChunk(timestamp);
+      Chunk chunk = myChunks.get(chunkIndex);
+      int index = chunk.upperBound(timestamp);
+      if (index > 0 && chunk.myTimestamps[index - 1] == timestamp) {
+        if (replaceDuplicates) {
+          chunk.set(index - 1, row, overflow);
+        }
+        return;
+      }
+
+      if (chunk.mySize == CHUNK_SIZE) {
+        // Move the upper half into a new chunk, then insert into whichever half the timestamp belongs to.
+        Chunk upper = new Chunk(myColumnCount);
+        int half = CHUNK_SIZE / 2;
+        chunk.copyRows(half, upper, 0, CHUNK_SIZE - half);
+        if (chunk.myOverflow != null) {
+          Arrays.fill(chunk.myOverflow, half, CHUNK_SIZE, null);
+        }
+        upper.mySize = CHUNK_SIZE - half;
+        chunk.mySize = half;
+        myChunks.add(chunkIndex + 1, upper);
+        if (index > half) {
+          chunk = upper;
+          index -= half;
+        }
+      }
+      chunk.copyRows(index, chunk, index + 1, chunk.mySize - index);
+      chunk.myTimestamps[index] = timestamp;
+      chunk.set(index, row, overflow);
+      chunk.mySize++;
+    }
+
+    /**
+     * @return the index of the last chunk whose first timestamp is not greater than the given one, or 0 if there is none.
+     */
+    private int findChunk(long timestamp) {
+      int low = 0;
+      int high = myChunks.size() - 1;
+      while (low < high) {
+        int mid = (low + high + 1) >>> 1;
+        if (myChunks.get(mid).first() <= timestamp) {
+          low = mid;
+        }
+        else {
+          high = mid - 1;
+        }
+      }
+      return low;
+    }
+
+    private int size() {
+      return myChunks.stream().mapToInt(chunk -> chunk.mySize).sum();
+    }
+
+    private int overflowSize() {
+      return myChunks.stream().mapToInt(Chunk::overflowSize).sum();
+    }
+
+    /**
+     * Inserts all the samples into the given storage and drops them from this series.
+     *
+     * @return the newest timestamp that was moved, or {@link Long#MIN_VALUE} if the series was empty.
+     */
+    private <S> long moveTo(@NotNull TimeSeriesStorage<S> storage,
+                            @NotNull SampleReader<S> reader,
+                            @NotNull Common.Session session,
+                            long id) {
+      long last = Long.MIN_VALUE;
+      for (Chunk chunk : myChunks) {
+        for (int i = 0; i < chunk.mySize; i++) {
+          storage.insert(session, id, chunk.myTimestamps[i], reader.read(chunk, i));
+        }
+        last = chunk.last();
+      }
+      myChunks.clear();
+      return last;
+    }
+
+    private <S> void collect(long startTimestamp, long endTimestamp, @NotNull SampleReader<S> reader, @NotNull List<S> result) {
+      if (myChunks.isEmpty() || startTimestamp >= endTimestamp) {
+        return;
+      }
+      for (int i = findChunk(startTimestamp); i < myChunks.size(); i++) {
+        Chunk chunk = myChunks.get(i);
+        if (chunk.first() > endTimestamp) {
+          break;
+        }
+        int end = chunk.upperBound(endTimestamp);
+        for (int j = chunk.upperBound(startTimestamp); j < end; j++) {
+          result.add(reader.read(chunk, j));
+        }
+      }
+    }
+  }
+}
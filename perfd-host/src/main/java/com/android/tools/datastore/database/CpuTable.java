@@ -53,6 +53,8 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
     return Logger.getInstance(CpuTable.class);
   }
 
+  @NotNull private TimeSeriesStorage<CpuProfiler.CpuProfilerData> myCpuData = new SqlCpuDataStorage();
+
   public CpuTable(@NotNull Map<Common.Session, Long> sesstionIdLookup) {
     super(sesstionIdLookup);
   }
@@ -60,6 +62,13 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
   @Override
   public void initialize(@NotNull Connection connection) {
     super.initialize(connection);
+    // INSERT_CPU_DATA is an INSERT OR REPLACE.
+    myCpuData = createTimeSeriesStorage(new SqlCpuDataStorage(),
+                                        SampleColumns.forProto(CpuProfiler.CpuProfilerData.getDefaultInstance()),
+                                        true,
+                                        new ArchivedTimeSeriesStorage.Layout<>("Cpu_Data", new String[]{"AppId"}, id -> new long[]{id},
+                                                                               "Timestamp", "Data",
+                                                                               CpuProfiler.CpuProfilerData::parseFrom));
     try {
       createTable("Cpu_Data",
                   "AppId INTEGER NOT NULL",
@@ -130,26 +139,11 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
   }
 
   public void insert(Common.Session session, CpuProfiler.CpuProfilerData data) {
-    execute(CpuStatements.INSERT_CPU_DATA, data.getBasicInfo().getProcessId(), data.getBasicInfo().getEndTimestamp(), session,
-            data.toByteArray());
+    myCpuData.insert(session, data.getBasicInfo().getProcessId(), data.getBasicInfo().getEndTimestamp(), data);
   }
 
   public List<CpuProfiler.CpuProfilerData> getCpuDataByRequest(CpuProfiler.CpuDataRequest request) {
-    List<CpuProfiler.CpuProfilerData> cpuData = new ArrayList<>();
-    try {
-      ResultSet results =
-        executeQuery(CpuStatements.QUERY_CPU_DATA, request.getProcessId(), request.getSession(), request.getStartTimestamp(),
-                     request.getEndTimestamp());
-      while (results.next()) {
-        CpuProfiler.CpuProfilerData.Builder data = CpuProfiler.CpuProfilerData.newBuilder();
-        data.mergeFrom(results.getBytes(DATA_COLUMN));
-        cpuData.add(data.build());
-      }
-    }
-    catch (InvalidProtocolBufferException | SQLException ex) {
-      getLogger().error(ex);
-    }
-    return cpuData;
+    return myCpuData.getRange(request.getSession(), request.getProcessId(), request.getStartTimestamp(), request.getEndTimestamp());
   }
 
   public void insertActivities(int appId,
@@ -158,7 +152,6 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
                                String name,
                                List<CpuProfiler.GetThreadsResponse.ThreadActivity> activities) {
     for (CpuProfiler.GetThreadsResponse.ThreadActivity activity : activities) {
-      // TODO: optimize it by adding the states in batches
       execute(CpuStatements.INSERT_THREAD_ACTIVITY, appId, session, tid, activity.getTimestamp(), activity.getNewState().toString(), name);
     }
   }
@@ -275,6 +268,34 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
     return thread;
   }
 
+  /**
+   * Stores the cpu usage samples in the Cpu_Data table, keyed by process id.
+   */
+  private final class SqlCpuDataStorage implements TimeSeriesStorage<CpuProfiler.CpuProfilerData> {
+    @Override
+    public void insert(@NotNull Common.Session session, long id, long timestamp, @NotNull CpuProfiler.CpuProfilerData sample) {
+      execute(CpuStatements.INSERT_CPU_DATA, id, timestamp, session, sample.toByteArray());
+    }
+
+    @NotNull
+    @Override
+    public List<CpuProfiler.CpuProfilerData> getRange(@NotNull Common.Session session, long id, long startTimestamp, long endTimestamp) {
+      List<CpuProfiler.CpuProfilerData> cpuData = new ArrayList<>();
+      try {
+        ResultSet results = executeQuery(CpuStatements.QUERY_CPU_DATA, id, session, startTimestamp, endTimestamp);
+        while (results.next()) {
+          CpuProfiler.CpuProfilerData.Builder data = CpuProfiler.CpuProfilerData.newBuilder();
+          data.mergeFrom(results.getBytes(DATA_COLUMN));
+          cpuData.add(data.build());
+        }
+      }
+      catch (InvalidProtocolBufferException | SQLException ex) {
+        getLogger().error(ex);
+      }
+      return cpuData;
+    }
+  }
+
   /**
    * Trace data wrapper that contains the trace bytes and the profiler type (e.g. simpleperf, ART) used to generate it.
    */
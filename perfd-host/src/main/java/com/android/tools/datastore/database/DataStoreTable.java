@@ -15,18 +15,21 @@
  */
 package com.android.tools.datastore.database;
 
+import com.android.tools.datastore.DataStoreDatabase;
+import com.android.tools.datastore.archive.SessionArchiveReader;
+import com.android.tools.datastore.archive.SessionArchiveWriter;
 import com.android.tools.profiler.proto.Common;
 import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Interface a {@link com.android.tools.datastore.ServicePassThrough} object returns to indicate this object is
@@ -37,10 +40,38 @@ public abstract class DataStoreTable<T extends Enum> {
   private static final long KEYS_ERROR = -1;
   private static final Set<DataStoreTableErrorCallback> ERROR_CALLBACKS = new HashSet();
 
+  /**
+   * Maximum number of writes buffered per table before the writing thread is forced to flush them itself.
+   */
+  private static final int WRITE_QUEUE_CAPACITY = 4096;
+
+  /**
+   * Number of rows inserted per JDBC batch when a session archive is imported.
+   */
+  private static final int IMPORT_BATCH_SIZE = 1024;
+
+  /**
+   * All initialized tables, so that {@link #flushTables(Connection)} can push their pending writes before a commit.
+   */
+  private static final Set<DataStoreTable> ACTIVE_TABLES = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
   private Connection myConnection;
+  private DataStoreDatabase.Characteristic myCharacteristic = DataStoreDatabase.Characteristic.DURABLE;
   private final ThreadLocal<Map<T, PreparedStatement>> myStatementMap = new ThreadLocal<>();
   protected final Map<Common.Session, Long> mySessionIdLookup;
 
+  private final BlockingQueue<PendingWrite<T>> myWriteQueue = new ArrayBlockingQueue<>(WRITE_QUEUE_CAPACITY);
+  private final Object myFlushLock = new Object();
+  // The statements queued writes are applied with, whichever thread flushes them. Guarded by myFlushLock.
+  private Map<T, PreparedStatement> myWriteStatementMap;
+  // Whether writes were applied to the connection since the last commit of the owning database.
+  private final AtomicBoolean myHasUncommittedWrites = new AtomicBoolean();
+  private final WriteStats myWriteStats = new WriteStats();
+  // The column definitions of the tables created by this object, by table name.
+  private final Map<String, List<String>> myTableColumns = new LinkedHashMap<>();
+  // The time series storages picked by createTimeSeriesStorage since the last initialize.
+  private final List<ArchivedTimeSeriesStorage<?>> myTimeSeriesStorages = new ArrayList<>();
+
   public interface DataStoreTableErrorCallback {
     void onDataStoreError(Throwable t);
   }
@@ -56,6 +87,43 @@ public abstract class DataStoreTable<T extends Enum> {
    */
   public void initialize(@NotNull Connection connection) {
     myConnection = connection;
+    synchronized (myFlushLock) {
+      myWriteStatementMap = null;
+    }
+    myTimeSeriesStorages.clear();
+    ACTIVE_TABLES.add(this);
+  }
+
+  /**
+   * Initializes the table for a database with the given characteristic, which decides where its time series samples are kept.
+   * See {@link #createTimeSeriesStorage(TimeSeriesStorage, SampleColumns, boolean, ArchivedTimeSeriesStorage.Layout)}.
+   */
+  public void initialize(@NotNull Connection connection, @NotNull DataStoreDatabase.Characteristic characteristic) {
+    myCharacteristic = characteristic;
+    initialize(connection);
+  }
+
+  /**
+   * Picks the storage for a time series of this table. Should be called from {@link #initialize(Connection)}.
+   *
+   * @param sqlStorage        the storage used when samples are kept in the SQL database.
+   * @param columns           how the columnar storage flattens samples into primitive columns.
+   * @param replaceDuplicates whether the columnar storage should replace or ignore a sample with an existing timestamp, to match the
+   *                          INSERT statement used by sqlStorage.
+   * @param layout            where sqlStorage keeps the samples, so that imported sessions can be read from their archive instead.
+   */
+  @NotNull
+  protected <S> TimeSeriesStorage<S> createTimeSeriesStorage(@NotNull TimeSeriesStorage<S> sqlStorage,
+                                                             @NotNull SampleColumns<S> columns,
+                                                             boolean replaceDuplicates,
+                                                             @NotNull ArchivedTimeSeriesStorage.Layout<S> layout) {
+    TimeSeriesStorage<S> storage = sqlStorage;
+    if (myCharacteristic == DataStoreDatabase.Characteristic.COLUMNAR) {
+      storage = new ColumnarTimeSeriesStorage<>(sqlStorage, columns, replaceDuplicates);
+    }
+    ArchivedTimeSeriesStorage<S> archivedStorage = new ArchivedTimeSeriesStorage<>(storage, layout);
+    myTimeSeriesStorages.add(archivedStorage);
+    return archivedStorage;
   }
 
   /**
@@ -84,6 +152,341 @@ public abstract class DataStoreTable<T extends Enum> {
     }
   }
 
+  /**
+   * Writes out the pending writes of every table that is backed by the given connection. This is called by the
+   * {@link com.android.tools.datastore.DataStoreDatabase} before each commit so a commit always includes everything queued before it.
+   *
+   * @return whether any of the tables wrote to the connection since the last call, i.e. whether there is anything to commit.
+   */
+  public static boolean flushTables(@NotNull Connection connection) {
+    List<DataStoreTable> tables;
+    synchronized (ACTIVE_TABLES) {
+      tables = new ArrayList<>(ACTIVE_TABLES);
+    }
+    boolean hasUncommittedWrites = false;
+    for (DataStoreTable table : tables) {
+      if (table.myConnection == connection) {
+        table.flush();
+        hasUncommittedWrites |= table.myHasUncommittedWrites.getAndSet(false);
+      }
+    }
+    return hasUncommittedWrites;
+  }
+
+  /**
+   * Lets every table backed by one of the connections release what it keeps in memory for a session that ended. The session's data
+   * stays available from the database.
+   */
+  public static void endSession(@NotNull Collection<Connection> connections, @NotNull Common.Session session) {
+    for (DataStoreTable<?> table : getTables(connections)) {
+      table.onSessionEnded(session);
+    }
+  }
+
+  /**
+   * Drops what the tables backed by the connection keep in memory. Called by the {@link com.android.tools.datastore.DataStoreDatabase}
+   * once the connection is closed, since none of the data can be read anymore.
+   */
+  public static void closeTables(@NotNull Connection connection) {
+    for (DataStoreTable<?> table : getTables(Collections.singleton(connection))) {
+      table.onClosed();
+      ACTIVE_TABLES.remove(table);
+    }
+  }
+
+  /**
+   * Called by {@link #closeTables(Connection)}. By default, the time series storages drop the samples they keep in memory.
+   */
+  protected void onClosed() {
+    myTimeSeriesStorages.forEach(TimeSeriesStorage::clear);
+  }
+
+  /**
+   * Called by {@link #endSession(Collection, Common.Session)}. By default, the time series storages move the session's samples out of
+   * memory and the writes this causes are flushed.
+   */
+  protected void onSessionEnded(@NotNull Common.Session session) {
+    myTimeSeriesStorages.forEach(storage -> storage.endSession(session));
+    flush();
+  }
+
+  /**
+   * Writes all queued statements to the database, grouping consecutive rows of the same statement into a single JDBC batch.
+   * Queries call this first, so readers always see every write that was issued before them.
+   */
+  public void flush() {
+    synchronized (myFlushLock) {
+      if (myWriteQueue.isEmpty()) {
+        return;
+      }
+      List<PendingWrite<T>> writes = new ArrayList<>(myWriteQueue.size());
+      myWriteQueue.drainTo(writes);
+      if (isClosed()) {
+        return;
+      }
+
+      Map<T, PreparedStatement> statements = getWriteStatementMap();
+      int start = 0;
+      while (start < writes.size()) {
+        T type = writes.get(start).myStatement;
+        int end = start + 1;
+        while (end < writes.size() && writes.get(end).myStatement == type) {
+          end++;
+        }
+        if (!executeWrites(statements.get(type), writes.subList(start, end))) {
+          // The connection is gone, so none of the remaining writes can be applied either.
+          return;
+        }
+        start = end;
+      }
+    }
+  }
+
+  /**
+   * Applies consecutive writes of the same statement as one JDBC batch. If the batch fails, the writes it did not get to are applied one
+   * at a time, so only the rows that fail are lost. Each of them is logged.
+   *
+   * @return false if the connection was closed while writing.
+   */
+  private boolean executeWrites(@NotNull PreparedStatement statement, @NotNull List<PendingWrite<T>> writes) {
+    int[] updateCounts;
+    try {
+      for (PendingWrite<T> write : writes) {
+        applyParams(statement, write.myParams);
+        statement.addBatch();
+      }
+      executeBatch(statement);
+      myWriteStats.myFlushedWrites.addAndGet(writes.size());
+      myHasUncommittedWrites.set(true);
+      return true;
+    }
+    catch (SQLException ex) {
+      try {
+        statement.clearBatch();
+      }
+      catch (SQLException ignored) {
+      }
+      if (isClosed()) {
+        onError(ex);
+        return false;
+      }
+      updateCounts = ex instanceof BatchUpdateException ? ((BatchUpdateException)ex).getUpdateCounts() : null;
+    }
+
+    // The update counts cover the writes the driver processed before it stopped, if it stopped.
+    int processed = updateCounts != null ? Math.min(updateCounts.length, writes.size()) : 0;
+    for (int i = 0; i < writes.size(); i++) {
+      PendingWrite<T> write = writes.get(i);
+      if (i < processed) {
+        if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+          onWriteFailed(write, null);
+        }
+        else {
+          myWriteStats.myFlushedWrites.incrementAndGet();
+        }
+        continue;
+      }
+      try {
+        applyParams(statement, write.myParams);
+        statement.execute();
+        myWriteStats.myFlushedWrites.incrementAndGet();
+      }
+      catch (SQLException ex) {
+        if (isClosed()) {
+          onError(ex);
+          return false;
+        }
+        onWriteFailed(write, ex);
+      }
+    }
+    myHasUncommittedWrites.set(true);
+    return true;
+  }
+
+  private void onWriteFailed(@NotNull PendingWrite<T> write, @Nullable SQLException ex) {
+    myWriteStats.myFailedWrites.incrementAndGet();
+    LOG.warn(String.format("Failed to write %s %s", write.myStatement, Arrays.toString(write.myParams)), ex);
+  }
+
+  /**
+   * Writes the rows of {@code session} from every table backed by one of the connections to a session archive.
+   */
+  public static void exportSession(@NotNull Collection<Connection> connections,
+                                   @NotNull Common.Session session,
+                                   @NotNull SessionArchiveWriter writer) throws IOException, SQLException {
+    for (DataStoreTable<?> table : getTables(connections)) {
+      // Time series kept in memory are moved to their SQL tables first, so they are exported with the rest of the session. If the
+      // session is still live, its new samples are kept in memory again afterwards.
+      table.myTimeSeriesStorages.forEach(storage -> storage.endSession(session));
+      table.flush();
+      for (String name : table.myTableColumns.keySet()) {
+        SessionArchiveReader archive = table.getArchive(name, session);
+        if (archive != null) {
+          // The session was imported, and the table is read from its archive rather than from SQL.
+          copyTable(archive, name, writer);
+        }
+        else {
+          table.exportTable(name, session, writer);
+        }
+      }
+    }
+  }
+
+  /**
+   * Opens a session archive in the tables backed by one of the connections, under {@code session}. The time series, which make up
+   * most of a session, are read from the archive in place, see {@link ArchivedTimeSeriesStorage}. The rows of the other tables are
+   * inserted, as they are few and are queried in ways the archive can't answer, e.g. joins. The archive has to stay open until
+   * {@link #closeSession(Collection, Common.Session)}.
+   */
+  public static void importSession(@NotNull Collection<Connection> connections,
+                                   @NotNull Common.Session session,
+                                   @NotNull SessionArchiveReader reader) throws IOException, SQLException {
+    for (DataStoreTable<?> table : getTables(connections)) {
+      for (String name : table.myTableColumns.keySet()) {
+        if (!reader.hasTable(name)) {
+          continue;
+        }
+        boolean isTimeSeries = false;
+        for (ArchivedTimeSeriesStorage<?> storage : table.myTimeSeriesStorages) {
+          if (storage.getTable().equals(name)) {
+            storage.openArchive(session, reader);
+            isTimeSeries = true;
+          }
+        }
+        if (!isTimeSeries) {
+          table.importTable(name, session, reader);
+        }
+      }
+      table.flush();
+    }
+  }
+
+  /**
+   * Stops reading the time series of an imported session from its archive, which can be closed afterwards.
+   */
+  public static void closeSession(@NotNull Collection<Connection> connections, @NotNull Common.Session session) {
+    for (DataStoreTable<?> table : getTables(connections)) {
+      table.myTimeSeriesStorages.forEach(storage -> storage.closeArchive(session));
+    }
+  }
+
+  @Nullable
+  private SessionArchiveReader getArchive(@NotNull String table, @NotNull Common.Session session) {
+    for (ArchivedTimeSeriesStorage<?> storage : myTimeSeriesStorages) {
+      if (storage.getTable().equals(table) && storage.getArchive(session) != null) {
+        return storage.getArchive(session);
+      }
+    }
+    return null;
+  }
+
+  private static void copyTable(@NotNull SessionArchiveReader archive, @NotNull String table, @NotNull SessionArchiveWriter writer)
+    throws IOException, SQLException {
+    SessionArchiveWriter.TableWriter tableWriter = writer.startTable(table, archive.getColumnNames(table));
+    archive.readRows(table, tableWriter::addRow);
+    tableWriter.finish();
+  }
+
+  @NotNull
+  private static List<DataStoreTable<?>> getTables(@NotNull Collection<Connection> connections) {
+    List<DataStoreTable<?>> tables = new ArrayList<>();
+    synchronized (ACTIVE_TABLES) {
+      for (DataStoreTable table : ACTIVE_TABLES) {
+        if (connections.contains(table.myConnection)) {
+          tables.add(table);
+        }
+      }
+    }
+    // Importing the device is what gives a session its id, so the profiler table has to come before the tables that reference it.
+    tables.sort(Comparator.comparing(table -> !(table instanceof ProfilerTable)));
+    return tables;
+  }
+
+  /**
+   * Writes the rows of {@code table} that belong to {@code session} to the archive. By default these are the rows whose Session column
+   * holds the id of the session. Tables that are not partitioned by session are left out, as exporting all of their rows would leak the
+   * data of other sessions into the archive; they have to override this to export their rows.
+   */
+  protected void exportTable(@NotNull String table, @NotNull Common.Session session, @NotNull SessionArchiveWriter writer)
+    throws IOException, SQLException {
+    if (!hasSessionColumn(table)) {
+      LOG.warn(String.format("Table %s is not partitioned by session and is left out of the archive", table));
+      return;
+    }
+    exportRows(writer, table, String.format("SELECT * FROM %s WHERE Session = ?", table), session);
+  }
+
+  protected void exportRows(@NotNull SessionArchiveWriter writer, @NotNull String table, @NotNull String query, Object... params)
+    throws IOException, SQLException {
+    try (PreparedStatement statement = myConnection.prepareStatement(query)) {
+      applyParams(statement, params);
+      try (ResultSet results = statement.executeQuery()) {
+        writer.writeTable(table, results);
+      }
+    }
+  }
+
+  /**
+   * Inserts the rows of {@code table} from the archive, replacing the value of the Session column with the id of {@code session}.
+   * Rows that collide with existing ones are ignored.
+   *
+   * Archives written before a table got its Session column, such as Network_Data, only hold the rows of their session, so their rows are
+   * given the id of {@code session} too.
+   */
+  protected void importTable(@NotNull String table, @NotNull Common.Session session, @NotNull SessionArchiveReader reader)
+    throws IOException, SQLException {
+    List<String> columns = new ArrayList<>(reader.getColumnNames(table));
+    int sessionColumn = columns.indexOf("Session");
+    if (sessionColumn < 0 && hasSessionColumn(table)) {
+      sessionColumn = columns.size();
+      columns.add("Session");
+    }
+    Long sessionId = mySessionIdLookup.get(session);
+    if (sessionColumn >= 0 && sessionId == null) {
+      throw new IOException("Session not found: " + session);
+    }
+    int sessionIndex = sessionColumn;
+
+    String insert = String.format("INSERT OR IGNORE INTO %s (%s) VALUES (%s)", table, String.join(", ", columns),
+                                  String.join(", ", Collections.nCopies(columns.size(), "?")));
+    try (PreparedStatement statement = myConnection.prepareStatement(insert)) {
+      int[] batchSize = new int[1];
+      reader.readRows(table, row -> {
+        for (int i = 0; i < columns.size(); i++) {
+          statement.setObject(i + 1, i == sessionIndex ? sessionId : row[i]);
+        }
+        statement.addBatch();
+        if (++batchSize[0] == IMPORT_BATCH_SIZE) {
+          executeBatch(statement);
+          batchSize[0] = 0;
+        }
+      });
+      if (batchSize[0] > 0) {
+        executeBatch(statement);
+      }
+    }
+    myHasUncommittedWrites.set(true);
+  }
+
+  private boolean hasSessionColumn(@NotNull String table) {
+    for (String column : myTableColumns.get(table)) {
+      if (column.startsWith("Session ")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @NotNull
+  public WriteStats getWriteStats() {
+    return myWriteStats;
+  }
+
+  private void executeBatch(@NotNull PreparedStatement statement) throws SQLException {
+    statement.executeBatch();
+    myWriteStats.myBatches.incrementAndGet();
+  }
+
   protected static void onError(Throwable t) {
     LOG.error(t);
     for (DataStoreTableErrorCallback callback : ERROR_CALLBACKS) {
@@ -91,6 +494,27 @@ public abstract class DataStoreTable<T extends Enum> {
     }
   }
 
+  /**
+   * Returns the statements queued writes are applied with. They are prepared once per table rather than per thread, so flushing from
+   * the commit timer or from a writer that hit back-pressure doesn't prepare yet another set of statements. Call with myFlushLock held.
+   */
+  @NotNull
+  private Map<T, PreparedStatement> getWriteStatementMap() {
+    if (myWriteStatementMap == null) {
+      // prepareStatements adds the statements to the map of the calling thread, so swap in the shared map while it runs.
+      Map<T, PreparedStatement> threadStatements = myStatementMap.get();
+      myStatementMap.set(new HashMap<>());
+      try {
+        prepareStatements();
+        myWriteStatementMap = myStatementMap.get();
+      }
+      finally {
+        myStatementMap.set(threadStatements);
+      }
+    }
+    return myWriteStatementMap;
+  }
+
   @NotNull
   protected Map<T, PreparedStatement> getStatementMap() {
     if (myStatementMap.get() == null) {
@@ -101,6 +525,7 @@ public abstract class DataStoreTable<T extends Enum> {
   }
 
   protected void createTable(@NotNull String table, String... columns) throws SQLException {
+    myTableColumns.put(table, Arrays.asList(columns));
     myConnection.createStatement().execute(String.format("DROP TABLE IF EXISTS %s ", table));
     StringBuilder statement = new StringBuilder();
     statement.append(String.format("CREATE TABLE %s", table));
@@ -131,21 +556,26 @@ public abstract class DataStoreTable<T extends Enum> {
     getStatementMap().put(statement, myConnection.prepareStatement(stmt, statementFlags));
   }
 
+  /**
+   * Queues a write statement. The write is applied in order with the other writes of this table, either by the periodic commit of
+   * the owning database, by the next query on this table, or by the calling thread itself when the queue is full.
+   */
   protected void execute(@NotNull T statement, Object... params) {
-    try {
-      if (isClosed()) {
-        return;
-      }
-      PreparedStatement stmt = getStatementMap().get(statement);
-      applyParams(stmt, params);
-      stmt.execute();
+    if (isClosed()) {
+      return;
     }
-    catch (SQLException ex) {
-      onError(ex);
+    PendingWrite<T> write = new PendingWrite<>(statement, params);
+    myWriteStats.myQueuedWrites.incrementAndGet();
+    while (!myWriteQueue.offer(write)) {
+      // The queue is full: apply back-pressure by making the writer drain it.
+      myWriteStats.myBackPressureFlushes.incrementAndGet();
+      flush();
     }
+    myWriteStats.updateMaxQueueDepth(myWriteQueue.size());
   }
 
   protected long executeWithGeneratedKeys(@NotNull T statement, Object... params) {
+    flush();
     try {
       if (isClosed()) {
         return -1;
@@ -153,6 +583,7 @@ public abstract class DataStoreTable<T extends Enum> {
       PreparedStatement stmt = getStatementMap().get(statement);
       applyParams(stmt, params);
       stmt.execute();
+      myHasUncommittedWrites.set(true);
       return stmt.getGeneratedKeys().getLong(1);
     }
     catch (SQLException ex) {
@@ -163,6 +594,7 @@ public abstract class DataStoreTable<T extends Enum> {
 
   protected ResultSet executeQuery(@NotNull T statement, Object... params) throws SQLException {
     // TODO: Handle when the database conneciton is closed and a query is made.
+    flush();
     PreparedStatement stmt = getStatementMap().get(statement);
     applyParams(stmt, params);
     return stmt.executeQuery();
@@ -202,4 +634,73 @@ public abstract class DataStoreTable<T extends Enum> {
       }
     }
   }
+
+  private static final class PendingWrite<T> {
+    @NotNull private final T myStatement;
+    private final Object[] myParams;
+
+    private PendingWrite(@NotNull T statement, Object[] params) {
+      myStatement = statement;
+      myParams = params;
+    }
+  }
+
+  /**
+   * Counters describing the write-behind queue of a table.
+   */
+  public static final class WriteStats {
+    private final AtomicLong myQueuedWrites = new AtomicLong();
+    private final AtomicLong myFlushedWrites = new AtomicLong();
+    private final AtomicLong myBatches = new AtomicLong();
+    private final AtomicLong myBackPressureFlushes = new AtomicLong();
+    private final AtomicLong myFailedWrites = new AtomicLong();
+    private final AtomicLong myMaxQueueDepth = new AtomicLong();
+
+    private void updateMaxQueueDepth(long depth) {
+      long max;
+      do {
+        max = myMaxQueueDepth.get();
+      }
+      while (depth > max && !myMaxQueueDepth.compareAndSet(max, depth));
+    }
+
+    /**
+     * @return the number of writes that were handed to {@link DataStoreTable#execute(Enum, Object...)}.
+     */
+    public long getQueuedWrites() {
+      return myQueuedWrites.get();
+    }
+
+    /**
+     * @return the number of writes that have been sent to the database.
+     */
+    public long getFlushedWrites() {
+      return myFlushedWrites.get();
+    }
+
+    /**
+     * @return the number of JDBC batches executed.
+     */
+    public long getBatches() {
+      return myBatches.get();
+    }
+
+    /**
+     * @return how many times a writer found the queue full and had to flush it on its own thread.
+     */
+    public long getBackPressureFlushes() {
+      return myBackPressureFlushes.get();
+    }
+
+    /**
+     * @return the number of writes the database rejected. The other writes flushed with them are still applied.
+     */
+    public long getFailedWrites() {
+      return myFailedWrites.get();
+    }
+
+    public long getMaxQueueDepth() {
+      return myMaxQueueDepth.get();
+    }
+  }
 }
@@ -21,14 +21,15 @@ import com.android.tools.profiler.proto.MemoryProfiler;
 import com.android.tools.profiler.proto.MemoryProfiler.*;
 import com.google.protobuf3jarjar.InvalidProtocolBufferException;
 import com.intellij.openapi.diagnostic.Logger;
+import gnu.trove.TIntObjectHashMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.function.Consumer;
 
 import static com.android.tools.datastore.database.MemoryLiveAllocationTable.MemoryStatements.*;
 
@@ -36,37 +37,16 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
   public enum MemoryStatements {
     // O+ Allocation Tracking
     INSERT_CLASS("INSERT OR IGNORE INTO Memory_AllocatedClass (Pid, Session, Tag, AllocTime, Name) VALUES (?, ?, ?, ?, ?)"),
-    INSERT_ALLOC(
-      "INSERT OR IGNORE INTO Memory_AllocationEvents " +
-      "(Pid, Session, Tag, ClassTag, AllocTime, FreeTime, Size, Length, ThreadId, StackId, HeapId) " +
-      "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"),
     INSERT_METHOD("INSERT OR IGNORE INTO Memory_MethodInfos (Pid, Session, MethodId, MethodName, ClassName) VALUES (?, ?, ?, ?, ?)"),
     INSERT_ENCODED_STACK("INSERT OR IGNORE INTO Memory_StackInfos (Pid, Session, StackId, AllocTime, StackData) VALUES (?, ?, ?, ?, ?)"),
     INSERT_THREAD_INFO("INSERT OR IGNORE INTO Memory_ThreadInfos (Pid, Session, ThreadId, AllocTime, ThreadName) VALUES (?, ?, ?, ?, ?)"),
-    UPDATE_ALLOC(
-      "UPDATE Memory_AllocationEvents SET FreeTime = ? WHERE Pid = ? AND Session = ? AND Tag = ?"),
     QUERY_CLASS(
       "SELECT Tag, AllocTime, Name FROM Memory_AllocatedClass where Pid = ? AND Session = ? AND AllocTime >= ? AND AllocTime < ?"),
-    QUERY_ALLOC_BY_ALLOC_TIME(
-      "SELECT Tag, ClassTag, AllocTime, FreeTime, Size, Length, ThreadId, StackId, HeapId FROM Memory_AllocationEvents " +
-      "WHERE Pid = ? AND Session = ? AND AllocTime >= ? AND AllocTime < ?"),
-    QUERY_ALLOC_BY_FREE_TIME(
-      "SELECT Tag, ClassTag, AllocTime, FreeTime, Size, Length, ThreadId, StackId, HeapId FROM Memory_AllocationEvents " +
-      "WHERE Pid = ? AND Session = ? AND FreeTime >= ? AND FreeTime < ?"),
     QUERY_METHOD_INFO("Select MethodName, ClassName FROM Memory_MethodInfos WHERE Pid = ? AND Session = ? AND MethodId = ?"),
     QUERY_ENCODED_STACK_INFO_BY_TIME(
       "Select StackData FROM Memory_StackInfos WHERE Pid = ? AND Session = ? AND AllocTime >= ? AND AllocTime < ?"),
     QUERY_THREAD_INFO_BY_TIME(
-      "Select ThreadId, ThreadName FROM Memory_ThreadInfos WHERE Pid = ? AND Session = ? AND AllocTime >= ? AND AllocTime < ?"),
-
-    COUNT_ALLOC("SELECT count(*) FROM Memory_AllocationEvents"),
-    PRUNE_ALLOC("DELETE FROM Memory_AllocationEvents WHERE Pid = ? AND Session = ? AND FreeTime <= (" +
-                " SELECT MAX(FreeTime)" +
-                " FROM Memory_AllocationEvents" +
-                " WHERE Pid = ? AND Session = ? AND FreeTime < " + Long.MAX_VALUE +
-                " ORDER BY FreeTime" +
-                " LIMIT ?" +
-                ")"),;
+      "Select ThreadId, ThreadName FROM Memory_ThreadInfos WHERE Pid = ? AND Session = ? AND AllocTime >= ? AND AllocTime < ?");
 
     @NotNull private final String mySqlStatement;
 
@@ -80,9 +60,24 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
     }
   }
 
-  // 5M ought to be enough for anybody (~300MB of data)
-  // Note - Google Search app can easily allocate 100k+ temporary objects in an relatively short amount of time (e.g. one search query)
-  private int myAllocationCountLimit = 5000000;
+  /**
+   * Maximum number of allocation records kept per process. Records take 48 bytes each in off-heap segments, so 20M is ~960MB of native
+   * memory; the Java heap only holds the tag to record index of the store.
+   * Note - Google Search app can easily allocate 100k+ temporary objects in an relatively short amount of time (e.g. one search query)
+   */
+  private int myAllocationCountLimit = 20000000;
+
+  /**
+   * Default number of events per {@link BatchAllocationSample} returned by {@link #getAllocations(int, Common.Session, long, long, int,
+   * Consumer)}.
+   */
+  public static final int DEFAULT_ALLOCATION_CHUNK_SIZE = 10000;
+
+  /**
+   * The allocation events are kept in an {@link AllocationEventStore} per session and process, instead of a SQL table. They are the only
+   * copy of the events, so the stores of a session that ended are kept, and only released when the database is closed.
+   */
+  private final Map<Common.Session, TIntObjectHashMap<AllocationEventStore>> myAllocationStores = new HashMap<>();
 
   private static Logger getLogger() {
     return Logger.getInstance(MemoryLiveAllocationTable.class);
@@ -99,17 +94,12 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
       // O+ Allocation Tracking
       createTable("Memory_AllocatedClass", "Pid INTEGER NOT NULL", "Session INTEGER NOT NULL", "Tag INTEGER",
                   "AllocTime INTEGER", "Name TEXT", "PRIMARY KEY(Pid, Session, Tag)");
-      createTable("Memory_AllocationEvents", "Pid INTEGER NOT NULL", "Session INTEGER NOT NULL", "Tag INTEGER",
-                  "ClassTag INTEGER", "AllocTime INTEGER", "FreeTime INTEGER", "Size INTEGER", "Length INTEGER", "ThreadId INTEGER",
-                  "StackId INTEGER", "HeapId INTEGER", "PRIMARY KEY(Pid, Session, Tag)");
       createTable("Memory_MethodInfos", "Pid INTEGER NOT NULL", "Session INTEGER NOT NULL", "MethodId INTEGER",
                   "MethodName TEXT", "ClassName TEXT", "PRIMARY KEY(Pid, Session, MethodId)");
       createTable("Memory_StackInfos", "Pid INTEGER NOT NULL", "Session INTEGER NOT NULL", "StackId INTEGER", "AllocTime INTEGER",
                   "StackData BLOB", "PRIMARY KEY(Pid, Session, StackId)");
       createTable("Memory_ThreadInfos", "Pid INTEGER NOT NULL", "Session INTEGER NOT NULL", "ThreadId INTEGER", "AllocTime INTEGER",
                   "ThreadName TEXT", "PRIMARY KEY(Pid, Session, ThreadId)");
-      createIndex("Memory_AllocationEvents", 0, "Pid", "Session", "AllocTime");
-      createIndex("Memory_AllocationEvents", 1, "Pid", "Session", "FreeTime");
       createIndex("Memory_AllocatedClass", 0, "Pid", "Session", "AllocTime");
       createIndex("Memory_StackInfos", 0, "Pid", "Session", "AllocTime");
       createIndex("Memory_ThreadInfos", 0, "Pid", "Session", "AllocTime");
@@ -138,47 +128,46 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
 
   public MemoryProfiler.BatchAllocationSample getAllocations(int pid, Common.Session session, long startTime, long endTime) {
     MemoryProfiler.BatchAllocationSample.Builder sampleBuilder = MemoryProfiler.BatchAllocationSample.newBuilder();
-    try {
-      // Then get all allocation events that are valid for requestTime.
-      ResultSet allocResult = executeQuery(QUERY_ALLOC_BY_ALLOC_TIME, pid, session, startTime, endTime);
-      long timestamp = Long.MIN_VALUE;
-
-      while (allocResult.next()) {
-        long allocTime = allocResult.getLong(3);
-        if (allocTime >= startTime) {
-          MemoryProfiler.AllocationEvent event = MemoryProfiler.AllocationEvent.newBuilder()
-            .setAllocData(
-              MemoryProfiler.AllocationEvent.Allocation.newBuilder().setTag(allocResult.getInt(1)).setClassTag(allocResult.getInt(2))
-                .setSize(allocResult.getLong(5)).setLength(allocResult.getInt(6)).setThreadId(allocResult.getInt(7))
-                .setStackId(allocResult.getInt(8)).setHeapId(allocResult.getInt(9)).build())
-            .setTimestamp(allocTime).build();
-          sampleBuilder.addEvents(event);
-          timestamp = Math.max(timestamp, allocTime);
-        }
-      }
-
-      ResultSet freeResult = executeQuery(QUERY_ALLOC_BY_FREE_TIME, pid, session, startTime, endTime);
-      while (freeResult.next()) {
-        long freeTime = freeResult.getLong(4);
-        if (freeTime < endTime) {
-          MemoryProfiler.AllocationEvent event = MemoryProfiler.AllocationEvent.newBuilder()
-            .setFreeData(
-              MemoryProfiler.AllocationEvent.Deallocation.newBuilder().setTag(freeResult.getInt(1)).setClassTag(freeResult.getInt(2))
-                .setSize(freeResult.getLong(5)).setLength(freeResult.getInt(6)).setThreadId(freeResult.getInt(7))
-                .setStackId(freeResult.getInt(8)).setHeapId(freeResult.getInt(9)).build())
-            .setTimestamp(freeTime).build();
-          sampleBuilder.addEvents(event);
-          timestamp = Math.max(timestamp, freeTime);
-        }
-      }
+    long[] timestamp = {Long.MIN_VALUE};
+    getAllocations(pid, session, startTime, endTime, Integer.MAX_VALUE, chunk -> {
+      sampleBuilder.addAllEvents(chunk.getEventsList());
+      timestamp[0] = Math.max(timestamp[0], chunk.getTimestamp());
+    });
+    return sampleBuilder.setTimestamp(timestamp[0]).build();
+  }
 
-      sampleBuilder.setTimestamp(timestamp);
-    }
-    catch (SQLException ex) {
-      getLogger().error(ex);
+  /**
+   * Same as {@link #getAllocations(int, Common.Session, long, long)}, but hands the events to the consumer in samples of at most
+   * chunkSize events, so callers can forward them without building one big response. All allocation events come first, followed by the
+   * deallocation events sorted by free time. Each chunk's timestamp is the latest event timestamp within that chunk. The consumer is
+   * called without holding the lock of the store, so the events of the session can keep being inserted meanwhile.
+   */
+  public void getAllocations(int pid,
+                             Common.Session session,
+                             long startTime,
+                             long endTime,
+                             int chunkSize,
+                             @NotNull Consumer<MemoryProfiler.BatchAllocationSample> chunkConsumer) {
+    AllocationEventStore store = getAllocationStore(pid, session, false);
+    if (store == null) {
+      return;
     }
 
-    return sampleBuilder.build();
+    ChunkBuilder chunks = new ChunkBuilder(chunkSize, chunkConsumer);
+    store.forEachAllocatedIn(startTime, endTime, (tag, classTag, allocTime, freeTime, size, length, threadId, stackId, heapId) ->
+      chunks.add(MemoryProfiler.AllocationEvent.newBuilder()
+        .setAllocData(
+          MemoryProfiler.AllocationEvent.Allocation.newBuilder().setTag(tag).setClassTag(classTag).setSize(size).setLength(length)
+            .setThreadId(threadId).setStackId(stackId).setHeapId(heapId).build())
+        .setTimestamp(allocTime).build()));
+
+    store.forEachFreedIn(startTime, endTime, (tag, classTag, allocTime, freeTime, size, length, threadId, stackId, heapId) ->
+      chunks.add(MemoryProfiler.AllocationEvent.newBuilder()
+        .setFreeData(
+          MemoryProfiler.AllocationEvent.Deallocation.newBuilder().setTag(tag).setClassTag(classTag).setSize(size).setLength(length)
+            .setThreadId(threadId).setStackId(stackId).setHeapId(heapId).build())
+        .setTimestamp(freeTime).build()));
+    chunks.flush();
   }
 
   @NotNull
@@ -238,82 +227,43 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
   }
 
   public void insertAllocationData(int pid, Common.Session session, MemoryProfiler.BatchAllocationSample sample) {
-    MemoryProfiler.AllocationEvent.EventCase currentCase = null;
-    PreparedStatement currentStatement = null;
+    AllocationEventStore store = null;
     int allocAndFreeCount = 0;
-    try {
-      for (MemoryProfiler.AllocationEvent event : sample.getEventsList()) {
-        if (currentCase != event.getEventCase()) {
-          if (currentCase != null) {
-            currentStatement.executeBatch();
+    for (MemoryProfiler.AllocationEvent event : sample.getEventsList()) {
+      switch (event.getEventCase()) {
+        case CLASS_DATA:
+          AllocatedClass klass = event.getClassData();
+          execute(INSERT_CLASS, pid, session, klass.getClassId(), event.getTimestamp(), jniToJavaName(klass.getClassName()));
+          break;
+        case ALLOC_DATA:
+          allocAndFreeCount++;
+          if (store == null) {
+            store = getAllocationStore(pid, session, true);
           }
-
-          currentCase = event.getEventCase();
-          switch (currentCase) {
-            case CLASS_DATA:
-              currentStatement = getStatementMap().get(INSERT_CLASS);
-              break;
-            case ALLOC_DATA:
-              currentStatement = getStatementMap().get(INSERT_ALLOC);
-              break;
-            case FREE_DATA:
-              currentStatement = getStatementMap().get(UPDATE_ALLOC);
-              break;
-            default:
-              assert false;
+          AllocationEvent.Allocation allocation = event.getAllocData();
+          store.insertAllocation(allocation.getTag(), allocation.getClassTag(), event.getTimestamp(), allocation.getSize(),
+                                 allocation.getLength(), allocation.getThreadId(), allocation.getStackId(), allocation.getHeapId());
+          break;
+        case FREE_DATA:
+          allocAndFreeCount++;
+          if (store == null) {
+            store = getAllocationStore(pid, session, true);
           }
-        }
-
-        switch (currentCase) {
-          case CLASS_DATA:
-            assert currentStatement != null;
-            AllocatedClass klass = event.getClassData();
-            applyParams(currentStatement, pid, session, klass.getClassId(), event.getTimestamp(), jniToJavaName(klass.getClassName()));
-            break;
-          case ALLOC_DATA:
-            assert currentStatement != null;
-            allocAndFreeCount++;
-            AllocationEvent.Allocation allocation = event.getAllocData();
-            applyParams(currentStatement, pid, session, allocation.getTag(), allocation.getClassTag(),
-                        event.getTimestamp(), Long.MAX_VALUE, allocation.getSize(), allocation.getLength(), allocation.getThreadId(),
-                        allocation.getStackId(), allocation.getHeapId());
-            break;
-          case FREE_DATA:
-            assert currentStatement != null;
-            allocAndFreeCount++;
-            AllocationEvent.Deallocation free = event.getFreeData();
-            applyParams(currentStatement, event.getTimestamp(), pid, session, free.getTag());
-            break;
-          default:
-            assert false;
-        }
-        currentStatement.addBatch();
-      }
-
-      // Handles last batch after exiting from for-loop.
-      currentStatement.executeBatch();
-
-      if (allocAndFreeCount > 0) {
-        pruneAllocations(pid, session);
+          store.insertFree(event.getFreeData().getTag(), event.getTimestamp());
+          break;
+        default:
+          assert false;
       }
     }
-    catch (SQLException ex) {
-      getLogger().error(ex);
+
+    if (allocAndFreeCount > 0) {
+      pruneAllocations(store);
     }
   }
 
   public void insertMethodInfo(int pid, Common.Session session, List<AllocationStack.StackFrame> methods) {
-    try {
-      PreparedStatement statement = getStatementMap().get(INSERT_METHOD);
-      assert statement != null;
-      for (AllocationStack.StackFrame method : methods) {
-        applyParams(statement, pid, session, method.getMethodId(), method.getMethodName(), jniToJavaName(method.getClassName()));
-        statement.addBatch();
-      }
-      statement.executeBatch();
-    }
-    catch (SQLException ex) {
-      getLogger().error(ex);
+    for (AllocationStack.StackFrame method : methods) {
+      execute(INSERT_METHOD, pid, session, method.getMethodId(), method.getMethodName(), jniToJavaName(method.getClassName()));
     }
   }
 
@@ -334,52 +284,94 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
   }
 
   public void insertStackInfo(int pid, Common.Session session, List<EncodedAllocationStack> stacks) {
-    try {
-      PreparedStatement statement = getStatementMap().get(INSERT_ENCODED_STACK);
-      assert statement != null;
-      for (EncodedAllocationStack stack : stacks) {
-        applyParams(statement, pid, session, stack.getStackId(), stack.getTimestamp(), stack.toByteArray());
-        statement.addBatch();
-      }
-      statement.executeBatch();
-    }
-    catch (SQLException ex) {
-      getLogger().error(ex);
+    for (EncodedAllocationStack stack : stacks) {
+      execute(INSERT_ENCODED_STACK, pid, session, stack.getStackId(), stack.getTimestamp(), stack.toByteArray());
     }
   }
 
   public void insertThreadInfo(int pid, Common.Session session, List<ThreadInfo> threads) {
-    try {
-      PreparedStatement statement = getStatementMap().get(INSERT_THREAD_INFO);
-      assert statement != null;
-      for (ThreadInfo thread : threads) {
-        applyParams(statement, pid, session, thread.getThreadId(), thread.getTimestamp(), thread.getThreadName());
-        statement.addBatch();
-      }
-      statement.executeBatch();
+    for (ThreadInfo thread : threads) {
+      execute(INSERT_THREAD_INFO, pid, session, thread.getThreadId(), thread.getTimestamp(), thread.getThreadName());
     }
-    catch (SQLException ex) {
-      getLogger().error(ex);
+  }
+
+  @Override
+  protected void onClosed() {
+    super.onClosed();
+    synchronized (myAllocationStores) {
+      myAllocationStores.clear();
+    }
+  }
+
+  @VisibleForTesting
+  boolean hasAllocationStores(@NotNull Common.Session session) {
+    synchronized (myAllocationStores) {
+      return myAllocationStores.containsKey(session);
     }
   }
 
   /**
-   * Removes entries from the allocations table so the process (in-memory DB) doesn't run out of memory.
+   * Drops freed allocations so the process doesn't run out of memory.
    */
-  private void pruneAllocations(int pid, @NotNull Common.Session session) {
-    try {
-      // TODO save data to disk
-      ResultSet result = executeQuery(COUNT_ALLOC);
-      result.next();
-      int rowCount = result.getInt(1);
-      if (rowCount > myAllocationCountLimit) {
-        int pruneCount = rowCount - myAllocationCountLimit;
-        execute(PRUNE_ALLOC, pid, session, pid, session, pruneCount);
-        getLogger().info(String.format("Allocations have exceed %d entries. Attempting to prune %d.", myAllocationCountLimit, pruneCount));
+  private void pruneAllocations(@NotNull AllocationEventStore store) {
+    // TODO save data to disk
+    int recordCount = store.getRecordCount();
+    if (recordCount > myAllocationCountLimit) {
+      store.prune(myAllocationCountLimit);
+      getLogger().info(String.format("Allocations have exceed %d entries. Pruned %d.", myAllocationCountLimit,
+                                     recordCount - store.getRecordCount()));
+    }
+  }
+
+  @Nullable
+  private AllocationEventStore getAllocationStore(int pid, @NotNull Common.Session session, boolean create) {
+    synchronized (myAllocationStores) {
+      TIntObjectHashMap<AllocationEventStore> processStores = myAllocationStores.get(session);
+      if (processStores == null) {
+        if (!create) {
+          return null;
+        }
+        processStores = new TIntObjectHashMap<>();
+        myAllocationStores.put(session, processStores);
+      }
+      AllocationEventStore store = processStores.get(pid);
+      if (store == null && create) {
+        store = new AllocationEventStore();
+        processStores.put(pid, store);
+      }
+      return store;
+    }
+  }
+
+  /**
+   * Accumulates allocation events and hands them out as {@link BatchAllocationSample}s of a bounded size.
+   */
+  private static final class ChunkBuilder {
+    private final int myChunkSize;
+    @NotNull private final Consumer<MemoryProfiler.BatchAllocationSample> myConsumer;
+    private MemoryProfiler.BatchAllocationSample.Builder myBuilder = MemoryProfiler.BatchAllocationSample.newBuilder();
+    private long myTimestamp = Long.MIN_VALUE;
+
+    private ChunkBuilder(int chunkSize, @NotNull Consumer<MemoryProfiler.BatchAllocationSample> consumer) {
+      myChunkSize = chunkSize;
+      myConsumer = consumer;
+    }
+
+    private void add(@NotNull MemoryProfiler.AllocationEvent event) {
+      myBuilder.addEvents(event);
+      myTimestamp = Math.max(myTimestamp, event.getTimestamp());
+      if (myBuilder.getEventsCount() >= myChunkSize) {
+        flush();
       }
     }
-    catch (SQLException e) {
-      getLogger().error(e);
+
+    private void flush() {
+      if (myBuilder.getEventsCount() == 0) {
+        return;
+      }
+      myConsumer.accept(myBuilder.setTimestamp(myTimestamp).build());
+      myBuilder = MemoryProfiler.BatchAllocationSample.newBuilder();
+      myTimestamp = Long.MIN_VALUE;
     }
   }
 
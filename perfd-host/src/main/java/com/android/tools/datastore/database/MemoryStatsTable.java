@@ -103,6 +103,10 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
     return Logger.getInstance(MemoryStatsTable.class);
   }
 
+  @NotNull private TimeSeriesStorage<MemoryData.MemorySample> myMemorySamples = createMemorySampleStorage();
+  @NotNull private TimeSeriesStorage<MemoryData.AllocStatsSample> myAllocStatsSamples = createAllocStatsSampleStorage();
+  @NotNull private TimeSeriesStorage<MemoryData.GcStatsSample> myGcStatsSamples = createGcStatsSampleStorage();
+
   public MemoryStatsTable(@NotNull Map<Common.Session, Long> sesstionIdLookup) {
     super(sesstionIdLookup);
   }
@@ -110,6 +114,19 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
   @Override
   public void initialize(@NotNull Connection connection) {
     super.initialize(connection);
+    // INSERT_SAMPLE is an INSERT OR IGNORE.
+    myMemorySamples = createTimeSeriesStorage(createMemorySampleStorage(),
+                                              SampleColumns.forProto(MemoryData.MemorySample.getDefaultInstance()),
+                                              false,
+                                              getSampleLayout(MemorySamplesType.MEMORY, MemoryData.MemorySample::parseFrom));
+    myAllocStatsSamples = createTimeSeriesStorage(createAllocStatsSampleStorage(),
+                                                  SampleColumns.forProto(MemoryData.AllocStatsSample.getDefaultInstance()),
+                                                  false,
+                                                  getSampleLayout(MemorySamplesType.ALLOC_STATS, MemoryData.AllocStatsSample::parseFrom));
+    myGcStatsSamples = createTimeSeriesStorage(createGcStatsSampleStorage(),
+                                               SampleColumns.forProto(MemoryData.GcStatsSample.getDefaultInstance()),
+                                               false,
+                                               getSampleLayout(MemorySamplesType.GC_STATS, MemoryData.GcStatsSample::parseFrom));
     try {
       createTable("Memory_Samples", "Pid INTEGER NOT NULL", "Session INTEGER NOT NULL", "Timestamp INTEGER", "Type INTEGER",
                   "Data BLOB", "PRIMARY KEY(Pid, Session, Timestamp, Type)");
@@ -145,15 +162,9 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
     int pid = request.getProcessId();
     long startTime = request.getStartTime();
     long endTime = request.getEndTime();
-    List<MemoryData.MemorySample> memorySamples =
-      getResultsInfo(QUERY_MEMORY, pid, request.getSession(), startTime, endTime,
-                     MemoryData.MemorySample.getDefaultInstance());
-    List<MemoryData.AllocStatsSample> allocStatsSamples =
-      getResultsInfo(QUERY_ALLOC_STATS, pid, request.getSession(), startTime, endTime,
-                     MemoryData.AllocStatsSample.getDefaultInstance());
-    List<MemoryData.GcStatsSample> gcStatsSamples =
-      getResultsInfo(QUERY_GC_STATS, pid, request.getSession(), startTime, endTime,
-                     MemoryData.GcStatsSample.getDefaultInstance());
+    List<MemoryData.MemorySample> memorySamples = myMemorySamples.getRange(request.getSession(), pid, startTime, endTime);
+    List<MemoryData.AllocStatsSample> allocStatsSamples = myAllocStatsSamples.getRange(request.getSession(), pid, startTime, endTime);
+    List<MemoryData.GcStatsSample> gcStatsSamples = myGcStatsSamples.getRange(request.getSession(), pid, startTime, endTime);
     List<HeapDumpInfo> heapDumpSamples =
       getResultsInfo(QUERY_HEAP_INFO_BY_TIME, pid, request.getSession(), startTime, endTime,
                      HeapDumpInfo.getDefaultInstance());
@@ -171,22 +182,19 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
 
   public void insertMemory(int pid, Common.Session session, List<MemoryData.MemorySample> samples) {
     for (MemoryData.MemorySample sample : samples) {
-      execute(INSERT_SAMPLE, pid, session, sample.getTimestamp(), MemorySamplesType.MEMORY.ordinal(),
-              sample.toByteArray());
+      myMemorySamples.insert(session, pid, sample.getTimestamp(), sample);
     }
   }
 
   public void insertAllocStats(int pid, Common.Session session, List<MemoryData.AllocStatsSample> samples) {
     for (MemoryData.AllocStatsSample sample : samples) {
-      execute(INSERT_SAMPLE, pid, session, sample.getTimestamp(), MemorySamplesType.ALLOC_STATS.ordinal(),
-              sample.toByteArray());
+      myAllocStatsSamples.insert(session, pid, sample.getTimestamp(), sample);
     }
   }
 
   public void insertGcStats(int pid, Common.Session session, List<MemoryData.GcStatsSample> samples) {
     for (MemoryData.GcStatsSample sample : samples) {
-      execute(INSERT_SAMPLE, pid, session, sample.getStartTime(), MemorySamplesType.GC_STATS.ordinal(),
-              sample.toByteArray());
+      myGcStatsSamples.insert(session, pid, sample.getStartTime(), sample);
     }
   }
 
@@ -366,6 +374,57 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
     return builder.build();
   }
 
+  @NotNull
+  private TimeSeriesStorage<MemoryData.MemorySample> createMemorySampleStorage() {
+    return new SqlSampleStorage<>(MemorySamplesType.MEMORY, QUERY_MEMORY, MemoryData.MemorySample.getDefaultInstance());
+  }
+
+  @NotNull
+  private TimeSeriesStorage<MemoryData.AllocStatsSample> createAllocStatsSampleStorage() {
+    return new SqlSampleStorage<>(MemorySamplesType.ALLOC_STATS, QUERY_ALLOC_STATS, MemoryData.AllocStatsSample.getDefaultInstance());
+  }
+
+  @NotNull
+  private TimeSeriesStorage<MemoryData.GcStatsSample> createGcStatsSampleStorage() {
+    return new SqlSampleStorage<>(MemorySamplesType.GC_STATS, QUERY_GC_STATS, MemoryData.GcStatsSample.getDefaultInstance());
+  }
+
+  /**
+   * All the types of samples are stored in Memory_Samples, told apart by their Type column.
+   */
+  @NotNull
+  private static <T> ArchivedTimeSeriesStorage.Layout<T> getSampleLayout(@NotNull MemorySamplesType type,
+                                                                          @NotNull ArchivedTimeSeriesStorage.SampleParser<T> parser) {
+    return new ArchivedTimeSeriesStorage.Layout<>("Memory_Samples", new String[]{"Pid", "Type"}, id -> new long[]{id, type.ordinal()},
+                                                  "Timestamp", "Data", parser);
+  }
+
+  /**
+   * Stores one type of sample in the Memory_Samples table, keyed by process id.
+   */
+  private final class SqlSampleStorage<T extends GeneratedMessageV3> implements TimeSeriesStorage<T> {
+    @NotNull private final MemorySamplesType myType;
+    @NotNull private final MemoryStatements myQuery;
+    @NotNull private final T myDefaultInstance;
+
+    private SqlSampleStorage(@NotNull MemorySamplesType type, @NotNull MemoryStatements query, @NotNull T defaultInstance) {
+      myType = type;
+      myQuery = query;
+      myDefaultInstance = defaultInstance;
+    }
+
+    @Override
+    public void insert(@NotNull Common.Session session, long id, long timestamp, @NotNull T sample) {
+      execute(INSERT_SAMPLE, id, session, timestamp, myType.ordinal(), sample.toByteArray());
+    }
+
+    @NotNull
+    @Override
+    public List<T> getRange(@NotNull Common.Session session, long id, long startTimestamp, long endTimestamp) {
+      return getResultsInfo(myQuery, (int)id, session, startTimestamp, endTimestamp, myDefaultInstance);
+    }
+  }
+
   /**
    * A helper method for querying samples for MemorySample, AllocStatsSample, GcStatsSample, HeapDumpInfo and AllocationsInfo
    */
@@ -29,8 +29,7 @@ import java.util.*;
 public class NetworkTable extends DataStoreTable<NetworkTable.NetworkStatements> {
   public enum NetworkStatements {
     INSERT_NETWORK_DATA,
-    QUERY_NETWORK_DATA_BY_TYPE,
-    QUERY_NETWORK_DATA,
+    QUERY_NETWORK_DATA_BY_ID_AND_TYPE,
     QUERY_COMMON_CONNECTION_DATA,
     FIND_CONNECTION_DATA,
     INSERT_CONNECTION_DATA
@@ -51,6 +50,14 @@ public class NetworkTable extends DataStoreTable<NetworkTable.NetworkStatements>
                                   NetworkProfiler.NetworkDataRequest.Type.CONNECTIVITY.getNumber());
   }
 
+  private static final NetworkProfiler.NetworkDataRequest.Type[] SAMPLE_TYPES = {
+    NetworkProfiler.NetworkDataRequest.Type.SPEED,
+    NetworkProfiler.NetworkDataRequest.Type.CONNECTIONS,
+    NetworkProfiler.NetworkDataRequest.Type.CONNECTIVITY
+  };
+
+  @NotNull private TimeSeriesStorage<NetworkProfiler.NetworkProfilerData> myNetworkData = new SqlNetworkDataStorage();
+
   private static Logger getLogger() {
     return Logger.getInstance(NetworkTable.class);
   }
@@ -62,14 +69,22 @@ public class NetworkTable extends DataStoreTable<NetworkTable.NetworkStatements>
   @Override
   public void initialize(@NotNull Connection connection) {
     super.initialize(connection);
+    // INSERT_NETWORK_DATA is an INSERT OR IGNORE.
+    myNetworkData = createTimeSeriesStorage(new SqlNetworkDataStorage(),
+                                            SampleColumns.forProto(NetworkProfiler.NetworkProfilerData.getDefaultInstance()),
+                                            false,
+                                            new ArchivedTimeSeriesStorage.Layout<>("Network_Data", new String[]{"Id", "Type"},
+                                                                                   id -> new long[]{id >> 32, (int)id}, "EndTime", "Data",
+                                                                                   NetworkProfiler.NetworkProfilerData::parseFrom));
     try {
-      createTable("Network_Data", "Id INTEGER NOT NULL", "Type INTEGER NOT NULL", "EndTime INTEGER", "Data BLOB");
+      createTable("Network_Data", "Id INTEGER NOT NULL", "Session INTEGER NOT NULL", "Type INTEGER NOT NULL", "EndTime INTEGER",
+                  "Data BLOB");
       createTable("Network_Connection", "ProcessId INTEGER NOT NULL", "Session INTEGER NOT NULL", "Id INTEGER NOT NULL",
                   "StartTime INTEGER",
                   "EndTime INTEGER",
                   "ConnectionData BLOB", "BodyData BLOB", "RequestData BLOB", "ResponseData BLOB", "ThreadsData BLOB",
                   "PRIMARY KEY(ProcessId, Id)");
-      createUniqueIndex("Network_Data", "Id", "Type", "EndTime");
+      createUniqueIndex("Network_Data", "Id", "Session", "Type", "EndTime");
       createUniqueIndex("Network_Connection", "ProcessId", "Session", "Id");
     }
     catch (SQLException ex) {
@@ -81,11 +96,9 @@ public class NetworkTable extends DataStoreTable<NetworkTable.NetworkStatements>
   public void prepareStatements() {
     try {
       createStatement(NetworkStatements.INSERT_NETWORK_DATA,
-                      "INSERT OR IGNORE INTO Network_Data (Id, Type, EndTime, Data) VALUES (?, ?, ?, ?)");
-      createStatement(NetworkStatements.QUERY_NETWORK_DATA_BY_TYPE,
-                      "SELECT Data FROM Network_Data WHERE (Id = ? OR Id = ?) AND Type = ? AND EndTime > ? AND EndTime <= ?");
-      createStatement(NetworkStatements.QUERY_NETWORK_DATA,
-                      "SELECT Data FROM Network_Data WHERE (Id = ? OR Id = ? ) AND EndTime > ? AND EndTime <= ?");
+                      "INSERT OR IGNORE INTO Network_Data (Id, Session, Type, EndTime, Data) VALUES (?, ?, ?, ?, ?)");
+      createStatement(NetworkStatements.QUERY_NETWORK_DATA_BY_ID_AND_TYPE,
+                      "SELECT Data FROM Network_Data WHERE Id = ? AND Session = ? AND Type = ? AND EndTime > ? AND EndTime <= ?");
 
       createStatement(NetworkStatements.QUERY_COMMON_CONNECTION_DATA,
                       "SELECT ConnectionData FROM Network_Connection WHERE ProcessId = ? AND Session = ? AND (EndTime > ? OR EndTime = 0) AND StartTime <= ?");
@@ -119,33 +132,42 @@ public class NetworkTable extends DataStoreTable<NetworkTable.NetworkStatements>
 
   public List<NetworkProfiler.NetworkProfilerData> getNetworkDataByRequest(NetworkProfiler.NetworkDataRequest request) {
     List<NetworkProfiler.NetworkProfilerData> datas = new ArrayList<>();
-    ResultSet results;
-    try {
-      if (request.getType() == NetworkProfiler.NetworkDataRequest.Type.ALL) {
-        results =
-          executeQuery(NetworkStatements.QUERY_NETWORK_DATA, request.getProcessId(), Common.AppId.ANY_VALUE, request.getStartTimestamp(),
-                       request.getEndTimestamp());
-      }
-      else {
-        results = executeQuery(NetworkStatements.QUERY_NETWORK_DATA_BY_TYPE, request.getProcessId(), Common.AppId.ANY_VALUE,
-                               request.getType().getNumber(),
-                               request.getStartTimestamp(), request.getEndTimestamp());
-      }
-      while (results.next()) {
-        NetworkProfiler.NetworkProfilerData.Builder data = NetworkProfiler.NetworkProfilerData.newBuilder();
-        data.mergeFrom(results.getBytes(1));
-        datas.add(data.build());
+    NetworkProfiler.NetworkDataRequest.Type[] types =
+      request.getType() == NetworkProfiler.NetworkDataRequest.Type.ALL ? SAMPLE_TYPES : new NetworkProfiler.NetworkDataRequest.Type[]{
+        request.getType()};
+    // Device-wide samples (e.g. connectivity) are stored under ANY_VALUE and are returned along with the process' own samples.
+    int[] appIds = request.getProcessId() == Common.AppId.ANY_VALUE
+                   ? new int[]{Common.AppId.ANY_VALUE}
+                   : new int[]{Common.AppId.ANY_VALUE, request.getProcessId()};
+    int seriesCount = 0;
+    for (int appId : appIds) {
+      for (NetworkProfiler.NetworkDataRequest.Type type : types) {
+        List<NetworkProfiler.NetworkProfilerData> series =
+          myNetworkData.getRange(request.getSession(), getSeriesId(appId, type.getNumber()), request.getStartTimestamp(),
+                                 request.getEndTimestamp());
+        if (!series.isEmpty()) {
+          datas.addAll(series);
+          seriesCount++;
+        }
       }
     }
-    catch (InvalidProtocolBufferException | SQLException ex) {
-      getLogger().error(ex);
+    if (seriesCount > 1) {
+      // Each series is sorted already, this (stable) sort interleaves them.
+      datas.sort(Comparator.comparingLong(data -> data.getBasicInfo().getEndTimestamp()));
     }
     return datas;
   }
 
-  public void insert(int appId, NetworkProfiler.NetworkProfilerData data) {
-    execute(NetworkStatements.INSERT_NETWORK_DATA, appId, DATACASE_REQUEST_TYPE_MAP.get(data.getDataCase()),
-            data.getBasicInfo().getEndTimestamp(), data.toByteArray());
+  public void insert(int appId, Common.Session session, NetworkProfiler.NetworkProfilerData data) {
+    myNetworkData.insert(session, getSeriesId(appId, DATACASE_REQUEST_TYPE_MAP.get(data.getDataCase())),
+                         data.getBasicInfo().getEndTimestamp(), data);
+  }
+
+  /**
+   * Network samples are stored in one series per app id and sample type.
+   */
+  private static long getSeriesId(int appId, int type) {
+    return ((long)appId << 32) | (type & 0xFFFFFFFFL);
   }
 
   public NetworkProfiler.HttpDetailsResponse getHttpDetailsResponseById(long connId,
@@ -207,4 +229,37 @@ public class NetworkTable extends DataStoreTable<NetworkTable.NetworkStatements>
     execute(NetworkStatements.INSERT_CONNECTION_DATA, processId, session, id, startTime, endTime, commonData, bodyData, requestData,
             responseData, threadsData);
   }
+
+  /**
+   * Stores the network samples in the Network_Data table. The series id is split back into the Id and Type columns.
+   */
+  private final class SqlNetworkDataStorage implements TimeSeriesStorage<NetworkProfiler.NetworkProfilerData> {
+    @Override
+    public void insert(@NotNull Common.Session session, long id, long timestamp, @NotNull NetworkProfiler.NetworkProfilerData sample) {
+      execute(NetworkStatements.INSERT_NETWORK_DATA, (int)(id >> 32), session, (int)id, timestamp, sample.toByteArray());
+    }
+
+    @NotNull
+    @Override
+    public List<NetworkProfiler.NetworkProfilerData> getRange(@NotNull Common.Session session,
+                                                              long id,
+                                                              long startTimestamp,
+                                                              long endTimestamp) {
+      List<NetworkProfiler.NetworkProfilerData> datas = new ArrayList<>();
+      try {
+        ResultSet results =
+          executeQuery(NetworkStatements.QUERY_NETWORK_DATA_BY_ID_AND_TYPE, (int)(id >> 32), session, (int)id, startTimestamp,
+                       endTimestamp);
+        while (results.next()) {
+          NetworkProfiler.NetworkProfilerData.Builder data = NetworkProfiler.NetworkProfilerData.newBuilder();
+          data.mergeFrom(results.getBytes(1));
+          datas.add(data.build());
+        }
+      }
+      catch (InvalidProtocolBufferException | SQLException ex) {
+        getLogger().error(ex);
+      }
+      return datas;
+    }
+  }
 }
@@ -15,6 +15,8 @@
  */
 package com.android.tools.datastore.database;
 
+import com.android.tools.datastore.archive.SessionArchiveReader;
+import com.android.tools.datastore.archive.SessionArchiveWriter;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.Profiler;
 import com.google.protobuf3jarjar.InvalidProtocolBufferException;
@@ -22,6 +24,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -106,6 +109,45 @@ public class ProfilerTable extends DataStoreTable<ProfilerTable.ProfilerStatemen
     }
   }
 
+  @Override
+  protected void exportTable(@NotNull String table, @NotNull Common.Session session, @NotNull SessionArchiveWriter writer)
+    throws IOException, SQLException {
+    if (table.equals("Profiler_Devices")) {
+      // Devices are keyed by the session itself rather than by its id.
+      exportRows(writer, table, "SELECT * FROM Profiler_Devices WHERE Session = ?", session.toString());
+    }
+    else {
+      super.exportTable(table, session, writer);
+    }
+  }
+
+  /**
+   * Imported devices and processes are stored as disconnected and dead, as there is nothing to poll them from. The device is inserted
+   * through {@link #insertOrUpdateDevice(Profiler.Device)} so the session gets an id for the rest of the import.
+   */
+  @Override
+  protected void importTable(@NotNull String table, @NotNull Common.Session session, @NotNull SessionArchiveReader reader)
+    throws IOException, SQLException {
+    int dataColumn = reader.getColumnNames(table).indexOf("Data");
+    switch (table) {
+      case "Profiler_Devices":
+        reader.readRows(table, row -> {
+          Profiler.Device device = Profiler.Device.parseFrom((byte[])row[dataColumn]);
+          insertOrUpdateDevice(device.toBuilder().setState(Profiler.Device.State.DISCONNECTED).build());
+        });
+        break;
+      case "Profiler_Processes":
+        reader.readRows(table, row -> {
+          Profiler.Process process = Profiler.Process.parseFrom((byte[])row[dataColumn]);
+          insertOrUpdateProcess(session, process.toBuilder().setState(Profiler.Process.State.DEAD).build());
+        });
+        break;
+      default:
+        super.importTable(table, session, reader);
+        break;
+    }
+  }
+
   public Profiler.GetDevicesResponse getDevices(Profiler.GetDevicesRequest request) {
     if (isClosed()) {
       return Profiler.GetDevicesResponse.getDefaultInstance();
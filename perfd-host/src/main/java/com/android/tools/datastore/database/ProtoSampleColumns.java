@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.google.protobuf3jarjar.Descriptors.Descriptor;
+import com.google.protobuf3jarjar.Descriptors.EnumValueDescriptor;
+import com.google.protobuf3jarjar.Descriptors.FieldDescriptor;
+import com.google.protobuf3jarjar.Message;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link SampleColumns} for a protobuf message type, derived from its descriptor. Each numeric, boolean and enum field gets a column,
+ * and each message field (or field of a oneof) gets a column recording whether it is set, followed by the columns of its own fields.
+ * String, bytes and repeated fields have no columns: a sample that uses them, or that has unknown fields, doesn't fit and is kept as
+ * is. Every written sample is read back and compared to the original, so a sample is never stored in a lossy way.
+ */
+final class ProtoSampleColumns<M extends Message> implements SampleColumns<M> {
+  @NotNull private final M myDefaultInstance;
+  @NotNull private final List<Node> myNodes;
+  private final int myColumnCount;
+
+  ProtoSampleColumns(@NotNull M defaultInstance) {
+    myDefaultInstance = defaultInstance;
+    myNodes = createNodes(defaultInstance.getDescriptorForType(), new HashSet<>());
+    myColumnCount = myNodes.stream().mapToInt(node -> node.myColumnCount).sum();
+  }
+
+  @Override
+  public int getColumnCount() {
+    return myColumnCount;
+  }
+
+  @Override
+  public boolean write(@NotNull M sample, @NotNull long[] values) {
+    write(sample, myNodes, values, 0);
+    return read(values).equals(sample);
+  }
+
+  @NotNull
+  @Override
+  @SuppressWarnings("unchecked")
+  public M read(@NotNull long[] values) {
+    Message.Builder builder = myDefaultInstance.newBuilderForType();
+    read(builder, myNodes, values, 0);
+    return (M)builder.build();
+  }
+
+  @NotNull
+  private static List<Node> createNodes(@NotNull Descriptor type, @NotNull Set<Descriptor> enclosingTypes) {
+    List<Node> nodes = new ArrayList<>();
+    enclosingTypes.add(type);
+    for (FieldDescriptor field : type.getFields()) {
+      if (field.isRepeated()) {
+        continue;
+      }
+      switch (field.getJavaType()) {
+        case MESSAGE:
+          // Recursive types can't be flattened; such fields have to stay unset for a sample to fit.
+          if (!enclosingTypes.contains(field.getMessageType())) {
+            nodes.add(new Node(field, createNodes(field.getMessageType(), enclosingTypes)));
+          }
+          break;
+        case STRING:
+        case BYTE_STRING:
+          break;
+        default:
+          nodes.add(new Node(field, null));
+          break;
+      }
+    }
+    enclosingTypes.remove(type);
+    return nodes;
+  }
+
+  private static int write(@NotNull Message message, @NotNull List<Node> nodes, @NotNull long[] values, int column) {
+    for (Node node : nodes) {
+      FieldDescriptor field = node.myField;
+      if (node.hasPresenceColumn()) {
+        values[column++] = message.hasField(field) ? 1 : 0;
+      }
+      if (node.myChildren != null) {
+        column = write((Message)message.getField(field), node.myChildren, values, column);
+      }
+      else {
+        values[column++] = toLong(message.getField(field));
+      }
+    }
+    return column;
+  }
+
+  private static int read(@NotNull Message.Builder builder, @NotNull List<Node> nodes, @NotNull long[] values, int column) {
+    for (Node node : nodes) {
+      FieldDescriptor field = node.myField;
+      if (node.hasPresenceColumn() && values[column] == 0) {
+        column += node.myColumnCount;
+        continue;
+      }
+      if (node.hasPresenceColumn()) {
+        column++;
+      }
+      if (node.myChildren != null) {
+        column = read(builder.getFieldBuilder(field), node.myChildren, values, column);
+      }
+      else {
+        long value = values[column++];
+        if (value != 0 || field.getContainingOneof() != null) {
+          Object fieldValue = fromLong(field, value);
+          if (fieldValue != null) {
+            builder.setField(field, fieldValue);
+          }
+        }
+      }
+    }
+    return column;
+  }
+
+  private static long toLong(@NotNull Object value) {
+    if (value instanceof Boolean) {
+      return (Boolean)value ? 1 : 0;
+    }
+    if (value instanceof EnumValueDescriptor) {
+      return ((EnumValueDescriptor)value).getNumber();
+    }
+    if (value instanceof Float) {
+      return Float.floatToRawIntBits((Float)value);
+    }
+    if (value instanceof Double) {
+      return Double.doubleToRawLongBits((Double)value);
+    }
+    return ((Number)value).longValue();
+  }
+
+  private static Object fromLong(@NotNull FieldDescriptor field, long value) {
+    switch (field.getJavaType()) {
+      case INT:
+        return (int)value;
+      case LONG:
+        return value;
+      case BOOLEAN:
+        return value != 0;
+      case FLOAT:
+        return Float.intBitsToFloat((int)value);
+      case DOUBLE:
+        return Double.longBitsToDouble(value);
+      case ENUM:
+        // Unknown enum numbers are left unset, so the read back sample differs and the original is kept instead.
+        return field.getEnumType().findValueByNumber((int)value);
+      default:
+        throw new IllegalArgumentException("No column for field " + field.getFullName());
+    }
+  }
+
+  private static final class Node {
+    @NotNull private final FieldDescriptor myField;
+    // The columns of the fields of a message field, or null for a scalar field.
+    private final List<Node> myChildren;
+    private final int myColumnCount;
+
+    private Node(@NotNull FieldDescriptor field, List<Node> children) {
+      myField = field;
+      myChildren = children;
+      int columnCount = hasPresenceColumn() ? 1 : 0;
+      columnCount += children != null ? children.stream().mapToInt(node -> node.myColumnCount).sum() : 1;
+      myColumnCount = columnCount;
+    }
+
+    private boolean hasPresenceColumn() {
+      return myChildren != null || myField.getContainingOneof() != null;
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.google.protobuf3jarjar.Message;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Flattens samples into a fixed number of long columns, so that {@link ColumnarTimeSeriesStorage} can keep them in primitive arrays
+ * instead of holding on to the sample objects.
+ *
+ * @param <S> the sample type.
+ */
+public interface SampleColumns<S> {
+  /**
+   * @return the number of long values each sample is flattened into.
+   */
+  int getColumnCount();
+
+  /**
+   * Writes the fields of the sample to {@code values[0, getColumnCount())}.
+   *
+   * @return false if the sample holds data the columns can't represent, in which case the sample object is kept as is.
+   */
+  boolean write(@NotNull S sample, @NotNull long[] values);
+
+  /**
+   * @return the sample whose fields were written to {@code values} by {@link #write(Object, long[])}.
+   */
+  @NotNull
+  S read(@NotNull long[] values);
+
+  /**
+   * @return columns for the numeric, boolean and enum fields of a protobuf message type, including those of its message fields.
+   */
+  @NotNull
+  static <M extends Message> SampleColumns<M> forProto(@NotNull M defaultInstance) {
+    return new ProtoSampleColumns<>(defaultInstance);
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.tools.profiler.proto.Common;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Storage for samples that are only ever looked up by time range, such as CPU usage or memory stats. A {@link DataStoreTable} keeps
+ * its samples in one of these so the backing store can be picked per {@link com.android.tools.datastore.DataStoreDatabase.Characteristic}.
+ *
+ * @param <S> the sample type.
+ */
+public interface TimeSeriesStorage<S> {
+  /**
+   * Stores a sample for the series identified by session and id.
+   */
+  void insert(@NotNull Common.Session session, long id, long timestamp, @NotNull S sample);
+
+  /**
+   * @return the samples of the series identified by session and id whose timestamp is within (startTimestamp, endTimestamp].
+   */
+  @NotNull
+  List<S> getRange(@NotNull Common.Session session, long id, long startTimestamp, long endTimestamp);
+
+  /**
+   * Called once a session has ended. Storages that keep the samples of live sessions in memory move them out of it, so they are kept for
+   * as long as the SQL tables keep the rest of the session's data.
+   */
+  default void endSession(@NotNull Common.Session session) {
+  }
+
+  /**
+   * Drops any samples kept in memory, when the database backing the table is closed.
+   */
+  default void clear() {
+  }
+}
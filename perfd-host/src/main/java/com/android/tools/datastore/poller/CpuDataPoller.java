@@ -44,7 +44,7 @@ public class CpuDataPoller extends PollRunner {
                        @NotNull Common.Session session,
                        @NotNull CpuTable table,
                        @NotNull CpuServiceGrpc.CpuServiceBlockingStub pollingService) {
-    super(POLLING_DELAY_NS);
+    super(POLLING_DELAY_NS, MAX_POLLING_DELAY_NS);
     myProcessId = processId;
     myCpuTable = table;
     myPollingService = pollingService;
@@ -60,6 +60,10 @@ public class CpuDataPoller extends PollRunner {
       .setEndTimestamp(Long.MAX_VALUE);
     CpuProfiler.CpuDataResponse response = myPollingService.getData(request.build());
     for (CpuProfiler.CpuProfilerData data : response.getDataList()) {
+      // The request range includes its start, so the last stored sample comes back with every response and doesn't count as new.
+      if (data.getBasicInfo().getEndTimestamp() > myDataRequestStartTimestampNs) {
+        onDataReceived();
+      }
       getDataStartNs = Math.max(getDataStartNs, data.getBasicInfo().getEndTimestamp());
       myCpuTable.insert(mySession, data);
     }
@@ -84,6 +88,9 @@ public class CpuDataPoller extends PollRunner {
       int count = thread.getActivitiesCount();
       if (count > 0) {
         CpuProfiler.GetThreadsResponse.ThreadActivity last = activities.get(count - 1);
+        if (last.getTimestamp() > myDataRequestStartTimestampNs) {
+          onDataReceived();
+        }
         getThreadsStartNs = Math.max(getThreadsStartNs, last.getTimestamp());
       }
 
@@ -27,13 +27,17 @@ import io.grpc.StatusRuntimeException;
 public class EventDataPoller extends PollRunner {
 
   private long myDataRequestStartTimestampNs = Long.MIN_VALUE;
+  /**
+   * Latest start or end of a system event stored so far, as system events are returned again for as long as they overlap the request.
+   */
+  private long myLastSystemEventTimestampNs = Long.MIN_VALUE;
   private int myProcessId = -1;
   private final Common.Session mySession;
   private final EventsTable myEventsTable;
   private final EventServiceGrpc.EventServiceBlockingStub myEventPollingService;
 
   public EventDataPoller(int processId, Common.Session session, EventsTable eventTable, EventServiceGrpc.EventServiceBlockingStub pollingService) {
-    super(POLLING_DELAY_NS);
+    super(POLLING_DELAY_NS, MAX_POLLING_DELAY_NS);
     myProcessId = processId;
     myEventsTable = eventTable;
     myEventPollingService = pollingService;
@@ -50,6 +54,7 @@ public class EventDataPoller extends PollRunner {
       .setProcessId(myProcessId)
       .setStartTimestamp(myDataRequestStartTimestampNs)
       .setEndTimestamp(Long.MAX_VALUE);
+    long lastActivityTimestampNs = myDataRequestStartTimestampNs;
     // Query for and cache activity data that has changed since our last polling.
     EventProfiler.ActivityDataResponse activityResponse = myEventPollingService.getActivityData(dataRequestBuilder.build());
     for (EventProfiler.ActivityData data : activityResponse.getDataList()) {
@@ -81,7 +86,15 @@ public class EventDataPoller extends PollRunner {
     // Poll for system event data. If we have a duplicate event then we replace it with the incomming one.
     // we replace the event as the event information may have changed, eg now it has an uptime where previously it didn't
     EventProfiler.SystemDataResponse systemResponse = myEventPollingService.getSystemData(dataRequestBuilder.build());
+    if (myDataRequestStartTimestampNs > lastActivityTimestampNs) {
+      onDataReceived();
+    }
     for (EventProfiler.SystemData data : systemResponse.getDataList()) {
+      long timestamp = Math.max(data.getStartTimestamp(), data.getEndTimestamp());
+      if (timestamp > myLastSystemEventTimestampNs) {
+        myLastSystemEventTimestampNs = timestamp;
+        onDataReceived();
+      }
       long id = data.getEventId();
       myEventsTable.insertOrReplace(id, mySession, data);
     }
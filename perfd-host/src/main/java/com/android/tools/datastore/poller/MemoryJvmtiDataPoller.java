@@ -35,7 +35,7 @@ public class MemoryJvmtiDataPoller extends PollRunner {
                                Common.Session session,
                                MemoryLiveAllocationTable liveAllocationTable,
                                MemoryServiceGrpc.MemoryServiceBlockingStub pollingService) {
-    super(POLLING_DELAY_NS);
+    super(POLLING_DELAY_NS, MAX_POLLING_DELAY_NS);
     myProcessId = processId;
     mySession = session;
     myLiveAllocationTable = liveAllocationTable;
@@ -53,6 +53,9 @@ public class MemoryJvmtiDataPoller extends PollRunner {
       .setStartTime(myDataRequestStartTimestampNs)
       .setEndTime(Long.MAX_VALUE);
     MemoryData response = myPollingService.getJvmtiData(dataRequestBuilder.build());
+    if (response.getAllocationSamplesCount() > 0 && response.getEndTimestamp() > myDataRequestStartTimestampNs) {
+      onDataReceived();
+    }
 
     for (BatchAllocationSample sample : response.getAllocationSamplesList()) {
       myLiveAllocationTable.insertMethodInfo(myProcessId, mySession, sample.getMethodsList());
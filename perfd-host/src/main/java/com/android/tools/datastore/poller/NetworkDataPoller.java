@@ -37,7 +37,7 @@ public class NetworkDataPoller extends PollRunner {
                            Common.Session session,
                            NetworkTable table,
                            NetworkServiceGrpc.NetworkServiceBlockingStub pollingService) {
-    super(POLLING_DELAY_NS);
+    super(POLLING_DELAY_NS, MAX_POLLING_DELAY_NS);
     myProcessId = processId;
     myNetworkTable = table;
     mySession = session;
@@ -57,8 +57,12 @@ public class NetworkDataPoller extends PollRunner {
     NetworkProfiler.NetworkDataResponse response = myPollingService.getData(dataRequestBuilder.build());
 
     for (NetworkProfiler.NetworkProfilerData data : response.getDataList()) {
+      // The request range includes its start, so the last stored sample comes back with every response and doesn't count as new.
+      if (data.getBasicInfo().getEndTimestamp() > myDataRequestStartTimestampNs) {
+        onDataReceived();
+      }
       myDataRequestStartTimestampNs = Math.max(myDataRequestStartTimestampNs, data.getBasicInfo().getEndTimestamp());
-      myNetworkTable.insert(data.getBasicInfo().getProcessId(), data);
+      myNetworkTable.insert(data.getBasicInfo().getProcessId(), mySession, data);
     }
     pollHttpRange();
   }
@@ -69,8 +73,13 @@ public class NetworkDataPoller extends PollRunner {
       .setStartTimestamp(myHttpRangeRequestStartTimeNs)
       .setEndTimestamp(Long.MAX_VALUE);
     NetworkProfiler.HttpRangeResponse response = myPollingService.getHttpRange(requestBuilder.build());
+    long requestStartNs = myHttpRangeRequestStartTimeNs;
 
     for (NetworkProfiler.HttpConnectionData data : response.getDataList()) {
+      // Connections still open are returned by every poll, so only a start or an end past the stored ones counts as new.
+      if (data.getStartTimestamp() >= requestStartNs || data.getEndTimestamp() >= requestStartNs) {
+        onDataReceived();
+      }
       myHttpRangeRequestStartTimeNs = Math.max(myHttpRangeRequestStartTimeNs, data.getStartTimestamp() + 1);
       myHttpRangeRequestStartTimeNs = Math.max(myHttpRangeRequestStartTimeNs, data.getEndTimestamp() + 1);
       NetworkProfiler.HttpDetailsResponse initialData = myNetworkTable.getHttpDetailsResponseById(data.getConnId(),
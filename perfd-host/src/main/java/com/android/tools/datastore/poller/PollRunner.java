@@ -15,31 +15,88 @@
  */
 package com.android.tools.datastore.poller;
 
+import com.android.annotations.VisibleForTesting;
 import io.grpc.StatusRuntimeException;
 
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.RunnableFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A {@link RunnableFuture} which, while running, triggers a callback at a specified period
  * (which can be used to poll a target service at some frequency).
+ *
+ * The callbacks of all the runners are timed by one shared scheduler and run on a shared pool,
+ * so running a runner returns right away instead of holding on to the calling thread until the
+ * runner is stopped. The pool grows with the number of polls in progress, as polls block on RPCs
+ * and a slow device shouldn't delay the polls of the others.
+ *
+ * A runner can be given a range of periods, in which case it polls at the shortest one while
+ * {@link #poll()} keeps reporting data through {@link #onDataReceived()}, and doubles the period
+ * after each poll which doesn't, up to the longest one.
  */
 public abstract class PollRunner implements RunnableFuture<Void> {
 
   public static final long POLLING_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(250);
 
-  private long myPollPeriodNs;
+  /**
+   * Longest period adaptive runners back off to while their target has nothing new.
+   */
+  public static final long MAX_POLLING_DELAY_NS = TimeUnit.SECONDS.toNanos(2);
+
+  private static final ScheduledExecutorService SCHEDULER = createScheduler();
+
+  private static final ExecutorService POLL_EXECUTOR = Executors.newCachedThreadPool(createThreadFactory("DataStorePoller-"));
+
+  private final long myMinPollPeriodNs;
+
+  private final long myMaxPollPeriodNs;
+
+  private volatile long myPollPeriodNs;
+
+  private volatile boolean myIsRunning = false;
+
+  private final CountDownLatch myRunning = new CountDownLatch(1);
+
+  private final CountDownLatch myIsDone = new CountDownLatch(1);
+
+  private final Object myScheduleLock = new Object();
 
-  private boolean myIsRunning = false;
+  // Guarded by myScheduleLock.
+  private ScheduledFuture<?> myNextPoll;
 
-  private CountDownLatch myRunning = new CountDownLatch(1);
+  // Guarded by myScheduleLock.
+  private boolean myIsPolling;
 
-  private CountDownLatch myIsDone = new CountDownLatch(1);
+  private boolean myDataReceived;
 
+  private volatile long myPollCount;
+
+  private volatile long myEmptyPollCount;
 
   public PollRunner(long pollPeriodNs) {
-    myPollPeriodNs = pollPeriodNs;
+    this(pollPeriodNs, pollPeriodNs);
+  }
+
+  public PollRunner(long minPollPeriodNs, long maxPollPeriodNs) {
+    assert minPollPeriodNs <= maxPollPeriodNs;
+    myMinPollPeriodNs = minPollPeriodNs;
+    myMaxPollPeriodNs = maxPollPeriodNs;
+    myPollPeriodNs = minPollPeriodNs;
+  }
+
+  private static ScheduledExecutorService createScheduler() {
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, createThreadFactory("DataStorePollerScheduler-"));
+    scheduler.setRemoveOnCancelPolicy(true);
+    return scheduler;
+  }
+
+  private static ThreadFactory createThreadFactory(String namePrefix) {
+    AtomicInteger threadCount = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
   }
 
   public void stop() {
@@ -54,28 +111,115 @@ public abstract class PollRunner implements RunnableFuture<Void> {
 
   @Override
   public void run() {
+    myIsRunning = true;
+    scheduleNextPoll(0);
+  }
+
+  private void scheduleNextPoll(long delayNs) {
+    synchronized (myScheduleLock) {
+      if (isCancelled()) {
+        myIsDone.countDown();
+        return;
+      }
+      myNextPoll = SCHEDULER.schedule(() -> POLL_EXECUTOR.execute(this::pollAndReschedule), delayNs, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private void pollAndReschedule() {
+    synchronized (myScheduleLock) {
+      if (isCancelled()) {
+        // The runner was cancelled before this poll started, and has already been marked as done.
+        return;
+      }
+      myIsPolling = true;
+    }
+
+    long startTimeNs = System.nanoTime();
+    long nextDelayNs = -1;
     try {
-      myIsRunning = true;
-      while (myRunning.getCount() > 0) {
-        long startTimeNs = System.nanoTime();
-        poll();
-        long sleepTime = Math.max(myPollPeriodNs - (System.nanoTime() - startTimeNs), 0L);
-        myRunning.await(sleepTime, TimeUnit.NANOSECONDS);
+      boolean dataReceived = pollForNewData();
+      myPollCount++;
+      if (dataReceived) {
+        myPollPeriodNs = myMinPollPeriodNs;
+      }
+      else {
+        myEmptyPollCount++;
+        myPollPeriodNs = Math.min(myPollPeriodNs * 2, myMaxPollPeriodNs);
       }
+      nextDelayNs = Math.max(myPollPeriodNs - (System.nanoTime() - startTimeNs), 0L);
     }
-    catch (InterruptedException | StatusRuntimeException e) {
-      Thread.currentThread().interrupt();
+    catch (StatusRuntimeException ignored) {
+      // The target went away, stop polling it.
     }
     finally {
-      myIsDone.countDown();
+      synchronized (myScheduleLock) {
+        myIsPolling = false;
+      }
+      if (nextDelayNs >= 0) {
+        scheduleNextPoll(nextDelayNs);
+      }
+      else {
+        myRunning.countDown();
+        myIsDone.countDown();
+      }
     }
   }
 
   public abstract void poll();
 
+  /**
+   * Polls once.
+   *
+   * @return whether {@link #poll()} reported new data through {@link #onDataReceived()}.
+   */
+  @VisibleForTesting
+  public boolean pollForNewData() {
+    myDataReceived = false;
+    poll();
+    return myDataReceived;
+  }
+
+  /**
+   * Called by {@link #poll()} when the target returned something new, which keeps the runner polling at its shortest period.
+   * Runners with a single period don't need to call it.
+   */
+  protected void onDataReceived() {
+    myDataReceived = true;
+  }
+
+  /**
+   * @return the period the next poll is scheduled after.
+   */
+  public long getPollPeriodNs() {
+    return myPollPeriodNs;
+  }
+
+  /**
+   * @return the number of polls completed so far.
+   */
+  public long getPollCount() {
+    return myPollCount;
+  }
+
+  /**
+   * @return the number of polls completed so far for which no data was reported.
+   */
+  public long getEmptyPollCount() {
+    return myEmptyPollCount;
+  }
+
   @Override
   public boolean cancel(boolean mayInterruptIfRunning) {
     myRunning.countDown();
+    synchronized (myScheduleLock) {
+      if (myNextPoll != null) {
+        myNextPoll.cancel(false);
+        // A poll in progress marks the runner as done once it exits. Otherwise, the next poll won't start, so nothing else will.
+        if (!myIsPolling) {
+          myIsDone.countDown();
+        }
+      }
+    }
     return true;
   }
 
@@ -226,7 +226,7 @@ public class CpuService extends CpuServiceGrpc.CpuServiceImplBase implements Ser
   @Override
   public void setBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull Connection connection) {
     assert namespace == DataStoreService.BackingNamespace.DEFAULT_SHARED_NAMESPACE;
-    myCpuTable.initialize(connection);
+    myCpuTable.initialize(connection, namespace.myCharacteristic);
   }
 
   /**
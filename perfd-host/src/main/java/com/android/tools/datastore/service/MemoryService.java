@@ -285,9 +285,16 @@ public class MemoryService extends MemoryServiceGrpc.MemoryServiceImplBase imple
 
   @Override
   public void getAllocations(AllocationSnapshotRequest request, StreamObserver<BatchAllocationSample> responseObserver) {
-    BatchAllocationSample response = myAllocationsTable.getAllocations(
-      request.getProcessId(), request.getSession(), request.getStartTime(), request.getEndTime());
-    responseObserver.onNext(response);
+    // The events are read a chunk at a time, so the poller can keep inserting into the store while a large range is read. The call is
+    // unary, so the chunks are merged into a single response.
+    BatchAllocationSample.Builder response = BatchAllocationSample.newBuilder().setTimestamp(Long.MIN_VALUE);
+    Consumer<BatchAllocationSample> mergeChunk = chunk -> {
+      response.addAllEvents(chunk.getEventsList());
+      response.setTimestamp(Math.max(response.getTimestamp(), chunk.getTimestamp()));
+    };
+    myAllocationsTable.getAllocations(request.getProcessId(), request.getSession(), request.getStartTime(), request.getEndTime(),
+                                      MemoryLiveAllocationTable.DEFAULT_ALLOCATION_CHUNK_SIZE, mergeChunk);
+    responseObserver.onNext(response.build());
     responseObserver.onCompleted();
   }
 
@@ -321,7 +328,7 @@ public class MemoryService extends MemoryServiceGrpc.MemoryServiceImplBase imple
   public void setBackingStore(@NotNull BackingNamespace namespace, @NotNull Connection connection) {
     assert getBackingNamespaces().contains(namespace);
     if (namespace.equals(BackingNamespace.DEFAULT_SHARED_NAMESPACE)) {
-      myStatsTable.initialize(connection);
+      myStatsTable.initialize(connection, namespace.myCharacteristic);
     }
     else {
       myAllocationsTable.initialize(connection);
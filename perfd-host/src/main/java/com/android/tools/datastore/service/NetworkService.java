@@ -137,6 +137,6 @@ public class NetworkService extends NetworkServiceGrpc.NetworkServiceImplBase im
   @Override
   public void setBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull Connection connection) {
     assert namespace == DataStoreService.BackingNamespace.DEFAULT_SHARED_NAMESPACE;
-    myNetworkTable.initialize(connection);
+    myNetworkTable.initialize(connection, namespace.myCharacteristic);
   }
 }
\ No newline at end of file
@@ -44,6 +44,7 @@ public class DataStorePollerTest {
 
   protected static class PollTicker {
     private Runnable myLastRunner;
+    private boolean myHasNewData;
 
     public void run(Runnable runner) {
       myLastRunner = runner;
@@ -54,12 +55,19 @@ public class DataStorePollerTest {
       if (myLastRunner != null) {
         if (myLastRunner instanceof PollRunner) {
           PollRunner poller = ((PollRunner)myLastRunner);
-          poller.poll();
+          myHasNewData = poller.pollForNewData();
         }
         else {
           myLastRunner.run();
         }
       }
     }
+
+    /**
+     * @return whether the last poll reported new data, which keeps an adaptive runner at its shortest period.
+     */
+    public boolean hasNewData() {
+      return myHasNewData;
+    }
   }
 }
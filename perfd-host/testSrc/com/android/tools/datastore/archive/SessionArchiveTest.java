@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.archive;
+
+import com.android.tools.profiler.proto.Common;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+public class SessionArchiveTest {
+  private static final Common.Session SESSION = Common.Session.newBuilder().setBootId("Boot").setDeviceSerial("SERIAL").build();
+  private static final List<String> COLUMNS = Arrays.asList("Session", "Timestamp", "Name", "Data", "Value");
+
+  private File myFile;
+
+  @Before
+  public void setUp() throws Exception {
+    myFile = File.createTempFile("SessionArchiveTest", "archive");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    myFile.delete();
+  }
+
+  @Test
+  public void testRowsRoundTripAcrossChunks() throws Exception {
+    int rowCount = SessionArchiveFormat.CHUNK_ROWS * 2 + 10;
+    List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < rowCount; i++) {
+      rows.add(new Object[]{
+        1L,
+        // Timestamps that mostly grow, with the odd step back.
+        1_000_000_000L * i - (i % 7 == 0 ? 5 : 0),
+        i % 3 == 0 ? null : "Name" + i,
+        i % 5 == 0 ? null : new byte[]{(byte)i, 1, 2},
+        // A column mixing kinds.
+        i % 2 == 0 ? (Object)(i * 0.5) : (Object)Long.MIN_VALUE
+      });
+    }
+    try (SessionArchiveWriter writer = new SessionArchiveWriter(myFile, SESSION)) {
+      SessionArchiveWriter.TableWriter table = writer.startTable("Samples", COLUMNS);
+      for (Object[] row : rows) {
+        table.addRow(row);
+      }
+      table.finish();
+    }
+
+    try (SessionArchiveReader reader = new SessionArchiveReader(myFile)) {
+      assertThat(reader.getSession()).isEqualTo(SESSION);
+      assertThat(reader.getColumnNames("Samples")).containsExactlyElementsIn(COLUMNS).inOrder();
+      assertThat(reader.getRowCount("Samples")).isEqualTo(rowCount);
+      List<Object[]> read = new ArrayList<>();
+      reader.readRows("Samples", read::add);
+      assertThat(read).hasSize(rowCount);
+      for (int i = 0; i < rowCount; i++) {
+        assertArrayEquals(rows.get(i), read.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testRangeReadOnlyReadsOverlappingChunks() throws Exception {
+    int chunkRows = SessionArchiveFormat.CHUNK_ROWS;
+    try (SessionArchiveWriter writer = new SessionArchiveWriter(myFile, SESSION)) {
+      SessionArchiveWriter.TableWriter table = writer.startTable("Samples", Arrays.asList("Timestamp", "Name"));
+      for (long i = 0; i < chunkRows * 3; i++) {
+        table.addRow(new Object[]{i, "Name" + i});
+      }
+      table.finish();
+    }
+
+    try (SessionArchiveReader reader = new SessionArchiveReader(myFile)) {
+      List<Long> timestamps = new ArrayList<>();
+      reader.readRows("Samples", "Timestamp", chunkRows + 5, chunkRows + 10, row -> timestamps.add((Long)row[0]));
+      // Only the second chunk can hold the range.
+      assertThat(timestamps).hasSize(chunkRows);
+      assertThat(timestamps.get(0)).isEqualTo((long)chunkRows);
+
+      timestamps.clear();
+      reader.readRows("Samples", "Timestamp", chunkRows * 3, Long.MAX_VALUE, row -> timestamps.add((Long)row[0]));
+      assertThat(timestamps).isEmpty();
+
+      // A column without integers can't be used to skip chunks.
+      List<Object> names = new ArrayList<>();
+      reader.readRows("Samples", "Name", 0, 0, row -> names.add(row[1]));
+      assertThat(names).hasSize(chunkRows * 3);
+    }
+  }
+
+  @Test
+  public void testTablesAreIndependent() throws Exception {
+    try (SessionArchiveWriter writer = new SessionArchiveWriter(myFile, SESSION)) {
+      SessionArchiveWriter.TableWriter first = writer.startTable("First", Arrays.asList("A"));
+      SessionArchiveWriter.TableWriter second = writer.startTable("Second", Arrays.asList("B", "C"));
+      // Interleave the rows of both tables.
+      for (long i = 0; i < 3; i++) {
+        first.addRow(new Object[]{i});
+        second.addRow(new Object[]{"b" + i, null});
+      }
+      first.finish();
+      second.finish();
+      writer.startTable("Empty", Arrays.asList("D")).finish();
+    }
+
+    try (SessionArchiveReader reader = new SessionArchiveReader(myFile)) {
+      assertThat(reader.getTableNames()).containsExactly("First", "Second", "Empty").inOrder();
+      assertThat(reader.getRowCount("Empty")).isEqualTo(0);
+      List<Object> values = new ArrayList<>();
+      reader.readRows("First", row -> values.add(row[0]));
+      assertThat(values).containsExactly(0L, 1L, 2L).inOrder();
+      values.clear();
+      reader.readRows("Second", row -> values.addAll(Arrays.asList(row)));
+      assertThat(values).containsExactly("b0", null, "b1", null, "b2", null).inOrder();
+    }
+  }
+
+  @Test
+  public void testTruncatedArchiveIsRejected() throws Exception {
+    try (SessionArchiveWriter writer = new SessionArchiveWriter(myFile, SESSION)) {
+      SessionArchiveWriter.TableWriter table = writer.startTable("Table", Arrays.asList("A"));
+      table.addRow(new Object[]{"value"});
+      table.finish();
+    }
+    try (RandomAccessFile file = new RandomAccessFile(myFile, "rw")) {
+      file.setLength(file.length() - 1);
+    }
+
+    try {
+      new SessionArchiveReader(myFile).close();
+      fail();
+    }
+    catch (IOException expected) {
+    }
+  }
+}
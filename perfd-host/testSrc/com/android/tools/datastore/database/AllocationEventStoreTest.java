@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class AllocationEventStoreTest {
+  @Test
+  public void testDuplicateAllocationsAreIgnored() {
+    AllocationEventStore store = new AllocationEventStore(2);
+    assertThat(store.insertAllocation(1, 10, 0, 8, 0, 0, 0, 0)).isTrue();
+    assertThat(store.insertAllocation(1, 20, 1, 16, 0, 0, 0, 0)).isFalse();
+    assertThat(store.getRecordCount()).isEqualTo(1);
+
+    List<String> records = new ArrayList<>();
+    store.forEachAllocatedIn(0, Long.MAX_VALUE, (tag, classTag, allocTime, freeTime, size, length, threadId, stackId, heapId) ->
+      records.add(tag + ":" + classTag + ":" + size));
+    assertThat(records).containsExactly("1:10:8");
+  }
+
+  @Test
+  public void testRecordFieldsRoundTrip() {
+    AllocationEventStore store = new AllocationEventStore();
+    store.insertAllocation(1, 2, 3, Long.MAX_VALUE - 1, 5, 6, 7, 8);
+    store.insertFree(1, 9);
+
+    List<long[]> records = new ArrayList<>();
+    store.forEachFreedIn(0, 10, (tag, classTag, allocTime, freeTime, size, length, threadId, stackId, heapId) ->
+      records.add(new long[]{tag, classTag, allocTime, freeTime, size, length, threadId, stackId, heapId}));
+    assertThat(records).hasSize(1);
+    assertThat(records.get(0)).isEqualTo(new long[]{1, 2, 3, 9, Long.MAX_VALUE - 1, 5, 6, 7, 8});
+  }
+
+  @Test
+  public void testRangeQueriesAcrossSegments() {
+    AllocationEventStore store = new AllocationEventStore(4);
+    for (int i = 0; i < 20; i++) {
+      store.insertAllocation(i, 0, i * 10, 0, 0, 0, 0, 0);
+    }
+    for (int i = 0; i < 10; i++) {
+      store.insertFree(i, 200 + i);
+    }
+
+    assertThat(allocatedTags(store, 35, 75)).containsExactly(4, 5, 6, 7).inOrder();
+    assertThat(allocatedTags(store, 0, 0)).isEmpty();
+    assertThat(freedTags(store, 203, 206)).containsExactly(3, 4, 5).inOrder();
+    assertThat(freedTags(store, 210, Long.MAX_VALUE)).isEmpty();
+  }
+
+  @Test
+  public void testOutOfOrderAllocationsAreFound() {
+    AllocationEventStore store = new AllocationEventStore(4);
+    store.insertAllocation(1, 0, 30, 0, 0, 0, 0, 0);
+    store.insertAllocation(2, 0, 10, 0, 0, 0, 0, 0);
+    store.insertAllocation(3, 0, 20, 0, 0, 0, 0, 0);
+
+    assertThat(allocatedTags(store, 10, 21)).containsExactly(2, 3).inOrder();
+  }
+
+  @Test
+  public void testPruneKeepsLiveAllocations() {
+    AllocationEventStore store = new AllocationEventStore(2);
+    store.insertAllocation(1, 0, 0, 0, 0, 0, 0, 0);
+    store.insertAllocation(2, 0, 2, 0, 0, 0, 0, 0);
+    store.insertAllocation(3, 0, 3, 0, 0, 0, 0, 0);
+    store.insertFree(1, 5);
+    store.prune(2);
+    assertThat(store.getRecordCount()).isEqualTo(2);
+    assertThat(allocatedTags(store, 0, Long.MAX_VALUE)).containsExactly(2, 3).inOrder();
+
+    store.insertFree(2, 6);
+    store.insertAllocation(4, 0, 7, 0, 0, 0, 0, 0);
+    store.prune(2);
+    assertThat(store.getRecordCount()).isEqualTo(2);
+    assertThat(allocatedTags(store, 0, Long.MAX_VALUE)).containsExactly(3, 4).inOrder();
+
+    // Nothing left to prune, all remaining allocations are alive.
+    store.insertAllocation(5, 0, 8, 0, 0, 0, 0, 0);
+    store.prune(2);
+    assertThat(store.getRecordCount()).isEqualTo(3);
+
+    // A pruned tag can be reused.
+    assertThat(store.insertAllocation(1, 0, 9, 0, 0, 0, 0, 0)).isTrue();
+  }
+
+  @Test
+  public void testFreesAreVisitedInFreeTimeOrder() {
+    AllocationEventStore store = new AllocationEventStore(2);
+    for (int i = 0; i < 6; i++) {
+      store.insertAllocation(i, 0, i, 0, 0, 0, 0, 0);
+    }
+    store.insertFree(5, 10);
+    store.insertFree(0, 12);
+    // Arrives late, and is freed before the frees already logged.
+    store.insertFree(3, 11);
+    store.insertFree(1, 13);
+    // A second free of the same allocation replaces the first one.
+    store.insertFree(1, 9);
+
+    assertThat(freedTags(store, 0, Long.MAX_VALUE)).containsExactly(1, 5, 3, 0).inOrder();
+    assertThat(freedTags(store, 10, 12)).containsExactly(5, 3).inOrder();
+  }
+
+  @Test
+  public void testPrunedFreesAreNotVisited() {
+    AllocationEventStore store = new AllocationEventStore(2);
+    store.insertAllocation(1, 0, 0, 0, 0, 0, 0, 0);
+    store.insertAllocation(2, 0, 1, 0, 0, 0, 0, 0);
+    store.insertAllocation(3, 0, 2, 0, 0, 0, 0, 0);
+    store.insertFree(1, 5);
+    store.insertFree(2, 6);
+    store.insertFree(3, 7);
+    store.prune(1);
+
+    // The allocations freed the longest ago are pruned first.
+    assertThat(freedTags(store, 0, Long.MAX_VALUE)).containsExactly(3);
+    // The tag of a pruned allocation can be reused without its old free showing up.
+    store.insertAllocation(1, 0, 8, 0, 0, 0, 0, 0);
+    assertThat(freedTags(store, 0, Long.MAX_VALUE)).containsExactly(3);
+  }
+
+  @Test
+  public void testPruneAcrossSegmentsAndFreeLogChunks() {
+    AllocationEventStore store = new AllocationEventStore(64);
+    int count = 5000;
+    for (int i = 0; i < count; i++) {
+      store.insertAllocation(i, 0, i, 0, 0, 0, 0, 0);
+    }
+    // Free every allocation but the multiples of 3, in reverse order so each free arrives late.
+    for (int i = count - 1; i >= 0; i--) {
+      if (i % 3 != 0) {
+        store.insertFree(i, 10000 + i);
+      }
+    }
+    store.prune(count / 2);
+    assertThat(store.getRecordCount()).isEqualTo(count / 2);
+
+    // The earliest frees were pruned, the later ones are still there and in free time order.
+    List<Integer> freed = freedTags(store, 0, Long.MAX_VALUE);
+    assertThat(freed).hasSize(count / 2 - (count + 2) / 3);
+    for (int i = 1; i < freed.size(); i++) {
+      assertThat(freed.get(i)).isGreaterThan(freed.get(i - 1));
+    }
+    assertThat(freed.get(freed.size() - 1)).isEqualTo(count - 1);
+
+    List<Integer> allocated = allocatedTags(store, 0, Long.MAX_VALUE);
+    assertThat(allocated).hasSize(count / 2);
+    for (int i = 0; i < count; i += 3) {
+      assertThat(allocated).contains(i);
+    }
+    assertThat(allocatedTags(store, 4500, 4504)).containsExactly(4500, 4501, 4502, 4503).inOrder();
+
+    // Prune everything that was freed, which drops the segments left with only holes.
+    store.prune(0);
+    assertThat(store.getRecordCount()).isEqualTo((count + 2) / 3);
+    assertThat(freedTags(store, 0, Long.MAX_VALUE)).isEmpty();
+    assertThat(allocatedTags(store, 0, 10)).containsExactly(0, 3, 6, 9).inOrder();
+  }
+
+  @Test
+  public void testFreesAtTheSameTimeAreVisitedAcrossPages() {
+    AllocationEventStore store = new AllocationEventStore();
+    int count = 40000;
+    for (int i = 0; i < count; i++) {
+      store.insertAllocation(i, 0, i, 0, 0, 0, 0, 0);
+      store.insertFree(i, count + i / 7);
+    }
+    List<Integer> freed = freedTags(store, 0, Long.MAX_VALUE);
+    assertThat(freed).hasSize(count);
+    for (int i = 0; i < count; i++) {
+      assertThat(freed.get(i)).isEqualTo(i);
+    }
+  }
+
+  @Test
+  public void testVisitorRunsWithoutTheStoreLock() throws Exception {
+    AllocationEventStore store = new AllocationEventStore(2);
+    for (int i = 0; i < 4; i++) {
+      store.insertAllocation(i, 0, i, 0, 0, 0, 0, 0);
+      store.insertFree(i, 10 + i);
+    }
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      AtomicInteger inserted = new AtomicInteger();
+      AllocationEventStore.RecordVisitor insertingVisitor =
+        (tag, classTag, allocTime, freeTime, size, length, threadId, stackId, heapId) -> {
+          // Would time out if the store was locked while visiting.
+          Future<Boolean> insert = executor.submit(() -> store.insertAllocation(100 + inserted.get(), 0, 100, 0, 0, 0, 0, 0));
+          try {
+            assertThat(insert.get(10, TimeUnit.SECONDS)).isTrue();
+          }
+          catch (Exception e) {
+            throw new AssertionError(e);
+          }
+          inserted.incrementAndGet();
+        };
+      store.forEachAllocatedIn(0, 4, insertingVisitor);
+      store.forEachFreedIn(0, Long.MAX_VALUE, insertingVisitor);
+      assertThat(inserted.get()).isEqualTo(8);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static List<Integer> allocatedTags(AllocationEventStore store, long startTime, long endTime) {
+    List<Integer> tags = new ArrayList<>();
+    store.forEachAllocatedIn(startTime, endTime, (tag, classTag, allocTime, freeTime, size, length, threadId, stackId, heapId) ->
+      tags.add(tag));
+    return tags;
+  }
+
+  private static List<Integer> freedTags(AllocationEventStore store, long startTime, long endTime) {
+    List<Integer> tags = new ArrayList<>();
+    store.forEachFreedIn(startTime, endTime, (tag, classTag, allocTime, freeTime, size, length, threadId, stackId, heapId) ->
+      tags.add(tag));
+    return tags;
+  }
+}
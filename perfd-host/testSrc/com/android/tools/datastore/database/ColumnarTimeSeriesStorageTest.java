@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.tools.profiler.proto.Common;
+import com.android.tools.profiler.proto.NetworkProfiler;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.*;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ColumnarTimeSeriesStorageTest {
+  private static final Common.Session SESSION = Common.Session.newBuilder().setBootId("Boot").setDeviceSerial("SERIAL").build();
+  private static final Common.Session OTHER_SESSION = Common.Session.newBuilder().setBootId("Other").setDeviceSerial("SERIAL").build();
+  private static final int ID = 1;
+
+  private static final SampleColumns<Long> LONG_COLUMNS = new SampleColumns<Long>() {
+    @Override
+    public int getColumnCount() {
+      return 1;
+    }
+
+    @Override
+    public boolean write(@NotNull Long sample, @NotNull long[] values) {
+      values[0] = sample;
+      return true;
+    }
+
+    @NotNull
+    @Override
+    public Long read(@NotNull long[] values) {
+      return values[0];
+    }
+  };
+
+  /**
+   * Only holds strings that are decimal numbers, so other strings are kept as overflow.
+   */
+  private static final SampleColumns<String> NUMBER_COLUMNS = new SampleColumns<String>() {
+    @Override
+    public int getColumnCount() {
+      return 1;
+    }
+
+    @Override
+    public boolean write(@NotNull String sample, @NotNull long[] values) {
+      if (!sample.matches("[1-9][0-9]{0,17}")) {
+        return false;
+      }
+      values[0] = Long.parseLong(sample);
+      return true;
+    }
+
+    @NotNull
+    @Override
+    public String read(@NotNull long[] values) {
+      return Long.toString(values[0]);
+    }
+  };
+
+  @Test
+  public void testRangeIsExclusiveStartInclusiveEnd() {
+    ColumnarTimeSeriesStorage<Long> storage = new ColumnarTimeSeriesStorage<>(new FakeSqlStorage<>(), LONG_COLUMNS, false);
+    for (long i = 0; i < 10; i++) {
+      storage.insert(SESSION, ID, i, i);
+    }
+    assertThat(storage.getRange(SESSION, ID, 2, 5)).containsExactly(3L, 4L, 5L).inOrder();
+    assertThat(storage.getRange(SESSION, ID, Long.MIN_VALUE, Long.MAX_VALUE)).hasSize(10);
+    assertThat(storage.getRange(SESSION, ID, 5, 5)).isEmpty();
+    assertThat(storage.getRange(SESSION, ID, 9, Long.MAX_VALUE)).isEmpty();
+  }
+
+  @Test
+  public void testSeriesAreKeyedBySessionAndId() {
+    ColumnarTimeSeriesStorage<Long> storage = new ColumnarTimeSeriesStorage<>(new FakeSqlStorage<>(), LONG_COLUMNS, false);
+    storage.insert(SESSION, ID, 1, 1L);
+    storage.insert(OTHER_SESSION, ID, 2, 2L);
+    storage.insert(SESSION, ID + 1, 3, 3L);
+    assertThat(storage.getRange(SESSION, ID, Long.MIN_VALUE, Long.MAX_VALUE)).containsExactly(1L);
+    assertThat(storage.getRange(OTHER_SESSION, ID, Long.MIN_VALUE, Long.MAX_VALUE)).containsExactly(2L);
+    assertThat(storage.getRange(SESSION, ID + 1, Long.MIN_VALUE, Long.MAX_VALUE)).containsExactly(3L);
+    assertThat(storage.getRange(OTHER_SESSION, ID + 1, Long.MIN_VALUE, Long.MAX_VALUE)).isEmpty();
+  }
+
+  @Test
+  public void testDuplicateTimestamps() {
+    ColumnarTimeSeriesStorage<String> ignoring = new ColumnarTimeSeriesStorage<>(new FakeSqlStorage<>(), NUMBER_COLUMNS, false);
+    ignoring.insert(SESSION, ID, 1, "first");
+    ignoring.insert(SESSION, ID, 1, "second");
+    assertThat(ignoring.getRange(SESSION, ID, 0, 1)).containsExactly("first");
+
+    ColumnarTimeSeriesStorage<String> replacing = new ColumnarTimeSeriesStorage<>(new FakeSqlStorage<>(), NUMBER_COLUMNS, true);
+    replacing.insert(SESSION, ID, 1, "first");
+    replacing.insert(SESSION, ID, 1, "second");
+    assertThat(replacing.getRange(SESSION, ID, 0, 1)).containsExactly("second");
+    assertThat(replacing.getOverflowCount()).isEqualTo(1);
+    // A sample the columns can hold replaces an overflowing one.
+    replacing.insert(SESSION, ID, 1, "3");
+    assertThat(replacing.getRange(SESSION, ID, 0, 1)).containsExactly("3");
+    assertThat(replacing.getOverflowCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testOverflowSamplesKeepTheirOrderAcrossChunks() {
+    FakeSqlStorage<String> backing = new FakeSqlStorage<>();
+    ColumnarTimeSeriesStorage<String> storage = new ColumnarTimeSeriesStorage<>(backing, NUMBER_COLUMNS, false);
+    int count = ColumnarTimeSeriesStorage.CHUNK_SIZE * 2;
+    // The even timestamps fit the columns, the odd ones overflow and are inserted last so full chunks need to be split.
+    for (long i = 2; i <= count; i += 2) {
+      storage.insert(SESSION, ID, i, Long.toString(i));
+    }
+    for (long i = count - 1; i > 0; i -= 2) {
+      storage.insert(SESSION, ID, i, "odd" + i);
+    }
+    assertThat(storage.getOverflowCount()).isEqualTo(count / 2);
+
+    List<String> all = storage.getRange(SESSION, ID, Long.MIN_VALUE, Long.MAX_VALUE);
+    assertThat(all).hasSize(count);
+    for (int i = 1; i <= count; i++) {
+      assertThat(all.get(i - 1)).isEqualTo(i % 2 == 0 ? Integer.toString(i) : "odd" + i);
+    }
+
+    storage.endSession(SESSION);
+    assertThat(backing.getRange(SESSION, ID, 1000, 1003)).containsExactly("odd1001", "1002", "odd1003").inOrder();
+  }
+
+  @Test
+  public void testProtoSamplesAreKeptInColumns() {
+    SampleColumns<NetworkProfiler.NetworkProfilerData> columns =
+      SampleColumns.forProto(NetworkProfiler.NetworkProfilerData.getDefaultInstance());
+    ColumnarTimeSeriesStorage<NetworkProfiler.NetworkProfilerData> storage =
+      new ColumnarTimeSeriesStorage<>(new FakeSqlStorage<>(), columns, false);
+    List<NetworkProfiler.NetworkProfilerData> samples = new ArrayList<>();
+    for (int i = 1; i <= 9; i++) {
+      NetworkProfiler.NetworkProfilerData.Builder sample = NetworkProfiler.NetworkProfilerData.newBuilder()
+        .setBasicInfo(Common.CommonData.newBuilder().setProcessId(ID).setEndTimestamp(i));
+      switch (i % 3) {
+        case 0:
+          sample.setSpeedData(NetworkProfiler.SpeedData.newBuilder().setSent(i * 100).setReceived(0));
+          break;
+        case 1:
+          // An all-default message in a oneof is still set.
+          sample.setConnectionData(NetworkProfiler.ConnectionData.getDefaultInstance());
+          break;
+        default:
+          sample.setConnectivityData(NetworkProfiler.ConnectivityData.newBuilder()
+                                       .setRadioState(NetworkProfiler.ConnectivityData.RadioState.HIGH)
+                                       .setDefaultNetworkType(NetworkProfiler.ConnectivityData.NetworkType.WIFI));
+          break;
+      }
+      samples.add(sample.build());
+      storage.insert(SESSION, ID, i, sample.build());
+    }
+
+    assertThat(storage.getOverflowCount()).isEqualTo(0);
+    assertThat(storage.getRange(SESSION, ID, 0, 9)).containsExactlyElementsIn(samples).inOrder();
+  }
+
+  @Test
+  public void testOutOfOrderInsertsAcrossChunks() {
+    ColumnarTimeSeriesStorage<Long> storage = new ColumnarTimeSeriesStorage<>(new FakeSqlStorage<>(), LONG_COLUMNS, false);
+    int count = ColumnarTimeSeriesStorage.CHUNK_SIZE * 3;
+    // Insert the even timestamps first, then fill in the odd ones so full chunks need to be split.
+    for (long i = 0; i < count; i += 2) {
+      storage.insert(SESSION, ID, i, i);
+    }
+    for (long i = count - 1; i > 0; i -= 2) {
+      storage.insert(SESSION, ID, i, i);
+    }
+
+    List<Long> all = storage.getRange(SESSION, ID, Long.MIN_VALUE, Long.MAX_VALUE);
+    assertThat(all).hasSize(count);
+    for (int i = 0; i < count; i++) {
+      assertThat(all.get(i)).isEqualTo((long)i);
+    }
+    assertThat(storage.getRange(SESSION, ID, 1500, 1503)).containsExactly(1501L, 1502L, 1503L).inOrder();
+  }
+
+  @Test
+  public void testEndedSessionsAreMovedToBackingStorage() {
+    FakeSqlStorage<Long> backing = new FakeSqlStorage<>();
+    ColumnarTimeSeriesStorage<Long> storage = new ColumnarTimeSeriesStorage<>(backing, LONG_COLUMNS, false);
+    for (long i = 0; i < 10; i++) {
+      storage.insert(SESSION, ID, i, i);
+      storage.insert(OTHER_SESSION, ID, i, i);
+    }
+    assertThat(storage.getSampleCount()).isEqualTo(20);
+
+    storage.endSession(SESSION);
+    assertThat(storage.getSampleCount()).isEqualTo(10);
+    assertThat(backing.getRange(SESSION, ID, Long.MIN_VALUE, Long.MAX_VALUE)).hasSize(10);
+    assertThat(backing.getRange(OTHER_SESSION, ID, Long.MIN_VALUE, Long.MAX_VALUE)).isEmpty();
+    // Reads of the ended session are answered by the backing storage.
+    assertThat(storage.getRange(SESSION, ID, 2, 5)).containsExactly(3L, 4L, 5L).inOrder();
+  }
+
+  @Test
+  public void testResumedSessionReadsAcrossBackingAndMemory() {
+    FakeSqlStorage<Long> backing = new FakeSqlStorage<>();
+    ColumnarTimeSeriesStorage<Long> storage = new ColumnarTimeSeriesStorage<>(backing, LONG_COLUMNS, false);
+    for (long i = 0; i < 5; i++) {
+      storage.insert(SESSION, ID, i, i);
+    }
+    storage.endSession(SESSION);
+    for (long i = 5; i < 10; i++) {
+      storage.insert(SESSION, ID, i, i);
+    }
+    // A late sample older than the evicted ones goes straight to the backing storage.
+    storage.insert(SESSION, ID, -1, -1L);
+
+    assertThat(storage.getSampleCount()).isEqualTo(5);
+    assertThat(storage.getRange(SESSION, ID, Long.MIN_VALUE, Long.MAX_VALUE))
+      .containsExactly(-1L, 0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L).inOrder();
+    assertThat(storage.getRange(SESSION, ID, 3, 6)).containsExactly(4L, 5L, 6L).inOrder();
+  }
+
+  @Test
+  public void testClearDropsEverything() {
+    FakeSqlStorage<Long> backing = new FakeSqlStorage<>();
+    ColumnarTimeSeriesStorage<Long> storage = new ColumnarTimeSeriesStorage<>(backing, LONG_COLUMNS, false);
+    storage.insert(SESSION, ID, 1, 1L);
+    storage.clear();
+    assertThat(storage.getSampleCount()).isEqualTo(0);
+    assertThat(backing.getRange(SESSION, ID, Long.MIN_VALUE, Long.MAX_VALUE)).isEmpty();
+  }
+
+  /**
+   * Stands in for the SQL table samples are moved to when their session ends. Like INSERT OR IGNORE, the first sample of a timestamp wins.
+   */
+  private static final class FakeSqlStorage<S> implements TimeSeriesStorage<S> {
+    private final Map<List<Object>, TreeMap<Long, S>> mySeries = new HashMap<>();
+
+    @Override
+    public void insert(@NotNull Common.Session session, long id, long timestamp, @NotNull S sample) {
+      mySeries.computeIfAbsent(Arrays.asList(session, id), key -> new TreeMap<>()).putIfAbsent(timestamp, sample);
+    }
+
+    @NotNull
+    @Override
+    public List<S> getRange(@NotNull Common.Session session, long id, long startTimestamp, long endTimestamp) {
+      TreeMap<Long, S> series = mySeries.get(Arrays.asList(session, id));
+      if (series == null || startTimestamp >= endTimestamp) {
+        return new ArrayList<>();
+      }
+      return new ArrayList<>(series.subMap(startTimestamp, false, endTimestamp, true).values());
+    }
+  }
+}
@@ -16,6 +16,8 @@
 package com.android.tools.datastore.database;
 
 import com.android.tools.datastore.DataStoreDatabase;
+import com.android.tools.datastore.archive.SessionArchiveReader;
+import com.android.tools.datastore.archive.SessionArchiveWriter;
 import com.android.tools.profiler.proto.Common;
 import org.jetbrains.annotations.NotNull;
 import org.junit.After;
@@ -23,19 +25,23 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
+import java.sql.Statement;
+import java.util.*;
 import java.util.concurrent.CountDownLatch;
 
+import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class DatabaseTableTest {
   private static final int TEST_THREAD_COUNT = 100;
   private static final int TEST_DATA_COUNT = 100;
+  private static final Common.Session SESSION = Common.Session.newBuilder().setBootId("Boot").setDeviceSerial("SERIAL").build();
+  private static final Common.Session OTHER_SESSION = Common.Session.newBuilder().setBootId("Other").setDeviceSerial("SERIAL").build();
   private File myDbFile;
   private ThreadTestTable myTable;
   private DataStoreDatabase myDatabase;
@@ -43,6 +49,10 @@ public class DatabaseTableTest {
     INSERT_DATA,
     READ_DATA
   }
+  public enum SessionTableStatement {
+    INSERT_VALUE,
+    READ_VALUES
+  }
 
   @Before
   public void setUp() throws Exception {
@@ -66,6 +76,148 @@ public class DatabaseTableTest {
     assertTrue(myTable.isClosed());
   }
 
+  @Test
+  public void testWritesAreBatchedAndFlushedBeforeQuery() throws Exception {
+    for (int i = 0; i < TEST_DATA_COUNT; i++) {
+      myTable.insertData(i);
+    }
+    assertThat(myTable.getWriteStats().getQueuedWrites()).isEqualTo(TEST_DATA_COUNT);
+
+    // Querying acts as a flush barrier so every queued row is visible.
+    int count = 0;
+    ResultSet rs = myTable.readDataRaw();
+    while (rs.next()) {
+      count++;
+    }
+    assertThat(count).isEqualTo(TEST_DATA_COUNT);
+    assertThat(myTable.getWriteStats().getFlushedWrites()).isEqualTo(TEST_DATA_COUNT);
+    assertThat(myTable.getWriteStats().getBatches()).isEqualTo(1);
+  }
+
+  @Test
+  public void testCommitFlushesPendingWrites() throws Exception {
+    myTable.insertData(1, 2, 3);
+    myDatabase.commit();
+    assertThat(myTable.getWriteStats().getFlushedWrites()).isEqualTo(3);
+  }
+
+  @Test
+  public void testFailedWriteOnlyDropsItsRow() throws Exception {
+    // DataColumn is unique, so the second 2 is rejected by the database. The rows around it still have to be written.
+    myTable.insertData(1, 2, 2, 3);
+    List<Long> values = new ArrayList<>();
+    ResultSet rs = myTable.readDataRaw();
+    while (rs.next()) {
+      values.add(rs.getLong(1));
+    }
+    assertThat(values).containsExactly(1L, 2L, 3L);
+    assertThat(myTable.getWriteStats().getFlushedWrites()).isEqualTo(3);
+    assertThat(myTable.getWriteStats().getFailedWrites()).isEqualTo(1);
+  }
+
+  @Test
+  public void testFlushingThreadsShareWriteStatements() throws Exception {
+    myTable.insertData(1);
+    Thread flushThread = new Thread(myTable::flush);
+    flushThread.start();
+    flushThread.join();
+    myTable.insertData(2);
+    myTable.flush();
+    assertThat(myTable.getWriteStats().getFlushedWrites()).isEqualTo(2);
+    assertThat(myTable.myPrepareCount).isEqualTo(1);
+  }
+
+  @Test
+  public void testSessionExportAndImport() throws Exception {
+    checkSessionExportAndImport(DataStoreDatabase.Characteristic.DURABLE);
+  }
+
+  @Test
+  public void testColumnarSamplesAreExported() throws Exception {
+    checkSessionExportAndImport(DataStoreDatabase.Characteristic.COLUMNAR);
+  }
+
+  @Test
+  public void testTableWithoutSessionIsNotExported() throws Exception {
+    // Thread_Table is not partitioned by session, so its rows can't be exported with a session.
+    myTable.insertData(1, 2, 3);
+    File archive = File.createTempFile("DatabaseTableTest", "archive");
+    try {
+      try (SessionArchiveWriter writer = new SessionArchiveWriter(archive, SESSION)) {
+        DataStoreTable.exportSession(Collections.singleton(myDatabase.getConnection()), SESSION, writer);
+      }
+      try (SessionArchiveReader reader = new SessionArchiveReader(archive)) {
+        assertFalse(reader.hasTable("Thread_Table"));
+      }
+    }
+    finally {
+      archive.delete();
+    }
+  }
+
+  private static void checkSessionExportAndImport(@NotNull DataStoreDatabase.Characteristic characteristic) throws Exception {
+    Map<Common.Session, Long> sessionIdLookup = new HashMap<>();
+    sessionIdLookup.put(SESSION, 1L);
+    sessionIdLookup.put(OTHER_SESSION, 2L);
+    File dbFile = File.createTempFile("DatabaseTableTest", "sql");
+    DataStoreDatabase database = new DataStoreDatabase(dbFile.getAbsolutePath(), characteristic);
+    SessionTestTable table = new SessionTestTable(sessionIdLookup);
+    table.initialize(database.getConnection(), characteristic);
+    table.insertValues(SESSION, 10, 20, 30);
+    table.insertValues(OTHER_SESSION, 40);
+
+    File archive = File.createTempFile("DatabaseTableTest", "archive");
+    File otherDbFile = File.createTempFile("DatabaseTableTest", "sql");
+    DataStoreDatabase otherDatabase = new DataStoreDatabase(otherDbFile.getAbsolutePath(), DataStoreDatabase.Characteristic.DURABLE);
+    try {
+      try (SessionArchiveWriter writer = new SessionArchiveWriter(archive, SESSION)) {
+        DataStoreTable.exportSession(Collections.singleton(database.getConnection()), SESSION, writer);
+      }
+      // The session is still readable, and keeps recording, once exported.
+      table.insertValues(SESSION, 50);
+      assertThat(table.getValues(SESSION)).containsExactly(10L, 20L, 30L, 50L).inOrder();
+
+      // The session gets a different id in the database it is imported into.
+      Map<Common.Session, Long> otherSessionIdLookup = new HashMap<>();
+      otherSessionIdLookup.put(SESSION, 7L);
+      SessionTestTable otherTable = new SessionTestTable(otherSessionIdLookup);
+      otherTable.initialize(otherDatabase.getConnection());
+      try (SessionArchiveReader reader = new SessionArchiveReader(archive)) {
+        assertThat(reader.getRowCount("Session_Table")).isEqualTo(3);
+        DataStoreTable.importSession(Collections.singleton(otherDatabase.getConnection()), SESSION, reader);
+        assertThat(otherTable.getValues(SESSION)).containsExactly(10L, 20L, 30L).inOrder();
+        assertThat(otherTable.getValues(SESSION, 10, 20)).containsExactly(20L);
+        // The values are read from the archive, rather than copied into the database.
+        try (Statement statement = otherDatabase.getConnection().createStatement();
+             ResultSet results = statement.executeQuery("SELECT COUNT(*) FROM Session_Table")) {
+          assertThat(results.getLong(1)).isEqualTo(0);
+        }
+
+        // An archived session can be exported again.
+        File otherArchive = File.createTempFile("DatabaseTableTest", "archive");
+        try {
+          try (SessionArchiveWriter writer = new SessionArchiveWriter(otherArchive, SESSION)) {
+            DataStoreTable.exportSession(Collections.singleton(otherDatabase.getConnection()), SESSION, writer);
+          }
+          try (SessionArchiveReader otherReader = new SessionArchiveReader(otherArchive)) {
+            assertThat(otherReader.getRowCount("Session_Table")).isEqualTo(3);
+          }
+        }
+        finally {
+          otherArchive.delete();
+        }
+        DataStoreTable.closeSession(Collections.singleton(otherDatabase.getConnection()), SESSION);
+      }
+    }
+    finally {
+      database.disconnect();
+      dbFile.delete();
+      otherDatabase.disconnect();
+      otherDbFile.delete();
+      archive.delete();
+    }
+  }
+
   @Test
   public void testThreadMultiThreadExecute() throws Exception {
     // Insert some fake data
@@ -148,6 +300,8 @@ public class DatabaseTableTest {
    * Setup a simple Datastore table to validate operations on.
    */
   private class ThreadTestTable extends DataStoreTable<ThreadTableStatement> {
+    private int myPrepareCount;
+
     public ThreadTestTable(@NotNull Map<Common.Session, Long> sesstionIdLookup) {
       super(sesstionIdLookup);
     }
@@ -156,7 +310,7 @@ public class DatabaseTableTest {
     public void initialize(@NotNull Connection connection) {
       super.initialize(connection);
       try {
-        createTable("Thread_Table", "DataColumn INTEGER");
+        createTable("Thread_Table", "DataColumn INTEGER UNIQUE");
       } catch (SQLException ex) {
         // Failed to create table.
       }
@@ -164,6 +318,7 @@ public class DatabaseTableTest {
 
     @Override
     public void prepareStatements() {
+      myPrepareCount++;
       try {
         createStatement(ThreadTableStatement.INSERT_DATA, "INSERT INTO Thread_Table (DataColumn) VALUES (?)");
         createStatement(ThreadTableStatement.READ_DATA, "SELECT DataColumn FROM Thread_Table");
@@ -182,4 +337,102 @@ public class DatabaseTableTest {
       return executeQuery(ThreadTableStatement.READ_DATA);
     }
   }
+
+  private static class SessionTestTable extends DataStoreTable<SessionTableStatement> {
+    // Values are stored as a time series, so a COLUMNAR database keeps them in memory until their session ends.
+    @NotNull private TimeSeriesStorage<Long> myValues = new SqlValueStorage();
+
+    public SessionTestTable(@NotNull Map<Common.Session, Long> sesstionIdLookup) {
+      super(sesstionIdLookup);
+    }
+
+    @Override
+    public void initialize(@NotNull Connection connection) {
+      super.initialize(connection);
+      myValues = createTimeSeriesStorage(new SqlValueStorage(), new ValueColumns(), false,
+                                         new ArchivedTimeSeriesStorage.Layout<>("Session_Table", new String[0], id -> new long[0], "Value",
+                                                                                "Data", SessionTestTable::decodeValue));
+      try {
+        createTable("Session_Table", "Session INTEGER NOT NULL", "Value INTEGER", "Data BLOB");
+      } catch (SQLException ex) {
+        // Failed to create table.
+      }
+    }
+
+    @Override
+    public void prepareStatements() {
+      try {
+        createStatement(SessionTableStatement.INSERT_VALUE, "INSERT INTO Session_Table (Session, Value, Data) VALUES (?, ?, ?)");
+        createStatement(SessionTableStatement.READ_VALUES, "SELECT Value FROM Session_Table WHERE Session = ? AND Value > ? AND Value <= ? ORDER BY Value");
+      } catch (SQLException ex) {
+        // Failed to create statement
+      }
+    }
+
+    public void insertValues(@NotNull Common.Session session, long... values) {
+      for (long value : values) {
+        myValues.insert(session, 0, value, value);
+      }
+    }
+
+    public List<Long> getValues(@NotNull Common.Session session) {
+      return getValues(session, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public List<Long> getValues(@NotNull Common.Session session, long start, long end) {
+      return myValues.getRange(session, 0, start, end);
+    }
+
+    @NotNull
+    private static byte[] encodeValue(long value) {
+      return Long.toString(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @NotNull
+    private static Long decodeValue(@NotNull byte[] data) {
+      return Long.valueOf(new String(data, StandardCharsets.UTF_8));
+    }
+
+    private static final class ValueColumns implements SampleColumns<Long> {
+      @Override
+      public int getColumnCount() {
+        return 1;
+      }
+
+      @Override
+      public boolean write(@NotNull Long sample, @NotNull long[] values) {
+        values[0] = sample;
+        return true;
+      }
+
+      @NotNull
+      @Override
+      public Long read(@NotNull long[] values) {
+        return values[0];
+      }
+    }
+
+    private final class SqlValueStorage implements TimeSeriesStorage<Long> {
+      @Override
+      public void insert(@NotNull Common.Session session, long id, long timestamp, @NotNull Long sample) {
+        execute(SessionTableStatement.INSERT_VALUE, session, sample, encodeValue(sample));
+      }
+
+      @NotNull
+      @Override
+      public List<Long> getRange(@NotNull Common.Session session, long id, long startTimestamp, long endTimestamp) {
+        List<Long> values = new ArrayList<>();
+        try {
+          ResultSet rs = executeQuery(SessionTableStatement.READ_VALUES, session, startTimestamp, endTimestamp);
+          while (rs.next()) {
+            values.add(rs.getLong(1));
+          }
+        }
+        catch (SQLException ex) {
+          // Failed to read the values.
+        }
+        return values;
+      }
+    }
+  }
 }
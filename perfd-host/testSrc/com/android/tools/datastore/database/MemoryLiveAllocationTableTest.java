@@ -28,6 +28,7 @@ import org.junit.Test;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -510,4 +511,36 @@ public class MemoryLiveAllocationTableTest {
     Truth.assertThat(contexts.getAllocatedClassesCount()).isEqualTo(1);
     Truth.assertThat(contexts.getAllocatedClasses(0)).isEqualTo(doubleClass.toBuilder().setClassName("double").build());
   }
+
+  @Test
+  public void testAllocationsOutliveTheirSession() throws Exception {
+    AllocationEvent alloc = AllocationEvent.newBuilder()
+      .setAllocData(AllocationEvent.Allocation.newBuilder().setTag(KLASS1_INSTANCE1_TAG).setClassTag(CLASS1)).setTimestamp(1).build();
+    myAllocationTable.insertAllocationData(VALID_PID, VALID_SESSION, BatchAllocationSample.newBuilder().addEvents(alloc).build());
+    Truth.assertThat(myAllocationTable.hasAllocationStores(VALID_SESSION)).isTrue();
+
+    DataStoreTable.endSession(Collections.singleton(myDatabase.getConnection()), VALID_SESSION);
+    Truth.assertThat(myAllocationTable.hasAllocationStores(VALID_SESSION)).isTrue();
+    Truth.assertThat(myAllocationTable.getAllocations(VALID_PID, VALID_SESSION, 0, Long.MAX_VALUE).getEventsList()).containsExactly(alloc);
+  }
+
+  @Test
+  public void testChunkedAllocations() throws Exception {
+    BatchAllocationSample.Builder insertSample = BatchAllocationSample.newBuilder();
+    for (int i = 0; i < 5; i++) {
+      insertSample.addEvents(AllocationEvent.newBuilder()
+                               .setAllocData(AllocationEvent.Allocation.newBuilder().setTag(i).setClassTag(CLASS1)).setTimestamp(i));
+    }
+    insertSample.addEvents(AllocationEvent.newBuilder().setFreeData(AllocationEvent.Deallocation.newBuilder().setTag(0)).setTimestamp(5));
+    myAllocationTable.insertAllocationData(VALID_PID, VALID_SESSION, insertSample.build());
+
+    List<BatchAllocationSample> chunks = new ArrayList<>();
+    myAllocationTable.getAllocations(VALID_PID, VALID_SESSION, 0, Long.MAX_VALUE, 2, chunks::add);
+    Truth.assertThat(chunks).hasSize(3);
+    Truth.assertThat(chunks.get(0).getEventsCount()).isEqualTo(2);
+    Truth.assertThat(chunks.get(0).getTimestamp()).isEqualTo(1);
+    Truth.assertThat(chunks.get(2).getEventsCount()).isEqualTo(2);
+    Truth.assertThat(chunks.get(2).getEvents(1).getFreeData().getTag()).isEqualTo(0);
+    Truth.assertThat(chunks.get(2).getTimestamp()).isEqualTo(5);
+  }
 }
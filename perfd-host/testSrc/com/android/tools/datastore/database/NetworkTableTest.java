@@ -16,6 +16,8 @@
 package com.android.tools.datastore.database;
 
 import com.android.tools.datastore.DataStoreDatabase;
+import com.android.tools.datastore.archive.SessionArchiveReader;
+import com.android.tools.datastore.archive.SessionArchiveWriter;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.NetworkProfiler;
 import org.junit.After;
@@ -23,6 +25,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -40,6 +44,10 @@ public class NetworkTableTest {
     .setBootId("VALID_SESSION")
     .setDeviceSerial("SERIAL")
     .build();
+  private static final Common.Session OTHER_SESSION = Common.Session.newBuilder()
+    .setBootId("OTHER_SESSION")
+    .setDeviceSerial("SERIAL")
+    .build();
   private static final Common.Session INVALID_SESSION = Common.Session.newBuilder()
     .setBootId("INVALID_SESSION")
     .setDeviceSerial("SERIAL")
@@ -53,6 +61,7 @@ public class NetworkTableTest {
   public void setUp() throws Exception {
     HashMap<Common.Session, Long> sessionLookup = new HashMap<>();
     sessionLookup.put(VALID_SESSION, 1L);
+    sessionLookup.put(OTHER_SESSION, 2L);
     myDbFile = File.createTempFile("NetworkTable", "mysql");
     myDatabase = new DataStoreDatabase(myDbFile.getAbsolutePath(), DataStoreDatabase.Characteristic.DURABLE);
     myTable = new NetworkTable(sessionLookup);
@@ -174,4 +183,77 @@ public class NetworkTableTest {
     List<NetworkProfiler.HttpConnectionData> response = myTable.getNetworkConnectionDataByRequest(request);
     assertEquals(0, response.size());
   }
+
+  @Test
+  public void testNetworkDataIsScopedToSession() throws Exception {
+    myTable.insert(PROCESS_ID, VALID_SESSION, createSpeedData(100, 1));
+    myTable.insert(PROCESS_ID, OTHER_SESSION, createSpeedData(100, 2));
+
+    List<NetworkProfiler.NetworkProfilerData> data = myTable.getNetworkDataByRequest(createDataRequest(VALID_SESSION));
+    assertEquals(1, data.size());
+    assertEquals(1, data.get(0).getSpeedData().getSent());
+    data = myTable.getNetworkDataByRequest(createDataRequest(OTHER_SESSION));
+    assertEquals(1, data.size());
+    assertEquals(2, data.get(0).getSpeedData().getSent());
+  }
+
+  @Test
+  public void testExportedNetworkDataIsScopedToSession() throws Exception {
+    myTable.insert(PROCESS_ID, VALID_SESSION, createSpeedData(100, 1));
+    myTable.insert(PROCESS_ID, OTHER_SESSION, createSpeedData(100, 2));
+
+    File archive = File.createTempFile("NetworkTable", "archive");
+    try {
+      try (SessionArchiveWriter writer = new SessionArchiveWriter(archive, VALID_SESSION)) {
+        DataStoreTable.exportSession(Collections.singleton(myDatabase.getConnection()), VALID_SESSION, writer);
+      }
+      try (SessionArchiveReader reader = new SessionArchiveReader(archive)) {
+        assertEquals(1, reader.getRowCount("Network_Data"));
+        assertEquals(TEST_DATA, reader.getRowCount("Network_Connection"));
+      }
+    }
+    finally {
+      archive.delete();
+    }
+  }
+
+  @Test
+  public void testNetworkDataWithoutSessionIsImportedIntoSession() throws Exception {
+    // Network_Data had no Session column in the archives written before it was scoped to sessions.
+    NetworkProfiler.NetworkProfilerData data = createSpeedData(100, 1);
+    File archive = File.createTempFile("NetworkTable", "archive");
+    try {
+      try (SessionArchiveWriter writer = new SessionArchiveWriter(archive, OTHER_SESSION)) {
+        SessionArchiveWriter.TableWriter table = writer.startTable("Network_Data", Arrays.asList("Id", "Type", "EndTime", "Data"));
+        table.addRow(new Object[]{PROCESS_ID, NetworkProfiler.NetworkDataRequest.Type.SPEED.getNumber(), 100L, data.toByteArray()});
+        table.finish();
+      }
+      try (SessionArchiveReader reader = new SessionArchiveReader(archive)) {
+        DataStoreTable.importSession(Collections.singleton(myDatabase.getConnection()), OTHER_SESSION, reader);
+        assertEquals(Collections.singletonList(data), myTable.getNetworkDataByRequest(createDataRequest(OTHER_SESSION)));
+        assertEquals(0, myTable.getNetworkDataByRequest(createDataRequest(VALID_SESSION)).size());
+        DataStoreTable.closeSession(Collections.singleton(myDatabase.getConnection()), OTHER_SESSION);
+      }
+    }
+    finally {
+      archive.delete();
+    }
+  }
+
+  private static NetworkProfiler.NetworkProfilerData createSpeedData(long timestamp, long sent) {
+    return NetworkProfiler.NetworkProfilerData.newBuilder()
+      .setBasicInfo(Common.CommonData.newBuilder().setProcessId(PROCESS_ID).setEndTimestamp(timestamp))
+      .setSpeedData(NetworkProfiler.SpeedData.newBuilder().setSent(sent))
+      .build();
+  }
+
+  private static NetworkProfiler.NetworkDataRequest createDataRequest(Common.Session session) {
+    return NetworkProfiler.NetworkDataRequest.newBuilder()
+      .setSession(session)
+      .setProcessId(PROCESS_ID)
+      .setStartTimestamp(0)
+      .setEndTimestamp(Long.MAX_VALUE)
+      .setType(NetworkProfiler.NetworkDataRequest.Type.SPEED)
+      .build();
+  }
 }
@@ -124,6 +124,15 @@ public class CpuDataPollerTest extends DataStorePollerTest {
     myCpuService.stopMonitoringApp(request, mock(StreamObserver.class));
   }
 
+  @Test
+  public void testRepeatedDataIsNotNew() {
+    // The poll on setup stored the data.
+    assertTrue(getPollTicker().hasNewData());
+    // The fake service returns the same samples and thread activities again, which shouldn't keep the poller at its shortest period.
+    getPollTicker().run();
+    assertFalse(getPollTicker().hasNewData());
+  }
+
   @Test
   public void testCheckAppProfilingStateWithNullClientShouldReturnDefaultInstance() {
     when(myDataStoreService.getCpuClient(any())).thenReturn(null);
@@ -33,7 +33,7 @@ import org.junit.rules.TestName;
 import java.util.HashMap;
 import java.util.concurrent.TimeUnit;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -133,6 +133,15 @@ public class NetworkDataPollerTest extends DataStorePollerTest {
     assertEquals(4, myFakeNetworkService.getDetailsRequested());
   }
 
+  @Test
+  public void testRepeatedDataIsNotNew() {
+    // The poll on setup stored the data.
+    assertTrue(getPollTicker().hasNewData());
+    // The fake service returns the same data and connection again, which shouldn't keep the poller at its shortest period.
+    getPollTicker().run();
+    assertFalse(getPollTicker().hasNewData());
+  }
+
   @Test
   public void testGetHttpDetailsRequest() {
     NetworkProfiler.HttpDetailsResponse request = NetworkProfiler.HttpDetailsResponse.newBuilder()
@@ -17,6 +17,10 @@ package com.android.tools.datastore.poller;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
@@ -42,6 +46,128 @@ public class PollRunnerTest {
     assertEquals(runner.get(1, TimeUnit.SECONDS), null); // For code completion
   }
 
+  @Test
+  public void testAdaptivePeriod() throws Exception {
+    // Data is reported by the first two polls and the eighth one.
+    AdaptivePollRunner runner = new AdaptivePollRunner(TEST_PERIOD_NS, TEST_PERIOD_NS * 8, 0, 1, 7);
+    // The runner is scheduled on the shared executor, so this returns right away.
+    runner.run();
+    runner.awaitPolls();
+    runner.stop();
+    assertEquals(true, runner.isDone());
+
+    List<Long> expected = Arrays.asList(1L, 1L, 2L, 4L, 8L, 8L, 8L, 1L);
+    List<Long> actual = new ArrayList<>();
+    for (long periodNs : runner.getPeriodsNs()) {
+      actual.add(periodNs / TEST_PERIOD_NS);
+    }
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testStopWaitsForPollInProgress() throws Exception {
+    CountDownLatch releasePoll = new CountDownLatch(1);
+    BlockingPollRunner runner = new BlockingPollRunner(releasePoll);
+    runner.run();
+    runner.awaitPollStarted();
+
+    Thread stopThread = new Thread(runner::stop);
+    stopThread.start();
+    stopThread.join(100);
+    // The runner is cancelled, but isn't done until the poll in progress returns.
+    assertEquals(true, runner.isCancelled());
+    assertEquals(false, runner.isDone());
+    assertEquals(true, stopThread.isAlive());
+
+    releasePoll.countDown();
+    stopThread.join();
+    assertEquals(true, runner.isDone());
+    assertEquals(1, runner.getPollCount());
+  }
+
+  @Test
+  public void testBlockedPollsDoNotDelayOtherRunners() throws Exception {
+    // More blocked runners than there are processors, so a pool sized by the processor count would have no thread left.
+    CountDownLatch releasePolls = new CountDownLatch(1);
+    List<BlockingPollRunner> blockedRunners = new ArrayList<>();
+    for (int i = 0; i <= Runtime.getRuntime().availableProcessors(); i++) {
+      BlockingPollRunner blockedRunner = new BlockingPollRunner(releasePolls);
+      blockedRunners.add(blockedRunner);
+      blockedRunner.run();
+      blockedRunner.awaitPollStarted();
+    }
+
+    AdaptivePollRunner runner = new AdaptivePollRunner(TEST_PERIOD_NS, TEST_PERIOD_NS);
+    runner.run();
+    runner.awaitPolls();
+    runner.stop();
+    assertEquals(true, runner.isDone());
+
+    releasePolls.countDown();
+    for (BlockingPollRunner blockedRunner : blockedRunners) {
+      blockedRunner.stop();
+    }
+  }
+
+  private static class BlockingPollRunner extends PollRunner {
+    private final CountDownLatch myPollStarted = new CountDownLatch(1);
+    private final CountDownLatch myRelease;
+
+    public BlockingPollRunner(CountDownLatch release) {
+      super(TEST_PERIOD_NS);
+      myRelease = release;
+    }
+
+    @Override
+    public void poll() {
+      myPollStarted.countDown();
+      try {
+        myRelease.await();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    public void awaitPollStarted() throws InterruptedException {
+      myPollStarted.await();
+    }
+  }
+
+  private static class AdaptivePollRunner extends PollRunner {
+    private final List<Integer> myPollsWithData;
+    private final List<Long> myPeriodsNs = new ArrayList<>();
+    private final CountDownLatch myPolls;
+    private int myPollIndex;
+
+    public AdaptivePollRunner(long minPeriodNs, long maxPeriodNs, Integer... pollsWithData) {
+      super(minPeriodNs, maxPeriodNs);
+      myPollsWithData = Arrays.asList(pollsWithData);
+      myPolls = new CountDownLatch(9);
+    }
+
+    @Override
+    public void poll() {
+      if (myPollIndex > 0 && myPolls.getCount() > 0) {
+        // The period the runner waited before this poll, as a result of the previous one.
+        myPeriodsNs.add(getPollPeriodNs());
+      }
+      if (myPollsWithData.contains(myPollIndex)) {
+        onDataReceived();
+      }
+      myPollIndex++;
+      myPolls.countDown();
+    }
+
+    public void awaitPolls() throws InterruptedException {
+      myPolls.await();
+    }
+
+    public List<Long> getPeriodsNs() {
+      return myPeriodsNs;
+    }
+  }
+
   private static class PollRunnerMinimalImpl extends PollRunner {
     private long myLastCallbackTime = 0;
     private long myTickCallCount = 0;
@@ -78,6 +78,11 @@ public class AndroidProfilerToolWindow extends AspectObserver implements Disposa
     return myView.getComponent();
   }
 
+  @NotNull
+  public StudioProfilers getProfilers() {
+    return myProfilers;
+  }
+
   @Nullable
   private String getPreferredProcessName(Project project) {
     for (Module module : ModuleManager.getInstance(project).getModules()) {
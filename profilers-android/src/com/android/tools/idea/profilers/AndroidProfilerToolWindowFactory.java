@@ -15,6 +15,8 @@
  */
 package com.android.tools.idea.profilers;
 
+import com.android.tools.idea.profilers.actions.ExportSessionAction;
+import com.android.tools.idea.profilers.actions.ImportSessionAction;
 import com.intellij.execution.runners.ExecutionUtil;
 import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.project.DumbAware;
@@ -24,6 +26,7 @@ import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowFactory;
 import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.openapi.wm.ex.ToolWindowEx;
 import com.intellij.openapi.wm.ex.ToolWindowManagerEx;
 import com.intellij.openapi.wm.ex.ToolWindowManagerListener;
 import com.intellij.ui.content.Content;
@@ -64,6 +67,10 @@ public class AndroidProfilerToolWindowFactory implements DumbAware, ToolWindowFa
     Disposer.register(content, view);
     toolWindow.getContentManager().addContent(content);
     toolWindow.setIcon(ExecutionUtil.getLiveIndicator(StudioIcons.Shell.ToolWindows.ANDROID_PROFILER));
+    if (toolWindow instanceof ToolWindowEx) {
+      ((ToolWindowEx)toolWindow).setTitleActions(new ImportSessionAction(project, view.getProfilers()),
+                                                 new ExportSessionAction(project, view.getProfilers()));
+    }
 
     PropertiesComponent properties = PropertiesComponent.getInstance(project);
     properties.setValue(ANDROID_PROFILER_ACTIVE, true);
@@ -74,6 +81,9 @@ public class AndroidProfilerToolWindowFactory implements DumbAware, ToolWindowFa
 
   public static void removeContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
     toolWindow.getContentManager().removeAllContents(true);
+    if (toolWindow instanceof ToolWindowEx) {
+      ((ToolWindowEx)toolWindow).setTitleActions();
+    }
     PropertiesComponent properties = PropertiesComponent.getInstance(project);
     toolWindow.setIcon(StudioIcons.Shell.ToolWindows.ANDROID_PROFILER);
     properties.setValue(ANDROID_PROFILER_ACTIVE, false);
@@ -89,7 +89,7 @@ public class ExportDialog extends DialogWrapper {
   }
 
   @NotNull
-  File getFile() {
+  public File getFile() {
     return new File(myPathTextFieldWithButton.getText().trim());
   }
 }
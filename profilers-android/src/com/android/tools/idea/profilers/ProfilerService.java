@@ -17,6 +17,7 @@ package com.android.tools.idea.profilers;
 
 import com.android.tools.datastore.DataStoreService;
 import com.android.tools.idea.sdk.IdeSdks;
+import com.android.tools.profiler.proto.Common;
 import com.android.tools.profilers.ProfilerClient;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
@@ -25,6 +26,7 @@ import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Paths;
 
 public class ProfilerService implements Disposable {
@@ -37,16 +39,23 @@ public class ProfilerService implements Disposable {
 
   private static final String DATASTORE_NAME = "DataStoreService";
 
+  /**
+   * The extension of the files that profiling sessions are saved to.
+   */
+  public static final String SESSION_FILE_EXTENSION = "profsession";
+
   @NotNull
   private final StudioProfilerDeviceManager myManager;
   @NotNull
   private final ProfilerClient myClient;
+  @NotNull
+  private final DataStoreService myDataStoreService;
 
   private ProfilerService() {
     String datastoreDirectory = Paths.get(System.getProperty("user.home"), ".android").toString() + File.separator;
-    DataStoreService dataStoreService =
+    myDataStoreService =
       new DataStoreService(DATASTORE_NAME, datastoreDirectory, ApplicationManager.getApplication()::executeOnPooledThread);
-    myManager = new StudioProfilerDeviceManager(dataStoreService);
+    myManager = new StudioProfilerDeviceManager(myDataStoreService);
     myClient = new ProfilerClient(DATASTORE_NAME);
     IdeSdks.subscribe(myManager, this);
   }
@@ -60,4 +69,20 @@ public class ProfilerService implements Disposable {
   public ProfilerClient getProfilerClient() {
     return myClient;
   }
+
+  /**
+   * Saves everything recorded for the session to a file, see {@link DataStoreService#exportSession(Common.Session, File)}.
+   */
+  public void exportSession(@NotNull Common.Session session, @NotNull File file) throws IOException {
+    myDataStoreService.exportSession(session, file);
+  }
+
+  /**
+   * Opens a session saved by {@link #exportSession(Common.Session, File)}, which then shows up as a disconnected device. See
+   * {@link DataStoreService#importSession(File)}.
+   */
+  @NotNull
+  public Common.Session importSession(@NotNull File file) throws IOException {
+    return myDataStoreService.importSession(file);
+  }
 }
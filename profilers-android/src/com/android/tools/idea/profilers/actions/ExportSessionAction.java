@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.profilers.actions;
+
+import com.android.tools.idea.profilers.ExportDialog;
+import com.android.tools.idea.profilers.ProfilerService;
+import com.android.tools.profiler.proto.Common;
+import com.android.tools.profilers.StudioProfilers;
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Saves the session shown by the profilers to a file, which {@link ImportSessionAction} can open again later, e.g. on another machine.
+ */
+public final class ExportSessionAction extends AnAction {
+  @NotNull private final Project myProject;
+  @NotNull private final StudioProfilers myProfilers;
+
+  public ExportSessionAction(@NotNull Project project, @NotNull StudioProfilers profilers) {
+    super("Save Session...", "Save the profiling session to a file", AllIcons.Actions.Menu_saveall);
+    myProject = project;
+    myProfilers = profilers;
+  }
+
+  @Override
+  public void update(AnActionEvent e) {
+    super.update(e);
+    e.getPresentation().setEnabled(myProfilers.getSession() != null);
+  }
+
+  @Override
+  public void actionPerformed(AnActionEvent e) {
+    Common.Session session = myProfilers.getSession();
+    if (session == null) {
+      return;
+    }
+    ExportDialog dialog = new ExportDialog(myProject, "Save Profiling Session", ProfilerService.SESSION_FILE_EXTENSION);
+    if (!dialog.showAndGet()) {
+      return;
+    }
+    File file = dialog.getFile();
+    // Exporting reads every row of the session, so it stays off the UI thread.
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      try {
+        ProfilerService.getInstance(myProject).exportSession(session, file);
+      }
+      catch (IOException ex) {
+        Logger.getInstance(ExportSessionAction.class).warn(ex);
+        ApplicationManager.getApplication().invokeLater(
+          () -> Messages.showErrorDialog(myProject, "Could not save the session: " + ex.getMessage(), "Save Profiling Session"));
+      }
+    });
+  }
+}
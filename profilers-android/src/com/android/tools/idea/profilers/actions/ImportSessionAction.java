@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.profilers.actions;
+
+import com.android.tools.idea.profilers.ProfilerService;
+import com.android.tools.profiler.proto.Common;
+import com.android.tools.profiler.proto.Profiler;
+import com.android.tools.profilers.StudioProfilers;
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptor;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Opens a session saved by {@link ExportSessionAction}. The session is read-only and shows up as a disconnected device, which is
+ * selected as soon as the profilers know about it.
+ */
+public final class ImportSessionAction extends AnAction {
+  @NotNull private final Project myProject;
+  @NotNull private final StudioProfilers myProfilers;
+
+  public ImportSessionAction(@NotNull Project project, @NotNull StudioProfilers profilers) {
+    super("Open Session...", "Open a profiling session saved to a file", AllIcons.Actions.Menu_open);
+    myProject = project;
+    myProfilers = profilers;
+  }
+
+  @Override
+  public void actionPerformed(AnActionEvent e) {
+    FileChooserDescriptor descriptor = FileChooserDescriptorFactory.createSingleFileDescriptor(ProfilerService.SESSION_FILE_EXTENSION);
+    VirtualFile virtualFile = FileChooser.chooseFile(descriptor, myProject, null);
+    if (virtualFile == null) {
+      return;
+    }
+    File file = VfsUtilCore.virtualToIoFile(virtualFile);
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      try {
+        Common.Session session = ProfilerService.getInstance(myProject).importSession(file);
+        ApplicationManager.getApplication().invokeLater(() -> selectDevice(session));
+      }
+      catch (IOException ex) {
+        Logger.getInstance(ImportSessionAction.class).warn(ex);
+        ApplicationManager.getApplication().invokeLater(
+          () -> Messages.showErrorDialog(myProject, "Could not open the session: " + ex.getMessage(), "Open Profiling Session"));
+      }
+    });
+  }
+
+  private void selectDevice(@NotNull Common.Session session) {
+    for (Profiler.Device device : myProfilers.getDevices()) {
+      if (device.getSerial().equals(session.getDeviceSerial()) && device.getBootId().equals(session.getBootId())) {
+        myProfilers.setDevice(device);
+        return;
+      }
+    }
+    // Otherwise the device is listed with the others once the profilers poll the devices again.
+  }
+}
@@ -276,6 +276,23 @@ class CpuCaptureView {
   /**
    * Expands a few nodes in order to improve the visual feedback of the list.
    */
+  /**
+   * Lets the model know which nodes are shown, as it only keeps those up to date.
+   */
+  private static void addExpansionListener(@NotNull JTree tree, @NotNull CpuTreeModel<?> model) {
+    tree.addTreeWillExpandListener(new TreeWillExpandListener() {
+      @Override
+      public void treeWillExpand(TreeExpansionEvent event) throws ExpandVetoException {
+        model.expand((DefaultMutableTreeNode)event.getPath().getLastPathComponent());
+      }
+
+      @Override
+      public void treeWillCollapse(TreeExpansionEvent event) throws ExpandVetoException {
+        model.collapse((DefaultMutableTreeNode)event.getPath().getLastPathComponent());
+      }
+    });
+  }
+
   private static void expandTreeNodes(JTree tree) {
     int maxRowsToExpand = 8; // TODO: adjust this value if necessary.
     int i = 0;
@@ -372,6 +389,7 @@ class CpuCaptureView {
       myPanel.add(setUpCpuTree(tree, model, view), CARD_CONTENT);
       myPanel.add(getNoDataForRange(), CARD_EMPTY_INFO);
 
+      addExpansionListener(tree, model);
       expandTreeNodes(tree);
 
       model.addTreeModelListener(new TreeModelAdapter() {
@@ -411,17 +429,7 @@ class CpuCaptureView {
       myPanel.add(getNoDataForRange(), CARD_EMPTY_INFO);
 
       tree.setRootVisible(false);
-      tree.addTreeWillExpandListener(new TreeWillExpandListener() {
-        @Override
-        public void treeWillExpand(TreeExpansionEvent event) throws ExpandVetoException {
-          DefaultMutableTreeNode node = (DefaultMutableTreeNode)event.getPath().getLastPathComponent();
-          ((BottomUpTreeModel)tree.getModel()).expand(node);
-        }
-
-        @Override
-        public void treeWillCollapse(TreeExpansionEvent event) throws ExpandVetoException {
-        }
-      });
+      addExpansionListener(tree, model);
 
       model.addTreeModelListener(new TreeModelAdapter() {
         @Override
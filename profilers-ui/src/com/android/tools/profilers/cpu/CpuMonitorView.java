@@ -70,6 +70,7 @@ public class CpuMonitorView extends ProfilerMonitorView<CpuMonitor> {
     lineChart.setMaxLineColor(ProfilerColors.MONITOR_MAX_LINE);
     lineChart.setMaxLineMargin(40);
     lineChart.setFillEndGap(true);
+    lineChart.setIncrementalRendering(true);
     getMonitor().addDependency(this).onChange(ProfilerMonitor.Aspect.FOCUS, () -> lineChart.setShowMaxLine(getMonitor().isFocused()));
 
     LineConfig config = new LineConfig(ProfilerColors.CPU_USAGE).setFilled(true).setLegendIconType(LegendConfig.IconType.NONE);
@@ -619,6 +619,12 @@ final class MemoryClassifierView extends AspectObserver {
       return getAdapter().getChildrenClassifierSets().size();
     }
 
+    @Override
+    public boolean isLeaf() {
+      // Asking for the children count would partition the set, which should only happen once the node is expanded.
+      return myMemoizedChildrenCount == INVALID_CHILDREN_COUNT ? getAdapter().isLeaf() : super.isLeaf();
+    }
+
     @Override
     public void expandNode() {
       if (myMemoizedChildrenCount == myChildren.size()) {
@@ -75,6 +75,7 @@ public class NetworkMonitorView extends ProfilerMonitorView<NetworkMonitor> {
     lineChart.setMaxLineColor(ProfilerColors.MONITOR_MAX_LINE);
     lineChart.setMaxLineMargin(40);
     lineChart.setRenderOffset(0, (int)LineConfig.DEFAULT_DASH_STROKE.getLineWidth() / 2);
+    lineChart.setIncrementalRendering(true);
     getMonitor().addDependency(this).onChange(ProfilerMonitor.Aspect.FOCUS, () -> lineChart.setShowMaxLine(getMonitor().isFocused()));
 
     NetworkMonitor.NetworkLegends legends = getMonitor().getLegends();
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers;
+
+import com.android.tools.adtui.model.*;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link RangedContinuousSeries} which never blocks its readers on the underlying {@link DataSeries}. Each read asks the
+ * {@link DataFetchScheduler} to fetch the current x range in the background and returns the data of the latest fetch that completed,
+ * which may lag behind the x range by a frame or so. Readers that read on every update (e.g. a {@link LineChartModel}) catch up on their
+ * own.
+ *
+ * The background fetch reads the points into a {@link LongSeriesBuffer}, through {@link LongDataSource} if the underlying series is one
+ * (e.g. a {@link CachedLongDataSeries}), so reading them into a buffer on the main thread is a plain copy of the arrays. It also
+ * summarizes them for the resolution the series was last drawn at, so a zoomed out chart copies a few points per pixel rather than
+ * downsampling every point of the range on the main thread.
+ *
+ * Only the reads through this series are asynchronous. {@link #getDataSeries()} is still the underlying series, so one-off lookups over
+ * other ranges (e.g. legends) neither wait for nor supersede the fetches of the x range.
+ */
+public class AsyncRangedContinuousSeries extends RangedContinuousSeries {
+  @NotNull private final DataFetchScheduler myScheduler;
+
+  /**
+   * The result of the latest fetch that completed. Published results are never modified.
+   */
+  @NotNull private volatile FetchResult myData = new FetchResult(new LongSeriesBuffer(), null, 0);
+
+  /**
+   * The resolution {@link #getSeries(LongSeriesBuffer, int)} was last called for, which the next fetch summarizes the points for.
+   */
+  private volatile long myResolution;
+
+  public AsyncRangedContinuousSeries(@NotNull String name,
+                                     @NotNull Range xRange,
+                                     @NotNull Range yRange,
+                                     @NotNull DataSeries<Long> series,
+                                     @NotNull DataFetchScheduler scheduler) {
+    super(name, xRange, yRange, series);
+    myScheduler = scheduler;
+  }
+
+  /**
+   * @return how well the cache of the underlying series answered the fetches so far, or null if it isn't a {@link CachedDataSeries}.
+   */
+  @Nullable
+  public CachedDataSeries.Statistics getCacheStatistics() {
+    return mSeries instanceof CachedDataSeries ? ((CachedDataSeries)mSeries).getStatistics() : null;
+  }
+
+  /**
+   * Logs, at debug level, the {@link #getCacheStatistics()} of the asynchronous series of the model, e.g. when the stage showing it exits.
+   */
+  public static void logCacheStatistics(@NotNull Logger logger, @NotNull LineChartModel model) {
+    if (!logger.isDebugEnabled()) {
+      return;
+    }
+    for (RangedContinuousSeries series : model.getSeries()) {
+      CachedDataSeries.Statistics statistics = series instanceof AsyncRangedContinuousSeries
+                                               ? ((AsyncRangedContinuousSeries)series).getCacheStatistics()
+                                               : null;
+      if (statistics != null) {
+        logger.debug(String.format("Data cache of %s series '%s': %s", model.getClass().getSimpleName(), series.getName(), statistics));
+      }
+    }
+  }
+
+  @NotNull
+  @Override
+  public List<SeriesData<Long>> getSeries() {
+    LongSeriesBuffer data = requestData().myPoints;
+    List<SeriesData<Long>> series = new ArrayList<>(data.size());
+    for (int i = 0; i < data.size(); i++) {
+      series.add(new SeriesData<>(data.getX(i), data.getY(i)));
+    }
+    return series;
+  }
+
+  @Override
+  public void getSeries(@NotNull LongSeriesBuffer buffer) {
+    buffer.copyFrom(requestData().myPoints);
+  }
+
+  @Override
+  public void getSeries(@NotNull LongSeriesBuffer buffer, int widthInPixels) {
+    if (widthInPixels <= 0 || mXRange.isEmpty()) {
+      getSeries(buffer);
+      return;
+    }
+
+    long resolution = getResolution(widthInPixels);
+    myResolution = resolution;
+    FetchResult data = requestData();
+    // The x range usually moves or scales a little between frames, so a summary for a slightly different resolution is still good enough.
+    if (data.mySummary != null && Math.abs(data.mySummaryResolution - resolution) <= resolution / 4) {
+      buffer.copyFrom(data.mySummary);
+    }
+    else {
+      buffer.copyFrom(data.myPoints);
+      buffer.downsample(resolution);
+    }
+  }
+
+  @Override
+  public void getSeriesFrom(@NotNull LongSeriesBuffer buffer, double fromX) {
+    LongSeriesBuffer data = requestData().myPoints;
+    // The fetched data is sorted by x, so skip to the first point at or after fromX.
+    int low = 0;
+    int high = data.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (data.getX(mid) < fromX) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+
+    buffer.clear();
+    for (int i = low; i < data.size(); i++) {
+      buffer.add(data.getX(i), data.getY(i));
+    }
+  }
+
+  /**
+   * Asks for the current x range to be fetched and returns the data of the latest fetch that completed.
+   */
+  @NotNull
+  private FetchResult requestData() {
+    myScheduler.request(this, mXRange, this::fetch, data -> myData = data);
+    return myData;
+  }
+
+  @NotNull
+  private FetchResult fetch(@NotNull Range range) {
+    LongSeriesBuffer points = new LongSeriesBuffer();
+    readSeries(range, points);
+    long resolution = myResolution;
+    if (resolution < 2) {
+      return new FetchResult(points, null, 0);
+    }
+    LongSeriesBuffer summary = new LongSeriesBuffer();
+    if (mSeries instanceof LongDataSource) {
+      ((LongDataSource)mSeries).getDataForXRange(range, resolution, summary);
+    }
+    else {
+      // Don't ask the underlying series for the same range twice.
+      summary.copyFrom(points);
+      summary.downsample(resolution);
+    }
+    return new FetchResult(points, summary, resolution);
+  }
+
+  private static final class FetchResult {
+    @NotNull private final LongSeriesBuffer myPoints;
+    @Nullable private final LongSeriesBuffer mySummary;
+    private final long mySummaryResolution;
+
+    private FetchResult(@NotNull LongSeriesBuffer points, @Nullable LongSeriesBuffer summary, long summaryResolution) {
+      myPoints = points;
+      mySummary = summary;
+      mySummaryResolution = summaryResolution;
+    }
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers;
+
+import com.android.annotations.VisibleForTesting;
+import com.android.tools.adtui.model.Range;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs blocking data fetches (e.g. RPCs to perfd-host) on the pool executor, so that a slow device doesn't stall the UI update loop.
+ *
+ * Fetches are keyed by an owner (e.g. a data series) and a range. Requests made while the main thread is busy with a frame are coalesced:
+ * they are only dispatched once the main thread gets to the flush queued behind that frame, and by then only the latest request of each
+ * owner is left. Each owner has at most one fetch in flight. A request for the range that is already being fetched is dropped, while a
+ * request for another range waits for the fetch in flight. The result of that fetch is still published, as it is newer than the one shown,
+ * so that an owner whose range changes faster than its fetches complete (e.g. while following live data) keeps being updated. A result is
+ * only discarded if its owner already shows a newer one, or if the request was cancelled. At most {@link #MAX_CONCURRENT_FETCHES} fetches
+ * run at a time and results are published through the main executor.
+ */
+public final class DataFetchScheduler {
+  @VisibleForTesting
+  static final int MAX_CONCURRENT_FETCHES = 4;
+
+  @NotNull private final Executor myMainExecutor;
+  @NotNull private final Executor myPoolExecutor;
+  private final int myMaxConcurrentFetches;
+
+  // The fields below are guarded by this.
+  @NotNull private final Map<Object, Request<?>> myPending = new LinkedHashMap<>();
+  @NotNull private final Map<Object, Request<?>> myRunning = new HashMap<>();
+  // The sequence number of the last request published for each owner. Weak, as owners don't tell when they are done with the scheduler.
+  @NotNull private final Map<Object, Long> myPublishedSequences = new WeakHashMap<>();
+  private long myNextSequence;
+  private boolean myFlushScheduled;
+
+  public DataFetchScheduler(@NotNull Executor mainExecutor, @NotNull Executor poolExecutor) {
+    this(mainExecutor, poolExecutor, MAX_CONCURRENT_FETCHES);
+  }
+
+  @VisibleForTesting
+  DataFetchScheduler(@NotNull Executor mainExecutor, @NotNull Executor poolExecutor, int maxConcurrentFetches) {
+    assert maxConcurrentFetches > 0;
+    myMainExecutor = mainExecutor;
+    myPoolExecutor = poolExecutor;
+    myMaxConcurrentFetches = maxConcurrentFetches;
+  }
+
+  private static Logger getLogger() {
+    return Logger.getInstance(DataFetchScheduler.class);
+  }
+
+  /**
+   * Requests {@code fetcher} to be run on a copy of {@code range} off the main thread. Unless the request is replaced by a newer one
+   * before it is dispatched, or cancelled before the fetch completes, {@code consumer} receives the result on the main thread.
+   */
+  public <T> void request(@NotNull Object owner, @NotNull Range range, @NotNull Function<Range, T> fetcher, @NotNull Consumer<T> consumer) {
+    synchronized (this) {
+      Request<T> request = new Request<>(owner, myNextSequence++, range.getMin(), range.getMax(), fetcher, consumer);
+      Request<?> running = myRunning.get(owner);
+      if (running != null && !running.myCancelled && running.hasSameRange(request)) {
+        myPending.remove(owner);
+        return;
+      }
+      myPending.put(owner, request);
+      if (myFlushScheduled) {
+        return;
+      }
+      myFlushScheduled = true;
+    }
+    myMainExecutor.execute(this::flush);
+  }
+
+  /**
+   * Drops the pending request of {@code owner}, if any, and discards the result of its fetch in flight.
+   */
+  public void cancel(@NotNull Object owner) {
+    synchronized (this) {
+      myPending.remove(owner);
+      Request<?> running = myRunning.get(owner);
+      if (running != null) {
+        running.myCancelled = true;
+      }
+    }
+  }
+
+  /**
+   * @return the number of fetches currently in flight.
+   */
+  public synchronized int getRunningCount() {
+    return myRunning.size();
+  }
+
+  /**
+   * @return the number of requests waiting to be dispatched.
+   */
+  public synchronized int getPendingCount() {
+    return myPending.size();
+  }
+
+  private void flush() {
+    List<Request<?>> toStart = new ArrayList<>();
+    synchronized (this) {
+      myFlushScheduled = false;
+      Iterator<Request<?>> it = myPending.values().iterator();
+      while (it.hasNext() && myRunning.size() < myMaxConcurrentFetches) {
+        Request<?> request = it.next();
+        if (!myRunning.containsKey(request.myOwner)) {
+          it.remove();
+          myRunning.put(request.myOwner, request);
+          toStart.add(request);
+        }
+      }
+    }
+    toStart.forEach(this::start);
+  }
+
+  private <T> void start(@NotNull Request<T> request) {
+    CompletableFuture.supplyAsync(request::fetch, myPoolExecutor)
+      .whenComplete((result, error) -> myMainExecutor.execute(() -> complete(request, result, error)));
+  }
+
+  private <T> void complete(@NotNull Request<T> request, T result, Throwable error) {
+    boolean publish;
+    synchronized (this) {
+      myRunning.remove(request.myOwner);
+      Long publishedSequence = myPublishedSequences.get(request.myOwner);
+      publish = error == null && !request.myCancelled && (publishedSequence == null || publishedSequence < request.mySequence);
+      if (publish) {
+        myPublishedSequences.put(request.myOwner, request.mySequence);
+      }
+    }
+    // Whatever is left pending can now take the slot that was freed.
+    flush();
+
+    if (error != null) {
+      getLogger().warn("Failed to fetch data for " + request.myOwner, error);
+    }
+    else if (publish) {
+      request.myConsumer.accept(result);
+    }
+  }
+
+  private static final class Request<T> {
+    @NotNull private final Object myOwner;
+    private final long mySequence;
+    private final double myMin;
+    private final double myMax;
+    @NotNull private final Function<Range, T> myFetcher;
+    @NotNull private final Consumer<T> myConsumer;
+    private volatile boolean myCancelled;
+
+    private Request(@NotNull Object owner,
+                    long sequence,
+                    double min,
+                    double max,
+                    @NotNull Function<Range, T> fetcher,
+                    @NotNull Consumer<T> consumer) {
+      myOwner = owner;
+      mySequence = sequence;
+      myMin = min;
+      myMax = max;
+      myFetcher = fetcher;
+      myConsumer = consumer;
+    }
+
+    private T fetch() {
+      return myFetcher.apply(new Range(myMin, myMax));
+    }
+
+    private boolean hasSameRange(@NotNull Request<?> other) {
+      return Double.compare(myMin, other.myMin) == 0 && Double.compare(myMax, other.myMax) == 0;
+    }
+  }
+}
@@ -36,6 +36,12 @@ public final class ProfilerTimeline extends AspectModel<ProfilerTimeline.Aspect>
   @VisibleForTesting
   public static final long DEFAULT_VIEW_LENGTH_US = TimeUnit.SECONDS.toMicros(30);
 
+  /**
+   * How far beyond the queried range the cached data series of the monitors and stages keep their data, so that panning or zooming out a
+   * little doesn't need to fetch it again.
+   */
+  public static final long DATA_CACHE_RETENTION_US = DEFAULT_VIEW_LENGTH_US;
+
   @NotNull private final Range myDataRangeUs;
   @NotNull private final Range myViewRangeUs;
   @NotNull private final Range mySelectionRangeUs;
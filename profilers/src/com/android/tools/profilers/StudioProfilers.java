@@ -94,6 +94,9 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
 
   private Updater myUpdater;
 
+  @NotNull
+  private final DataFetchScheduler myDataFetchScheduler;
+
   @NotNull
   private RelativeTimeConverter myRelativeTimeConverter;
 
@@ -116,6 +119,7 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
     myStage.enter();
 
     myUpdater = new Updater(timer);
+    myDataFetchScheduler = new DataFetchScheduler(ideServices.getMainExecutor(), ideServices.getPoolExecutor());
     myProfilers = ImmutableList.of(
       new EventProfiler(this),
       new CpuProfiler(this),
@@ -527,6 +531,14 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
     return myUpdater;
   }
 
+  /**
+   * @return the scheduler that runs the data fetches of the profilers' models off the main thread.
+   */
+  @NotNull
+  public DataFetchScheduler getDataFetchScheduler() {
+    return myDataFetchScheduler;
+  }
+
   public AxisComponentModel getViewAxis() {
     return myViewAxis;
   }
@@ -17,9 +17,12 @@ package com.android.tools.profilers.cpu;
 
 import com.android.tools.adtui.model.HNode;
 import com.android.tools.adtui.model.Range;
+import com.android.tools.perflib.vmtrace.ClockType;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.function.BooleanSupplier;
 
 public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
 
@@ -33,18 +36,18 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
     myChildrenBuilt = false;
   }
 
-  public BottomUpNode(@NotNull CaptureNode node) {
+  public BottomUpNode(@NotNull CaptureNodeModel node) {
     super("Root");
     myIsRoot = true;
     myChildrenBuilt = true;
 
-    List<CaptureNode> allNodes = new ArrayList<>();
+    List<CaptureNodeModel> allNodes = new ArrayList<>();
     // Pre-order traversal with Stack.
     // The traversal will sort nodes by CaptureNode#getStart(), if they'll be equal then ancestor will come first.
-    Stack<CaptureNode> stack = new Stack<>();
+    Stack<CaptureNodeModel> stack = new Stack<>();
     stack.add(node);
     while (!stack.isEmpty()) {
-      CaptureNode curNode = stack.pop();
+      CaptureNodeModel curNode = stack.pop();
       allNodes.add(curNode);
       // Adding in reverse order so that the first child is processed first
       for (int i = curNode.getChildren().size() - 1; i >= 0; --i) {
@@ -53,7 +56,7 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
     }
 
     Map<String, BottomUpNode> children = new HashMap<>();
-    for (CaptureNode curNode : allNodes) {
+    for (CaptureNodeModel curNode : allNodes) {
       assert curNode.getData() != null;
       String curId = curNode.getData().getId();
       BottomUpNode child = children.get(curId);
@@ -107,39 +110,57 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
 
   @Override
   public void update(@NotNull Range range) {
-    // how much time was spent in this call stack path, and in the functions it called
+    Indexes indexes = getIndexes();
+    if (indexes != null) {
+      // how much time was spent in this call stack path, and in the functions it called
+      myTotal = ((BottomUpIndexes)indexes).myOutermostNodesIndex.getIntersectionLength(range);
+      // how much time was spent doing work directly in this call stack path
+      double self = indexes.myNodesIndex.getIntersectionLength(range) - indexes.myChildrenIndex.getIntersectionLength(range);
+      myChildrenTotal = myTotal - self;
+      return;
+    }
+
     myTotal = 0;
-    // how much time was spent doing work directly in this call stack path
     double self = 0;
+    for (CaptureNodeModel node : getOutermostNodes(myNodes)) {
+      myTotal += getIntersection(range, node);
+    }
+    for (CaptureNodeModel node : myNodes) {
+      self += getIntersection(range, node);
+      for (CaptureNodeModel child : node.getChildren()) {
+        self -= getIntersection(range, child);
+      }
+    }
+    myChildrenTotal = myTotal - self;
+  }
 
-    // The node that is at the top of the call stack, e.g if the call stack looks like B [0..30] -> B [1..20],
-    // then the second method can't be outerSoFar.
-    // It's used to exclude nodes which aren't at the top of the
-    // call stack from the total time calculation.
-    HNode<MethodModel> outerSoFar = null;
+  @Nullable
+  @Override
+  protected Indexes buildIndexes(@NotNull List<CaptureNodeModel> nodes, @NotNull ClockType clockType, @NotNull BooleanSupplier cancelled) {
+    Indexes indexes = super.buildIndexes(nodes, clockType, cancelled);
+    if (indexes == null || cancelled.getAsBoolean()) {
+      return null;
+    }
+    return new BottomUpIndexes(indexes, IntervalSumIndex.of(getOutermostNodes(nodes)));
+  }
 
-    // myNodes is sorted by CaptureNode#getStart() in increasing order,
+  /**
+   * Returns the nodes which are at the top of the call stack among the given ones, e.g if the call stack looks like
+   * B [0..30] -> B [1..20], then the second call is excluded. Recursive calls would otherwise be counted more than once in the total time.
+   */
+  @NotNull
+  private static List<CaptureNodeModel> getOutermostNodes(@NotNull List<CaptureNodeModel> nodes) {
+    // nodes are sorted by CaptureNode#getStart() in increasing order,
     // if they are equal then ancestor comes first
-    for (CaptureNode node: myNodes) {
+    List<CaptureNodeModel> outermost = new ArrayList<>();
+    HNode<MethodModel> outerSoFar = null;
+    for (CaptureNodeModel node : nodes) {
       if (outerSoFar == null || node.getEnd() > outerSoFar.getEnd()) {
-        if (outerSoFar != null) {
-          // |outerSoFar| is at the top of the call stack
-          myTotal += getIntersection(range, outerSoFar);
-        }
+        outermost.add(node);
         outerSoFar = node;
       }
-
-      self += getIntersection(range, node);
-      for (CaptureNode child : node.getChildren()) {
-        self -= getIntersection(range, child);
-      }
-    }
-
-    if (outerSoFar != null) {
-      // |outerSoFar| is at the top of the call stack
-      myTotal += getIntersection(range, outerSoFar);
     }
-    myChildrenTotal = myTotal - self;
+    return outermost;
   }
 
   @Override
@@ -168,4 +189,13 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
     MethodModel method = myPathNodes.get(0).getData();
     return (method == null ? "" : method.getSignature());
   }
+
+  private static class BottomUpIndexes extends Indexes {
+    @NotNull final IntervalSumIndex myOutermostNodesIndex;
+
+    private BottomUpIndexes(@NotNull Indexes indexes, @NotNull IntervalSumIndex outermostNodesIndex) {
+      super(indexes.myClockType, indexes.myNodesIndex, indexes.myChildrenIndex);
+      myOutermostNodesIndex = outermostNodesIndex;
+    }
+  }
 }
@@ -19,42 +19,26 @@ import com.android.tools.adtui.model.Range;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.tree.DefaultMutableTreeNode;
+import java.util.concurrent.Executor;
 
 public class BottomUpTreeModel extends CpuTreeModel<BottomUpNode> {
   public BottomUpTreeModel(@NotNull Range range, @NotNull BottomUpNode node) {
     super(range, node);
   }
 
+  public BottomUpTreeModel(@NotNull Range range, @NotNull BottomUpNode node, @NotNull Executor indexExecutor) {
+    super(range, node, indexExecutor);
+  }
+
   @Override
   public void expand(@NotNull DefaultMutableTreeNode node) {
     BottomUpNode bottomUpNode = (BottomUpNode)node.getUserObject();
 
-    for (int i = 0; i < node.getChildCount(); ++i) {
-      DefaultMutableTreeNode child = (DefaultMutableTreeNode)node.getChildAt(i);
-      BottomUpNode childBottomUp = (BottomUpNode)child.getUserObject();
-
-      if (childBottomUp.buildChildren()) {
-        loadChildren(child);
-      }
-    }
-
+    // The children of |bottomUpNode| are about to be shown, build their children so it's known whether they can be expanded.
     // Some children of the |bottomUpNode| may be invisible in the current range, so build their children too
     for (BottomUpNode child: bottomUpNode.getChildren()) {
       child.buildChildren();
     }
-  }
-
-  private void loadChildren(@NotNull DefaultMutableTreeNode node) {
-    BottomUpNode bottomUpNode = (BottomUpNode)node.getUserObject();
-
-    for (BottomUpNode child: bottomUpNode.getChildren()) {
-      if (child.inRange(getRange())) {
-        child.update(getRange());
-        insertNodeInto(new DefaultMutableTreeNode(child), node, 0);
-      }
-      else {
-        child.reset();
-      }
-    }
+    super.expand(node);
   }
 }
@@ -23,7 +23,7 @@ import org.jetbrains.annotations.Nullable;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.function.BiFunction;
+import java.util.concurrent.Executor;
 
 /**
  * Manages states of the selected capture, such as current select thread, capture details (i.e top down tree, bottom up true, chart).
@@ -78,6 +78,15 @@ class CaptureModel {
       // If a thread was already selected, keep the selection. Otherwise select the capture main thread.
       setThread(myThread != NO_THREAD ? myThread : capture.getMainThreadId());
       myCapture.updateClockType(myClockType);
+      if (!capture.isComplete()) {
+        // The selected thread may not have been parsed yet, so the details are built again once all the threads are there.
+        capture.whenComplete().thenRunAsync(() -> {
+          if (myCapture == capture) {
+            rebuildDetails();
+            myStage.getAspect().changed(CpuProfilerAspect.CAPTURE);
+          }
+        }, myStage.getStudioProfilers().getIdeServices().getMainExecutor());
+      }
     }
     else {
       setThread(NO_THREAD);
@@ -145,12 +154,13 @@ class CaptureModel {
 
   private void buildDetails(@Nullable Details.Type type) {
     updateCaptureConvertedRange();
-    myDetails = type != null ? type.build(myCaptureConvertedRange, getNode()) : null;
+    Executor executor = myStage.getStudioProfilers().getIdeServices().getPoolExecutor();
+    myDetails = type != null ? type.build(myCaptureConvertedRange, getNode(), executor) : null;
     myStage.getAspect().changed(CpuProfilerAspect.CAPTURE_DETAILS);
   }
 
   @Nullable
-  private CaptureNode getNode() {
+  private CaptureNodeModel getNode() {
     return myCapture != null ? myCapture.getCaptureNode(myThread) : null;
   }
 
@@ -166,7 +176,7 @@ class CaptureModel {
     Range selection = myStage.getStudioProfilers().getTimeline().getSelectionRange();
     ClockType clockType = getClockType();
     CpuCapture capture = getCapture();
-    CaptureNode node;
+    CaptureNodeModel node;
     if (clockType == ClockType.GLOBAL || capture == null || (node = capture.getCaptureNode(getThread())) == null) {
       setConvertedRange(selection.getMin(), selection.getMax());
       return;
@@ -185,7 +195,7 @@ class CaptureModel {
     // TODO: improve performance of range conversion.
     ClockType clockType = getClockType();
     CpuCapture capture = getCapture();
-    CaptureNode node;
+    CaptureNodeModel node;
     if (clockType == ClockType.GLOBAL || capture == null || (node = capture.getCaptureNode(getThread())) == null) {
       setSelectionRange(myCaptureConvertedRange.getMin(), myCaptureConvertedRange.getMax());
       return;
@@ -225,18 +235,25 @@ class CaptureModel {
     enum Type {
       TOP_DOWN(TopDown::new),
       BOTTOM_UP(BottomUp::new),
-      CALL_CHART(CallChart::new),
-      FLAME_CHART(FlameChart::new);
+      CALL_CHART((range, node, executor) -> new CallChart(range, node)),
+      FLAME_CHART((range, node, executor) -> new FlameChart(range, node));
 
       @NotNull
-      private final BiFunction<Range, CaptureNode, Details> myBuilder;
+      private final Builder myBuilder;
 
-      Type(@NotNull BiFunction<Range, CaptureNode, Details> builder) {
+      Type(@NotNull Builder builder) {
         myBuilder = builder;
       }
 
-      public Details build(Range range, CaptureNode node) {
-        return myBuilder.apply(range, node);
+      /**
+       * Builds the details of the given node, doing any work which can be done in the background, such as indexing, on the executor.
+       */
+      public Details build(Range range, CaptureNodeModel node, Executor executor) {
+        return myBuilder.build(range, node, executor);
+      }
+
+      private interface Builder {
+        Details build(@NotNull Range range, @Nullable CaptureNodeModel node, @NotNull Executor executor);
       }
     }
 
@@ -246,8 +263,12 @@ class CaptureModel {
   public static class TopDown implements Details {
     @Nullable private TopDownTreeModel myModel;
 
-    public TopDown(@NotNull Range range, @Nullable CaptureNode node) {
-      myModel = node == null ? null : new TopDownTreeModel(range, new TopDownNode(node));
+    public TopDown(@NotNull Range range, @Nullable CaptureNodeModel node) {
+      this(range, node, Runnable::run);
+    }
+
+    public TopDown(@NotNull Range range, @Nullable CaptureNodeModel node, @NotNull Executor indexExecutor) {
+      myModel = node == null ? null : new TopDownTreeModel(range, new TopDownNode(node), indexExecutor);
     }
 
     @Nullable
@@ -264,8 +285,12 @@ class CaptureModel {
   public static class BottomUp implements Details {
     @Nullable private BottomUpTreeModel myModel;
 
-    public BottomUp(@NotNull Range range, @Nullable CaptureNode node) {
-      myModel = node == null ? null : new BottomUpTreeModel(range, new BottomUpNode(node));
+    public BottomUp(@NotNull Range range, @Nullable CaptureNodeModel node) {
+      this(range, node, Runnable::run);
+    }
+
+    public BottomUp(@NotNull Range range, @Nullable CaptureNodeModel node, @NotNull Executor indexExecutor) {
+      myModel = node == null ? null : new BottomUpTreeModel(range, new BottomUpNode(node), indexExecutor);
     }
 
     @Nullable
@@ -283,7 +308,7 @@ class CaptureModel {
     @NotNull private final Range myRange;
     @Nullable private HNode<MethodModel> myNode;
 
-    public CallChart(@NotNull Range range, @Nullable CaptureNode node) {
+    public CallChart(@NotNull Range range, @Nullable CaptureNodeModel node) {
       myRange = range;
       myNode = node;
     }
@@ -319,7 +344,7 @@ class CaptureModel {
     @NotNull private final Range mySelectionRange;
     @NotNull private final AspectModel<Aspect> myAspectModel;
 
-    public FlameChart(@NotNull Range selectionRange, @Nullable CaptureNode captureNode) {
+    public FlameChart(@NotNull Range selectionRange, @Nullable CaptureNodeModel captureNode) {
       mySelectionRange = selectionRange;
       myFlameRange = new Range();
       myAspectModel = new AspectModel<>();
@@ -15,7 +15,6 @@
  */
 package com.android.tools.profilers.cpu;
 
-import com.android.tools.adtui.model.HNode;
 import com.android.tools.perflib.vmtrace.ClockType;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -23,7 +22,7 @@ import org.jetbrains.annotations.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 
-public class CaptureNode implements HNode<MethodModel> {
+public class CaptureNode implements CaptureNodeModel {
 
   /**
    * Start time with GLOBAL clock.
@@ -78,6 +77,7 @@ public class CaptureNode implements HNode<MethodModel> {
   }
 
   @NotNull
+  @Override
   public List<CaptureNode> getChildren() {
     return myChildren;
   }
@@ -136,6 +136,7 @@ public class CaptureNode implements HNode<MethodModel> {
     myStartGlobal = startGlobal;
   }
 
+  @Override
   public long getStartGlobal() {
     return myStartGlobal;
   }
@@ -144,6 +145,7 @@ public class CaptureNode implements HNode<MethodModel> {
     myEndGlobal = endGlobal;
   }
 
+  @Override
   public long getEndGlobal() {
     return myEndGlobal;
   }
@@ -152,6 +154,7 @@ public class CaptureNode implements HNode<MethodModel> {
     myStartThread = startThread;
   }
 
+  @Override
   public long getStartThread() {
     return myStartThread;
   }
@@ -160,6 +163,7 @@ public class CaptureNode implements HNode<MethodModel> {
     myEndThread = endThread;
   }
 
+  @Override
   public long getEndThread() {
     return myEndThread;
   }
@@ -168,21 +172,14 @@ public class CaptureNode implements HNode<MethodModel> {
     myClockType = clockType;
   }
 
-  /**
-   * Returns the proportion of time the method was using CPU relative to the total (wall-clock) time that passed.
-   */
-  public double threadGlobalRatio() {
-    long durationThread = myEndThread - myStartThread;
-    long durationGlobal = myEndGlobal - myStartGlobal;
-    return (double)durationThread / durationGlobal;
-  }
-
   @NotNull
+  @Override
   public ClockType getClockType() {
     return myClockType;
   }
 
   @Nullable
+  @Override
   public MethodModel getMethodModel() {
     return myMethodModel;
   }
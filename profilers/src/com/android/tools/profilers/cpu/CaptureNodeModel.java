@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import com.android.tools.adtui.model.HNode;
+import com.android.tools.perflib.vmtrace.ClockType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * A read-only node of a capture tree, i.e. a call of a method on a thread. Implemented by the {@link CaptureNode} trees built by the
+ * parsers and by the views over a {@link CompactCaptureTree}.
+ */
+public interface CaptureNodeModel extends HNode<MethodModel> {
+  @NotNull
+  List<? extends CaptureNodeModel> getChildren();
+
+  @NotNull
+  @Override
+  CaptureNodeModel getChildAt(int index);
+
+  @Nullable
+  @Override
+  CaptureNodeModel getParent();
+
+  long getStartGlobal();
+
+  long getEndGlobal();
+
+  long getStartThread();
+
+  long getEndThread();
+
+  @NotNull
+  ClockType getClockType();
+
+  @Nullable
+  MethodModel getMethodModel();
+
+  /**
+   * Returns the proportion of time the method was using CPU relative to the total (wall-clock) time that passed.
+   */
+  default double threadGlobalRatio() {
+    long durationThread = getEndThread() - getStartThread();
+    long durationGlobal = getEndGlobal() - getStartGlobal();
+    return (double)durationThread / durationGlobal;
+  }
+}
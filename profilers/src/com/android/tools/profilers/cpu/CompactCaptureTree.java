@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import com.android.tools.perflib.vmtrace.ClockType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * A read-mostly copy of a {@link CaptureNode} tree that stores the nodes in parallel primitive arrays instead of one object per call,
+ * which matters for traces with millions of calls.
+ *
+ * Nodes are laid out in breadth-first order, so the children of a node are contiguous: they start at its first child index and the next
+ * sibling of a node is the node right after it. Methods are interned into a table and referenced by index. The clock type is the same
+ * for the whole tree.
+ *
+ * The tree is exposed through {@link CaptureNodeModel} views created on demand, which only hold the tree and the index of their node. Views
+ * are cheap to create and don't need to be retained; two views of the same node are equal.
+ */
+public final class CompactCaptureTree {
+  private static final int NO_METHOD = -1;
+  private static final int NO_PARENT = -1;
+
+  @NotNull private final long[] myStartGlobal;
+  @NotNull private final long[] myEndGlobal;
+  @NotNull private final long[] myStartThread;
+  @NotNull private final long[] myEndThread;
+  @NotNull private final int[] myDepth;
+  @NotNull private final int[] myMethodIndex;
+  @NotNull private final int[] myParent;
+  @NotNull private final int[] myFirstChild;
+  @NotNull private final int[] myChildCount;
+
+  @NotNull private final List<MethodModel> myMethods;
+
+  @NotNull private ClockType myClockType;
+
+  private CompactCaptureTree(int size, @NotNull ClockType clockType) {
+    myStartGlobal = new long[size];
+    myEndGlobal = new long[size];
+    myStartThread = new long[size];
+    myEndThread = new long[size];
+    myDepth = new int[size];
+    myMethodIndex = new int[size];
+    myParent = new int[size];
+    myFirstChild = new int[size];
+    myChildCount = new int[size];
+    myMethods = new ArrayList<>();
+    myClockType = clockType;
+  }
+
+  /**
+   * Copies the tree rooted at {@code root}. The clock type of the root is used for the whole tree.
+   */
+  @NotNull
+  public static CompactCaptureTree of(@NotNull CaptureNode root) {
+    int size = 0;
+    Deque<CaptureNode> stack = new ArrayDeque<>();
+    stack.push(root);
+    while (!stack.isEmpty()) {
+      CaptureNode node = stack.pop();
+      size++;
+      for (int i = 0; i < node.getChildCount(); i++) {
+        stack.push(node.getChildAt(i));
+      }
+    }
+
+    CompactCaptureTree tree = new CompactCaptureTree(size, root.getClockType());
+    MethodInterner interner = new MethodInterner(tree.myMethods);
+    CaptureNode[] nodes = new CaptureNode[size];
+    nodes[0] = root;
+    tree.myParent[0] = NO_PARENT;
+    int added = 1;
+    for (int index = 0; index < size; index++) {
+      CaptureNode node = nodes[index];
+      tree.myStartGlobal[index] = node.getStartGlobal();
+      tree.myEndGlobal[index] = node.getEndGlobal();
+      tree.myStartThread[index] = node.getStartThread();
+      tree.myEndThread[index] = node.getEndThread();
+      tree.myDepth[index] = node.getDepth();
+      tree.myMethodIndex[index] = interner.intern(node.getMethodModel());
+      tree.myFirstChild[index] = added;
+      tree.myChildCount[index] = node.getChildCount();
+      for (int i = 0; i < node.getChildCount(); i++) {
+        tree.myParent[added] = index;
+        nodes[added++] = node.getChildAt(i);
+      }
+      // The original node is not needed anymore, let it be collected while the rest of the tree is copied.
+      nodes[index] = null;
+    }
+    return tree;
+  }
+
+  public int size() {
+    return myStartGlobal.length;
+  }
+
+  @NotNull
+  public CaptureNodeModel getRoot() {
+    return getNode(0);
+  }
+
+  @NotNull
+  public CaptureNodeModel getNode(int index) {
+    return new NodeView(this, index);
+  }
+
+  @NotNull
+  public ClockType getClockType() {
+    return myClockType;
+  }
+
+  public void setClockType(@NotNull ClockType clockType) {
+    myClockType = clockType;
+  }
+
+  /**
+   * Number of distinct methods referenced by the nodes of the tree.
+   */
+  public int getMethodCount() {
+    return myMethods.size();
+  }
+
+  /**
+   * Assigns an index to each distinct method. Methods are first looked up by identity, which is enough for ART traces where every method
+   * has a single model, and then by id, which merges the models created for each sample of a simpleperf trace.
+   */
+  private static final class MethodInterner {
+    @NotNull private final List<MethodModel> myMethods;
+    @NotNull private final Map<MethodModel, Integer> myIndexByModel = new IdentityHashMap<>();
+    @NotNull private final Map<String, Integer> myIndexById = new HashMap<>();
+
+    MethodInterner(@NotNull List<MethodModel> methods) {
+      myMethods = methods;
+    }
+
+    int intern(@Nullable MethodModel method) {
+      if (method == null) {
+        return NO_METHOD;
+      }
+      Integer index = myIndexByModel.get(method);
+      if (index == null) {
+        index = myIndexById.get(method.getId());
+        if (index == null) {
+          index = myMethods.size();
+          myMethods.add(method);
+          myIndexById.put(method.getId(), index);
+        }
+        myIndexByModel.put(method, index);
+      }
+      return index;
+    }
+  }
+
+  /**
+   * A {@link CaptureNodeModel} reading its fields from the arrays of a {@link CompactCaptureTree}.
+   */
+  private static final class NodeView implements CaptureNodeModel {
+    @NotNull private final CompactCaptureTree myTree;
+    private final int myIndex;
+
+    NodeView(@NotNull CompactCaptureTree tree, int index) {
+      myTree = tree;
+      myIndex = index;
+    }
+
+    @NotNull
+    @Override
+    public List<CaptureNodeModel> getChildren() {
+      return new AbstractList<CaptureNodeModel>() {
+        @Override
+        public CaptureNodeModel get(int index) {
+          return getChildAt(index);
+        }
+
+        @Override
+        public int size() {
+          return getChildCount();
+        }
+      };
+    }
+
+    @Override
+    public int getChildCount() {
+      return myTree.myChildCount[myIndex];
+    }
+
+    @NotNull
+    @Override
+    public CaptureNodeModel getChildAt(int index) {
+      if (index < 0 || index >= getChildCount()) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + getChildCount());
+      }
+      return myTree.getNode(myTree.myFirstChild[myIndex] + index);
+    }
+
+    @Nullable
+    @Override
+    public CaptureNodeModel getParent() {
+      int parent = myTree.myParent[myIndex];
+      return parent == NO_PARENT ? null : myTree.getNode(parent);
+    }
+
+    @Override
+    public long getStart() {
+      return myTree.myClockType == ClockType.THREAD ? getStartThread() : getStartGlobal();
+    }
+
+    @Override
+    public long getEnd() {
+      return myTree.myClockType == ClockType.THREAD ? getEndThread() : getEndGlobal();
+    }
+
+    @Nullable
+    @Override
+    public MethodModel getData() {
+      return getMethodModel();
+    }
+
+    @Override
+    public int getDepth() {
+      return myTree.myDepth[myIndex];
+    }
+
+    @Override
+    public long getStartGlobal() {
+      return myTree.myStartGlobal[myIndex];
+    }
+
+    @Override
+    public long getEndGlobal() {
+      return myTree.myEndGlobal[myIndex];
+    }
+
+    @Override
+    public long getStartThread() {
+      return myTree.myStartThread[myIndex];
+    }
+
+    @Override
+    public long getEndThread() {
+      return myTree.myEndThread[myIndex];
+    }
+
+    @NotNull
+    @Override
+    public ClockType getClockType() {
+      return myTree.myClockType;
+    }
+
+    @Nullable
+    @Override
+    public MethodModel getMethodModel() {
+      int method = myTree.myMethodIndex[myIndex];
+      return method == NO_METHOD ? null : myTree.myMethods.get(method);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof NodeView)) {
+        return false;
+      }
+      NodeView view = (NodeView)other;
+      return myTree == view.myTree && myIndex == view.myIndex;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(myTree) + myIndex;
+    }
+  }
+}
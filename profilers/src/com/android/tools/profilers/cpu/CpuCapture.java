@@ -24,49 +24,121 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * The call trees of the threads of a CPU trace. Threads can be added as soon as their trees are built, so a capture can be shown once its
+ * main thread is there, while the trees of the other threads are still being built.
+ */
 public class CpuCapture implements ConfigurableDurationData {
 
   public static final String MAIN_THREAD_NAME = "main";
 
-  private final int myMainThreadId;
+  private static final int UNKNOWN_THREAD_ID = -1;
+
+  private volatile int myMainThreadId = UNKNOWN_THREAD_ID;
+
+  /**
+   * Capture trees are kept in their compact form, as a capture can contain millions of calls and stays in memory while it's selected.
+   */
+  @NotNull
+  private final Map<CpuThreadInfo, CompactCaptureTree> myCaptureTrees = new ConcurrentHashMap<>();
 
   @NotNull
-  private final Map<CpuThreadInfo, CaptureNode> myCaptureTrees;
+  private final CompletableFuture<CpuCapture> myAllThreadsAdded = new CompletableFuture<>();
 
   @NotNull
   private Range myRange;
 
+  // Guarded by this, as trees can be added while the clock type is updated.
   @NotNull
-  private ClockType myClockType;
+  private ClockType myClockType = ClockType.GLOBAL;
 
   public CpuCapture(@NotNull Range captureRange, @NotNull Map<CpuThreadInfo, CaptureNode> captureTrees) {
+    this(captureRange);
+    captureTrees.forEach(this::addThread);
+    setAllThreadsAdded();
+  }
+
+  /**
+   * Creates a capture without any thread yet. They are added with {@link #addThread(CpuThreadInfo, CaptureNode)} and
+   * {@link #setAllThreadsAdded()} is called once they all are.
+   */
+  CpuCapture(@NotNull Range captureRange) {
     myRange = captureRange;
-    myCaptureTrees = captureTrees;
-
-    // Try to find the main thread. The main thread is called "main" but if we fail
-    // to find it we will fall back to the thread with the most information.
-    Map.Entry<CpuThreadInfo, CaptureNode> main = null;
-    boolean foundMainThread = false;
-    for (Map.Entry<CpuThreadInfo, CaptureNode> entry : captureTrees.entrySet()) {
-      if (entry.getKey().getName().equals(MAIN_THREAD_NAME)) {
-        main = entry;
-        foundMainThread = true;
+  }
+
+  /**
+   * Adds the tree of a thread, of which only a compact copy is kept. Can be called concurrently for different threads.
+   *
+   * @return whether the thread is the main thread, i.e. whether the capture can be shown.
+   */
+  boolean addThread(@NotNull CpuThreadInfo thread, @NotNull CaptureNode tree) {
+    assert !myAllThreadsAdded.isDone() : "Threads can't be added once they all were";
+    CompactCaptureTree compactTree = CompactCaptureTree.of(tree);
+    synchronized (this) {
+      boolean isMain = thread.getName().equals(MAIN_THREAD_NAME) && myMainThreadId == UNKNOWN_THREAD_ID;
+      if (isMain) {
+        myClockType = compactTree.getClockType();
+      }
+      else {
+        compactTree.setClockType(myClockType);
+      }
+      myCaptureTrees.put(thread, compactTree);
+      if (isMain) {
+        myMainThreadId = thread.getId();
+      }
+      return isMain;
+    }
+  }
+
+  /**
+   * Called once every thread was added. If there is no thread named "main", the thread with the most information is used as the main
+   * thread instead.
+   */
+  synchronized void setAllThreadsAdded() {
+    if (myMainThreadId == UNKNOWN_THREAD_ID) {
+      Map.Entry<CpuThreadInfo, CompactCaptureTree> main = null;
+      for (Map.Entry<CpuThreadInfo, CompactCaptureTree> entry : myCaptureTrees.entrySet()) {
+        if (main == null || main.getValue().getRoot().duration() < entry.getValue().getRoot().duration()) {
+          main = entry;
+        }
       }
-      if (!foundMainThread && (main == null || main.getValue().duration() < entry.getValue().duration())) {
-        main = entry;
+      // If there is no thread named "main", the trace file is not valid.
+      // In this case, we would have caught a BufferUnderflowException from VmTraceParser above and rethrown it as IllegalStateException.
+      // If a thread named "main" is not required in the future, we need to double-check the object value for null here instead of
+      // asserting.
+      assert main != null;
+      myClockType = main.getValue().getClockType();
+      for (CompactCaptureTree tree : myCaptureTrees.values()) {
+        tree.setClockType(myClockType);
       }
+      myMainThreadId = main.getKey().getId();
     }
-    // If there is no thread named "main", the trace file is not valid.
-    // In this case, we would have caught a BufferUnderflowException from VmTraceParser above and rethrown it as IllegalStateException.
-    // If a thread named "main" is not required in the future, we need to double-check the object value for null here instead of asserting.
-    assert main != null;
-    myMainThreadId = main.getKey().getId();
+    myAllThreadsAdded.complete(this);
+  }
+
+  /**
+   * Called if the trees of some threads couldn't be built, which completes {@link #whenComplete()} exceptionally.
+   */
+  void setAddingThreadsFailed(@NotNull Throwable error) {
+    myAllThreadsAdded.completeExceptionally(error);
+  }
 
-    // Set clock type
-    CaptureNode mainNode = getCaptureNode(myMainThreadId);
-    assert mainNode != null;
-    myClockType = mainNode.getClockType();
+  /**
+   * @return whether the trees of all the threads were added.
+   */
+  public boolean isComplete() {
+    return myAllThreadsAdded.isDone();
+  }
+
+  /**
+   * @return a future completed with this capture once the trees of all its threads were added.
+   */
+  @NotNull
+  public CompletableFuture<CpuCapture> whenComplete() {
+    return myAllThreadsAdded;
   }
 
   public int getMainThreadId() {
@@ -79,10 +151,10 @@ public class CpuCapture implements ConfigurableDurationData {
   }
 
   @Nullable
-  public CaptureNode getCaptureNode(int threadId) {
-    for (Map.Entry<CpuThreadInfo, CaptureNode> entry : myCaptureTrees.entrySet()) {
+  public CaptureNodeModel getCaptureNode(int threadId) {
+    for (Map.Entry<CpuThreadInfo, CompactCaptureTree> entry : myCaptureTrees.entrySet()) {
       if (entry.getKey().getId() == threadId) {
-        return entry.getValue();
+        return entry.getValue().getRoot();
       }
     }
     return null;
@@ -112,26 +184,11 @@ public class CpuCapture implements ConfigurableDurationData {
     return true;
   }
 
-  public void updateClockType(@NotNull ClockType clockType) {
-    if (myClockType == clockType) {
-      // Avoid traversing the capture trees if there is no change.
-      return;
-    }
+  public synchronized void updateClockType(@NotNull ClockType clockType) {
     myClockType = clockType;
-
-    for (CaptureNode tree : myCaptureTrees.values()) {
-      updateClockType(tree, clockType);
-    }
-  }
-
-  private static void updateClockType(@Nullable CaptureNode node, @NotNull ClockType clockType) {
-    if (node == null) {
-      return;
-    }
-    node.setClockType(clockType);
-    for (CaptureNode child : node.getChildren()) {
-      // CpuTraceArt should parse the capture into CaptureNode objects
-      updateClockType(child, clockType);
+    // The clock type of a compact tree applies to all its nodes, so there is no need to traverse the trees.
+    for (CompactCaptureTree tree : myCaptureTrees.values()) {
+      tree.setClockType(clockType);
     }
   }
 }
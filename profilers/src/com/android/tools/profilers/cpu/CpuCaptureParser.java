@@ -80,6 +80,9 @@ public class CpuCaptureParser {
    * Creates a {@link CompletableFuture<CpuCapture>} from given trace bytes and the profiler type used to obtain the trace.
    * Uses {@link IdeProfilerServices#getPoolExecutor()} to create the actual {@link CpuCapture} object. Adds it to the captures map using
    * the trace id as key. Finally, returns the {@link CompletableFuture<CpuCapture>} created.
+   *
+   * The future is completed as soon as the main thread of the capture was added to it, while the trees of the other threads may still be
+   * being built. See {@link CpuCapture#whenComplete()}.
    */
   @Nullable
   public CompletableFuture<CpuCapture> parse(int traceId, @NotNull ByteString traceData, CpuProfiler.CpuProfilerType profilerType) {
@@ -111,15 +114,31 @@ public class CpuCaptureParser {
   }
 
   private CompletableFuture<CpuCapture> createCaptureFuture(ByteString traceBytes, CpuProfiler.CpuProfilerType profilerType) {
-    return CompletableFuture.supplyAsync(() -> traceBytesToCapture(traceBytes, profilerType), myServices.getPoolExecutor());
+    CompletableFuture<CpuCapture> future = new CompletableFuture<>();
+    myServices.getPoolExecutor().execute(() -> {
+      try {
+        traceBytesToCapture(traceBytes, profilerType, future);
+      }
+      catch (RuntimeException e) {
+        future.completeExceptionally(e);
+      }
+    });
+    return future;
   }
 
-  private static CpuCapture traceBytesToCapture(@NotNull ByteString traceData, CpuProfiler.CpuProfilerType profilerType) {
-    // TODO: Remove layers, analyze whether we can keep the whole file in memory.
+  /**
+   * Parses the trace and adds the tree of each thread to the capture as soon as it is built. The capture is published to {@code future}
+   * once its main thread is there.
+   */
+  private static void traceBytesToCapture(@NotNull ByteString traceData,
+                                          CpuProfiler.CpuProfilerType profilerType,
+                                          @NotNull CompletableFuture<CpuCapture> future) {
+    // The parsers memory-map the trace file, so the trace is written to disk instead of being handed over as a byte array.
+    // ByteString#writeTo streams the bytes out, which avoids making yet another in-memory copy of a trace that can be hundreds of MB.
     try {
       File trace = FileUtil.createTempFile("cpu_trace", ".trace");
       try (FileOutputStream out = new FileOutputStream(trace)) {
-        out.write(traceData.toByteArray());
+        traceData.writeTo(out);
       }
 
       TraceParser parser;
@@ -134,7 +153,21 @@ public class CpuCaptureParser {
       }
 
       parser.parse(trace);
-      return new CpuCapture(parser.getRange(), parser.getCaptureTrees());
+      CpuCapture capture = new CpuCapture(parser.getRange());
+      try {
+        parser.buildCaptureTrees((thread, tree) -> {
+          if (capture.addThread(thread, tree)) {
+            future.complete(capture);
+          }
+        });
+        capture.setAllThreadsAdded();
+      }
+      catch (RuntimeException e) {
+        // The capture may already have been published with its main thread.
+        capture.setAddingThreadsFailed(e);
+        throw e;
+      }
+      future.complete(capture);
     }
     catch (IOException | BufferUnderflowException e) {
       throw new IllegalStateException(e);
@@ -308,6 +308,7 @@ public class CpuProfilerStage extends Stage implements CodeNavigator.Listener {
   public void exit() {
     myEventMonitor.exit();
     getStudioProfilers().getUpdater().unregister(myCpuUsage);
+    AsyncRangedContinuousSeries.logCacheStatistics(getLogger(), myCpuUsage);
     getStudioProfilers().getUpdater().unregister(myTraceDurations);
     getStudioProfilers().getUpdater().unregister(myInProgressTraceDuration);
     getStudioProfilers().getUpdater().unregister(myCpuUsageAxis);
@@ -430,21 +431,32 @@ public class CpuProfilerStage extends Stage implements CodeNavigator.Listener {
       // Intentionally not firing the aspect because it will be done by setCapture with the new capture value
       myCaptureState = CaptureState.IDLE;
       if (parsedCapture != null) {
+        // The capture is shown as soon as its main thread is parsed. The trace info and metadata need all of its threads.
         setAndSelectCapture(parsedCapture);
         setCaptureDetails(DEFAULT_CAPTURE_DETAILS);
-        saveTraceInfo(traceId, parsedCapture);
-
-        // Update capture metadata
-        captureMetadata.setStatus(CpuCaptureMetadata.CaptureStatus.SUCCESS);
-        captureMetadata.setParsingTimeMs(System.currentTimeMillis() - beforeParsingTime);
-        captureMetadata.setCaptureDurationMs(TimeUnit.MICROSECONDS.toMillis(parsedCapture.getDuration()));
-        captureMetadata.setRecordDurationMs(calculateRecordDurationMs(parsedCapture));
+        parsedCapture.whenComplete().handleAsync((completeCapture, exception) -> {
+          if (completeCapture != null) {
+            saveTraceInfo(traceId, completeCapture);
+
+            // Update capture metadata
+            captureMetadata.setStatus(CpuCaptureMetadata.CaptureStatus.SUCCESS);
+            captureMetadata.setParsingTimeMs(System.currentTimeMillis() - beforeParsingTime);
+            captureMetadata.setCaptureDurationMs(TimeUnit.MICROSECONDS.toMillis(completeCapture.getDuration()));
+            captureMetadata.setRecordDurationMs(calculateRecordDurationMs(completeCapture));
+          }
+          else {
+            getLogger().warn("Unable to parse all the threads of the capture: " + exception.getMessage());
+            captureMetadata.setStatus(CpuCaptureMetadata.CaptureStatus.PARSING_FAILURE);
+          }
+          getStudioProfilers().getIdeServices().getFeatureTracker().trackCaptureTrace(captureMetadata);
+          return completeCapture;
+        }, getStudioProfilers().getIdeServices().getMainExecutor());
       }
       else {
         captureMetadata.setStatus(CpuCaptureMetadata.CaptureStatus.PARSING_FAILURE);
         setCapture(null);
+        getStudioProfilers().getIdeServices().getFeatureTracker().trackCaptureTrace(captureMetadata);
       }
-      getStudioProfilers().getIdeServices().getFeatureTracker().trackCaptureTrace(captureMetadata);
     };
 
     // Parsing is in progress. Handle it asynchronously and set the capture afterwards using the main executor.
@@ -465,7 +477,7 @@ public class CpuProfilerStage extends Stage implements CodeNavigator.Listener {
   private static long calculateRecordDurationMs(CpuCapture capture) {
     Range maxDataRange = new Range();
     for (CpuThreadInfo thread : capture.getThreads()) {
-      CaptureNode threadMainNode = capture.getCaptureNode(thread.getId());
+      CaptureNodeModel threadMainNode = capture.getCaptureNode(thread.getId());
       assert threadMainNode != null;
       maxDataRange.expand(threadMainNode.getStartGlobal(), threadMainNode.getEndGlobal());
     }
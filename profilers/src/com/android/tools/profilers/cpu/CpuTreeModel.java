@@ -22,21 +22,36 @@ import org.jetbrains.annotations.NotNull;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 /**
  * The model for a JTree that updates for a given range. It uses a CpuTreeNode as it's backing tree.
+ * Only the nodes which are shown, i.e. the root and the children of expanded nodes, are kept up to date and indexed. The children of a
+ * collapsed node are updated when it is expanded, see {@link #expand(DefaultMutableTreeNode)}.
  */
 abstract class CpuTreeModel<T extends CpuTreeNode<T>> extends DefaultTreeModel {
 
   private final Range myRange;
   private final Range myCurrentRange;
   private final AspectObserver myAspectObserver;
+  @NotNull private final Executor myIndexExecutor;
+  private final Set<DefaultMutableTreeNode> myExpandedNodes = new HashSet<>();
 
   public CpuTreeModel(@NotNull Range range, @NotNull T node) {
+    this(range, node, Runnable::run);
+  }
+
+  /**
+   * @param indexExecutor the executor the indexes of the shown nodes are built on, see {@link CpuTreeNode#setIndexed(boolean, Executor)}
+   */
+  public CpuTreeModel(@NotNull Range range, @NotNull T node, @NotNull Executor indexExecutor) {
     super(new DefaultMutableTreeNode(node));
     myRange = range;
     myCurrentRange = new Range();
     myAspectObserver = new AspectObserver();
+    myIndexExecutor = indexExecutor;
+    // The root is always shown, even when the JTree hides it.
+    myExpandedNodes.add((DefaultMutableTreeNode)getRoot());
     myRange.addDependency(myAspectObserver).onChange(Range.Aspect.RANGE, this::rangeChanged);
     rangeChanged();
   }
@@ -66,8 +81,10 @@ abstract class CpuTreeModel<T extends CpuTreeNode<T>> extends DefaultTreeModel {
 
   private void update(DefaultMutableTreeNode node, Range range, List<Range> ranges) {
     T data = (T)node.getUserObject();
+    data.setIndexed(true, myIndexExecutor);
 
     if (changes(data, ranges)) {
+      boolean expanded = myExpandedNodes.contains(node);
       Enumeration e = node.children();
       Map<T, DefaultMutableTreeNode> children = new HashMap<>();
       while (e.hasMoreElements()) {
@@ -83,13 +100,17 @@ abstract class CpuTreeModel<T extends CpuTreeNode<T>> extends DefaultTreeModel {
             existing = new DefaultMutableTreeNode(child);
             insertNodeInto(existing, node, node.getChildCount());
           }
-          update(existing, range, ranges);
+          // The children of a collapsed node aren't shown, so only whether they are in range matters until it is expanded.
+          if (expanded) {
+            update(existing, range, ranges);
+          }
         } else {
           child.reset();
         }
       }
       for (Map.Entry<T, DefaultMutableTreeNode> entry : children.entrySet()) {
         if (!actual.contains(entry.getKey())) {
+          hide(entry.getValue(), true);
           removeNodeFromParent(entry.getValue());
         }
       }
@@ -98,6 +119,46 @@ abstract class CpuTreeModel<T extends CpuTreeNode<T>> extends DefaultTreeModel {
     }
   }
 
+  /**
+   * Stops indexing the given node and its descendants, as they are no longer shown.
+   *
+   * @param removed whether the nodes are removed from the tree, in which case they are also forgotten as expanded
+   */
+  private void hide(@NotNull DefaultMutableTreeNode node, boolean removed) {
+    ((T)node.getUserObject()).setIndexed(false, myIndexExecutor);
+    if (removed) {
+      myExpandedNodes.remove(node);
+    }
+    for (int i = 0; i < node.getChildCount(); ++i) {
+      hide((DefaultMutableTreeNode)node.getChildAt(i), removed);
+    }
+  }
+
+  /**
+   * Called when the given node is about to be expanded, so its children are shown and should be brought up to date.
+   */
+  public void expand(@NotNull DefaultMutableTreeNode node) {
+    if (!myExpandedNodes.add(node)) {
+      return;
+    }
+    List<Range> all = Collections.singletonList(myRange);
+    for (int i = 0; i < node.getChildCount(); ++i) {
+      update((DefaultMutableTreeNode)node.getChildAt(i), myRange, all);
+    }
+  }
+
+  /**
+   * Called when the given node is about to be collapsed, so its descendants are no longer updated nor indexed until it is expanded again.
+   */
+  public void collapse(@NotNull DefaultMutableTreeNode node) {
+    if (node == getRoot() || !myExpandedNodes.remove(node)) {
+      return;
+    }
+    for (int i = 0; i < node.getChildCount(); ++i) {
+      hide((DefaultMutableTreeNode)node.getChildAt(i), false);
+    }
+  }
+
   @NotNull
   protected Range getRange() {
     return myRange;
@@ -107,6 +168,4 @@ abstract class CpuTreeModel<T extends CpuTreeNode<T>> extends DefaultTreeModel {
     T data = (T)((DefaultMutableTreeNode)getRoot()).getUserObject();
     return data.getTotal() == 0;
   }
-
-  abstract void expand(@NotNull DefaultMutableTreeNode node);
 }
@@ -17,19 +17,37 @@ package com.android.tools.profilers.cpu;
 
 import com.android.tools.adtui.model.HNode;
 import com.android.tools.adtui.model.Range;
+import com.android.tools.perflib.vmtrace.ClockType;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
 
 public abstract class CpuTreeNode<T extends CpuTreeNode> {
   /**
-   * References to {@link CaptureNode} that are used to extract information from to represent this CpuTreeNode,
+   * References to {@link CaptureNodeModel} that are used to extract information from to represent this CpuTreeNode,
    * such as {@link #getTotal()}, {@link #getChildrenTotal()}, etc...
    */
-  protected final List<CaptureNode> myNodes = new ArrayList<>();
+  protected final List<CaptureNodeModel> myNodes = new ArrayList<>();
   private final List<T> myChildren = new ArrayList<>();
 
+  /**
+   * Indexes over {@link #myNodes} and their children, so that {@link #update(Range)} and {@link #inRange(Range)} don't have to visit every
+   * node when the range changes. They cost a few arrays per node, so they are only built for the nodes that are updated over and over,
+   * i.e. the ones shown in the tree, see {@link #setIndexed(boolean, Executor)}. They are built in the background, and until they are
+   * ready the nodes are visited instead.
+   */
+  @Nullable private volatile Indexes myIndexes;
+  @Nullable private Executor myIndexExecutor;
+  private boolean myIndexing;
+  /**
+   * Incremented whenever the indexes being built are no longer wanted, so that a build which is still running doesn't publish them.
+   */
+  private volatile int myIndexGeneration;
+
   private final String myId;
   protected double myTotal = 0;
   protected double myChildrenTotal = 0;
@@ -42,16 +60,17 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
     return myId;
   }
 
-  protected void addNode(@NotNull CaptureNode node) {
+  protected void addNode(@NotNull CaptureNodeModel node) {
     myNodes.add(node);
+    invalidateIndexes();
   }
 
-  protected void addNodes(@NotNull List<CaptureNode> nodes) {
+  protected void addNodes(@NotNull List<CaptureNodeModel> nodes) {
     nodes.forEach(this::addNode);
   }
 
   @NotNull
-  public List<CaptureNode> getNodes() {
+  public List<CaptureNodeModel> getNodes() {
     return myNodes;
   }
 
@@ -76,10 +95,16 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
   }
 
   public void update(@NotNull Range range) {
+    Indexes indexes = getIndexes();
+    if (indexes != null) {
+      myTotal = indexes.myNodesIndex.getIntersectionLength(range);
+      myChildrenTotal = indexes.myChildrenIndex.getIntersectionLength(range);
+      return;
+    }
     myTotal = 0.0;
     myChildrenTotal = 0;
 
-    for (CaptureNode node : myNodes) {
+    for (CaptureNodeModel node : myNodes) {
       myTotal += getIntersection(range, node);
       for (HNode<MethodModel> child : node.getChildren()) {
         myChildrenTotal += getIntersection(range, child);
@@ -93,9 +118,79 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
   }
 
   public boolean inRange(Range range) {
+    Indexes indexes = getIndexes();
+    if (indexes != null && range.getMin() < range.getMax()) {
+      return indexes.myNodesIndex.intersects(range);
+    }
     return myNodes.stream().anyMatch(node -> node.getStart() < range.getMax() && range.getMin() < node.getEnd());
   }
 
+  /**
+   * Starts or stops keeping indexes for this node, e.g. as it is shown or hidden in a tree. Indexes are built on the given executor, and
+   * building them is cancelled if they are no longer wanted by then. Must be called from the thread updating the node.
+   */
+  public void setIndexed(boolean indexed, @NotNull Executor executor) {
+    if (indexed == (myIndexExecutor != null)) {
+      return;
+    }
+    myIndexExecutor = indexed ? executor : null;
+    invalidateIndexes();
+  }
+
+  public boolean isIndexed() {
+    return myIndexExecutor != null;
+  }
+
+  /**
+   * Returns the indexes if they are ready and up to date with the clock type of the nodes, or null if the nodes should be visited instead.
+   * Starts building the indexes if needed.
+   */
+  @Nullable
+  protected Indexes getIndexes() {
+    if (myIndexExecutor == null || myNodes.isEmpty()) {
+      return null;
+    }
+    ClockType clockType = myNodes.get(0).getClockType();
+    Indexes indexes = myIndexes;
+    if (indexes != null && indexes.myClockType != clockType) {
+      // Node start and end times depend on the clock type.
+      invalidateIndexes();
+      indexes = null;
+    }
+    if (indexes == null && !myIndexing) {
+      myIndexing = true;
+      int generation = myIndexGeneration;
+      List<CaptureNodeModel> nodes = new ArrayList<>(myNodes);
+      myIndexExecutor.execute(() -> {
+        Indexes built = myIndexGeneration == generation ? buildIndexes(nodes, clockType, () -> myIndexGeneration != generation) : null;
+        if (built != null && myIndexGeneration == generation) {
+          myIndexes = built;
+        }
+      });
+      // The executor may have built the indexes right away.
+      indexes = myIndexes;
+    }
+    return indexes;
+  }
+
+  /**
+   * Builds the indexes of the given nodes, which is done in the background. Returns null if {@code cancelled} turns true meanwhile.
+   */
+  @Nullable
+  protected Indexes buildIndexes(@NotNull List<CaptureNodeModel> nodes, @NotNull ClockType clockType, @NotNull BooleanSupplier cancelled) {
+    IntervalSumIndex nodesIndex = IntervalSumIndex.of(nodes);
+    if (cancelled.getAsBoolean()) {
+      return null;
+    }
+    return new Indexes(clockType, nodesIndex, IntervalSumIndex.ofChildren(nodes));
+  }
+
+  protected void invalidateIndexes() {
+    myIndexGeneration++;
+    myIndexes = null;
+    myIndexing = false;
+  }
+
   public void reset() {
     myTotal = 0;
     myChildrenTotal = 0;
@@ -106,4 +201,16 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
   abstract public String getClassName();
 
   abstract public String getSignature();
+
+  protected static class Indexes {
+    @NotNull final ClockType myClockType;
+    @NotNull final IntervalSumIndex myNodesIndex;
+    @NotNull final IntervalSumIndex myChildrenIndex;
+
+    protected Indexes(@NotNull ClockType clockType, @NotNull IntervalSumIndex nodesIndex, @NotNull IntervalSumIndex childrenIndex) {
+      myClockType = clockType;
+      myNodesIndex = nodesIndex;
+      myChildrenIndex = childrenIndex;
+    }
+  }
 }
@@ -15,9 +15,12 @@
  */
 package com.android.tools.profilers.cpu;
 
+import com.android.tools.adtui.model.CachedLongDataSeries;
 import com.android.tools.adtui.model.LineChartModel;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
+import com.android.tools.profilers.AsyncRangedContinuousSeries;
+import com.android.tools.profilers.ProfilerTimeline;
 import com.android.tools.profilers.StudioProfilers;
 import org.jetbrains.annotations.NotNull;
 
@@ -30,7 +33,9 @@ public class CpuUsage extends LineChartModel {
     myCpuRange = new Range(0, 100);
     CpuUsageDataSeries series = new CpuUsageDataSeries(profilers.getClient().getCpuClient(), false, profilers.getProcessId(),
                                                        profilers.getSession());
-    myCpuSeries = new RangedContinuousSeries(getCpuSeriesLabel(), profilers.getTimeline().getViewRange(), myCpuRange, series);
+    myCpuSeries = new AsyncRangedContinuousSeries(getCpuSeriesLabel(), profilers.getTimeline().getViewRange(), myCpuRange,
+                                                  new CachedLongDataSeries(series, ProfilerTimeline.DATA_CACHE_RETENTION_US),
+                                                  profilers.getDataFetchScheduler());
     add(myCpuSeries);
   }
 
@@ -31,6 +31,11 @@ import java.util.concurrent.TimeUnit;
  * This class is responsible for making an RPC call to perfd/datastore and converting the resulting proto into UI data.
  */
 public class CpuUsageDataSeries implements DataSeries<Long> {
+  /**
+   * Maximum length of the range asked for in a single getData request.
+   */
+  private static final long QUERY_WINDOW_NS = TimeUnit.MINUTES.toNanos(1);
+
   @NotNull
   private CpuServiceGrpc.CpuServiceBlockingStub myClient;
 
@@ -51,29 +56,38 @@ public class CpuUsageDataSeries implements DataSeries<Long> {
     // Get an extra padding on each side, to have a smooth rendering at the edges.
     // TODO: Change the CPU API to allow specifying this padding in the request as number of samples.
     long bufferNs = TimeUnit.SECONDS.toNanos(1);
-    CpuProfiler.CpuDataRequest.Builder dataRequestBuilder = CpuProfiler.CpuDataRequest.newBuilder()
-      .setProcessId(myProcessId)
-      .setSession(mySession)
-      .setStartTimestamp(TimeUnit.MICROSECONDS.toNanos((long)timeCurrentRangeUs.getMin()) - bufferNs)
-      .setEndTimestamp(TimeUnit.MICROSECONDS.toNanos((long)timeCurrentRangeUs.getMax()) + bufferNs);
-    CpuProfiler.CpuDataResponse response = myClient.getData(dataRequestBuilder.build());
+    long startTimeNs = TimeUnit.MICROSECONDS.toNanos((long)timeCurrentRangeUs.getMin()) - bufferNs;
+    long endTimeNs = TimeUnit.MICROSECONDS.toNanos((long)timeCurrentRangeUs.getMax()) + bufferNs;
+
+    // Long ranges are requested window by window, converting each response before asking for the next one, so that the whole range never
+    // has to be held in a single response.
     CpuProfiler.CpuProfilerData lastCpuData = null;
-    for (CpuProfiler.CpuProfilerData data : response.getDataList()) {
-      long dataTimestamp = TimeUnit.NANOSECONDS.toMicros(data.getBasicInfo().getEndTimestamp());
+    for (long windowStartNs = startTimeNs; windowStartNs < endTimeNs; ) {
+      long windowEndNs = endTimeNs - windowStartNs > QUERY_WINDOW_NS ? windowStartNs + QUERY_WINDOW_NS : endTimeNs;
+      CpuProfiler.CpuDataRequest.Builder dataRequestBuilder = CpuProfiler.CpuDataRequest.newBuilder()
+        .setProcessId(myProcessId)
+        .setSession(mySession)
+        .setStartTimestamp(windowStartNs)
+        .setEndTimestamp(windowEndNs);
+      CpuProfiler.CpuDataResponse response = myClient.getData(dataRequestBuilder.build());
+      for (CpuProfiler.CpuProfilerData data : response.getDataList()) {
+        long dataTimestamp = TimeUnit.NANOSECONDS.toMicros(data.getBasicInfo().getEndTimestamp());
 
-      // If lastCpuData is null, it means the first CPU usage data was read. Assign it to lastCpuData and go to the next iteration.
-      if (lastCpuData == null) {
+        // If lastCpuData is null, it means the first CPU usage data was read. Assign it to lastCpuData and go to the next iteration.
+        if (lastCpuData == null) {
+          lastCpuData = data;
+          continue;
+        }
+        CpuUsageDataSeries.CpuUsageData usageData = getCpuUsageData(data, lastCpuData);
+        if (myOtherProcesses) {
+          seriesData.add(new SeriesData<>(dataTimestamp, (long)usageData.getOtherProcessesUsage()));
+        }
+        else {
+          seriesData.add(new SeriesData<>(dataTimestamp, (long)usageData.getAppUsage()));
+        }
         lastCpuData = data;
-        continue;
-      }
-      CpuUsageDataSeries.CpuUsageData usageData = getCpuUsageData(data, lastCpuData);
-      if (myOtherProcesses) {
-        seriesData.add(new SeriesData<>(dataTimestamp, (long)usageData.getOtherProcessesUsage()));
-      }
-      else {
-        seriesData.add(new SeriesData<>(dataTimestamp, (long)usageData.getAppUsage()));
       }
-      lastCpuData = data;
+      windowStartNs = windowEndNs;
     }
     return seriesData;
   }
@@ -15,8 +15,11 @@
  */
 package com.android.tools.profilers.cpu;
 
+import com.android.tools.adtui.model.CachedLongDataSeries;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
+import com.android.tools.profilers.AsyncRangedContinuousSeries;
+import com.android.tools.profilers.ProfilerTimeline;
 import com.android.tools.profilers.StudioProfilers;
 import org.jetbrains.annotations.NotNull;
 
@@ -32,10 +35,14 @@ public class DetailedCpuUsage extends CpuUsage {
     myThreadRange = new Range(0, 8);
 
     CpuUsageDataSeries others = new CpuUsageDataSeries(profilers.getClient().getCpuClient(), true, profilers.getProcessId(), profilers.getSession());
-    myOtherCpuSeries = new RangedContinuousSeries("Others", profilers.getTimeline().getViewRange(), getCpuRange(), others);
+    myOtherCpuSeries = new AsyncRangedContinuousSeries("Others", profilers.getTimeline().getViewRange(), getCpuRange(),
+                                                       new CachedLongDataSeries(others, ProfilerTimeline.DATA_CACHE_RETENTION_US),
+                                                       profilers.getDataFetchScheduler());
 
     CpuThreadCountDataSeries threads = new CpuThreadCountDataSeries(profilers.getClient().getCpuClient(), profilers.getProcessId(), profilers.getSession());
-    myThreadsCountSeries = new RangedContinuousSeries("Threads", profilers.getTimeline().getViewRange(), myThreadRange, threads);
+    myThreadsCountSeries = new AsyncRangedContinuousSeries("Threads", profilers.getTimeline().getViewRange(), myThreadRange,
+                                                           new CachedLongDataSeries(threads, ProfilerTimeline.DATA_CACHE_RETENTION_US),
+                                                           profilers.getDataFetchScheduler());
     add(myOtherCpuSeries);
     add(myThreadsCountSeries);
   }
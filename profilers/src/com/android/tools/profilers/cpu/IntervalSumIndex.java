@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import com.android.tools.adtui.model.HNode;
+import com.android.tools.adtui.model.Range;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Answers how much of a range is covered by a set of intervals (e.g. the calls merged into a {@link CpuTreeNode}) in logarithmic time,
+ * instead of visiting every interval each time the range changes. Time covered by several overlapping intervals is counted once per
+ * interval, the same as summing the intersection of each interval with the range.
+ *
+ * The covered length up to x is {@code sum(max(0, x - start)) - sum(max(0, x - end))}, which only needs the starts and ends sorted
+ * separately, along with their prefix sums.
+ */
+final class IntervalSumIndex {
+  /**
+   * Times are stored relative to the smallest start, so that prefix sums of absolute timestamps don't overflow.
+   */
+  private final long myBase;
+  @NotNull private final long[] myStarts;
+  @NotNull private final long[] myStartSums;
+  @NotNull private final long[] myEnds;
+  @NotNull private final long[] myEndSums;
+
+  /**
+   * Takes ownership of the arrays, {@code starts[i]} and {@code ends[i]} being the bounds of the i-th interval.
+   */
+  IntervalSumIndex(@NotNull long[] starts, @NotNull long[] ends) {
+    assert starts.length == ends.length;
+    Arrays.sort(starts);
+    Arrays.sort(ends);
+    myBase = starts.length == 0 ? 0 : starts[0];
+    myStarts = starts;
+    myEnds = ends;
+    myStartSums = prefixSums(starts, myBase);
+    myEndSums = prefixSums(ends, myBase);
+  }
+
+  @NotNull
+  static IntervalSumIndex of(@NotNull List<? extends HNode<?>> nodes) {
+    long[] starts = new long[nodes.size()];
+    long[] ends = new long[nodes.size()];
+    for (int i = 0; i < nodes.size(); i++) {
+      starts[i] = nodes.get(i).getStart();
+      ends[i] = nodes.get(i).getEnd();
+    }
+    return new IntervalSumIndex(starts, ends);
+  }
+
+  /**
+   * Returns the index of the children of all the given nodes.
+   */
+  @NotNull
+  static IntervalSumIndex ofChildren(@NotNull List<? extends HNode<?>> nodes) {
+    int count = 0;
+    for (HNode<?> node : nodes) {
+      count += node.getChildCount();
+    }
+    long[] starts = new long[count];
+    long[] ends = new long[count];
+    int index = 0;
+    for (HNode<?> node : nodes) {
+      for (int i = 0; i < node.getChildCount(); i++) {
+        HNode<?> child = node.getChildAt(i);
+        starts[index] = child.getStart();
+        ends[index++] = child.getEnd();
+      }
+    }
+    return new IntervalSumIndex(starts, ends);
+  }
+
+  /**
+   * Sum of the lengths of the intersections of each interval with the range.
+   */
+  double getIntersectionLength(@NotNull Range range) {
+    if (myStarts.length == 0 || range.isEmpty()) {
+      return 0;
+    }
+    // Clamp to the indexed span first, so that huge ranges (e.g. +/- Double.MAX_VALUE) don't swamp the sums with rounding errors.
+    double min = Math.max(range.getMin(), myStarts[0]);
+    double max = Math.min(range.getMax(), myEnds[myEnds.length - 1]);
+    if (min >= max) {
+      return 0;
+    }
+    return Math.max(0, getCoveredLength(max) - getCoveredLength(min));
+  }
+
+  /**
+   * Whether any interval overlaps the open range (min, max), i.e. {@code start < max && min < end}. Only valid if min < max.
+   */
+  boolean intersects(@NotNull Range range) {
+    assert range.getMin() < range.getMax();
+    // Intervals ending at or before min also start before max, so they are the ones to exclude from the intervals starting before max.
+    return countLessThan(myStarts, range.getMax()) - countAtMost(myEnds, range.getMin()) > 0;
+  }
+
+  /**
+   * Sum of the lengths of the intersections of each interval with (-infinity, x].
+   */
+  private double getCoveredLength(double x) {
+    double relativeX = x - myBase;
+    int startCount = countLessThan(myStarts, x);
+    int endCount = countLessThan(myEnds, x);
+    return (startCount * relativeX - myStartSums[startCount]) - (endCount * relativeX - myEndSums[endCount]);
+  }
+
+  @NotNull
+  private static long[] prefixSums(@NotNull long[] values, long base) {
+    long[] sums = new long[values.length + 1];
+    for (int i = 0; i < values.length; i++) {
+      sums[i + 1] = sums[i] + (values[i] - base);
+    }
+    return sums;
+  }
+
+  /**
+   * Number of values strictly less than x, in a sorted array.
+   */
+  private static int countLessThan(@NotNull long[] values, double x) {
+    int low = 0;
+    int high = values.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (values[mid] < x) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Number of values less than or equal to x, in a sorted array.
+   */
+  private static int countAtMost(@NotNull long[] values, double x) {
+    int low = 0;
+    int high = values.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (values[mid] <= x) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
@@ -26,12 +26,12 @@ import java.util.*;
 class TopDownNode extends CpuTreeNode<TopDownNode> {
   private static final String INVALID_ID = "";
 
-  public TopDownNode(@NotNull CaptureNode node) {
+  public TopDownNode(@NotNull CaptureNodeModel node) {
     super(node.getData() == null ? INVALID_ID : node.getData().getId());
     addNode(node);
 
     Map<String, TopDownNode> children = new TreeMap<>();
-    for (CaptureNode child : node.getChildren()) {
+    for (CaptureNodeModel child : node.getChildren()) {
       assert child.getData() != null;
       TopDownNode prev = children.get(child.getData().getId());
       TopDownNode other = new TopDownNode(child);
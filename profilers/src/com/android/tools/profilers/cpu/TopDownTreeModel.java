@@ -18,14 +18,14 @@ package com.android.tools.profilers.cpu;
 import com.android.tools.adtui.model.Range;
 import org.jetbrains.annotations.NotNull;
 
-import javax.swing.tree.DefaultMutableTreeNode;
+import java.util.concurrent.Executor;
 
 public class TopDownTreeModel extends CpuTreeModel<TopDownNode> {
   public TopDownTreeModel(@NotNull Range range, @NotNull TopDownNode node) {
     super(range, node);
   }
 
-  @Override
-  void expand(@NotNull DefaultMutableTreeNode node) {
+  public TopDownTreeModel(@NotNull Range range, @NotNull TopDownNode node, @NotNull Executor indexExecutor) {
+    super(range, node, indexExecutor);
   }
 }
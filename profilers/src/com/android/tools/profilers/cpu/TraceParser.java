@@ -16,10 +16,12 @@
 package com.android.tools.profilers.cpu;
 
 import com.android.tools.adtui.model.Range;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 /**
  * Parses a trace file into a {@link Map<CpuThreadInfo, CaptureNode>}.
@@ -31,5 +33,13 @@ public interface TraceParser {
 
   Map<CpuThreadInfo, CaptureNode> getCaptureTrees();
 
+  /**
+   * Hands the capture tree of each thread over to the consumer as soon as it is built, which may happen concurrently for different
+   * threads. Parsers which build all the trees at once hand over the ones of {@link #getCaptureTrees()}.
+   */
+  default void buildCaptureTrees(@NotNull BiConsumer<CpuThreadInfo, CaptureNode> consumer) {
+    getCaptureTrees().forEach(consumer);
+  }
+
   Range getRange();
 }
@@ -22,8 +22,11 @@ import com.android.tools.profilers.cpu.MethodModel;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 public class ArtTraceHandler implements VmTraceHandler {
   private static final String KEY_ELAPSED_TIME_US = "elapsed-time-usec";
@@ -91,35 +94,40 @@ public class ArtTraceHandler implements VmTraceHandler {
 
   public Map<CpuThreadInfo, CaptureNode> getThreadsGraph() {
     if (myThreadsGraph == null) {
-      myThreadsGraph = createThreadsGraph();
+      Map<CpuThreadInfo, CaptureNode> graph = new ConcurrentHashMap<>();
+      buildThreadTrees(graph::put);
+      myThreadsGraph = graph;
     }
     return myThreadsGraph;
   }
 
-  @NotNull
-  private Map<CpuThreadInfo, CaptureNode> createThreadsGraph() {
-    Map<CpuThreadInfo, CaptureNode> threadsGraph = new HashMap<>(myThreads.size());
-
-    for (Map.Entry<Integer, String> entry : myThreads.entrySet()) {
-      final int id = entry.getKey();
-      final String name = entry.getValue();
-
-      CaptureNodeConstructor constructor = myNodeConstructors.get(id);
-      if (constructor == null) {
-        continue;
-      }
-
-      CaptureNode topLevelCall = constructor.getTopLevel();
-      assert topLevelCall != null;
-      CpuThreadInfo info = new CpuThreadInfo(id, name);
-
-      long topLevelGlobalStart = topLevelCall.getStartGlobal() + myStartTimeUs;
-      adjustNodesTimeAndDepth(topLevelCall, topLevelGlobalStart, 0);
-
-      threadsGraph.put(info, topLevelCall);
+  /**
+   * Finishes the call tree of each thread and hands it over to the consumer as soon as it is done. Trees are independent from each other,
+   * so they are finished in parallel, and the consumer may be called concurrently. This handler doesn't keep the trees, so a consumer
+   * which only keeps a compact copy of them lets each one be freed right away.
+   */
+  public void buildThreadTrees(@NotNull BiConsumer<CpuThreadInfo, CaptureNode> consumer) {
+    if (myThreadsGraph != null) {
+      myThreadsGraph.forEach(consumer);
+      return;
     }
+    // Constructors are dropped as their trees are handed over, so this handler doesn't hold onto any of the trees.
+    Map<Integer, CaptureNodeConstructor> constructors = new ConcurrentHashMap<>(myNodeConstructors);
+    myNodeConstructors.clear();
+    new ArrayList<>(constructors.keySet()).parallelStream().forEach(threadId -> {
+      CaptureNode tree = createThreadTree(constructors.remove(threadId));
+      consumer.accept(new CpuThreadInfo(threadId, myThreads.get(threadId)), tree);
+    });
+  }
+
+  @NotNull
+  private CaptureNode createThreadTree(@NotNull CaptureNodeConstructor constructor) {
+    CaptureNode topLevelCall = constructor.getTopLevel();
+    assert topLevelCall != null;
 
-    return threadsGraph;
+    long topLevelGlobalStart = topLevelCall.getStartGlobal() + myStartTimeUs;
+    adjustNodesTimeAndDepth(topLevelCall, topLevelGlobalStart, 0);
+    return topLevelCall;
   }
 
   /**
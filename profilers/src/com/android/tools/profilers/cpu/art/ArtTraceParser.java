@@ -20,10 +20,12 @@ import com.android.tools.perflib.vmtrace.VmTraceParser;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
 import com.android.tools.profilers.cpu.TraceParser;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 /**
  * Receives a binary trace file generated by using ART and parse it into {@link CpuThreadInfo} and {@link CaptureNode}.
@@ -43,6 +45,11 @@ public class ArtTraceParser implements TraceParser {
     return myTraceHandler.getThreadsGraph();
   }
 
+  @Override
+  public void buildCaptureTrees(@NotNull BiConsumer<CpuThreadInfo, CaptureNode> consumer) {
+    myTraceHandler.buildThreadTrees(consumer);
+  }
+
   @Override
   public Range getRange() {
     return new Range(myTraceHandler.getStartTimeUs(), myTraceHandler.getStartTimeUs() + myTraceHandler.getElapsedTimeUs());
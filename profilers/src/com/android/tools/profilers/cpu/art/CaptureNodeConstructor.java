@@ -26,6 +26,10 @@ import java.util.List;
 /**
  * {@link CaptureNodeConstructor} helps in constructing per thread call stacks from a sequence of
  * trace events (method entry/exit events).
+ *
+ * The call stack is built as the events are read, so the events themselves are never kept. Only the fix ups that need the whole trace
+ * (closing the calls that were still open and nesting everything under a single top level call) are done the first time
+ * {@link #getTopLevel()} is called, which can be done concurrently for different threads.
  */
 class CaptureNodeConstructor {
   /**
@@ -54,6 +58,7 @@ class CaptureNodeConstructor {
   }
 
   void addTraceAction(MethodModel methodModel, TraceAction action, int threadTime, int globalTime) {
+    assert myTopLevelNode == null : "Trace actions can't be added after the call stack has been built";
     if (action == TraceAction.METHOD_ENTER) {
       enterMethod(methodModel, threadTime, globalTime);
     } else {
@@ -66,18 +66,6 @@ public class SimplePerfTraceParser implements TraceParser {
    */
   private final Map<CpuThreadInfo, CaptureNode> myCaptureTrees;
 
-  /**
-   * Maps a thread id to its last callchain collected in samples.
-   */
-  private final Map<Integer, List<SimpleperfReport.Sample.CallChainEntry>> myLastCallChain;
-
-  /**
-   * Stores the {@link CaptureNode} on the top of the last call stack corresponding to a thread.
-   * Storing a {@link CaptureNode} for each thread is important, for instance,
-   * to avoid parsing the same call chain multiple times.
-   */
-  private final Map<Integer, CaptureNode> myLastCallStackTopNode;
-
   /**
    * Number of samples read from trace file.
    */
@@ -97,8 +85,6 @@ public class SimplePerfTraceParser implements TraceParser {
     myFiles = new HashMap<>();
     mySamples = new ArrayList<>();
     myCaptureTrees = new HashMap<>();
-    myLastCallChain = new HashMap<>();
-    myLastCallStackTopNode = new HashMap<>();
     myThreads = new HashMap<>();
   }
 
@@ -220,27 +206,34 @@ public class SimplePerfTraceParser implements TraceParser {
 
   /**
    * Parses the data from {@link #mySamples} into a map of tid -> {@link CaptureNode}.
+   * Samples are partitioned by thread and the call tree of each thread is built in parallel, as the trees are independent from each other.
    */
   private void parseSampleData() {
     if (mySamples.isEmpty()) {
       return;
     }
     long startTimestamp = mySamples.get(0).getTime();
+    long endTimestamp = mySamples.get(mySamples.size() - 1).getTime();
+    myRange = new Range(TimeUnit.NANOSECONDS.toMicros(startTimestamp), TimeUnit.NANOSECONDS.toMicros(endTimestamp));
 
-    // Process each sample
+    // Partition the samples by thread, keeping the order in which they were recorded.
+    Map<Integer, ThreadCallTreeBuilder> builders = new LinkedHashMap<>();
     for (SimpleperfReport.Sample sample : mySamples) {
-      parseCallChain(sample.getCallchainList(), sample.getThreadId(), sample.getTime());
+      int threadId = sample.getThreadId();
+      ThreadCallTreeBuilder builder = builders.get(threadId);
+      if (builder == null) {
+        if (!myThreads.containsKey(threadId)) {
+          throw new IllegalStateException("Malformed trace file: thread with id " + threadId + " not found.");
+        }
+        builder = new ThreadCallTreeBuilder(myThreads.get(threadId));
+        builders.put(threadId, builder);
+      }
+      builder.mySamples.add(sample);
     }
 
-    // Update the end timestamp of the last active call chain of each thread
-    long endTimestamp = mySamples.get(mySamples.size() - 1).getTime();
-    myRange = new Range(TimeUnit.NANOSECONDS.toMicros(startTimestamp), TimeUnit.NANOSECONDS.toMicros(endTimestamp));
-    for (CaptureNode lastNode : myLastCallStackTopNode.values()) {
-      CaptureNode node = lastNode;
-      while (node != null && node.getEnd() == 0) {
-        setNodeEndTime(node, endTimestamp);
-        node = node.getParent();
-      }
+    builders.values().parallelStream().forEach(builder -> builder.build(endTimestamp));
+    for (Map.Entry<Integer, ThreadCallTreeBuilder> entry : builders.entrySet()) {
+      myCaptureTrees.put(new CpuThreadInfo(entry.getKey(), entry.getValue().myThreadName), entry.getValue().myRoot);
     }
   }
 
@@ -257,83 +250,117 @@ public class SimplePerfTraceParser implements TraceParser {
   }
 
   /**
-   * Given a {@link SimpleperfReport.Sample.CallChainEntry}, a thread id and a sample timestamp, update the {@link CaptureNode}
-   * corresponding to that thread with the information obtained from the call chain.
+   * Builds the method call tree of a single thread from its samples. Only reads the shared state of the parser (e.g. {@link #myFiles}),
+   * so builders of different threads can run concurrently.
    */
-  private void parseCallChain(List<SimpleperfReport.Sample.CallChainEntry> callChain, int threadId, long timestamp) {
-    if (!myLastCallStackTopNode.containsKey(threadId)) {
-      // if there is no entry for threadId in the map, create one to represent the thread itself.
-      CaptureNode main = createCaptureNode(myThreads.getOrDefault(threadId, "main"), timestamp);
-      main.setDepth(0);
-      if (!myThreads.containsKey(threadId)) {
-        throw new IllegalStateException("Malformed trace file: thread with id " + threadId + " not found.");
-      }
-      myCaptureTrees.put(new CpuThreadInfo(threadId, myThreads.get(threadId)), main);
-      myLastCallStackTopNode.put(threadId, main);
-      // Initiate the previous call chain as an empty list
-      myLastCallChain.put(threadId, new LinkedList<>());
+  private class ThreadCallTreeBuilder {
+    private final String myThreadName;
+
+    /**
+     * Samples of the thread, in the order they were recorded.
+     */
+    private final List<SimpleperfReport.Sample> mySamples = new ArrayList<>();
+
+    /**
+     * The last callchain collected in samples.
+     */
+    private List<SimpleperfReport.Sample.CallChainEntry> myLastCallChain = Collections.emptyList();
+
+    /**
+     * The {@link CaptureNode} on the top of the last call stack.
+     * Storing it is important, for instance, to avoid parsing the same call chain multiple times.
+     */
+    private CaptureNode myLastCallStackTopNode;
+
+    private CaptureNode myRoot;
+
+    ThreadCallTreeBuilder(String threadName) {
+      myThreadName = threadName;
     }
 
-    List<SimpleperfReport.Sample.CallChainEntry> previousCallChain = myLastCallChain.get(threadId);
-    // First, identify where the call chains diverge, so we update the endTime of the nodes that are not in the call chain anymore.
-    // If the last call chain is empty, there is no divergent index and no end values need to be updated.
-    // TODO: We probably can just reverse the callchain in the beginning of the method with no performance impact.
-    // Revisit that later to check that and make the change to simplify the code. Make sure to benchmark to verify the efficiency.
-    int previousCallChainIndex = previousCallChain.size() - 1;
-    int newCallChainIndex = callChain.size() - 1;
-    CaptureNode divergentNodeParent = null;
-    if (!previousCallChain.isEmpty()) {
-      while (previousCallChainIndex >= 0 && newCallChainIndex >= 0 &&
-             equals(previousCallChain.get(previousCallChainIndex), callChain.get(newCallChainIndex))) {
-        previousCallChainIndex--;
-        newCallChainIndex--;
+    void build(long endTimestamp) {
+      // Create a node to represent the thread itself.
+      myRoot = createCaptureNode(myThreadName, mySamples.get(0).getTime());
+      myLastCallStackTopNode = myRoot;
+
+      // Process each sample
+      for (SimpleperfReport.Sample sample : mySamples) {
+        parseCallChain(sample.getCallchainList(), sample.getTime());
       }
-      divergentNodeParent = findDivergenceAndUpdateEndTime(previousCallChainIndex, threadId, timestamp);
-    }
 
-    // Now, add the nodes of the new call chain to the tree
-    if (newCallChainIndex >= 0) {
-      divergentNodeParent = divergentNodeParent == null ? myLastCallStackTopNode.get(threadId) : divergentNodeParent;
-      addNewNodes(callChain, divergentNodeParent, newCallChainIndex, timestamp, threadId);
+      // Update the end timestamp of the last active call chain
+      CaptureNode node = myLastCallStackTopNode;
+      while (node != null && node.getEnd() == 0) {
+        setNodeEndTime(node, endTimestamp);
+        node = node.getParent();
+      }
     }
 
-    // Finally, update previous call chain and previous last node
-    myLastCallChain.put(threadId, callChain);
-  }
+    /**
+     * Given a {@link SimpleperfReport.Sample.CallChainEntry} and a sample timestamp, update the tree of the thread with the information
+     * obtained from the call chain.
+     */
+    private void parseCallChain(List<SimpleperfReport.Sample.CallChainEntry> callChain, long timestamp) {
+      List<SimpleperfReport.Sample.CallChainEntry> previousCallChain = myLastCallChain;
+      // First, identify where the call chains diverge, so we update the endTime of the nodes that are not in the call chain anymore.
+      // If the last call chain is empty, there is no divergent index and no end values need to be updated.
+      // TODO: We probably can just reverse the callchain in the beginning of the method with no performance impact.
+      // Revisit that later to check that and make the change to simplify the code. Make sure to benchmark to verify the efficiency.
+      int previousCallChainIndex = previousCallChain.size() - 1;
+      int newCallChainIndex = callChain.size() - 1;
+      CaptureNode divergentNodeParent = null;
+      if (!previousCallChain.isEmpty()) {
+        while (previousCallChainIndex >= 0 && newCallChainIndex >= 0 &&
+               SimplePerfTraceParser.equals(previousCallChain.get(previousCallChainIndex), callChain.get(newCallChainIndex))) {
+          previousCallChainIndex--;
+          newCallChainIndex--;
+        }
+        divergentNodeParent = findDivergenceAndUpdateEndTime(previousCallChainIndex, timestamp);
+      }
 
-  /**
-   * Update the end timestamp of the last call chain node corresponding to a thread.
-   * Then, go backwards and do the same to the ancestors of the node until the newly read call chain
-   * matches with the previous one. When a divergence is found, return the parent of the divergent node.
-   */
-  private CaptureNode findDivergenceAndUpdateEndTime(int divergenceCount, int tid, long endTimestamp) {
-    CaptureNode node = myLastCallStackTopNode.get(tid);
-    for (int i = 0; i < divergenceCount; i++) {
-      assert node != null;
-      setNodeEndTime(node, endTimestamp);
-      node = node.getParent();
+      // Now, add the nodes of the new call chain to the tree
+      if (newCallChainIndex >= 0) {
+        divergentNodeParent = divergentNodeParent == null ? myLastCallStackTopNode : divergentNodeParent;
+        addNewNodes(callChain, divergentNodeParent, newCallChainIndex, timestamp);
+      }
+
+      // Finally, update previous call chain
+      myLastCallChain = callChain;
     }
 
-    // Node should be the parent of the first divergent node
-    return node;
-  }
+    /**
+     * Update the end timestamp of the last call chain node.
+     * Then, go backwards and do the same to the ancestors of the node until the newly read call chain
+     * matches with the previous one. When a divergence is found, return the parent of the divergent node.
+     */
+    private CaptureNode findDivergenceAndUpdateEndTime(int divergenceCount, long endTimestamp) {
+      CaptureNode node = myLastCallStackTopNode;
+      for (int i = 0; i < divergenceCount; i++) {
+        assert node != null;
+        setNodeEndTime(node, endTimestamp);
+        node = node.getParent();
+      }
 
-  /**
-   * Given a list of call chain entries and a start index, convert them to {@link CaptureNode}
-   * and add them to the call tree corresponding to the thread id passed as argument, as descendants
-   * of a given node.
-   */
-  private void addNewNodes(List<SimpleperfReport.Sample.CallChainEntry> callChain,
-                           CaptureNode node, int startIndex, long startTimestamp, int tid) {
-    assert node != null;
-    for (int i = startIndex; i >= 0; i--) {
-      CaptureNode child = createCaptureNode(parseMethodName(callChain.get(i)), startTimestamp);
-      node.addChild(child);
-      child.setDepth(node.getDepth() + 1);
-      node = child;
+      // Node should be the parent of the first divergent node
+      return node;
+    }
+
+    /**
+     * Given a list of call chain entries and a start index, convert them to {@link CaptureNode}
+     * and add them to the call tree of the thread, as descendants of a given node.
+     */
+    private void addNewNodes(List<SimpleperfReport.Sample.CallChainEntry> callChain,
+                             CaptureNode node, int startIndex, long startTimestamp) {
+      assert node != null;
+      for (int i = startIndex; i >= 0; i--) {
+        CaptureNode child = createCaptureNode(parseMethodName(callChain.get(i)), startTimestamp);
+        node.addChild(child);
+        child.setDepth(node.getDepth() + 1);
+        node = child;
+      }
+      // Update the pointer to the last call chain node
+      myLastCallStackTopNode = node;
     }
-    // Update the pointer to the last call chain node
-    myLastCallStackTopNode.put(tid, node);
   }
 
   private String parseMethodName(SimpleperfReport.Sample.CallChainEntry callChainEntry) {
@@ -32,12 +32,16 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 class HeapDumpSampleDataSeries extends CaptureDataSeries<CaptureObject> {
+  @Nullable private MemoryProfilerStage myStage;
+
   public HeapDumpSampleDataSeries(@NotNull MemoryServiceGrpc.MemoryServiceBlockingStub client,
                                   @Nullable Common.Session session,
                                   int processId,
                                   @NotNull RelativeTimeConverter converter,
-                                  @NotNull FeatureTracker featureTracker) {
+                                  @NotNull FeatureTracker featureTracker,
+                                  @Nullable MemoryProfilerStage stage) {
     super(client, session, processId, converter, featureTracker);
+    myStage = stage;
   }
 
   @Override
@@ -56,7 +60,7 @@ class HeapDumpSampleDataSeries extends CaptureDataSeries<CaptureObject> {
           getDurationUs(info.getStartTime(), info.getEndTime()), false, false,
           new CaptureEntry<>(
             info,
-            () -> new HeapDumpCaptureObject(myClient, mySession, myProcessId, info, null, myConverter, myFeatureTracker)))));
+            () -> new HeapDumpCaptureObject(myClient, mySession, myProcessId, info, null, myConverter, myFeatureTracker, myStage)))));
     }
 
     return seriesData;
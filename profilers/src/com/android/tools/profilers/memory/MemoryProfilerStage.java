@@ -102,7 +102,7 @@ public class MemoryProfilerStage extends Stage implements CodeNavigator.Listener
     myClient = profilers.getClient().getMemoryClient();
     HeapDumpSampleDataSeries heapDumpSeries =
       new HeapDumpSampleDataSeries(profilers.getClient().getMemoryClient(), mySessionData, myProcessId,
-                                   profilers.getRelativeTimeConverter(), getStudioProfilers().getIdeServices().getFeatureTracker());
+                                   profilers.getRelativeTimeConverter(), getStudioProfilers().getIdeServices().getFeatureTracker(), this);
     AllocationInfosDataSeries allocationSeries =
       new AllocationInfosDataSeries(profilers.getClient().getMemoryClient(), mySessionData, myProcessId,
                                     profilers.getRelativeTimeConverter(), getStudioProfilers().getIdeServices().getFeatureTracker(), this);
@@ -180,6 +180,7 @@ public class MemoryProfilerStage extends Stage implements CodeNavigator.Listener
 
     myEventMonitor.exit();
     getStudioProfilers().getUpdater().unregister(myDetailedMemoryUsage);
+    AsyncRangedContinuousSeries.logCacheStatistics(getLogger(), myDetailedMemoryUsage);
     getStudioProfilers().getUpdater().unregister(myHeapDumpDurations);
     getStudioProfilers().getUpdater().unregister(myAllocationDurations);
     getStudioProfilers().getUpdater().unregister(myMemoryAxis);
@@ -15,11 +15,14 @@
  */
 package com.android.tools.profilers.memory;
 
+import com.android.tools.adtui.model.CachedLongDataSeries;
 import com.android.tools.adtui.model.LineChartModel;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
 import com.android.tools.profiler.proto.MemoryProfiler.MemoryData.MemorySample;
 import com.android.tools.profiler.proto.MemoryServiceGrpc;
+import com.android.tools.profilers.AsyncRangedContinuousSeries;
+import com.android.tools.profilers.ProfilerTimeline;
 import com.android.tools.profilers.StudioProfilers;
 import org.jetbrains.annotations.NotNull;
 
@@ -43,7 +46,9 @@ public class MemoryUsage extends LineChartModel {
                                                       Function<MemorySample, Long> getter) {
     MemoryServiceGrpc.MemoryServiceBlockingStub client = profilers.getClient().getMemoryClient();
     MemoryDataSeries series = new MemoryDataSeries(client, profilers.getProcessId(), profilers.getSession(), getter);
-    return new RangedContinuousSeries(name, profilers.getTimeline().getViewRange(), range, series);
+    return new AsyncRangedContinuousSeries(name, profilers.getTimeline().getViewRange(), range,
+                                           new CachedLongDataSeries(series, ProfilerTimeline.DATA_CACHE_RETENTION_US),
+                                           profilers.getDataFetchScheduler());
   }
 
   @NotNull
@@ -29,6 +29,11 @@ import java.util.stream.Stream;
  * A general base class for classifying/filtering objects into categories.
  */
 public abstract class ClassifierSet implements MemoryObject {
+  /**
+   * Sets with at least this many instances to partition are partitioned in parallel.
+   */
+  @VisibleForTesting static final int PARALLEL_PARTITION_THRESHOLD = 10000;
+
   @NotNull private String myName;
   @NotNull private Supplier<String> myNameSupplier = null;
 
@@ -43,6 +48,8 @@ public abstract class ClassifierSet implements MemoryObject {
   protected long myTotalShallowSize = 0L;
   protected long myTotalRetainedSize = 0L;
   protected int myInstancesWithStackInfoCount = 0;
+  // Number of distinct instances in this set and its descendants, so that it doesn't need to be recomputed from the descendants.
+  protected int myInstancesCount = 0;
 
   public ClassifierSet(@NotNull String name) {
     myName = name;
@@ -143,8 +150,11 @@ public abstract class ClassifierSet implements MemoryObject {
     myTotalRetainedSize +=
       (isAllocation ? 1 : -1) * (instanceObject.getRetainedSize() == INVALID_VALUE ? 0 : instanceObject.getRetainedSize());
 
-    if (instanceAdded && instanceObject.getCallStackDepth() > 0) {
-      myInstancesWithStackInfoCount++;
+    if (instanceAdded) {
+      myInstancesCount++;
+      if (instanceObject.getCallStackDepth() > 0) {
+        myInstancesWithStackInfoCount++;
+      }
     }
     return instanceAdded;
   }
@@ -176,12 +186,43 @@ public abstract class ClassifierSet implements MemoryObject {
       (isAllocation ? 1 : -1) * (instanceObject.getShallowSize() == INVALID_VALUE ? 0 : instanceObject.getShallowSize());
     myTotalRetainedSize -=
       (isAllocation ? 1 : -1) * (instanceObject.getRetainedSize() == INVALID_VALUE ? 0 : instanceObject.getRetainedSize());
-    if (instanceRemoved && instanceObject.getCallStackDepth() > 0) {
-      myInstancesWithStackInfoCount--;
+    if (instanceRemoved) {
+      myInstancesCount--;
+      if (instanceObject.getCallStackDepth() > 0) {
+        myInstancesWithStackInfoCount--;
+      }
     }
     return instanceRemoved;
   }
 
+  /**
+   * Recomputes the total retained size of this set and of its already partitioned descendants, for when the retained sizes of the
+   * instances only become known after they were added (e.g. once the dominators of a heap dump are computed).
+   */
+  public void refreshRetainedSize() {
+    long totalRetainedSize = 0;
+    if (myClassifier != null) {
+      for (ClassifierSet set : myClassifier.getClassifierSets()) {
+        set.refreshRetainedSize();
+        totalRetainedSize += set.getTotalRetainedSize();
+      }
+    }
+    for (InstanceObject instance : myInstances) {
+      long retainedSize = instance.getRetainedSize() == INVALID_VALUE ? 0 : instance.getRetainedSize();
+      if (!instance.hasTimeData()) {
+        totalRetainedSize += retainedSize;
+        continue;
+      }
+      if (instance.hasAllocData()) {
+        totalRetainedSize += retainedSize;
+      }
+      if (instance.hasDeallocData()) {
+        totalRetainedSize -= retainedSize;
+      }
+    }
+    myTotalRetainedSize = totalRetainedSize;
+  }
+
   public void clearClassifierSets() {
     myInstances.clear();
     myClassifier = createSubClassifier();
@@ -190,15 +231,11 @@ public abstract class ClassifierSet implements MemoryObject {
     myTotalShallowSize = 0;
     myTotalRetainedSize = 0;
     myInstancesWithStackInfoCount = 0;
+    myInstancesCount = 0;
   }
 
   public int getInstancesCount() {
-    if (myClassifier == null) {
-      return myInstances.size();
-    }
-    else {
-      return (int)getInstancesStream().count();
-    }
+    return myInstancesCount;
   }
 
   /**
@@ -218,6 +255,17 @@ public abstract class ClassifierSet implements MemoryObject {
     return myInstancesWithStackInfoCount > 0;
   }
 
+  /**
+   * Whether this set has no children. Unlike {@link #getChildrenClassifierSets()}, this doesn't partition the instances of this set.
+   */
+  public boolean isLeaf() {
+    if (myClassifier != null) {
+      return myClassifier.getClassifierSets().isEmpty();
+    }
+    // Any instance in a non-empty set ends up in a child set, unless the set doesn't classify its instances any further.
+    return isEmpty() || createSubClassifier().isTerminalClassifier();
+  }
+
   @NotNull
   public List<ClassifierSet> getChildrenClassifierSets() {
     ensurePartition();
@@ -270,10 +318,36 @@ public abstract class ClassifierSet implements MemoryObject {
    * Force the instances of this node to be partitioned.
    */
   protected void ensurePartition() {
-    if (myClassifier == null) {
+    if (myClassifier != null) {
+      return;
+    }
+
+    if (myInstances.size() < PARALLEL_PARTITION_THRESHOLD || createSubClassifier().isTerminalClassifier()) {
       myClassifier = createSubClassifier();
       myClassifier.partition(myInstances);
+      return;
     }
+
+    // Each worker partitions its share of the instances with a classifier of its own, and the classifiers are then merged pairwise. The
+    // stream is ordered, so the merged children and their instances keep the order of a sequential partition.
+    myClassifier = myInstances.parallelStream().collect(this::createSubClassifier, Classifier::partitionInstance, Classifier::merge);
+    myInstances.clear();
+  }
+
+  /**
+   * Moves the instances and the totals of {@code other}, a set of the same classification as this one (i.e. holding instances that would
+   * be classified into this set), into this set.
+   */
+  private void merge(@NotNull ClassifierSet other) {
+    assert myClassifier == null && other.myClassifier == null;
+    myInstances.addAll(other.myInstances);
+    myAllocatedCount += other.myAllocatedCount;
+    myDeallocatedCount += other.myDeallocatedCount;
+    myTotalNativeSize += other.myTotalNativeSize;
+    myTotalShallowSize += other.myTotalShallowSize;
+    myTotalRetainedSize += other.myTotalRetainedSize;
+    myInstancesWithStackInfoCount += other.myInstancesWithStackInfoCount;
+    myInstancesCount += other.myInstancesCount;
   }
 
   /**
@@ -334,19 +408,8 @@ public abstract class ClassifierSet implements MemoryObject {
 
       if (!isTerminalClassifier()) {
         instances.forEach(instance -> {
-          if (instance.hasTimeData()) {
-            if (instance.hasAllocData()) {
-              getOrCreateClassifierSet(instance).addInstanceObject(instance);
-            }
-            if (instance.hasDeallocData()) {
-              getOrCreateClassifierSet(instance).freeInstanceObject(instance);
-            }
-            partitionedInstances.add(instance);
-          }
-          else {
-            getOrCreateClassifierSet(instance).addInstanceObject(instance);
-            partitionedInstances.add(instance);
-          }
+          partitionInstance(instance);
+          partitionedInstances.add(instance);
         });
       }
       if (partitionedInstances.size() == instances.size()) {
@@ -356,5 +419,30 @@ public abstract class ClassifierSet implements MemoryObject {
         instances.removeAll(partitionedInstances);
       }
     }
+
+    private void partitionInstance(@NotNull InstanceObject instance) {
+      if (instance.hasTimeData()) {
+        if (instance.hasAllocData()) {
+          getOrCreateClassifierSet(instance).addInstanceObject(instance);
+        }
+        if (instance.hasDeallocData()) {
+          getOrCreateClassifierSet(instance).freeInstanceObject(instance);
+        }
+      }
+      else {
+        getOrCreateClassifierSet(instance).addInstanceObject(instance);
+      }
+    }
+
+    /**
+     * Merges the children of {@code other}, which must not have been partitioned yet, into the matching children of this classifier.
+     */
+    private void merge(@NotNull Classifier other) {
+      for (ClassifierSet otherSet : other.getClassifierSets()) {
+        // Any instance of the set identifies the child of this classifier it belongs to.
+        InstanceObject instance = otherSet.myInstances.iterator().next();
+        getOrCreateClassifierSet(instance).merge(otherSet);
+      }
+    }
   }
 }
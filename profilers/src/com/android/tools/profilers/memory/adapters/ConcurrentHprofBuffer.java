@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.android.tools.perflib.captures.DataBuffer;
+import org.jetbrains.annotations.NotNull;
+import sun.nio.ch.DirectBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A memory mapped heap dump that the views and the background computation of retained sizes can read at the same time, as each thread
+ * reads from its own position.
+ * <p>
+ * The mappings are released once the buffer is disposed and every thread that {@link #retain()}ed it has {@link #release()}d it. Reads
+ * that come after {@link #dispose()} throw a {@link CancellationException}, which is how a computation over a capture that was unloaded
+ * is cut short.
+ */
+final class ConcurrentHprofBuffer implements DataBuffer {
+  // hprof files are big endian.
+  private static final ByteOrder BYTE_ORDER = ByteOrder.BIG_ENDIAN;
+  private static final int DEFAULT_SHARD_SIZE = 1 << 30;
+  // Each shard overlaps the next one by this much, so that reads of primitives never straddle two shards.
+  private static final int PADDING = 1024;
+
+  private final int myShardSize;
+  private final long myLength;
+  @NotNull private final ByteBuffer[] myShards;
+  // Not a field of an object referencing the buffer, so that the threads don't keep the mappings alive.
+  @NotNull private final ThreadLocal<long[]> myPosition = ThreadLocal.withInitial(() -> new long[1]);
+  private volatile boolean myIsDisposed;
+  private int myReferences = 1;
+
+  ConcurrentHprofBuffer(@NotNull File file) throws IOException {
+    this(file, DEFAULT_SHARD_SIZE);
+  }
+
+  ConcurrentHprofBuffer(@NotNull File file, int shardSize) throws IOException {
+    myShardSize = shardSize;
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+      FileChannel channel = randomAccessFile.getChannel();
+      myLength = channel.size();
+      int shards = (int)((myLength + shardSize - 1) / shardSize);
+      myShards = new ByteBuffer[shards];
+      for (int i = 0; i < shards; i++) {
+        long offset = (long)i * shardSize;
+        myShards[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(myLength - offset, (long)shardSize + PADDING));
+        myShards[i].order(BYTE_ORDER);
+      }
+    }
+  }
+
+  /**
+   * Keeps the mappings alive until {@link #release()} is called, even if the buffer is disposed meanwhile.
+   *
+   * @return false if the buffer is already disposed, in which case it must not be read from
+   */
+  synchronized boolean retain() {
+    if (myIsDisposed) {
+      return false;
+    }
+    myReferences++;
+    return true;
+  }
+
+  /**
+   * @return true if this released the mappings
+   */
+  boolean release() {
+    synchronized (this) {
+      if (--myReferences > 0) {
+        return false;
+      }
+    }
+    for (ByteBuffer shard : myShards) {
+      try {
+        ((DirectBuffer)shard).cleaner().clean();
+      }
+      catch (Exception ex) {
+        // ignore, this is a best effort attempt.
+      }
+    }
+    return true;
+  }
+
+  synchronized boolean isReleased() {
+    return myReferences == 0;
+  }
+
+  /**
+   * Makes any further read fail, and releases the mappings once no thread {@link #retain()}s them anymore.
+   */
+  @Override
+  public void dispose() {
+    synchronized (this) {
+      if (myIsDisposed) {
+        return;
+      }
+      myIsDisposed = true;
+    }
+    release();
+  }
+
+  @Override
+  public void append(@NotNull byte[] data) {
+    throw new UnsupportedOperationException("The buffer is read only");
+  }
+
+  @Override
+  public void setPosition(long position) {
+    myPosition.get()[0] = position;
+  }
+
+  @Override
+  public long position() {
+    return myPosition.get()[0];
+  }
+
+  @Override
+  public boolean hasRemaining() {
+    return position() < myLength;
+  }
+
+  @Override
+  public long remaining() {
+    return myLength - position();
+  }
+
+  @Override
+  public byte readByte() {
+    long[] position = myPosition.get();
+    byte value = shard(position[0]).get(offset(position[0]));
+    position[0] += Byte.BYTES;
+    return value;
+  }
+
+  @Override
+  public void read(@NotNull byte[] b) {
+    readSubSequence(b, 0, b.length);
+  }
+
+  /**
+   * Skips {@code sourceStart} bytes, then reads {@code length} bytes into the start of {@code b}.
+   */
+  @Override
+  public void readSubSequence(@NotNull byte[] b, int sourceStart, int length) {
+    long[] position = myPosition.get();
+    long current = position[0] + sourceStart;
+    int copied = 0;
+    while (copied < length) {
+      // Bulk reads move the position of the buffer, so they go through a duplicate.
+      ByteBuffer view = shard(current).duplicate();
+      int offset = offset(current);
+      view.position(offset);
+      // Stop at the start of the next shard's padding, so every byte is read from the shard that owns it.
+      int count = (int)Math.min(length - copied, Math.min(view.limit(), myShardSize) - offset);
+      view.get(b, copied, count);
+      copied += count;
+      current += count;
+    }
+    position[0] = current;
+  }
+
+  @Override
+  public char readChar() {
+    long[] position = myPosition.get();
+    char value = shard(position[0]).getChar(offset(position[0]));
+    position[0] += Character.BYTES;
+    return value;
+  }
+
+  @Override
+  public short readShort() {
+    long[] position = myPosition.get();
+    short value = shard(position[0]).getShort(offset(position[0]));
+    position[0] += Short.BYTES;
+    return value;
+  }
+
+  @Override
+  public int readInt() {
+    long[] position = myPosition.get();
+    int value = shard(position[0]).getInt(offset(position[0]));
+    position[0] += Integer.BYTES;
+    return value;
+  }
+
+  @Override
+  public long readLong() {
+    long[] position = myPosition.get();
+    long value = shard(position[0]).getLong(offset(position[0]));
+    position[0] += Long.BYTES;
+    return value;
+  }
+
+  @Override
+  public float readFloat() {
+    return Float.intBitsToFloat(readInt());
+  }
+
+  @Override
+  public double readDouble() {
+    return Double.longBitsToDouble(readLong());
+  }
+
+  @NotNull
+  private ByteBuffer shard(long position) {
+    // Only the thread disposing the buffer reads it without retaining it, so the shards are still mapped at this point.
+    if (myIsDisposed) {
+      throw new CancellationException("The heap dump was unloaded");
+    }
+    return myShards[(int)(position / myShardSize)];
+  }
+
+  private int offset(long position) {
+    return (int)(position % myShardSize);
+  }
+}
@@ -22,7 +22,6 @@ import com.android.tools.perflib.heap.Heap;
 import com.android.tools.perflib.heap.Instance;
 import com.android.tools.perflib.heap.Snapshot;
 import com.android.tools.perflib.heap.ext.NativeRegistryPostProcessor;
-import com.android.tools.perflib.heap.io.InMemoryBuffer;
 import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.MemoryProfiler.DumpDataRequest;
 import com.android.tools.profiler.proto.MemoryProfiler.DumpDataResponse;
@@ -30,22 +29,38 @@ import com.android.tools.profiler.proto.MemoryProfiler.HeapDumpInfo;
 import com.android.tools.profiler.proto.MemoryServiceGrpc.MemoryServiceBlockingStub;
 import com.android.tools.profilers.RelativeTimeConverter;
 import com.android.tools.profilers.analytics.FeatureTracker;
+import com.android.tools.profilers.memory.MemoryProfilerStage;
 import com.android.tools.proguard.ProguardMap;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.*;
-import java.util.concurrent.Executor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static com.android.tools.profilers.memory.adapters.CaptureObject.ClassifierAttribute.*;
 
 public class HeapDumpCaptureObject implements CaptureObject {
+  private static Logger getLogger() {
+    return Logger.getInstance(HeapDumpCaptureObject.class);
+  }
+
+  /**
+   * Bounds of the delay between two requests for a heap dump that is not ready yet. The delay doubles after each request, as dumping a
+   * large heap can take a while.
+   */
+  private static final long MIN_POLL_DELAY_MS = 50;
+  private static final long MAX_POLL_DELAY_MS = 500;
 
   @NotNull
   private final MemoryServiceBlockingStub myClient;
@@ -79,11 +94,28 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @Nullable
   private final ProguardMap myProguardMap;
 
+  @Nullable
+  private final MemoryProfilerStage myStage;
+
   @Nullable
   private volatile Snapshot mySnapshot;
 
+  /**
+   * The dump spooled to disk, which the {@link Snapshot} reads through a memory mapping rather than holding it on the heap.
+   */
+  @Nullable
+  private volatile File myHprofFile;
+
+  /**
+   * The buffer the published {@link #mySnapshot} reads the dump from.
+   */
+  @Nullable
+  private ConcurrentHprofBuffer myBuffer;
+
   private volatile boolean myIsLoadingError = false;
 
+  private volatile boolean myIsUnloaded = false;
+
   private boolean myHasNativeAllocations;
 
   public HeapDumpCaptureObject(@NotNull MemoryServiceBlockingStub client,
@@ -92,7 +124,8 @@ public class HeapDumpCaptureObject implements CaptureObject {
                                @NotNull HeapDumpInfo heapDumpInfo,
                                @Nullable ProguardMap proguardMap,
                                @NotNull RelativeTimeConverter converter,
-                               @NotNull FeatureTracker featureTracker) {
+                               @NotNull FeatureTracker featureTracker,
+                               @Nullable MemoryProfilerStage stage) {
     myClient = client;
     myProcessId = appId;
     mySession = session;
@@ -104,6 +137,7 @@ public class HeapDumpCaptureObject implements CaptureObject {
         .getFixedPointFormattedString(TimeUnit.MILLISECONDS.toMicros(1),
                                       TimeUnit.NANOSECONDS.toMicros(converter.convertToRelativeTime(myHeapDumpInfo.getStartTime())));
     myFeatureTracker = featureTracker;
+    myStage = stage;
   }
 
   @NotNull
@@ -125,6 +159,13 @@ public class HeapDumpCaptureObject implements CaptureObject {
 
   @Override
   public void saveToFile(@NotNull OutputStream outputStream) throws IOException {
+    File hprofFile = myHprofFile;
+    if (hprofFile != null && hprofFile.exists()) {
+      Files.copy(hprofFile.toPath(), outputStream);
+      myFeatureTracker.trackExportHeap();
+      return;
+    }
+
     DumpDataResponse response = myClient.getHeapDump(
       DumpDataRequest.newBuilder().setProcessId(myProcessId).setSession(mySession).setDumpTime(myHeapDumpInfo.getStartTime()).build());
     if (response.getStatus() == DumpDataResponse.Status.SUCCESS) {
@@ -185,8 +226,8 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @Override
   public boolean load(@Nullable Range queryRange, @Nullable Executor queryJoiner) {
     DumpDataResponse response;
+    long pollDelayMs = MIN_POLL_DELAY_MS;
     while (true) {
-      // TODO move this to another thread and complete before we notify
       response = myClient.getHeapDump(DumpDataRequest.newBuilder()
                                         .setProcessId(myProcessId)
                                         .setSession(mySession)
@@ -196,7 +237,8 @@ public class HeapDumpCaptureObject implements CaptureObject {
       }
       else if (response.getStatus() == DumpDataResponse.Status.NOT_READY) {
         try {
-          Thread.sleep(50L);
+          Thread.sleep(pollDelayMs);
+          pollDelayMs = Math.min(pollDelayMs * 2, MAX_POLL_DELAY_MS);
         }
         catch (InterruptedException e) {
           Thread.currentThread().interrupt();
@@ -209,7 +251,25 @@ public class HeapDumpCaptureObject implements CaptureObject {
       return false;
     }
 
-    InMemoryBuffer buffer = new InMemoryBuffer(response.getData().asReadOnlyByteBuffer());
+    // Spool the dump to disk and drop the response, so that only the instances parsed out of the dump stay on the heap.
+    ConcurrentHprofBuffer buffer;
+    try {
+      File hprofFile = File.createTempFile("heapdump", ".hprof");
+      hprofFile.deleteOnExit();
+      myHprofFile = hprofFile;
+      try (FileOutputStream outputStream = new FileOutputStream(hprofFile)) {
+        response.getData().writeTo(outputStream);
+      }
+      response = null;
+      buffer = new ConcurrentHprofBuffer(hprofFile);
+    }
+    catch (IOException e) {
+      getLogger().warn("Could not spool the heap dump to disk", e);
+      deleteHprofFile();
+      myIsLoadingError = true;
+      return false;
+    }
+
     Snapshot snapshot;
     NativeRegistryPostProcessor nativeRegistryPostProcessor = new NativeRegistryPostProcessor();
     if (myProguardMap != null) {
@@ -218,9 +278,12 @@ public class HeapDumpCaptureObject implements CaptureObject {
     else {
       snapshot = Snapshot.createSnapshot(buffer, new ProguardMap(), Arrays.asList(nativeRegistryPostProcessor));
     }
-    snapshot.computeDominators();
+    // Without a joiner there is no way to publish retained sizes later on, so compute them before the heaps are populated. Otherwise the
+    // heaps show instance counts and shallow sizes right away, and retained sizes once they are known.
+    if (queryJoiner == null) {
+      snapshot.computeDominators();
+    }
     myHasNativeAllocations = nativeRegistryPostProcessor.getHasNativeAllocations();
-    mySnapshot = snapshot;
 
     Map<Heap, HeapSet> heapSets = new HashMap<>(snapshot.getHeaps().size());
     InstanceObject javaLangClassObject = null;
@@ -237,33 +300,114 @@ public class HeapDumpCaptureObject implements CaptureObject {
     }
 
     InstanceObject finalJavaLangClassObject = javaLangClassObject;
+    Map<ClassObj, ClassDb.ClassEntry> classEntries = new HashMap<>();
     for (Heap heap : snapshot.getHeaps()) {
       HeapSet heapSet = heapSets.get(heap);
       heap.getClasses().forEach(classObj -> {
         InstanceObject classObject = createClassObjectInstance(finalJavaLangClassObject, classObj);
         myInstanceIndex.put(classObj, classObject);
         heapSet.addInstanceObject(classObject);
+        classEntries.put(classObj, myClassDb.registerClass(classObj.getClassLoaderId(), classObj.getClassName()));
       });
     }
 
+    // The class objects and entries are all known at this point, so the instances can be wrapped in parallel. Only adding them to the
+    // heap sets and the index, which aren't thread safe, is left sequential.
     for (Heap heap : snapshot.getHeaps()) {
       HeapSet heapSet = heapSets.get(heap);
+      List<Instance> instances = new ArrayList<>(heap.getInstancesCount());
       heap.forEachInstance(instance -> {
         assert !ClassDb.JAVA_LANG_CLASS.equals(getName());
-        ClassObj classObj = instance.getClassObj();
-        InstanceObject instanceObject =
-          new HeapDumpInstanceObject(this, getClassObjectInstance(instance), instance,
-                                     myClassDb.registerClass(classObj.getClassLoaderId(), classObj.getClassName()), null);
-        myInstanceIndex.put(instance, instanceObject);
-        heapSet.addInstanceObject(instanceObject);
+        instances.add(instance);
         return true;
       });
+      InstanceObject[] instanceObjects = new InstanceObject[instances.size()];
+      IntStream.range(0, instanceObjects.length).parallel().forEach(i -> {
+        Instance instance = instances.get(i);
+        ClassObj classObj = instance.getClassObj();
+        ClassDb.ClassEntry classEntry = classEntries.get(classObj);
+        if (classEntry == null) {
+          synchronized (myClassDb) {
+            classEntry = myClassDb.registerClass(classObj.getClassLoaderId(), classObj.getClassName());
+          }
+        }
+        instanceObjects[i] = new HeapDumpInstanceObject(this, getClassObjectInstance(instance), instance, classEntry, null);
+      });
+      for (int i = 0; i < instanceObjects.length; i++) {
+        myInstanceIndex.put(instances.get(i), instanceObjects[i]);
+        heapSet.addInstanceObject(instanceObjects[i]);
+      }
     }
     heapSets.entrySet().forEach(entry -> myHeapSets.put(entry.getKey().getId(), entry.getValue()));
 
+    synchronized (this) {
+      if (myIsUnloaded) {
+        // The capture was deselected while it was being parsed.
+        snapshot.dispose();
+        deleteHprofFile();
+        return false;
+      }
+      mySnapshot = snapshot;
+      myBuffer = buffer;
+      if (queryJoiner != null) {
+        computeRetainedSizes(snapshot, buffer, queryJoiner);
+      }
+    }
     return true;
   }
 
+  /**
+   * Computes the dominator tree in the background, then updates the retained sizes of the heaps on the joiner. The computation reads the
+   * snapshot alongside the views, which the {@link ConcurrentHprofBuffer} allows, and is cut short if the capture is unloaded meanwhile.
+   */
+  private void computeRetainedSizes(@NotNull Snapshot snapshot, @NotNull ConcurrentHprofBuffer buffer, @NotNull Executor joiner) {
+    if (!buffer.retain()) {
+      return;
+    }
+    ExecutorService executor =
+      Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("profiler-heap-dump-dominators").build());
+    executor.execute(() -> {
+      boolean computed = false;
+      try {
+        if (!myIsUnloaded) {
+          snapshot.computeDominators();
+          computed = true;
+        }
+      }
+      catch (CancellationException e) {
+        // The capture was unloaded part way.
+      }
+      finally {
+        if (buffer.release()) {
+          // The capture was unloaded while the dominators were being computed, and left the file to be deleted once they were done.
+          deleteHprofFile();
+        }
+      }
+      if (!computed) {
+        return;
+      }
+      joiner.execute(() -> {
+        if (myIsUnloaded) {
+          return;
+        }
+        myHeapSets.values().forEach(ClassifierSet::refreshRetainedSize);
+        if (myStage != null) {
+          myStage.refreshSelectedHeap();
+        }
+      });
+    });
+    // The thread only lives until the dominators are computed.
+    executor.shutdown();
+  }
+
+  private synchronized void deleteHprofFile() {
+    File hprofFile = myHprofFile;
+    myHprofFile = null;
+    if (hprofFile != null && !hprofFile.delete()) {
+      getLogger().warn("Could not delete " + hprofFile);
+    }
+  }
+
   @Override
   public boolean isDoneLoading() {
     return mySnapshot != null || myIsLoadingError;
@@ -276,7 +420,23 @@ public class HeapDumpCaptureObject implements CaptureObject {
 
   @Override
   public void unload() {
+    Snapshot snapshot;
+    ConcurrentHprofBuffer buffer;
+    synchronized (this) {
+      myIsUnloaded = true;
+      snapshot = mySnapshot;
+      buffer = myBuffer;
+    }
+    if (snapshot == null) {
+      // Either loading has failed, or it is still underway and will clean up after itself.
+      return;
+    }
 
+    // This cancels the computation of the dominators, if it is still running. The file stays mapped until it stops.
+    snapshot.dispose();
+    if (buffer == null || buffer.isReleased()) {
+      deleteHprofFile();
+    }
   }
 
   @NotNull
@@ -37,6 +37,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -54,14 +56,29 @@ public class LiveAllocationCaptureObject implements CaptureObject {
   static final String ZYGOTE_HEAP_NAME = "zygote";
   static final String APP_HEAP_NAME = "app";
 
+  /**
+   * Allocation events are requested in windows, so that no single response has to carry the events of a whole (potentially very long)
+   * range. A range is split into windows of at least this length, and at most {@link #MAX_QUERY_WINDOWS} of them.
+   */
+  @VisibleForTesting static final long QUERY_WINDOW_NS = TimeUnit.SECONDS.toNanos(1);
+  @VisibleForTesting static final int MAX_QUERY_WINDOWS = 32;
+  /**
+   * The number of windows that are requested at the same time.
+   */
+  private static final int QUERY_CONCURRENCY = 4;
+
   @Nullable private MemoryProfilerStage myStage;
 
   @VisibleForTesting final ExecutorService myExecutorService;
+  // Runs the requests of the windows of a query, so that they are in flight at the same time.
+  private final ExecutorService myQueryExecutorService;
   private final ClassDb myClassDb;
   private final Map<ClassDb.ClassEntry, LiveAllocationInstanceObject> myClassMap;
-  private final TIntObjectHashMap<LiveAllocationInstanceObject> myInstanceMap;
   private final TIntObjectHashMap<AllocationStack> myCallstackMap;
   private final TIntObjectHashMap<ThreadId> myThreadIdMap;
+  // Guards the class, callstack and thread maps, which are filled by myExecutorService while instance views may look up their class object
+  // from the EDT. The callstack and thread of an instance are resolved once, when it is added to myInstanceStore.
+  private final Object myContextLock = new Object();
 
   private final MemoryServiceBlockingStub myClient;
   private final Common.Session mySession;
@@ -77,8 +94,14 @@ public class LiveAllocationCaptureObject implements CaptureObject {
 
   private Range myQueryRange;
 
+  // Only accessed from myExecutorService. Replaced rather than cleared, as views of its rows may still be held by the heap sets.
+  private LiveAllocationInstanceStore myInstanceStore;
+
   private Future myCurrentTask;
 
+  // Incremented for every requested range, so that an in-flight load finds out that it has been superseded.
+  private final AtomicLong myRequestGeneration = new AtomicLong();
+
   public LiveAllocationCaptureObject(@NotNull MemoryServiceBlockingStub client,
                                      @Nullable Common.Session session,
                                      int processId,
@@ -91,10 +114,12 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     else {
       myExecutorService = loadService;
     }
+    myQueryExecutorService = Executors.newFixedThreadPool(
+      QUERY_CONCURRENCY, new ThreadFactoryBuilder().setNameFormat("profiler-live-allocation-query-%d").setDaemon(true).build());
 
     myClassDb = new ClassDb();
     myClassMap = new HashMap<>();
-    myInstanceMap = new TIntObjectHashMap<>();
+    myInstanceStore = new LiveAllocationInstanceStore(this);
     myCallstackMap = new TIntObjectHashMap<>();
     myThreadIdMap = new TIntObjectHashMap<>();
 
@@ -222,6 +247,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
   public void unload() {
     myQueryRange.removeDependencies(myAspectObserver);
     myExecutorService.shutdownNow();
+    myQueryExecutorService.shutdownNow();
   }
 
   // Update myContextEndTimeNs and Callstack information
@@ -233,40 +259,45 @@ public class LiveAllocationCaptureObject implements CaptureObject {
       AllocationContextsRequest.newBuilder().setProcessId(myProcessId).setSession(mySession)
         .setStartTime(myContextEndTimeNs).setEndTime(endTimeNs).build());
 
-    for (AllocatedClass klass : contextsResponse.getAllocatedClassesList()) {
-      ClassDb.ClassEntry entry = myClassDb.registerClass(DEFAULT_CLASSLOADER_ID, klass.getClassName(), klass.getClassId());
-      if (!myClassMap.containsKey(entry)) {
-        // TODO remove creation of instance object through the CLASS_DATA path. This should be handled by ALLOC_DATA.
-        // TODO pass in proper allocation time once this is handled via ALLOC_DATA.
-        LiveAllocationInstanceObject instance =
-          new LiveAllocationInstanceObject(this, entry, null, null, null, MemoryObject.INVALID_VALUE, MemoryObject.INVALID_VALUE);
-        instance.setAllocationTime(myCaptureStartTime);
-        myClassMap.put(entry, instance);
-        // TODO figure out what to do with java.lang.Class instance objects
+    synchronized (myContextLock) {
+      for (AllocatedClass klass : contextsResponse.getAllocatedClassesList()) {
+        ClassDb.ClassEntry entry = myClassDb.registerClass(DEFAULT_CLASSLOADER_ID, klass.getClassName(), klass.getClassId());
+        if (!myClassMap.containsKey(entry)) {
+          // TODO remove creation of instance object through the CLASS_DATA path. This should be handled by ALLOC_DATA.
+          // TODO pass in proper allocation time once this is handled via ALLOC_DATA.
+          LiveAllocationInstanceObject instance =
+            new LiveAllocationInstanceObject(this, entry, null, null, null, MemoryObject.INVALID_VALUE, MemoryObject.INVALID_VALUE);
+          instance.setAllocationTime(myCaptureStartTime);
+          myClassMap.put(entry, instance);
+          // TODO figure out what to do with java.lang.Class instance objects
+        }
       }
+      contextsResponse.getAllocationStacksList().forEach(callStack -> {
+        if (!myCallstackMap.contains(callStack.getStackId())) {
+          myCallstackMap.put(callStack.getStackId(), callStack);
+        }
+      });
+      contextsResponse.getAllocationThreadsList().forEach(thread -> {
+        if (!myThreadIdMap.contains(thread.getThreadId())) {
+          myThreadIdMap.put(thread.getThreadId(), new ThreadId(thread.getThreadName()));
+        }
+      });
     }
-    contextsResponse.getAllocationStacksList().forEach(callStack -> {
-      if (!myCallstackMap.contains(callStack.getStackId())) {
-        myCallstackMap.put(callStack.getStackId(), callStack);
-      }
-    });
-    contextsResponse.getAllocationThreadsList().forEach(thread -> {
-      if (!myThreadIdMap.contains(thread.getThreadId())) {
-        myThreadIdMap.put(thread.getThreadId(), new ThreadId(thread.getThreadName()));
-      }
-    });
     myContextEndTimeNs = Math.max(myContextEndTimeNs, contextsResponse.getTimestamp());
   }
 
   /**
    * Load allocation data corresponding to the input time range. Note that load operation is expensive and happens on a different thread
-   * (via myExecutorService). When loading is done, it informs the listener (e.g. UI) to update via the input joiner.
+   * (via myExecutorService). The events are applied and handed to the listener (e.g. UI) via the input joiner one query window at a time.
+   * A load is abandoned as soon as another range is requested, leaving the range loaded so far for the next load to start from.
    */
   private void loadTimeRange(@NotNull Range queryRange, @NotNull Executor joiner) {
     try {
       if (myCurrentTask != null) {
         myCurrentTask.cancel(false);
       }
+      long generation = myRequestGeneration.incrementAndGet();
+      BooleanSupplier cancelled = () -> myRequestGeneration.get() != generation;
       myCurrentTask = myExecutorService.submit(() -> {
         long newStartTimeNs = TimeUnit.MICROSECONDS.toNanos((long)queryRange.getMin());
         long newEndTimeNs = TimeUnit.MICROSECONDS.toNanos((long)queryRange.getMax());
@@ -282,117 +313,82 @@ public class LiveAllocationCaptureObject implements CaptureObject {
         // If newEndTimeNs > myEventEndTimeNs + 1, we set newEndTimeNs as myEventEndTimeNs + 1
         // We +1 because current range is left close and right open
         if (newEndTimeNs > myEventsEndTimeNs + 1) {
-          BatchAllocationSample sampleResponse =
-            myClient.getAllocations(AllocationSnapshotRequest.newBuilder().setProcessId(myProcessId).setSession(mySession)
-                                      .setStartTime(myEventsEndTimeNs + 1).setEndTime(newEndTimeNs).build());
-
-          myEventsEndTimeNs = Math.max(myEventsEndTimeNs, sampleResponse.getTimestamp());
+          // An open-ended query is only split up to the end of the data we know about.
+          long windowedEndTimeNs = newEndTimeNs;
+          if (newEndTimeNs == Long.MAX_VALUE) {
+            windowedEndTimeNs = myStage == null
+                                ? myEventsEndTimeNs + 1
+                                : TimeUnit.MICROSECONDS.toNanos((long)myStage.getStudioProfilers().getTimeline().getDataRange().getMax());
+          }
+          WindowConsumer updateEventsEndTime =
+            (windowStartTimeNs, windowEndTimeNs, sample) -> myEventsEndTimeNs = Math.max(myEventsEndTimeNs, sample.getTimestamp());
+          if (!queryAllocations(myEventsEndTimeNs + 1, newEndTimeNs, windowedEndTimeNs, false, cancelled, updateEventsEndTime)) {
+            return null;
+          }
           if (newEndTimeNs > myEventsEndTimeNs + 1) {
             newEndTimeNs = myEventsEndTimeNs + 1;
             newStartTimeNs = Math.min(newStartTimeNs, newEndTimeNs);
           }
         }
 
-        // Split the two ranges into three segments by sorting their end points and analyzing segments with adjacent points
-        long[] timestamps = {myPreviousQueryStartTimeNs, myPreviousQueryEndTimeNs, newStartTimeNs, newEndTimeNs};
-        // Clear myDefaultHeapSet If previous range does not intersect with the new one
+        // Clear the heap sets if the previous range does not intersect with the new one.
         boolean clear = myPreviousQueryEndTimeNs <= newStartTimeNs || newEndTimeNs <= myPreviousQueryStartTimeNs;
         if (clear) {
-          long[] newTimeStamps = {newStartTimeNs, newEndTimeNs};
-          timestamps = newTimeStamps;
-          myInstanceMap.clear();
+          myInstanceStore = new LiveAllocationInstanceStore(this);
+          myPreviousQueryStartTimeNs = newStartTimeNs;
+          myPreviousQueryEndTimeNs = newStartTimeNs;
+          joiner.execute(() -> {
+            myHeapSets.forEach(heap -> heap.clearClassifierSets());
+            if (myStage.getSelectedClassSet() != null) {
+              myStage.selectClassSet(ClassSet.EMPTY_SET);
+            }
+            myStage.refreshSelectedHeap();
+          });
         }
 
-        Arrays.sort(timestamps);
-        List<InstanceObject> setAllocationList = new ArrayList<>();
-        List<InstanceObject> resetAllocationList = new ArrayList<>();
-        List<InstanceObject> setDeallocationList = new ArrayList<>();
-        List<InstanceObject> resetDeallocationList = new ArrayList<>();
-
-        // For each segment, if it is only within previous range, we remove events in this segment
-        // If it is only within current range, we add events in this segments
-        // Otherwise, we do nothing since we already processed events in this segment
-        for (int stampNumber = 0; stampNumber + 1 < timestamps.length; ++stampNumber) {
-          long startTimeNs = timestamps[stampNumber];
-          long endTimeNs = timestamps[stampNumber + 1];
-          if (startTimeNs == endTimeNs) {
-            continue;
+        // Grow or shrink the loaded range [myPreviousQueryStartTimeNs, myPreviousQueryEndTimeNs) one window at a time, always next to its
+        // ends, so that it is still a single range if the load is cancelled part way.
+        long previousStartTimeNs = myPreviousQueryStartTimeNs;
+        if (newStartTimeNs < previousStartTimeNs) {
+          if (!queryAllocations(newStartTimeNs, previousStartTimeNs, previousStartTimeNs, true, cancelled,
+                                (windowStartTimeNs, windowEndTimeNs, sample) -> {
+                                  applyEvents(sample, true, joiner);
+                                  myPreviousQueryStartTimeNs = windowStartTimeNs;
+                                })) {
+            return null;
           }
-
-          boolean insidePreviousRange = startTimeNs >= myPreviousQueryStartTimeNs && endTimeNs <= myPreviousQueryEndTimeNs;
-          boolean insideCurrentRange = startTimeNs >= newStartTimeNs && endTimeNs <= newEndTimeNs;
-
-          if (insidePreviousRange == insideCurrentRange) {
-            continue;
+        }
+        else if (newStartTimeNs > previousStartTimeNs) {
+          if (!queryAllocations(previousStartTimeNs, newStartTimeNs, newStartTimeNs, false, cancelled,
+                                (windowStartTimeNs, windowEndTimeNs, sample) -> {
+                                  applyEvents(sample, false, joiner);
+                                  myPreviousQueryStartTimeNs = windowEndTimeNs;
+                                })) {
+            return null;
           }
+        }
 
-          BatchAllocationSample sampleResponse =
-            myClient.getAllocations(AllocationSnapshotRequest.newBuilder().setProcessId(myProcessId).setSession(mySession)
-                                      .setStartTime(startTimeNs).setEndTime(endTimeNs).build());
-
-          for (AllocationEvent event : sampleResponse.getEventsList()) {
-            if (event.getEventCase() == AllocationEvent.EventCase.ALLOC_DATA) {
-              AllocationEvent.Allocation allocation = event.getAllocData();
-              LiveAllocationInstanceObject instance =
-                getOrCreateInstanceObject(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(),
-                                          allocation.getSize(), allocation.getHeapId());
-              if (insideCurrentRange) {
-                instance.setAllocationTime(event.getTimestamp());
-                setAllocationList.add(instance);
-              }
-              else {
-                instance.setAllocationTime(Long.MIN_VALUE);
-                resetAllocationList.add(instance);
-              }
-            }
-            else if (event.getEventCase() == AllocationEvent.EventCase.FREE_DATA) {
-              AllocationEvent.Deallocation deallocation = event.getFreeData();
-              LiveAllocationInstanceObject instance =
-                getOrCreateInstanceObject(deallocation.getTag(), deallocation.getClassTag(), deallocation.getStackId(),
-                                          deallocation.getThreadId(), deallocation.getSize(), deallocation.getHeapId());
-              if (insideCurrentRange) {
-                instance.setDeallocTime(event.getTimestamp());
-                setDeallocationList.add(instance);
-              }
-              else {
-                instance.setDeallocTime(Long.MAX_VALUE);
-                resetDeallocationList.add(instance);
-              }
-            }
-            else {
-              assert false;
-            }
+        long previousEndTimeNs = myPreviousQueryEndTimeNs;
+        if (newEndTimeNs > previousEndTimeNs) {
+          if (!queryAllocations(previousEndTimeNs, newEndTimeNs, newEndTimeNs, false, cancelled,
+                                (windowStartTimeNs, windowEndTimeNs, sample) -> {
+                                  applyEvents(sample, true, joiner);
+                                  myPreviousQueryEndTimeNs = windowEndTimeNs;
+                                })) {
+            return null;
           }
         }
-
-        myPreviousQueryStartTimeNs = newStartTimeNs;
-        myPreviousQueryEndTimeNs = newEndTimeNs;
-
-        joiner.execute(() -> {
-          myStage.getAspect().changed(MemoryProfilerAspect.CURRENT_HEAP_UPDATED);
-          if (clear ||
-              setAllocationList.size() + setDeallocationList.size() + resetAllocationList.size() + resetDeallocationList.size() > 0) {
-            if (clear) {
-              myHeapSets.forEach(heap -> heap.clearClassifierSets());
-              if (myStage.getSelectedClassSet() != null) {
-                myStage.selectClassSet(ClassSet.EMPTY_SET);
-              }
-            }
-            setAllocationList.forEach(instance -> {
-              myHeapSets.get(instance.getHeapId()).addInstanceObject(instance);
-            });
-            setDeallocationList.forEach(instance -> {
-              myHeapSets.get(instance.getHeapId()).freeInstanceObject(instance);
-            });
-            resetAllocationList.forEach(instance -> {
-              myHeapSets.get(instance.getHeapId()).removeAddingInstanceObject(instance);
-            });
-            resetDeallocationList.forEach(instance -> {
-              myHeapSets.get(instance.getHeapId()).removeFreeingInstanceObject(instance);
-            });
-            myStage.refreshSelectedHeap();
+        else if (newEndTimeNs < previousEndTimeNs) {
+          if (!queryAllocations(newEndTimeNs, previousEndTimeNs, previousEndTimeNs, true, cancelled,
+                                (windowStartTimeNs, windowEndTimeNs, sample) -> {
+                                  applyEvents(sample, false, joiner);
+                                  myPreviousQueryEndTimeNs = windowStartTimeNs;
+                                })) {
+            return null;
           }
-        });
+        }
+
+        joiner.execute(() -> myStage.getAspect().changed(MemoryProfilerAspect.CURRENT_HEAP_UPDATED));
         return null;
       });
     }
@@ -401,26 +397,174 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     }
   }
 
-  @NotNull
-  private LiveAllocationInstanceObject getOrCreateInstanceObject(int tag, int classTag, int stackId, int threadId, long size, int heapId) {
-    LiveAllocationInstanceObject instance = myInstanceMap.get(tag);
-    if (instance == null) {
-      ClassDb.ClassEntry entry = myClassDb.getEntry(classTag);
-      assert myClassMap.containsKey(entry);
-      AllocationStack callstack = null;
-      if (stackId != 0) {
-        assert myCallstackMap.containsKey(stackId);
-        callstack = myCallstackMap.get(stackId);
+  /**
+   * Applies the events of one query window to the instances, then hands the changed instances to the heap sets via the joiner.
+   *
+   * @param insideCurrentRange whether the window is being added to the loaded range, as opposed to removed from it.
+   */
+  private void applyEvents(@NotNull BatchAllocationSample sample, boolean insideCurrentRange, @NotNull Executor joiner) {
+    List<InstanceObject> setAllocationList = new ArrayList<>();
+    List<InstanceObject> resetAllocationList = new ArrayList<>();
+    List<InstanceObject> setDeallocationList = new ArrayList<>();
+    List<InstanceObject> resetDeallocationList = new ArrayList<>();
+    for (AllocationEvent event : sample.getEventsList()) {
+      if (event.getEventCase() == AllocationEvent.EventCase.ALLOC_DATA) {
+        AllocationEvent.Allocation allocation = event.getAllocData();
+        int row = getOrCreateInstanceRow(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(),
+                                         allocation.getThreadId(), allocation.getSize(), allocation.getHeapId());
+        if (insideCurrentRange) {
+          myInstanceStore.setAllocTime(row, event.getTimestamp());
+          setAllocationList.add(myInstanceStore.getInstanceObject(row));
+        }
+        else {
+          myInstanceStore.setAllocTime(row, Long.MIN_VALUE);
+          resetAllocationList.add(myInstanceStore.getInstanceObject(row));
+        }
       }
-      ThreadId thread = null;
-      if (threadId != 0) {
-        assert myThreadIdMap.containsKey(threadId);
-        thread = myThreadIdMap.get(threadId);
+      else if (event.getEventCase() == AllocationEvent.EventCase.FREE_DATA) {
+        AllocationEvent.Deallocation deallocation = event.getFreeData();
+        int row = getOrCreateInstanceRow(deallocation.getTag(), deallocation.getClassTag(), deallocation.getStackId(),
+                                         deallocation.getThreadId(), deallocation.getSize(), deallocation.getHeapId());
+        if (insideCurrentRange) {
+          myInstanceStore.setDeallocTime(row, event.getTimestamp());
+          setDeallocationList.add(myInstanceStore.getInstanceObject(row));
+        }
+        else {
+          myInstanceStore.setDeallocTime(row, Long.MAX_VALUE);
+          resetDeallocationList.add(myInstanceStore.getInstanceObject(row));
+        }
+      }
+      else {
+        assert false;
       }
-      instance = new LiveAllocationInstanceObject(this, entry, myClassMap.get(entry), thread, callstack, size, heapId);
-      myInstanceMap.put(tag, instance);
     }
 
-    return instance;
+    if (setAllocationList.size() + setDeallocationList.size() + resetAllocationList.size() + resetDeallocationList.size() == 0) {
+      return;
+    }
+    joiner.execute(() -> {
+      setAllocationList.forEach(instance -> {
+        myHeapSets.get(instance.getHeapId()).addInstanceObject(instance);
+      });
+      setDeallocationList.forEach(instance -> {
+        myHeapSets.get(instance.getHeapId()).freeInstanceObject(instance);
+      });
+      resetAllocationList.forEach(instance -> {
+        myHeapSets.get(instance.getHeapId()).removeAddingInstanceObject(instance);
+      });
+      resetDeallocationList.forEach(instance -> {
+        myHeapSets.get(instance.getHeapId()).removeFreeingInstanceObject(instance);
+      });
+      myStage.refreshSelectedHeap();
+    });
+  }
+
+  /**
+   * Queries the allocation events within [startTimeNs, endTimeNs) in windows up to windowedEndTimeNs (the remainder is queried in one
+   * go), and hands each response to the consumer in window order. Up to {@link #QUERY_CONCURRENCY} windows are requested ahead of the one
+   * being consumed.
+   *
+   * @param descending whether the windows are consumed from the end of the range rather than its start.
+   * @return false if the query was abandoned part way because cancelled returned true, or a request failed.
+   */
+  private boolean queryAllocations(long startTimeNs,
+                                   long endTimeNs,
+                                   long windowedEndTimeNs,
+                                   boolean descending,
+                                   @NotNull BooleanSupplier cancelled,
+                                   @NotNull WindowConsumer consumer) {
+    List<long[]> windows = splitIntoWindows(startTimeNs, endTimeNs, windowedEndTimeNs);
+    if (descending) {
+      Collections.reverse(windows);
+    }
+    Queue<Future<BatchAllocationSample>> requests = new ArrayDeque<>();
+    try {
+      for (int i = 0; i < windows.size(); i++) {
+        while (requests.size() < QUERY_CONCURRENCY && i + requests.size() < windows.size()) {
+          long[] window = windows.get(i + requests.size());
+          requests.add(myQueryExecutorService.submit(() -> queryAllocations(window[0], window[1])));
+        }
+        if (cancelled.getAsBoolean()) {
+          return false;
+        }
+        BatchAllocationSample sample = requests.remove().get();
+        consumer.accept(windows.get(i)[0], windows.get(i)[1], sample);
+      }
+      return true;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    catch (ExecutionException e) {
+      getLogger().warn(e.getCause());
+      return false;
+    }
+    finally {
+      requests.forEach(request -> request.cancel(true));
+    }
+  }
+
+  /**
+   * Splits [startTimeNs, endTimeNs) into windows of at least {@link #QUERY_WINDOW_NS}, and at most {@link #MAX_QUERY_WINDOWS} of them, up
+   * to windowedEndTimeNs. The remainder is a single window.
+   */
+  @VisibleForTesting
+  @NotNull
+  List<long[]> splitIntoWindows(long startTimeNs, long endTimeNs, long windowedEndTimeNs) {
+    List<long[]> windows = new ArrayList<>();
+    long windowStartTimeNs = startTimeNs;
+    // Nothing is allocated before the capture starts, so there is no point in splitting that part of the range.
+    if (windowStartTimeNs < myCaptureStartTime && myCaptureStartTime < endTimeNs) {
+      windows.add(new long[]{windowStartTimeNs, myCaptureStartTime});
+      windowStartTimeNs = myCaptureStartTime;
+    }
+
+    // A negative span means the subtraction overflowed or there is nothing to split.
+    long span = Math.min(endTimeNs, windowedEndTimeNs) - windowStartTimeNs;
+    long windowLengthNs = span > 0 ? Math.max(QUERY_WINDOW_NS, span / MAX_QUERY_WINDOWS + 1) : QUERY_WINDOW_NS;
+    while (windowStartTimeNs < endTimeNs) {
+      long windowEndTimeNs = endTimeNs;
+      // A negative difference means the subtraction overflowed, in which case the range is not split any further.
+      if (windowStartTimeNs < windowedEndTimeNs && endTimeNs - windowStartTimeNs > windowLengthNs) {
+        windowEndTimeNs = windowStartTimeNs + windowLengthNs;
+      }
+      windows.add(new long[]{windowStartTimeNs, windowEndTimeNs});
+      windowStartTimeNs = windowEndTimeNs;
+    }
+    return windows;
+  }
+
+  @NotNull
+  private BatchAllocationSample queryAllocations(long startTimeNs, long endTimeNs) {
+    return myClient.getAllocations(AllocationSnapshotRequest.newBuilder().setProcessId(myProcessId).setSession(mySession)
+                                     .setStartTime(startTimeNs).setEndTime(endTimeNs).build());
+  }
+
+  private int getOrCreateInstanceRow(int tag, int classTag, int stackId, int threadId, long size, int heapId) {
+    int row = myInstanceStore.getRow(tag);
+    if (row != -1) {
+      return row;
+    }
+
+    // This runs on myExecutorService, which is the only thread that writes the context maps, so they can be read without the lock.
+    ClassDb.ClassEntry classEntry = myClassDb.getEntry(classTag);
+    AllocationStack callstack = stackId == 0 ? null : myCallstackMap.get(stackId);
+    ThreadId thread = threadId == 0 ? null : myThreadIdMap.get(threadId);
+    assert myClassMap.containsKey(classEntry);
+    assert stackId == 0 || callstack != null;
+    assert threadId == 0 || thread != null;
+    return myInstanceStore.addRow(tag, classEntry, callstack, thread, size, heapId);
+  }
+
+  @Nullable
+  LiveAllocationInstanceObject getClassObject(@NotNull ClassDb.ClassEntry classEntry) {
+    synchronized (myContextLock) {
+      return myClassMap.get(classEntry);
+    }
+  }
+
+  private interface WindowConsumer {
+    void accept(long windowStartTimeNs, long windowEndTimeNs, @NotNull BatchAllocationSample sample);
   }
 }
@@ -52,14 +52,19 @@ public class LiveAllocationInstanceObject implements InstanceObject {
     myHeapId = heapId;
     myThreadId = threadId == null ? ThreadId.INVALID_THREAD_ID : threadId;
     myCallstack = callstack;
+    myValueType = getValueType(classEntry);
+  }
+
+  @NotNull
+  static ValueType getValueType(@NotNull ClassDb.ClassEntry classEntry) {
     if ("java.lang.String".equals(classEntry.getClassName())) {
-      myValueType = ValueType.STRING;
+      return ValueType.STRING;
     }
     else if (classEntry.getClassName().endsWith("[]")) {
-      myValueType = ValueType.ARRAY;
+      return ValueType.ARRAY;
     }
     else {
-      myValueType = ValueType.OBJECT;
+      return ValueType.OBJECT;
     }
   }
 
@@ -124,14 +129,19 @@ public class LiveAllocationInstanceObject implements InstanceObject {
   @NotNull
   @Override
   public List<CodeLocation> getCodeLocations() {
+    return getCodeLocations(myCaptureObject, myCallstack);
+  }
+
+  @NotNull
+  static List<CodeLocation> getCodeLocations(@NotNull LiveAllocationCaptureObject captureObject, @Nullable AllocationStack callstack) {
     List<CodeLocation> codeLocations = new ArrayList<>();
-    if (myCallstack != null && myCallstack.getFrameCase() == AllocationStack.FrameCase.SMALL_STACK) {
-      AllocationStack.SmallFrameWrapper smallFrames = myCallstack.getSmallStack();
+    if (callstack != null && callstack.getFrameCase() == AllocationStack.FrameCase.SMALL_STACK) {
+      AllocationStack.SmallFrameWrapper smallFrames = callstack.getSmallStack();
       for (AllocationStack.SmallFrame frame : smallFrames.getFramesList()) {
         StackFrameInfoResponse frameInfo =
-          myCaptureObject.getClient().getStackFrameInfo(StackFrameInfoRequest.newBuilder().setProcessId(myCaptureObject.getProcessId())
-                                                          .setSession(myCaptureObject.getSession())
-                                                          .setMethodId(frame.getMethodId()).build());
+          captureObject.getClient().getStackFrameInfo(StackFrameInfoRequest.newBuilder().setProcessId(captureObject.getProcessId())
+                                                        .setSession(captureObject.getSession())
+                                                        .setMethodId(frame.getMethodId()).build());
         CodeLocation.Builder builder = new CodeLocation.Builder(frameInfo.getClassName())
           .setMethodName(frameInfo.getMethodName())
           .setLineNumber(frame.getLineNumber() - 1);
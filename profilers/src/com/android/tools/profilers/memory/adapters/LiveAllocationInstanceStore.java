@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.android.tools.profiler.proto.MemoryProfiler.AllocationStack;
+import com.android.tools.profilers.stacktrace.CodeLocation;
+import com.android.tools.profilers.stacktrace.ThreadId;
+import gnu.trove.TIntIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Struct-of-arrays storage for the instances of a {@link LiveAllocationCaptureObject}. Each allocation tag maps to a row of primitive
+ * columns, so instances that fall out of the selected range cost a few array slots instead of an object each. {@link InstanceObject}s
+ * are only created as lightweight views of a row, for the instances that are handed to the {@link ClassifierSet}s.
+ */
+final class LiveAllocationInstanceStore {
+  private static final int INITIAL_CAPACITY = 1024;
+
+  @NotNull private final LiveAllocationCaptureObject myCaptureObject;
+  @NotNull private final TIntIntHashMap myRowsByTag = new TIntIntHashMap();
+
+  // Columns, indexed by row. The class, callstack and thread of each instance are resolved when its row is added, so that the views can be
+  // read from any thread (e.g. while partitioning in parallel) without going through the capture object's context maps.
+  @NotNull private ClassDb.ClassEntry[] myClassEntries = new ClassDb.ClassEntry[INITIAL_CAPACITY];
+  @NotNull private AllocationStack[] myCallstacks = new AllocationStack[INITIAL_CAPACITY];
+  @NotNull private ThreadId[] myThreadIds = new ThreadId[INITIAL_CAPACITY];
+  @NotNull private int[] myHeapIds = new int[INITIAL_CAPACITY];
+  @NotNull private long[] mySizes = new long[INITIAL_CAPACITY];
+  @NotNull private long[] myAllocTimes = new long[INITIAL_CAPACITY];
+  @NotNull private long[] myDeallocTimes = new long[INITIAL_CAPACITY];
+  private int mySize;
+
+  LiveAllocationInstanceStore(@NotNull LiveAllocationCaptureObject captureObject) {
+    myCaptureObject = captureObject;
+  }
+
+  /**
+   * @return the row of the instance with the given tag, or -1 if there is none.
+   */
+  int getRow(int tag) {
+    return myRowsByTag.containsKey(tag) ? myRowsByTag.get(tag) : -1;
+  }
+
+  /**
+   * @return the row added for the instance with the given tag, without alloc or dealloc time.
+   */
+  int addRow(int tag,
+             @NotNull ClassDb.ClassEntry classEntry,
+             @Nullable AllocationStack callstack,
+             @Nullable ThreadId threadId,
+             long size,
+             int heapId) {
+    assert !myRowsByTag.containsKey(tag);
+    if (mySize == myClassEntries.length) {
+      int capacity = mySize * 2;
+      myClassEntries = Arrays.copyOf(myClassEntries, capacity);
+      myCallstacks = Arrays.copyOf(myCallstacks, capacity);
+      myThreadIds = Arrays.copyOf(myThreadIds, capacity);
+      myHeapIds = Arrays.copyOf(myHeapIds, capacity);
+      mySizes = Arrays.copyOf(mySizes, capacity);
+      myAllocTimes = Arrays.copyOf(myAllocTimes, capacity);
+      myDeallocTimes = Arrays.copyOf(myDeallocTimes, capacity);
+    }
+    int row = mySize++;
+    myClassEntries[row] = classEntry;
+    myCallstacks[row] = callstack;
+    myThreadIds[row] = threadId;
+    myHeapIds[row] = heapId;
+    mySizes[row] = size;
+    myAllocTimes[row] = Long.MIN_VALUE;
+    myDeallocTimes[row] = Long.MAX_VALUE;
+    myRowsByTag.put(tag, row);
+    return row;
+  }
+
+  int size() {
+    return mySize;
+  }
+
+  // Set allocTime as Long.MIN_VALUE when no allocation event can be found
+  void setAllocTime(int row, long allocTime) {
+    myAllocTimes[row] = allocTime;
+  }
+
+  // Set deallocTime as Long.MAX_VALUE when no deallocation event can be found
+  void setDeallocTime(int row, long deallocTime) {
+    myDeallocTimes[row] = deallocTime;
+  }
+
+  @NotNull
+  InstanceObject getInstanceObject(int row) {
+    assert row < mySize;
+    return new InstanceView(this, row);
+  }
+
+  /**
+   * A view of one row of the store. Views of the same row are equal, so that a view created to remove an instance from a
+   * {@link ClassifierSet} matches the one that was added earlier.
+   */
+  private static final class InstanceView implements InstanceObject {
+    @NotNull private final LiveAllocationInstanceStore myStore;
+    private final int myRow;
+
+    private InstanceView(@NotNull LiveAllocationInstanceStore store, int row) {
+      myStore = store;
+      myRow = row;
+    }
+
+    @Override
+    public long getAllocTime() {
+      return myStore.myAllocTimes[myRow];
+    }
+
+    @Override
+    public long getDeallocTime() {
+      return myStore.myDeallocTimes[myRow];
+    }
+
+    @Override
+    public boolean hasTimeData() {
+      return hasAllocData() || hasDeallocData();
+    }
+
+    @Override
+    public boolean hasAllocData() {
+      return getAllocTime() != Long.MIN_VALUE;
+    }
+
+    @Override
+    public boolean hasDeallocData() {
+      return getDeallocTime() != Long.MAX_VALUE;
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+      return "";
+    }
+
+    @Override
+    public int getHeapId() {
+      return myStore.myHeapIds[myRow];
+    }
+
+    @Override
+    public int getShallowSize() {
+      // TODO upgrade to long
+      return (int)myStore.mySizes[myRow];
+    }
+
+    @Nullable
+    @Override
+    public AllocationStack getCallStack() {
+      return myStore.myCallstacks[myRow];
+    }
+
+    @NotNull
+    @Override
+    public List<CodeLocation> getCodeLocations() {
+      return LiveAllocationInstanceObject.getCodeLocations(myStore.myCaptureObject, getCallStack());
+    }
+
+    @NotNull
+    @Override
+    public ThreadId getAllocationThreadId() {
+      ThreadId threadId = myStore.myThreadIds[myRow];
+      return threadId == null ? ThreadId.INVALID_THREAD_ID : threadId;
+    }
+
+    @NotNull
+    @Override
+    public ClassDb.ClassEntry getClassEntry() {
+      return myStore.myClassEntries[myRow];
+    }
+
+    @Nullable
+    @Override
+    public InstanceObject getClassObject() {
+      return myStore.myCaptureObject.getClassObject(getClassEntry());
+    }
+
+    @NotNull
+    @Override
+    public ValueType getValueType() {
+      return LiveAllocationInstanceObject.getValueType(getClassEntry());
+    }
+
+    @NotNull
+    @Override
+    public String getValueText() {
+      return getClassEntry().getSimpleClassName();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof InstanceView)) {
+        return false;
+      }
+      InstanceView other = (InstanceView)obj;
+      return myStore == other.myStore && myRow == other.myRow;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(myStore) + myRow;
+    }
+  }
+}
@@ -15,9 +15,13 @@
  */
 package com.android.tools.profilers.network;
 
+import com.android.tools.adtui.model.CachedLongDataSeries;
+import com.android.tools.adtui.model.DataSeries;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
 import com.android.tools.profiler.proto.NetworkServiceGrpc;
+import com.android.tools.profilers.AsyncRangedContinuousSeries;
+import com.android.tools.profilers.ProfilerTimeline;
 import com.android.tools.profilers.StudioProfilers;
 import org.jetbrains.annotations.NotNull;
 
@@ -33,17 +37,19 @@ public class DetailedNetworkUsage extends NetworkUsage {
 
     myConnectionsRange = new Range(0, 5);
 
-    myConnectionSeries = new RangedContinuousSeries("Connections",
-                                                    viewRange,
-                                                    myConnectionsRange,
-                                                    createOpenConnectionsSeries(profilers));
+    myConnectionSeries = new AsyncRangedContinuousSeries("Connections",
+                                                         viewRange,
+                                                         myConnectionsRange,
+                                                         createOpenConnectionsSeries(profilers),
+                                                         profilers.getDataFetchScheduler());
     add(myConnectionSeries);
   }
 
   @NotNull
-  private NetworkOpenConnectionsDataSeries createOpenConnectionsSeries(@NotNull StudioProfilers profilers) {
+  private DataSeries<Long> createOpenConnectionsSeries(@NotNull StudioProfilers profilers) {
     NetworkServiceGrpc.NetworkServiceBlockingStub client = profilers.getClient().getNetworkClient();
-    return new NetworkOpenConnectionsDataSeries(client, profilers.getProcessId(), profilers.getSession());
+    return new CachedLongDataSeries(new NetworkOpenConnectionsDataSeries(client, profilers.getProcessId(), profilers.getSession()),
+                                    ProfilerTimeline.DATA_CACHE_RETENTION_US);
   }
 
   @NotNull
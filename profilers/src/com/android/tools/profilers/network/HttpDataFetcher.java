@@ -18,6 +18,7 @@ package com.android.tools.profilers.network;
 import com.android.tools.adtui.model.AspectObserver;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.updater.Updatable;
+import com.android.tools.profilers.DataFetchScheduler;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -29,6 +30,9 @@ import java.util.concurrent.TimeUnit;
  * An {@link Updatable} which will regularly run and, on an interval, poll for an up-to-date list
  * of {@link HttpData} requests within a specified range. Once we see that all requests have been
  * completed, the update loop will stop making the expensive polling calls.
+ *
+ * The polling calls are made through a {@link DataFetchScheduler}, so listeners are notified once
+ * the list arrives rather than during the update itself.
  */
 public final class HttpDataFetcher implements Updatable {
   private static final long FETCH_FREQUENCY = TimeUnit.MILLISECONDS.toNanos(250);
@@ -36,6 +40,7 @@ public final class HttpDataFetcher implements Updatable {
   // myAspectObserver cannot be local to prevent early GC
   @SuppressWarnings("FieldCanBeLocal") private final AspectObserver myAspectObserver = new AspectObserver();
 
+  @NotNull private final DataFetchScheduler myScheduler;
   @NotNull private final NetworkConnectionsModel myConnectionsModel;
   @NotNull private final Range myRange;
   @NotNull private final List<Listener> myListeners = new ArrayList<>();
@@ -51,7 +56,8 @@ public final class HttpDataFetcher implements Updatable {
    */
   private long myAccumNs;
 
-  public HttpDataFetcher(@NotNull NetworkConnectionsModel connectionsModel, @NotNull Range range) {
+  public HttpDataFetcher(@NotNull DataFetchScheduler scheduler, @NotNull NetworkConnectionsModel connectionsModel, @NotNull Range range) {
+    myScheduler = scheduler;
     myConnectionsModel = connectionsModel;
     myRange = range;
 
@@ -77,15 +83,21 @@ public final class HttpDataFetcher implements Updatable {
     myAccumNs = 0;
     if (myDataList == null || stillDownloading(myDataList)) {
       if (!myRange.isEmpty()) {
-        myDataList = myConnectionsModel.getData(myRange);
+        // Requests for the range that is already being fetched are dropped by the scheduler, so polling again while waiting is cheap.
+        myScheduler.request(this, myRange, myConnectionsModel::getData, this::setDataList);
       }
       else {
-        myDataList = new ArrayList<>();
+        myScheduler.cancel(this);
+        setDataList(new ArrayList<>());
       }
-      fireListeners(myDataList);
     }
   }
 
+  private void setDataList(@NotNull List<HttpData> dataList) {
+    myDataList = dataList;
+    fireListeners(dataList);
+  }
+
   private void pollImmediately() {
     myDataList = null;
     update(0);
@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.network;
+
+import com.android.annotations.VisibleForTesting;
+import com.google.protobuf3jarjar.ByteString;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache of network payloads keyed by payload id, which identifies the payload's contents, so that looking at the same payload again
+ * doesn't download it from the device again.
+ *
+ * Recently used payloads are kept in memory, up to a total size. The least recently used ones are spilled to disk, also up to a total
+ * size, beyond which the least recently used files are deleted. Payloads are written to disk straight from their {@link ByteString},
+ * without being copied into a single array first, and files can be handed out as they are rather than read back. Reading and writing
+ * files is done outside the lock, so a large payload doesn't hold up lookups of the others.
+ */
+public class NetworkPayloadCache {
+  public static final long DEFAULT_MEMORY_CAPACITY_BYTES = 16 * 1024 * 1024;
+  public static final long DEFAULT_DISK_CAPACITY_BYTES = 256 * 1024 * 1024;
+
+  private final long myMemoryCapacityBytes;
+  private final long myDiskCapacityBytes;
+
+  // Both maps are in access order, so their first entry is the least recently used one.
+  @NotNull private final LinkedHashMap<String, ByteString> myMemoryEntries = new LinkedHashMap<>(16, 0.75f, true);
+  @NotNull private final LinkedHashMap<String, DiskEntry> myDiskEntries = new LinkedHashMap<>(16, 0.75f, true);
+  private long myMemoryBytes;
+  private long myDiskBytes;
+
+  /**
+   * Directory the payloads are spilled to, created when the first payload is spilled unless given upfront.
+   */
+  @Nullable private File myDirectory;
+  private int myNextFileIndex;
+
+  private long myMemoryHitCount;
+  private long myDiskHitCount;
+  private long myMissCount;
+
+  public NetworkPayloadCache() {
+    this(DEFAULT_MEMORY_CAPACITY_BYTES, DEFAULT_DISK_CAPACITY_BYTES, null);
+  }
+
+  @VisibleForTesting
+  NetworkPayloadCache(long memoryCapacityBytes, long diskCapacityBytes, @Nullable File directory) {
+    assert memoryCapacityBytes >= 0 && diskCapacityBytes >= 0;
+    myMemoryCapacityBytes = memoryCapacityBytes;
+    myDiskCapacityBytes = diskCapacityBytes;
+    myDirectory = directory;
+  }
+
+  private static Logger getLogger() {
+    return Logger.getInstance(NetworkPayloadCache.class);
+  }
+
+  /**
+   * @return the payload with the given id, or null if it isn't cached. A payload that was spilled to disk is read back, prefer
+   * {@link #getFile(String)} when a file will do.
+   */
+  @Nullable
+  public ByteString get(@NotNull String payloadId) {
+    DiskEntry entry;
+    synchronized (this) {
+      ByteString payload = myMemoryEntries.get(payloadId);
+      if (payload != null) {
+        myMemoryHitCount++;
+        return payload;
+      }
+      entry = myDiskEntries.get(payloadId);
+      if (entry == null) {
+        myMissCount++;
+        return null;
+      }
+      myDiskHitCount++;
+    }
+
+    // The payload stays on disk only, reading it again is cheaper than spilling another payload to make room for it.
+    try (InputStream input = new BufferedInputStream(new FileInputStream(entry.myFile))) {
+      return ByteString.readFrom(input);
+    }
+    catch (IOException e) {
+      // The file was evicted meanwhile, or can't be read.
+      getLogger().warn("Failed to read cached network payload " + entry.myFile, e);
+      remove(payloadId, entry);
+      return null;
+    }
+  }
+
+  /**
+   * @return the file holding the payload with the given id, or null if it isn't cached. A payload only kept in memory is written to disk
+   * first. The file is deleted when evicted, so it should be looked up again rather than kept.
+   */
+  @Nullable
+  public File getFile(@NotNull String payloadId) {
+    ByteString payload;
+    synchronized (this) {
+      DiskEntry entry = myDiskEntries.get(payloadId);
+      if (entry != null && entry.myFile.exists()) {
+        myDiskHitCount++;
+        return entry.myFile;
+      }
+      payload = myMemoryEntries.get(payloadId);
+      if (payload == null) {
+        myMissCount++;
+        return null;
+      }
+      myMemoryHitCount++;
+    }
+    DiskEntry entry = spill(payloadId, payload);
+    return entry == null ? null : entry.myFile;
+  }
+
+  public void put(@NotNull String payloadId, @NotNull ByteString payload) {
+    if (payload.size() > myMemoryCapacityBytes) {
+      spill(payloadId, payload);
+      return;
+    }
+
+    List<Map.Entry<String, ByteString>> evicted = new ArrayList<>();
+    synchronized (this) {
+      ByteString previous = myMemoryEntries.put(payloadId, payload);
+      myMemoryBytes += payload.size() - (previous == null ? 0 : previous.size());
+
+      Iterator<Map.Entry<String, ByteString>> it = myMemoryEntries.entrySet().iterator();
+      while (myMemoryBytes > myMemoryCapacityBytes && it.hasNext()) {
+        Map.Entry<String, ByteString> eldest = it.next();
+        it.remove();
+        myMemoryBytes -= eldest.getValue().size();
+        evicted.add(eldest);
+      }
+    }
+    evicted.forEach(entry -> spill(entry.getKey(), entry.getValue()));
+  }
+
+  /**
+   * Writes the given file to the disk tier under the given key, unless a file is already cached for it, e.g. to keep a payload in the form
+   * it is shown in.
+   *
+   * @param suffix the suffix of the file name, such as its extension
+   * @return the cached file, or a file of its own that is deleted on exit if it doesn't fit on disk
+   */
+  @NotNull
+  public File putFile(@NotNull String key, @NotNull String suffix, @NotNull PayloadWriter writer) throws IOException {
+    synchronized (this) {
+      DiskEntry entry = myDiskEntries.get(key);
+      if (entry != null && entry.myFile.exists()) {
+        return entry.myFile;
+      }
+    }
+    File file = createFile(suffix);
+    try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file))) {
+      writer.writeTo(output);
+    }
+    catch (IOException e) {
+      FileUtil.delete(file);
+      throw e;
+    }
+    DiskEntry entry = add(key, new DiskEntry(file, file.length()));
+    if (entry == null) {
+      file.deleteOnExit();
+      return file;
+    }
+    return entry.myFile;
+  }
+
+  /**
+   * Drops all the cached payloads and deletes their files.
+   */
+  public void clear() {
+    List<DiskEntry> entries;
+    synchronized (this) {
+      myMemoryEntries.clear();
+      myMemoryBytes = 0;
+      entries = new ArrayList<>(myDiskEntries.values());
+      myDiskEntries.clear();
+      myDiskBytes = 0;
+    }
+    entries.forEach(entry -> FileUtil.delete(entry.myFile));
+  }
+
+  public synchronized long getMemoryHitCount() {
+    return myMemoryHitCount;
+  }
+
+  public synchronized long getDiskHitCount() {
+    return myDiskHitCount;
+  }
+
+  public synchronized long getMissCount() {
+    return myMissCount;
+  }
+
+  /**
+   * @return the fraction of lookups answered from either tier, or 0 if there haven't been any.
+   */
+  public synchronized double getHitRate() {
+    long total = myMemoryHitCount + myDiskHitCount + myMissCount;
+    return total == 0 ? 0 : (double)(myMemoryHitCount + myDiskHitCount) / total;
+  }
+
+  @VisibleForTesting
+  synchronized long getMemoryBytes() {
+    return myMemoryBytes;
+  }
+
+  @VisibleForTesting
+  synchronized long getDiskBytes() {
+    return myDiskBytes;
+  }
+
+  /**
+   * Writes the payload to disk, unless it is already there or doesn't fit.
+   *
+   * @return the entry of the payload on disk, or null if it isn't there
+   */
+  @Nullable
+  private DiskEntry spill(@NotNull String payloadId, @NotNull ByteString payload) {
+    synchronized (this) {
+      DiskEntry entry = myDiskEntries.get(payloadId);
+      if (entry != null || payload.size() > myDiskCapacityBytes) {
+        return entry;
+      }
+    }
+
+    File file = null;
+    try {
+      file = createFile("");
+      try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file))) {
+        payload.writeTo(output);
+      }
+    }
+    catch (IOException e) {
+      getLogger().warn("Failed to spill network payload " + payloadId + " to disk", e);
+      if (file != null) {
+        FileUtil.delete(file);
+      }
+      return null;
+    }
+    return add(payloadId, new DiskEntry(file, payload.size()));
+  }
+
+  /**
+   * Adds a file that was just written to the disk tier, and deletes the least recently used files that no longer fit.
+   *
+   * @return the entry cached for the key, which is an existing one if the same payload was written meanwhile, or null if it doesn't fit
+   */
+  @Nullable
+  private DiskEntry add(@NotNull String key, @NotNull DiskEntry entry) {
+    List<File> deleted = new ArrayList<>();
+    DiskEntry cached;
+    synchronized (this) {
+      cached = myDiskEntries.get(key);
+      if (cached != null) {
+        deleted.add(entry.myFile);
+      }
+      else if (entry.mySize > myDiskCapacityBytes) {
+        return null;
+      }
+      else {
+        cached = entry;
+        myDiskEntries.put(key, entry);
+        myDiskBytes += entry.mySize;
+
+        Iterator<DiskEntry> it = myDiskEntries.values().iterator();
+        while (myDiskBytes > myDiskCapacityBytes && it.hasNext()) {
+          DiskEntry eldest = it.next();
+          it.remove();
+          myDiskBytes -= eldest.mySize;
+          deleted.add(eldest.myFile);
+        }
+      }
+    }
+    deleted.forEach(FileUtil::delete);
+    return cached;
+  }
+
+  private void remove(@NotNull String key, @NotNull DiskEntry entry) {
+    synchronized (this) {
+      if (!myDiskEntries.remove(key, entry)) {
+        return;
+      }
+      myDiskBytes -= entry.mySize;
+    }
+    FileUtil.delete(entry.myFile);
+  }
+
+  @NotNull
+  private File createFile(@NotNull String suffix) throws IOException {
+    File directory;
+    int index;
+    synchronized (this) {
+      if (myDirectory == null) {
+        myDirectory = FileUtil.createTempDirectory("network-payloads", null, true);
+      }
+      directory = myDirectory;
+      index = myNextFileIndex++;
+    }
+    return new File(directory, "payload" + index + suffix);
+  }
+
+  /**
+   * Writes a payload to a file of the cache.
+   */
+  public interface PayloadWriter {
+    void writeTo(@NotNull OutputStream output) throws IOException;
+  }
+
+  private static final class DiskEntry {
+    @NotNull private final File myFile;
+    private final long mySize;
+
+    private DiskEntry(@NotNull File file, long size) {
+      myFile = file;
+      mySize = size;
+    }
+  }
+}
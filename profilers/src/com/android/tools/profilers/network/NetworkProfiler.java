@@ -25,10 +25,20 @@ import com.android.tools.profilers.StudioProfilers;
 import org.jetbrains.annotations.NotNull;
 
 public class NetworkProfiler extends StudioProfiler {
+  /**
+   * The payloads looked at in the network stage, kept until profiling stops rather than for as long as the stage is shown.
+   */
+  @NotNull private final NetworkPayloadCache myPayloadCache = new NetworkPayloadCache();
+
   public NetworkProfiler(@NotNull StudioProfilers profilers) {
     super(profilers);
   }
 
+  @NotNull
+  public NetworkPayloadCache getPayloadCache() {
+    return myPayloadCache;
+  }
+
   @Override
   public ProfilerMonitor newMonitor() {
     return new NetworkMonitor(myProfilers);
@@ -48,5 +58,6 @@ public class NetworkProfiler extends StudioProfiler {
       NetworkStopRequest.newBuilder()
         .setProcessId(process.getPid())
         .setSession(session).build());
+    myPayloadCache.clear();
   }
 }
@@ -33,7 +33,6 @@ import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.Objects;
@@ -56,10 +55,12 @@ public class NetworkProfilerStage extends Stage implements CodeNavigator.Listene
 
   StateChartModel<NetworkRadioDataSeries.RadioState> myRadioState;
 
+  private final NetworkPayloadCache myPayloadCache = getPayloadCache(getStudioProfilers());
+
   private final NetworkConnectionsModel myConnectionsModel =
     new RpcNetworkConnectionsModel(getStudioProfilers().getClient().getProfilerClient(),
                                    getStudioProfilers().getClient().getNetworkClient(), getStudioProfilers().getProcessId(),
-                                   getStudioProfilers().getSession());
+                                   getStudioProfilers().getSession(), myPayloadCache);
 
   private final DetailedNetworkUsage myDetailedNetworkUsage;
   private final NetworkStageLegends myLegends;
@@ -112,7 +113,7 @@ public class NetworkProfilerStage extends Stage implements CodeNavigator.Listene
       }
     });
 
-    myHttpDataFetcher = new HttpDataFetcher(myConnectionsModel, timeline.getSelectionRange());
+    myHttpDataFetcher = new HttpDataFetcher(profilers.getDataFetchScheduler(), myConnectionsModel, timeline.getSelectionRange());
   }
 
   @NotNull
@@ -135,6 +136,23 @@ public class NetworkProfilerStage extends Stage implements CodeNavigator.Listene
     return myHttpDataFetcher;
   }
 
+  @NotNull
+  public NetworkPayloadCache getPayloadCache() {
+    return myPayloadCache;
+  }
+
+  /**
+   * The payloads are cached by the {@link NetworkProfiler}, which lives as long as the session, so they survive leaving the stage.
+   */
+  @NotNull
+  private static NetworkPayloadCache getPayloadCache(@NotNull StudioProfilers profilers) {
+    return profilers.getProfilers().stream()
+      .filter(NetworkProfiler.class::isInstance)
+      .map(profiler -> ((NetworkProfiler)profiler).getPayloadCache())
+      .findFirst()
+      .orElseGet(NetworkPayloadCache::new);
+  }
+
   /**
    * Sets the active connection, or clears the previously selected active connection if given data is null.
    */
@@ -143,10 +161,13 @@ public class NetworkProfilerStage extends Stage implements CodeNavigator.Listene
       return false;
     }
 
-    if (data != null && StringUtil.isNotEmpty(data.getResponsePayloadId()) && data.getResponsePayloadFile() == null) {
-      ByteString payload = getConnectionsModel().requestResponsePayload(data);
+    if (data != null && StringUtil.isNotEmpty(data.getResponsePayloadId()) && !hasPayloadFile(data)) {
       try {
-        File file = getConnectionPayload(payload, data);
+        File file = myPayloadCache.getFile(getShownPayloadKey(data));
+        if (file == null) {
+          ByteString payload = getConnectionsModel().requestResponsePayload(data);
+          file = getConnectionPayload(payload, data);
+        }
         data.setResponsePayloadFile(file);
       }
       catch (IOException e) {
@@ -160,20 +181,49 @@ public class NetworkProfilerStage extends Stage implements CodeNavigator.Listene
     return true;
   }
 
+  private static boolean hasPayloadFile(@NotNull HttpData data) {
+    // The file is owned by the payload cache, which deletes it once it is evicted.
+    File file = data.getResponsePayloadFile();
+    return file != null && file.exists();
+  }
+
+  /**
+   * The payload is cached as it is shown, e.g. unzipped and with the extension of its content type, under a key of its own.
+   */
+  @NotNull
+  private static String getShownPayloadKey(@NotNull HttpData data) {
+    return data.getResponsePayloadId() + getPayloadFileSuffix(data);
+  }
+
+  @NotNull
+  private static String getPayloadFileSuffix(@NotNull HttpData data) {
+    String extension = (data.getContentType() == null) ? null : data.getContentType().guessFileExtension();
+    return StringUtil.notNullize(extension);
+  }
+
+  /**
+   * Writes the payload to a file of the payload cache, in the form it is shown in, or returns the file already cached for it.
+   */
   @VisibleForTesting
   File getConnectionPayload(@NotNull ByteString payload, @NotNull HttpData data) throws IOException {
-    String extension = (data.getContentType() == null) ? null : data.getContentType().guessFileExtension();
-    File file = FileUtil.createTempFile(data.getResponsePayloadId(), StringUtil.notNullize(extension), true);
+    String key = getShownPayloadKey(data);
+    String suffix = getPayloadFileSuffix(data);
 
-    byte[] bytes = payload.toByteArray();
+    // The payload is streamed to the file rather than copied into a byte array first, as it can be large.
+    File file = null;
     String contentEncoding = data.getResponseField("content-encoding");
     if (contentEncoding != null && contentEncoding.toLowerCase().contains("gzip")) {
-      try (GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
-        bytes = FileUtil.loadBytes(inputStream);
+      try {
+        file = myPayloadCache.putFile(key, suffix, output -> {
+          try (GZIPInputStream inputStream = new GZIPInputStream(payload.newInput())) {
+            FileUtil.copy(inputStream, output);
+          }
+        });
       } catch (IOException ignored) {}
     }
-
-    FileUtil.writeToFile(file, bytes);
+    if (file == null) {
+      file = myPayloadCache.putFile(key, suffix, payload::writeTo);
+    }
     // We don't expect the following call to fail but don't care if it does
     //noinspection ResultOfMethodCallIgnored
     file.setReadOnly();
@@ -219,6 +269,7 @@ public class NetworkProfilerStage extends Stage implements CodeNavigator.Listene
 
     getStudioProfilers().getUpdater().unregister(myRadioState);
     getStudioProfilers().getUpdater().unregister(myDetailedNetworkUsage);
+    AsyncRangedContinuousSeries.logCacheStatistics(getLogger(), myDetailedNetworkUsage);
     getStudioProfilers().getUpdater().unregister(myTrafficAxis);
     getStudioProfilers().getUpdater().unregister(myConnectionsAxis);
     getStudioProfilers().getUpdater().unregister(myLegends);
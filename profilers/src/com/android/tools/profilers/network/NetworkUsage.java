@@ -15,10 +15,14 @@
  */
 package com.android.tools.profilers.network;
 
+import com.android.tools.adtui.model.CachedLongDataSeries;
+import com.android.tools.adtui.model.DataSeries;
 import com.android.tools.adtui.model.LineChartModel;
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.RangedContinuousSeries;
 import com.android.tools.profiler.proto.NetworkServiceGrpc;
+import com.android.tools.profilers.AsyncRangedContinuousSeries;
+import com.android.tools.profilers.ProfilerTimeline;
 import com.android.tools.profilers.StudioProfilers;
 import org.jetbrains.annotations.NotNull;
 
@@ -35,23 +39,26 @@ public class NetworkUsage extends LineChartModel {
     // We use 4 as a reasonable initial default for number of connections.
     myTrafficRange = new Range(0, 4);
 
-    myRxSeries = new RangedContinuousSeries(NetworkTrafficDataSeries.Type.BYTES_RECEIVED.getLabel(false),
-                                            viewRange,
-                                            myTrafficRange,
-                                            createSeries(profilers, NetworkTrafficDataSeries.Type.BYTES_RECEIVED));
-    myTxSeries = new RangedContinuousSeries(NetworkTrafficDataSeries.Type.BYTES_SENT.getLabel(false),
-                                            viewRange,
-                                            myTrafficRange,
-                                            createSeries(profilers, NetworkTrafficDataSeries.Type.BYTES_SENT));
+    myRxSeries = new AsyncRangedContinuousSeries(NetworkTrafficDataSeries.Type.BYTES_RECEIVED.getLabel(false),
+                                                 viewRange,
+                                                 myTrafficRange,
+                                                 createSeries(profilers, NetworkTrafficDataSeries.Type.BYTES_RECEIVED),
+                                                 profilers.getDataFetchScheduler());
+    myTxSeries = new AsyncRangedContinuousSeries(NetworkTrafficDataSeries.Type.BYTES_SENT.getLabel(false),
+                                                 viewRange,
+                                                 myTrafficRange,
+                                                 createSeries(profilers, NetworkTrafficDataSeries.Type.BYTES_SENT),
+                                                 profilers.getDataFetchScheduler());
 
     add(myRxSeries);
     add(myTxSeries);
   }
 
   @NotNull
-  public NetworkTrafficDataSeries createSeries(@NotNull StudioProfilers profilers, @NotNull NetworkTrafficDataSeries.Type trafficType) {
+  public DataSeries<Long> createSeries(@NotNull StudioProfilers profilers, @NotNull NetworkTrafficDataSeries.Type trafficType) {
     NetworkServiceGrpc.NetworkServiceBlockingStub client = profilers.getClient().getNetworkClient();
-    return new NetworkTrafficDataSeries(client, profilers.getProcessId(), profilers.getSession(), trafficType);
+    return new CachedLongDataSeries(new NetworkTrafficDataSeries(client, profilers.getProcessId(), profilers.getSession(), trafficType),
+                                    ProfilerTimeline.DATA_CACHE_RETENTION_US);
   }
 
   @NotNull
@@ -37,13 +37,22 @@ public class RpcNetworkConnectionsModel implements NetworkConnectionsModel {
   private final int myPid;
   private final Common.Session mySession;
 
+  @NotNull private final NetworkPayloadCache myPayloadCache;
+
   public RpcNetworkConnectionsModel(@NotNull ProfilerServiceGrpc.ProfilerServiceBlockingStub profilerService,
                                     @NotNull NetworkServiceGrpc.NetworkServiceBlockingStub networkService,
                                     int pid, Common.Session session) {
+    this(profilerService, networkService, pid, session, new NetworkPayloadCache());
+  }
+
+  public RpcNetworkConnectionsModel(@NotNull ProfilerServiceGrpc.ProfilerServiceBlockingStub profilerService,
+                                    @NotNull NetworkServiceGrpc.NetworkServiceBlockingStub networkService,
+                                    int pid, Common.Session session, @NotNull NetworkPayloadCache payloadCache) {
     myProfilerService = profilerService;
     myNetworkService = networkService;
     myPid = pid;
     mySession = session;
+    myPayloadCache = payloadCache;
   }
 
   @NotNull
@@ -104,16 +113,23 @@ public class RpcNetworkConnectionsModel implements NetworkConnectionsModel {
   @NotNull
   @Override
   public ByteString requestResponsePayload(@NotNull HttpData data) {
-    if (StringUtil.isEmpty(data.getResponsePayloadId())) {
+    String payloadId = data.getResponsePayloadId();
+    if (StringUtil.isEmpty(payloadId)) {
       return ByteString.EMPTY;
     }
 
+    ByteString cached = myPayloadCache.get(payloadId);
+    if (cached != null) {
+      return cached;
+    }
+
     Profiler.BytesRequest request = Profiler.BytesRequest.newBuilder()
-      .setId(data.getResponsePayloadId())
+      .setId(payloadId)
       .setSession(mySession)
       .build();
 
     Profiler.BytesResponse response = myProfilerService.getBytes(request);
+    myPayloadCache.put(payloadId, response.getContents());
     return response.getContents();
   }
 
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers;
+
+import com.android.tools.adtui.model.*;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class AsyncRangedContinuousSeriesTest {
+  private BufferOnlyDataSeries myData;
+  private AsyncRangedContinuousSeries mySeries;
+
+  @Before
+  public void setUp() {
+    LongDataSeries data = new LongDataSeries();
+    for (long x = 0; x <= 100; x += 10) {
+      data.add(x, x / 10);
+    }
+    // With direct executors the fetch completes, and is published, before the request returns.
+    DataFetchScheduler scheduler = new DataFetchScheduler(Runnable::run, Runnable::run);
+    myData = new BufferOnlyDataSeries(data);
+    mySeries = new AsyncRangedContinuousSeries("test", new Range(20, 50), new Range(), myData, scheduler);
+  }
+
+  @Test
+  public void testBufferIsFilledWithoutListingTheSeries() {
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    mySeries.getSeries(buffer);
+    assertThat(buffer.size()).isEqualTo(4);
+    assertThat(buffer.getX(0)).isEqualTo(20L);
+    assertThat(buffer.getY(3)).isEqualTo(5L);
+
+    mySeries.getSeriesFrom(buffer, 35);
+    assertThat(buffer.size()).isEqualTo(2);
+    assertThat(buffer.getX(0)).isEqualTo(40L);
+  }
+
+  @Test
+  public void testListMatchesBuffer() {
+    List<SeriesData<Long>> series = mySeries.getSeries();
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    mySeries.getSeries(buffer);
+    assertThat(series).hasSize(buffer.size());
+    for (int i = 0; i < series.size(); i++) {
+      assertThat(series.get(i).x).isEqualTo(buffer.getX(i));
+      assertThat(series.get(i).value).isEqualTo(buffer.getY(i));
+    }
+  }
+
+  @Test
+  public void testSummaryIsComputedByTheFetch() {
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    // 3 pixels for 30 units, so each bucket is 10 units wide.
+    mySeries.getSeries(buffer, 3);
+    assertThat(myData.mySummaryResolutions).containsExactly(10L);
+    assertThat(buffer.size()).isEqualTo(4);
+
+    mySeries.getSeries(buffer);
+    assertThat(buffer.size()).isEqualTo(4);
+  }
+
+  /**
+   * Fails if the points are read as a list, so that the tests fail unless the series is read through {@link LongDataSource}.
+   */
+  private static final class BufferOnlyDataSeries implements DataSeries<Long>, LongDataSource {
+    @NotNull private final LongDataSeries myData;
+    @NotNull private final List<Long> mySummaryResolutions = new ArrayList<>();
+
+    private BufferOnlyDataSeries(@NotNull LongDataSeries data) {
+      myData = data;
+    }
+
+    @Override
+    public List<SeriesData<Long>> getDataForXRange(Range xRange) {
+      throw new AssertionError("The series should be read into a buffer");
+    }
+
+    @Override
+    public void getDataForXRange(@NotNull Range xRange, @NotNull LongSeriesBuffer buffer) {
+      myData.getDataForXRange(xRange, buffer);
+    }
+
+    @Override
+    public void getDataForXRange(@NotNull Range xRange, long resolution, @NotNull LongSeriesBuffer buffer) {
+      mySummaryResolutions.add(resolution);
+      LongDataSource.super.getDataForXRange(xRange, resolution, buffer);
+    }
+  }
+}
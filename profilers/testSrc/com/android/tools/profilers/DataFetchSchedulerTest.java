@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers;
+
+import com.android.tools.adtui.model.Range;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class DataFetchSchedulerTest {
+  private final QueuedExecutor myMainExecutor = new QueuedExecutor();
+  private final QueuedExecutor myPoolExecutor = new QueuedExecutor();
+  private DataFetchScheduler myScheduler;
+  private List<Range> myFetches;
+  private List<String> myResults;
+
+  @Before
+  public void setUp() {
+    myScheduler = new DataFetchScheduler(myMainExecutor, myPoolExecutor, 2);
+    myFetches = new ArrayList<>();
+    myResults = new ArrayList<>();
+  }
+
+  @Test
+  public void testRequestsOfTheSameFrameAreCoalesced() {
+    Object owner = new Object();
+    request(owner, 0, 10);
+    request(owner, 0, 20);
+    request(owner, 0, 30);
+    assertThat(myScheduler.getPendingCount()).isEqualTo(1);
+
+    runAll();
+    assertThat(myFetches).hasSize(1);
+    assertThat(myFetches.get(0).getMax()).isWithin(0).of(30);
+    assertThat(myResults).containsExactly("0.0-30.0");
+  }
+
+  @Test
+  public void testRequestForTheRangeInFlightIsDropped() {
+    Object owner = new Object();
+    request(owner, 0, 10);
+    myMainExecutor.runAll();
+    assertThat(myScheduler.getRunningCount()).isEqualTo(1);
+
+    request(owner, 0, 10);
+    assertThat(myScheduler.getPendingCount()).isEqualTo(0);
+    runAll();
+    assertThat(myFetches).hasSize(1);
+    assertThat(myResults).containsExactly("0.0-10.0");
+  }
+
+  @Test
+  public void testResultOfTheFetchInFlightIsPublished() {
+    Object owner = new Object();
+    request(owner, 0, 10);
+    myMainExecutor.runAll();
+
+    // A newer range waits for the fetch in flight, whose result is still newer than the one shown.
+    request(owner, 0, 20);
+    myMainExecutor.runAll();
+    assertThat(myScheduler.getRunningCount()).isEqualTo(1);
+    assertThat(myScheduler.getPendingCount()).isEqualTo(1);
+
+    runAll();
+    assertThat(myFetches).hasSize(2);
+    assertThat(myResults).containsExactly("0.0-10.0", "0.0-20.0").inOrder();
+  }
+
+  @Test
+  public void testRangeChangingEveryFrameKeepsPublishing() {
+    Object owner = new Object();
+    // The range moves on every frame, while each fetch takes longer than a frame to complete.
+    for (int frame = 1; frame <= 5; frame++) {
+      request(owner, frame, frame + 10);
+      myMainExecutor.runAll();
+      myPoolExecutor.runAll();
+    }
+    assertThat(myResults).hasSize(4);
+    assertThat(myScheduler.getRunningCount()).isEqualTo(1);
+
+    runAll();
+    assertThat(myResults).containsExactly("1.0-11.0", "2.0-12.0", "3.0-13.0", "4.0-14.0", "5.0-15.0").inOrder();
+  }
+
+  @Test
+  public void testConcurrentFetchesAreBounded() {
+    Object owner1 = new Object();
+    Object owner2 = new Object();
+    Object owner3 = new Object();
+    request(owner1, 0, 10);
+    request(owner2, 0, 10);
+    request(owner3, 0, 10);
+    myMainExecutor.runAll();
+    assertThat(myScheduler.getRunningCount()).isEqualTo(2);
+    assertThat(myScheduler.getPendingCount()).isEqualTo(1);
+
+    runAll();
+    assertThat(myFetches).hasSize(3);
+    assertThat(myResults).hasSize(3);
+    assertThat(myScheduler.getRunningCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testCancel() {
+    Object owner = new Object();
+    request(owner, 0, 10);
+    myMainExecutor.runAll();
+    myScheduler.cancel(owner);
+
+    runAll();
+    assertThat(myFetches).hasSize(1);
+    assertThat(myResults).isEmpty();
+
+    // Requests made after the cancellation are served again.
+    request(owner, 0, 10);
+    runAll();
+    assertThat(myResults).containsExactly("0.0-10.0");
+  }
+
+  private void request(Object owner, double min, double max) {
+    myScheduler.request(owner, new Range(min, max), range -> {
+      myFetches.add(range);
+      return range.getMin() + "-" + range.getMax();
+    }, myResults::add);
+  }
+
+  private void runAll() {
+    while (!myMainExecutor.isEmpty() || !myPoolExecutor.isEmpty()) {
+      myMainExecutor.runAll();
+      myPoolExecutor.runAll();
+    }
+  }
+
+  private static final class QueuedExecutor implements Executor {
+    private final Queue<Runnable> myQueue = new ArrayDeque<>();
+
+    @Override
+    public void execute(Runnable command) {
+      myQueue.add(command);
+    }
+
+    void runAll() {
+      while (!myQueue.isEmpty()) {
+        myQueue.poll().run();
+      }
+    }
+
+    boolean isEmpty() {
+      return myQueue.isEmpty();
+    }
+  }
+}
@@ -38,7 +38,7 @@ public class BottomUpTreeModelTest {
     DefaultMutableTreeNode root = (DefaultMutableTreeNode)myModel.getRoot();
     checkTraverseOrder(root, " +Root +main - +A +main - +C - - +B +A - +main - - +C +main - - -");
     myModel.expand(findNodeOnPath(root, "Root", "B"));
-    checkTraverseOrder(root, " +Root +main - +A +main - +C - - +B +A +C - +main - - +main - - +C +main - - -");
+    checkTraverseOrder(root, " +Root +main - +A +main - +C - - +B +A +main - +C - - +main - - +C +main - - -");
   }
 
   @Test
@@ -46,9 +46,9 @@ public class BottomUpTreeModelTest {
     DefaultMutableTreeNode root = (DefaultMutableTreeNode)myModel.getRoot();
     checkTraverseOrder(root, " +Root +main - +A +main - +C - - +B +A - +main - - +C +main - - -");
     myModel.expand(findNodeOnPath(root, "Root", "B"));
-    checkTraverseOrder(root, " +Root +main - +A +main - +C - - +B +A +C - +main - - +main - - +C +main - - -");
+    checkTraverseOrder(root, " +Root +main - +A +main - +C - - +B +A +main - +C - - +main - - +C +main - - -");
     myModel.expand(findNodeOnPath(root, "Root", "B"));
-    checkTraverseOrder(root, " +Root +main - +A +main - +C - - +B +A +C - +main - - +main - - +C +main - - -");
+    checkTraverseOrder(root, " +Root +main - +A +main - +C - - +B +A +main - +C - - +main - - +C +main - - -");
   }
 
   @Test
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import com.android.tools.perflib.vmtrace.ClockType;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompactCaptureTreeTest {
+
+  @Test
+  public void copiesStructureAndTimes() {
+    // root -> (a -> (c, d), b)
+    CaptureNode root = createNode("root", 0, 100, 0);
+    CaptureNode a = createNode("a", 10, 50, 1);
+    CaptureNode b = createNode("b", 60, 90, 1);
+    CaptureNode c = createNode("c", 20, 30, 2);
+    CaptureNode d = createNode("d", 30, 40, 2);
+    root.addChild(a);
+    root.addChild(b);
+    a.addChild(c);
+    a.addChild(d);
+
+    CompactCaptureTree tree = CompactCaptureTree.of(root);
+    assertEquals(5, tree.size());
+    assertEquals(ClockType.GLOBAL, tree.getClockType());
+
+    assertSameTree(root, tree.getRoot());
+    assertNull(tree.getRoot().getParent());
+    CaptureNodeModel compactD = tree.getRoot().getChildAt(0).getChildAt(1);
+    assertEquals("d", compactD.getData().getName());
+    assertEquals(tree.getRoot().getChildAt(0), compactD.getParent());
+    assertEquals(tree.getRoot(), compactD.getParent().getParent());
+    assertEquals("c", tree.getRoot().getFirstChild().getFirstChild().getData().getName());
+    assertEquals("b", tree.getRoot().getLastChild().getData().getName());
+  }
+
+  @Test
+  public void clockTypeIsSharedByAllNodes() {
+    CaptureNode root = createNode("root", 0, 100, 0);
+    root.setStartThread(0);
+    root.setEndThread(20);
+    CaptureNode child = createNode("child", 10, 50, 1);
+    child.setStartThread(5);
+    child.setEndThread(10);
+    root.addChild(child);
+
+    CompactCaptureTree tree = CompactCaptureTree.of(root);
+    CaptureNodeModel compactChild = tree.getRoot().getChildAt(0);
+    assertEquals(10, compactChild.getStart());
+    assertEquals(50, compactChild.getEnd());
+
+    tree.setClockType(ClockType.THREAD);
+    assertEquals(ClockType.THREAD, compactChild.getClockType());
+    assertEquals(5, compactChild.getStart());
+    assertEquals(10, compactChild.getEnd());
+    assertEquals(0.2, tree.getRoot().threadGlobalRatio(), 0.0001);
+  }
+
+  @Test
+  public void methodsAreInterned() {
+    CaptureNode root = createNode("root", 0, 100, 0);
+    for (int i = 0; i < 10; i++) {
+      // Each node gets its own model, as simpleperf does.
+      root.addChild(createNode(i % 2 == 0 ? "even" : "odd", i * 10, i * 10 + 5, 1));
+    }
+
+    CompactCaptureTree tree = CompactCaptureTree.of(root);
+    assertEquals(3, tree.getMethodCount());
+    assertSame(tree.getRoot().getChildAt(0).getData(), tree.getRoot().getChildAt(2).getData());
+    assertSame(tree.getRoot().getChildAt(1).getData(), tree.getRoot().getChildAt(3).getData());
+  }
+
+  @Test
+  public void nodesWithoutMethod() {
+    CaptureNode root = new CaptureNode();
+    root.addChild(new CaptureNode());
+    CompactCaptureTree tree = CompactCaptureTree.of(root);
+    assertNull(tree.getRoot().getData());
+    assertNull(tree.getRoot().getChildAt(0).getMethodModel());
+    assertEquals(0, tree.getMethodCount());
+  }
+
+  @Test
+  public void viewsOfTheSameNodeAreEqual() {
+    CaptureNode root = createNode("root", 0, 100, 0);
+    root.addChild(createNode("a", 10, 20, 1));
+    root.addChild(createNode("a", 30, 40, 1));
+
+    CompactCaptureTree tree = CompactCaptureTree.of(root);
+    assertEquals(tree.getNode(1), tree.getRoot().getChildAt(0));
+    assertEquals(tree.getNode(1).hashCode(), tree.getRoot().getChildAt(0).hashCode());
+    assertNotEquals(tree.getRoot().getChildAt(0), tree.getRoot().getChildAt(1));
+    assertNotEquals(tree.getRoot(), CompactCaptureTree.of(root).getRoot());
+  }
+
+  private static CaptureNode createNode(String method, long start, long end, int depth) {
+    CaptureNode node = new CaptureNode();
+    node.setMethodModel(new MethodModel(method));
+    node.setStartGlobal(start);
+    node.setEndGlobal(end);
+    node.setDepth(depth);
+    return node;
+  }
+
+  private static void assertSameTree(CaptureNodeModel expected, CaptureNodeModel actual) {
+    assertEquals(expected.getData().getId(), actual.getData().getId());
+    assertEquals(expected.getStartGlobal(), actual.getStartGlobal());
+    assertEquals(expected.getEndGlobal(), actual.getEndGlobal());
+    assertEquals(expected.getStartThread(), actual.getStartThread());
+    assertEquals(expected.getEndThread(), actual.getEndThread());
+    assertEquals(expected.getDepth(), actual.getDepth());
+    assertEquals(expected.getChildCount(), actual.getChildCount());
+    assertEquals(expected.getChildren().size(), actual.getChildren().size());
+    for (int i = 0; i < expected.getChildCount(); i++) {
+      assertSameTree(expected.getChildAt(i), actual.getChildren().get(i));
+    }
+  }
+}
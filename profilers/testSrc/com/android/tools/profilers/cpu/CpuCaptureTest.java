@@ -42,7 +42,7 @@ public class CpuCaptureTest {
 
     int main = capture.getMainThreadId();
     assertTrue(capture.containsThread(main));
-    CaptureNode mainNode = capture.getCaptureNode(main);
+    CaptureNodeModel mainNode = capture.getCaptureNode(main);
     assertNotNull(mainNode);
     assertNotNull(mainNode.getData());
     assertEquals("main", mainNode.getData().getName());
@@ -59,6 +59,31 @@ public class CpuCaptureTest {
     assertNull(capture.getCaptureNode(inexistentThreadId));
   }
 
+  @Test
+  public void captureIsShownOnceItsMainThreadIsAdded() {
+    CpuCapture capture = new CpuCapture(new Range(0, 100));
+    assertFalse(capture.addThread(new CpuThreadInfo(2, "worker"), createTree("run", 0, 50)));
+    assertTrue(capture.addThread(new CpuThreadInfo(1, CpuCapture.MAIN_THREAD_NAME), createTree("main", 0, 10)));
+    assertEquals(1, capture.getMainThreadId());
+    assertFalse(capture.isComplete());
+
+    assertFalse(capture.addThread(new CpuThreadInfo(3, "other"), createTree("other", 20, 30)));
+    assertNotNull(capture.getCaptureNode(3));
+    capture.setAllThreadsAdded();
+    assertTrue(capture.isComplete());
+    assertTrue(capture.whenComplete().isDone());
+    assertEquals(3, capture.getThreads().size());
+  }
+
+  @Test
+  public void longestThreadIsTheMainThreadWhenNoneIsNamedMain() {
+    CpuCapture capture = new CpuCapture(new Range(0, 100));
+    assertFalse(capture.addThread(new CpuThreadInfo(1, "short"), createTree("short", 0, 10)));
+    assertFalse(capture.addThread(new CpuThreadInfo(2, "long"), createTree("long", 0, 50)));
+    capture.setAllThreadsAdded();
+    assertEquals(2, capture.getMainThreadId());
+  }
+
   @Test
   public void corruptedTraceFileThrowsException() throws IOException, ExecutionException, InterruptedException {
     CpuCapture capture = null;
@@ -133,4 +158,14 @@ public class CpuCaptureTest {
       // CpuCaptureParser#traceBytesToCapture  catches the BufferUnderflowException and throw an IllegalStateException instead.
     }
   }
+
+  private static CaptureNode createTree(String name, long start, long end) {
+    CaptureNode node = new CaptureNode();
+    node.setMethodModel(new MethodModel(name));
+    node.setStartGlobal(start);
+    node.setEndGlobal(end);
+    node.setStartThread(start);
+    node.setEndThread(end);
+    return node;
+  }
 }
@@ -379,7 +379,7 @@ public class CpuProfilerStageTest extends AspectObserver {
   public void setAndSelectCaptureDifferentClockType() throws IOException, InterruptedException {
     captureSuccessfully();
     CpuCapture capture = myStage.getCapture();
-    CaptureNode captureNode = capture.getCaptureNode(capture.getMainThreadId());
+    CaptureNodeModel captureNode = capture.getCaptureNode(capture.getMainThreadId());
     assertThat(captureNode).isNotNull();
     myStage.setSelectedThread(capture.getMainThreadId());
 
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import com.android.tools.adtui.model.Range;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IntervalSumIndexTest {
+
+  @Test
+  public void emptyIndexCoversNothing() {
+    IntervalSumIndex index = new IntervalSumIndex(new long[0], new long[0]);
+    assertEquals(0, index.getIntersectionLength(new Range(0, 100)), 0);
+    assertFalse(index.intersects(new Range(0, 100)));
+  }
+
+  @Test
+  public void sumsIntersectionOfEachInterval() {
+    // [10, 20], [15, 40], [50, 60]
+    IntervalSumIndex index = new IntervalSumIndex(new long[]{50, 10, 15}, new long[]{20, 60, 40});
+    assertEquals(45, index.getIntersectionLength(new Range(0, 100)), 0);
+    assertEquals(45, index.getIntersectionLength(new Range(10, 60)), 0);
+    // Overlapping time is counted once per interval: 5 + 10.
+    assertEquals(15, index.getIntersectionLength(new Range(15, 25)), 0);
+    assertEquals(0, index.getIntersectionLength(new Range(40, 50)), 0);
+    assertEquals(5, index.getIntersectionLength(new Range(55, 70)), 0);
+    assertEquals(0, index.getIntersectionLength(new Range(70, 80)), 0);
+    assertEquals(0, index.getIntersectionLength(new Range(30, 30)), 0);
+  }
+
+  @Test
+  public void largeTimestampsDoNotOverflow() {
+    long base = 1_500_000_000_000_000L;
+    IntervalSumIndex index = new IntervalSumIndex(new long[]{base, base + 10}, new long[]{base + 20, base + 30});
+    assertEquals(30, index.getIntersectionLength(new Range(base + 5, base + 25)), 0);
+    assertEquals(40, index.getIntersectionLength(new Range(-Double.MAX_VALUE, Double.MAX_VALUE)), 0);
+  }
+
+  @Test
+  public void intersectsOpenRange() {
+    // [10, 20], [50, 60]
+    IntervalSumIndex index = new IntervalSumIndex(new long[]{10, 50}, new long[]{20, 60});
+    assertTrue(index.intersects(new Range(0, 11)));
+    assertTrue(index.intersects(new Range(19, 51)));
+    assertTrue(index.intersects(new Range(55, 56)));
+    // Touching an interval at one of its bounds doesn't count as intersecting it.
+    assertFalse(index.intersects(new Range(0, 10)));
+    assertFalse(index.intersects(new Range(20, 50)));
+    assertFalse(index.intersects(new Range(60, 70)));
+  }
+}
@@ -21,10 +21,12 @@ import org.junit.Test;
 
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.TreeNode;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class TopDownTreeModelTest {
   @Test
@@ -41,6 +43,10 @@ public class TopDownTreeModelTest {
     assertEquals(ImmutableSet.of("D", "E", "G"), getChildrenIds(getChild(root, "B")));
     assertEquals(ImmutableSet.of("F"), getChildrenIds(getChild(root, "C")));
 
+    // Only the children of expanded nodes are kept up to date
+    model.expand((DefaultMutableTreeNode)getChild(root, "B"));
+    model.expand((DefaultMutableTreeNode)getChild(root, "C"));
+
     // Test the total values
     assertEquals(    30, getTotal(root, "A"), 0);
     assertEquals( 8 + 7, getTotal(root, "A", "B"), 0);
@@ -85,6 +91,8 @@ public class TopDownTreeModelTest {
     assertEquals(ImmutableSet.of("B", "C"), getChildrenIds(root));
     assertEquals(ImmutableSet.of("E"), getChildrenIds(getChild(root, "B")));
     assertEquals(ImmutableSet.of("F"), getChildrenIds(getChild(root, "C")));
+    // "C" was removed from the tree, so it was added back collapsed
+    model.expand((DefaultMutableTreeNode)getChild(root, "C"));
 
     // Test the total values
     assertEquals(    17, getTotal(root, "A"), 0);
@@ -101,6 +109,44 @@ public class TopDownTreeModelTest {
     assertEquals(     0, getChildrenTotal(root, "A", "C", "F"), 0);
   }
 
+  @Test
+  public void onlyShownNodesAreIndexedInTheBackground() throws Exception {
+    CaptureNode tree = TopDownNodeTest.createTree();
+    TopDownNode topDown = new TopDownNode(tree);
+    List<Runnable> indexing = new ArrayList<>();
+
+    Range range = new Range(-Double.MAX_VALUE, Double.MAX_VALUE);
+    CpuTreeModel model = new TopDownTreeModel(range, topDown, indexing::add);
+    TreeNode root = (TreeNode)model.getRoot();
+    DefaultMutableTreeNode b = (DefaultMutableTreeNode)getChild(root, "B");
+    TopDownNode bData = (TopDownNode)b.getUserObject();
+    TopDownNode dData = (TopDownNode)((DefaultMutableTreeNode)getChild(b, "D")).getUserObject();
+
+    // The root and its children are shown, the children of "B" are not
+    assertTrue(topDown.isIndexed());
+    assertTrue(bData.isIndexed());
+    assertFalse(dData.isIndexed());
+    // The totals are right before the indexes are built
+    assertEquals(8 + 7, getTotal(root, "A", "B"), 0);
+    int shownIndexing = indexing.size();
+    assertTrue(shownIndexing > 0);
+
+    model.expand(b);
+    assertTrue(dData.isIndexed());
+    assertEquals(2, getTotal(root, "A", "B", "D"), 0);
+    assertTrue(indexing.size() > shownIndexing);
+
+    // Collapsing "B" cancels indexing its children, which were not built yet
+    model.collapse(b);
+    assertFalse(dData.isIndexed());
+    indexing.forEach(Runnable::run);
+    assertNull(dData.getIndexes());
+    assertNotNull(bData.getIndexes());
+
+    range.set(0, 10);
+    assertEquals(8, getTotal(root, "A", "B"), 0);
+  }
+
   private static double getTotal(TreeNode node, String id, String... ids) {
     node = getNode(node, id, ids);
     return getTotal(node);
@@ -15,6 +15,8 @@
  */
 package com.android.tools.profilers.cpu.art;
 
+import com.android.tools.perflib.vmtrace.MethodInfo;
+import com.android.tools.perflib.vmtrace.TraceAction;
 import com.android.tools.perflib.vmtrace.VmTraceParser;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.CpuProfilerTestUtils;
@@ -97,6 +99,45 @@ public class ArtTraceHandlerTest {
     }
   }
 
+  @Test
+  public void testEachThreadGetsItsOwnTree() {
+    ArtTraceHandler handler = new ArtTraceHandler();
+    handler.setStartTimeUs(1000);
+    handler.addMethod(1, new MethodInfo(1, "Test", "outer", "()V", "Test.java", 1));
+    handler.addMethod(2, new MethodInfo(2, "Test", "inner", "()V", "Test.java", 2));
+
+    int threadCount = 32;
+    for (int thread = 1; thread <= threadCount; thread++) {
+      handler.addThread(thread, "Thread " + thread);
+      // Each thread calls outer() -> inner() as many times as its id.
+      for (int i = 0; i < thread; i++) {
+        int time = i * 10;
+        handler.addMethodAction(thread, 1, TraceAction.METHOD_ENTER, time, time);
+        handler.addMethodAction(thread, 2, TraceAction.METHOD_ENTER, time + 1, time + 1);
+        handler.addMethodAction(thread, 2, TraceAction.METHOD_EXIT, time + 2, time + 2);
+        handler.addMethodAction(thread, 1, TraceAction.METHOD_EXIT, time + 3, time + 3);
+      }
+    }
+
+    Map<CpuThreadInfo, CaptureNode> trees = handler.getThreadsGraph();
+    assertEquals(threadCount, trees.size());
+    for (Map.Entry<CpuThreadInfo, CaptureNode> entry : trees.entrySet()) {
+      CaptureNode root = entry.getValue();
+      assertEquals("Thread " + entry.getKey().getId(), root.getMethodModel().getName());
+      assertEquals(entry.getKey().getId(), root.getChildCount());
+      for (CaptureNode outer : root.getChildren()) {
+        assertEquals("outer", outer.getMethodModel().getName());
+        assertEquals(1, outer.getDepth());
+        expectedChildrenIds(outer, "Test.inner()V");
+        CaptureNode inner = outer.getFirstChild();
+        assertEquals(2, inner.getDepth());
+        assertEquals(outer.getStartGlobal() + 1, inner.getStartGlobal());
+        assertEquals(outer.getEndGlobal() - 1, inner.getEndGlobal());
+      }
+      assertEquals(1000, root.getFirstChild().getStartGlobal());
+    }
+  }
+
   private static CaptureNode parseCaptureNode() throws IOException {
     ArtTraceHandler handler = new ArtTraceHandler();
     VmTraceParser parser = new VmTraceParser(CpuProfilerTestUtils.getTraceFile("basic.trace"), handler);
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.android.tools.profilers.memory.MemoryProfilerConfiguration.ClassGrouping.ARRANGE_BY_PACKAGE;
+import static org.junit.Assert.*;
+
+public class ClassifierSetTest {
+  @Test
+  public void parallelPartitionMatchesSequentialPartition() {
+    FakeCaptureObject capture = new FakeCaptureObject.Builder().build();
+    List<InstanceObject> instances = new ArrayList<>();
+    for (int i = 0; i < ClassifierSet.PARALLEL_PARTITION_THRESHOLD * 3; i++) {
+      instances.add(new FakeInstanceObject.Builder(capture, "com.pkg" + (i % 3) + ".sub" + (i % 5) + ".Class" + (i % 11))
+                      .setName("instance" + i).setShallowSize(i % 7).build());
+    }
+
+    HeapSet heapSet = new HeapSet(capture, "default", 0);
+    heapSet.setClassGrouping(ARRANGE_BY_PACKAGE);
+    instances.forEach(heapSet::addInstanceObject);
+    assertEquals(instances.size(), heapSet.getInstancesCount());
+
+    ClassifierSet.Classifier classifier = PackageSet.createDefaultClassifier(capture);
+    classifier.partition(new LinkedHashSet<>(instances));
+    assertSameClassifierSets(classifier.getClassifierSets(), heapSet.getChildrenClassifierSets());
+    assertEquals(instances.size(), heapSet.getInstancesCount());
+  }
+
+  @Test
+  public void isLeafDoesNotPartition() {
+    FakeCaptureObject capture = new FakeCaptureObject.Builder().build();
+    HeapSet heapSet = new HeapSet(capture, "default", 0);
+    assertTrue(heapSet.isLeaf());
+
+    heapSet.addInstanceObject(new FakeInstanceObject.Builder(capture, "com.pkg.Class").build());
+    assertFalse(heapSet.isLeaf());
+    assertNull(heapSet.myClassifier);
+
+    ClassifierSet classSet = heapSet.getChildrenClassifierSets().get(0);
+    assertTrue(classSet instanceof ClassSet);
+    assertTrue(classSet.isLeaf());
+  }
+
+  private static void assertSameClassifierSets(@NotNull List<ClassifierSet> expected, @NotNull List<ClassifierSet> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      ClassifierSet expectedSet = expected.get(i);
+      ClassifierSet actualSet = actual.get(i);
+      assertEquals(expectedSet.getName(), actualSet.getName());
+      assertEquals(expectedSet.getInstancesCount(), actualSet.getInstancesCount());
+      assertEquals(expectedSet.getAllocatedCount(), actualSet.getAllocatedCount());
+      assertEquals(expectedSet.getTotalShallowSize(), actualSet.getTotalShallowSize());
+      assertEquals(expectedSet.getInstancesStream().collect(Collectors.toList()),
+                   actualSet.getInstancesStream().collect(Collectors.toList()));
+      assertSameClassifierSets(expectedSet.getChildrenClassifierSets(), actualSet.getChildrenClassifierSets());
+    }
+  }
+}
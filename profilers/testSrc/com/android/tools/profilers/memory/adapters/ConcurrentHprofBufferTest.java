@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentHprofBufferTest {
+  // Small shards, so the test data spans several of them.
+  private static final int SHARD_SIZE = 256;
+  private static final int INT_COUNT = 3 * SHARD_SIZE / Integer.BYTES;
+
+  private File myFile;
+
+  @Before
+  public void setUp() throws Exception {
+    myFile = File.createTempFile("ConcurrentHprofBufferTest", "hprof");
+    // A single byte first, so that the ints are not aligned with the shards.
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(myFile))) {
+      out.writeByte(7);
+      for (int i = 0; i < INT_COUNT; i++) {
+        out.writeInt(i * 3);
+      }
+    }
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    myFile.delete();
+  }
+
+  @Test
+  public void threadsReadFromTheirOwnPosition() throws Exception {
+    ConcurrentHprofBuffer buffer = new ConcurrentHprofBuffer(myFile, SHARD_SIZE);
+    buffer.setPosition(1 + 10 * Integer.BYTES);
+    AtomicBoolean threadReadAll = new AtomicBoolean(true);
+    Thread thread = new Thread(() -> {
+      // The position of the other thread doesn't carry over.
+      threadReadAll.set(buffer.position() == 0);
+      buffer.setPosition(1);
+      for (int i = 0; i < INT_COUNT; i++) {
+        if (buffer.readInt() != i * 3) {
+          threadReadAll.set(false);
+        }
+      }
+    });
+    buffer.readByte();
+    thread.start();
+    thread.join();
+    assertTrue(threadReadAll.get());
+    assertEquals(2 + 10 * Integer.BYTES, buffer.position());
+    assertEquals(0, buffer.readByte());
+
+    byte[] bytes = new byte[INT_COUNT * Integer.BYTES];
+    buffer.setPosition(0);
+    buffer.readSubSequence(bytes, 1, bytes.length);
+    assertFalse(buffer.hasRemaining());
+    assertEquals(3, bytes[7]);
+    buffer.dispose();
+  }
+
+  @Test
+  public void retainedBufferIsReleasedLast() throws Exception {
+    ConcurrentHprofBuffer buffer = new ConcurrentHprofBuffer(myFile, SHARD_SIZE);
+    assertTrue(buffer.retain());
+    buffer.dispose();
+    assertFalse(buffer.isReleased());
+    assertFalse(buffer.retain());
+
+    // Reading a disposed buffer fails, even for a thread that retained it.
+    try {
+      buffer.readInt();
+      fail();
+    }
+    catch (CancellationException expected) {
+    }
+    assertTrue(buffer.release());
+    assertTrue(buffer.isReleased());
+  }
+}
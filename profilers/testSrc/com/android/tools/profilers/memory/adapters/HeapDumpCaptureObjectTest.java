@@ -61,7 +61,7 @@ public class HeapDumpCaptureObjectTest {
       MemoryProfiler.HeapDumpInfo.newBuilder().setStartTime(startTimeNs).setEndTime(endTimeNs).build();
     HeapDumpCaptureObject capture =
       new HeapDumpCaptureObject(myGrpcChannel.getClient().getMemoryClient(), ProfilersTestData.SESSION_DATA, appId,
-                                dumpInfo, null, myRelativeTimeConverter, myIdeProfilerServices.getFeatureTracker());
+                                dumpInfo, null, myRelativeTimeConverter, myIdeProfilerServices.getFeatureTracker(), null);
 
     // Verify values associated with the HeapDumpInfo object.
     assertEquals(startTimeNs, capture.getStartTimeNs());
@@ -127,12 +127,47 @@ public class HeapDumpCaptureObjectTest {
     assertEquals(reference1.getReferenceInstance(), instance0);
   }
 
+  @Test
+  public void testRetainedSizesComputedAfterLoading() throws Exception {
+    MemoryProfiler.HeapDumpInfo dumpInfo = MemoryProfiler.HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
+    HeapDumpCaptureObject capture =
+      new HeapDumpCaptureObject(myGrpcChannel.getClient().getMemoryClient(), ProfilersTestData.SESSION_DATA, -1, dumpInfo, null,
+                                myRelativeTimeConverter, myIdeProfilerServices.getFeatureTracker(), null);
+
+    SnapshotBuilder snapshotBuilder = new SnapshotBuilder(2, 0, 0)
+      .addReferences(1, 2)
+      .addRoot(1);
+    myService.setExplicitSnapshotBuffer(snapshotBuilder.getByteBuffer());
+    myService.setExplicitDumpDataStatus(MemoryProfiler.DumpDataResponse.Status.SUCCESS);
+
+    // With a joiner, the heaps are populated as soon as the dump is parsed, and retained sizes are published through the joiner later on.
+    final CountDownLatch retainedSizesLatch = new CountDownLatch(1);
+    assertTrue(capture.load(null, runnable -> {
+      runnable.run();
+      retainedSizesLatch.countDown();
+    }));
+    assertTrue(capture.isDoneLoading());
+    HeapSet testHeap = capture.getHeapSets().stream().filter(heap -> "testHeap".equals(heap.getName())).findFirst().orElse(null);
+    assertNotNull(testHeap);
+    assertEquals(6, testHeap.getInstancesCount());
+
+    retainedSizesLatch.await();
+    InstanceObject instance0 =
+      testHeap.getInstancesStream().filter(instance -> "Class0@1 (0x1)".equals(instance.getValueText())).findFirst().orElse(null);
+    assertNotNull(instance0);
+    assertEquals(0, instance0.getDepth());
+    assertTrue(instance0.getRetainedSize() > 0);
+    assertEquals(testHeap.getInstancesStream().mapToLong(InstanceObject::getRetainedSize).sum(), testHeap.getTotalRetainedSize());
+
+    capture.unload();
+  }
+
   @Test
   public void testLoadingFailure() throws Exception {
     MemoryProfiler.HeapDumpInfo dumpInfo = MemoryProfiler.HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
     HeapDumpCaptureObject capture =
       new HeapDumpCaptureObject(myGrpcChannel.getClient().getMemoryClient(), ProfilersTestData.SESSION_DATA, -1, dumpInfo, null,
-                                myRelativeTimeConverter, myIdeProfilerServices.getFeatureTracker());
+                                myRelativeTimeConverter, myIdeProfilerServices.getFeatureTracker(), null);
 
     assertFalse(capture.isDoneLoading());
     assertFalse(capture.isError());
@@ -154,7 +189,7 @@ public class HeapDumpCaptureObjectTest {
       MemoryProfiler.HeapDumpInfo.newBuilder().setStartTime(startTimeNs).setEndTime(endTimeNs).build();
     HeapDumpCaptureObject capture =
       new HeapDumpCaptureObject(myGrpcChannel.getClient().getMemoryClient(), ProfilersTestData.SESSION_DATA, appId,
-                                dumpInfo, null, myRelativeTimeConverter, myIdeProfilerServices.getFeatureTracker());
+                                dumpInfo, null, myRelativeTimeConverter, myIdeProfilerServices.getFeatureTracker(), null);
 
     final CountDownLatch loadLatch = new CountDownLatch(1);
     final CountDownLatch doneLatch = new CountDownLatch(1);
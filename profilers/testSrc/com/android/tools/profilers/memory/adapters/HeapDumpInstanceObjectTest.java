@@ -267,7 +267,7 @@ public class HeapDumpInstanceObjectTest {
 
     public FakeHeapDumpCaptureObject(@NotNull MemoryServiceGrpc.MemoryServiceBlockingStub client) {
       super(client, null, 0, HeapDumpInfo.newBuilder().setStartTime(0).setEndTime(1).build(), null, new RelativeTimeConverter(0),
-            new FakeFeatureTracker());
+            new FakeFeatureTracker(), null);
     }
 
     public void addInstance(@NotNull Instance instance, @NotNull HeapDumpInstanceObject instanceObject) {
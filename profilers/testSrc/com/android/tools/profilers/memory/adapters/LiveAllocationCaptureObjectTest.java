@@ -34,6 +34,7 @@ import org.junit.Test;
 
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.*;
 
@@ -193,6 +194,34 @@ public class LiveAllocationCaptureObjectTest {
     verifyClassifierResult(heapSet, new LinkedList<>(expected_0_to_8), 0);
   }
 
+  @Test
+  public void testQueryWindows() throws Exception {
+    LiveAllocationCaptureObject capture = new LiveAllocationCaptureObject(myGrpcChannel.getClient().getMemoryClient(),
+                                                                          ProfilersTestData.SESSION_DATA,
+                                                                          APP_ID,
+                                                                          CAPTURE_START_TIME,
+                                                                          LOAD_SERVICE,
+                                                                          myStage);
+    // Short ranges are split into windows of QUERY_WINDOW_NS.
+    List<long[]> windows = capture.splitIntoWindows(0, 3 * LiveAllocationCaptureObject.QUERY_WINDOW_NS, Long.MAX_VALUE);
+    assertThat(windows).hasSize(3);
+
+    // An hour takes no more than MAX_QUERY_WINDOWS requests, and the windows cover the whole range.
+    long hourNs = TimeUnit.HOURS.toNanos(1);
+    windows = capture.splitIntoWindows(0, hourNs, Long.MAX_VALUE);
+    assertThat(windows.size()).isAtMost(LiveAllocationCaptureObject.MAX_QUERY_WINDOWS);
+    assertThat(windows.get(0)[0]).isEqualTo(0);
+    assertThat(windows.get(windows.size() - 1)[1]).isEqualTo(hourNs);
+    for (int i = 1; i < windows.size(); i++) {
+      assertThat(windows.get(i)[0]).isEqualTo(windows.get(i - 1)[1]);
+    }
+
+    // The part of an open-ended range past the windowed end is a single window.
+    windows = capture.splitIntoWindows(0, Long.MAX_VALUE, 2 * LiveAllocationCaptureObject.QUERY_WINDOW_NS);
+    assertThat(windows).hasSize(3);
+    assertThat(windows.get(2)[1]).isEqualTo(Long.MAX_VALUE);
+  }
+
   @Test
   public void testSelectionMinChanges() throws Exception {
     // Flag that gets set on the joiner thread to notify the main thread whether the contents in the ChangeNode are accurate.
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.android.tools.profiler.proto.MemoryProfiler.AllocationStack;
+import com.android.tools.profilers.FakeGrpcChannel;
+import com.android.tools.profilers.ProfilersTestData;
+import com.android.tools.profilers.memory.FakeMemoryService;
+import com.android.tools.profilers.stacktrace.ThreadId;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LiveAllocationInstanceStoreTest {
+  @Rule public FakeGrpcChannel myGrpcChannel = new FakeGrpcChannel("LiveAllocationInstanceStoreTest", new FakeMemoryService());
+
+  private final ClassDb myClassDb = new ClassDb();
+  private LiveAllocationCaptureObject myCapture;
+  private LiveAllocationInstanceStore myStore;
+
+  @Before
+  public void setUp() {
+    myCapture = new LiveAllocationCaptureObject(myGrpcChannel.getClient().getMemoryClient(), ProfilersTestData.SESSION_DATA, 1, 0,
+                                                MoreExecutors.newDirectExecutorService(), null);
+    myStore = new LiveAllocationInstanceStore(myCapture);
+  }
+
+  @Test
+  public void rowsAreLookedUpByTag() {
+    ClassDb.ClassEntry entry = myClassDb.registerClass(0, "com.foo.Bar");
+    assertThat(myStore.getRow(7)).isEqualTo(-1);
+    assertThat(myStore.addRow(7, entry, null, null, 16, 0)).isEqualTo(0);
+    assertThat(myStore.addRow(3, entry, null, null, 16, 0)).isEqualTo(1);
+    assertThat(myStore.getRow(7)).isEqualTo(0);
+    assertThat(myStore.getRow(3)).isEqualTo(1);
+    assertThat(myStore.getRow(5)).isEqualTo(-1);
+    assertThat(myStore.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void viewsReadTheirRow() {
+    ClassDb.ClassEntry entry = myClassDb.registerClass(0, "com.foo.Bar");
+    AllocationStack callstack = AllocationStack.newBuilder().setStackId(2).build();
+    ThreadId thread = new ThreadId("main");
+    int row = myStore.addRow(1, entry, callstack, thread, 24, 3);
+
+    InstanceObject instance = myStore.getInstanceObject(row);
+    assertThat(instance.getClassEntry()).isSameAs(entry);
+    assertThat(instance.getCallStack()).isSameAs(callstack);
+    assertThat(instance.getAllocationThreadId()).isSameAs(thread);
+    assertThat(instance.getShallowSize()).isEqualTo(24);
+    assertThat(instance.getHeapId()).isEqualTo(3);
+    assertThat(instance.hasTimeData()).isFalse();
+
+    myStore.setAllocTime(row, 5);
+    assertThat(instance.hasAllocData()).isTrue();
+    assertThat(instance.getAllocTime()).isEqualTo(5L);
+    myStore.setDeallocTime(row, 9);
+    assertThat(instance.hasDeallocData()).isTrue();
+    assertThat(instance.getDeallocTime()).isEqualTo(9L);
+    myStore.setAllocTime(row, Long.MIN_VALUE);
+    myStore.setDeallocTime(row, Long.MAX_VALUE);
+    assertThat(instance.hasTimeData()).isFalse();
+  }
+
+  @Test
+  public void viewsWithoutCallstackOrThread() {
+    int row = myStore.addRow(1, myClassDb.registerClass(0, "com.foo.Bar"), null, null, 8, 0);
+    InstanceObject instance = myStore.getInstanceObject(row);
+    assertThat(instance.getCallStack()).isNull();
+    assertThat(instance.getAllocationThreadId()).isSameAs(ThreadId.INVALID_THREAD_ID);
+  }
+
+  @Test
+  public void viewsAreEqualByStoreAndRow() {
+    ClassDb.ClassEntry entry = myClassDb.registerClass(0, "com.foo.Bar");
+    int row0 = myStore.addRow(1, entry, null, null, 8, 0);
+    int row1 = myStore.addRow(2, entry, null, null, 8, 0);
+    LiveAllocationInstanceStore otherStore = new LiveAllocationInstanceStore(myCapture);
+    otherStore.addRow(1, entry, null, null, 8, 0);
+
+    assertThat(myStore.getInstanceObject(row0)).isEqualTo(myStore.getInstanceObject(row0));
+    assertThat(myStore.getInstanceObject(row0).hashCode()).isEqualTo(myStore.getInstanceObject(row0).hashCode());
+    assertThat(myStore.getInstanceObject(row0)).isNotEqualTo(myStore.getInstanceObject(row1));
+    assertThat(myStore.getInstanceObject(row0)).isNotEqualTo(otherStore.getInstanceObject(row0));
+  }
+
+  @Test
+  public void columnsGrowToFitAllRows() {
+    int rows = 5000;
+    ClassDb.ClassEntry[] entries = {myClassDb.registerClass(0, "com.foo.Bar"), myClassDb.registerClass(0, "com.foo.Baz")};
+    InstanceObject first = null;
+    for (int i = 0; i < rows; i++) {
+      int row = myStore.addRow(i * 2, entries[i % 2], null, new ThreadId(i), i, i % 4);
+      myStore.setAllocTime(row, i);
+      if (i == 0) {
+        first = myStore.getInstanceObject(row);
+      }
+    }
+
+    assertThat(myStore.size()).isEqualTo(rows);
+    for (int i = 0; i < rows; i++) {
+      InstanceObject instance = myStore.getInstanceObject(myStore.getRow(i * 2));
+      assertThat(instance.getClassEntry()).isSameAs(entries[i % 2]);
+      assertThat(instance.getAllocationThreadId()).isEqualTo(new ThreadId(i));
+      assertThat(instance.getShallowSize()).isEqualTo(i);
+      assertThat(instance.getHeapId()).isEqualTo(i % 4);
+      assertThat(instance.getAllocTime()).isEqualTo((long)i);
+    }
+    // Views created before the columns grew still read the current values of their row.
+    myStore.setDeallocTime(0, 42);
+    assertThat(first.getDeallocTime()).isEqualTo(42L);
+  }
+}
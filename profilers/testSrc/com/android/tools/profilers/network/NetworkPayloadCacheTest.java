@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.network;
+
+import com.google.protobuf3jarjar.ByteString;
+import com.intellij.openapi.util.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class NetworkPayloadCacheTest {
+  private File myDirectory;
+  private NetworkPayloadCache myCache;
+
+  @Before
+  public void setUp() throws IOException {
+    myDirectory = FileUtil.createTempDirectory("NetworkPayloadCacheTest", null);
+    // Room for two 10-byte payloads in memory and three on disk.
+    myCache = new NetworkPayloadCache(20, 30, myDirectory);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.delete(myDirectory);
+  }
+
+  @Test
+  public void testMemoryHit() {
+    myCache.put("a", payload('a', 10));
+    assertThat(myCache.get("a")).isEqualTo(payload('a', 10));
+    assertThat(myCache.get("b")).isNull();
+    assertThat(myCache.getMemoryHitCount()).isEqualTo(1);
+    assertThat(myCache.getMissCount()).isEqualTo(1);
+    assertThat(myCache.getHitRate()).isWithin(0.0001).of(0.5);
+    assertThat(myDirectory.list()).isEmpty();
+  }
+
+  @Test
+  public void testLeastRecentlyUsedPayloadIsSpilledToDisk() {
+    myCache.put("a", payload('a', 10));
+    myCache.put("b", payload('b', 10));
+    myCache.get("a");
+    myCache.put("c", payload('c', 10));
+
+    // "b" was the least recently used one, so it was moved to disk.
+    assertThat(myCache.getMemoryBytes()).isEqualTo(20);
+    assertThat(myCache.getDiskBytes()).isEqualTo(10);
+    assertThat(myDirectory.list()).hasLength(1);
+
+    assertThat(myCache.get("b")).isEqualTo(payload('b', 10));
+    assertThat(myCache.getDiskHitCount()).isEqualTo(1);
+    // Reading "b" back leaves it on disk, rather than spilling another payload to make room for it.
+    assertThat(myCache.getMemoryBytes()).isEqualTo(20);
+    assertThat(myCache.getDiskBytes()).isEqualTo(10);
+    assertThat(myCache.getMemoryHitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testFileOfSpilledPayloadIsHandedOut() throws IOException {
+    myCache.put("a", payload('a', 25));
+    File file = myCache.getFile("a");
+    assertThat(file).isNotNull();
+    assertThat(file.getParentFile()).isEqualTo(myDirectory);
+    assertThat(FileUtil.loadFileBytes(file)).isEqualTo(payload('a', 25).toByteArray());
+    // The same file is handed out again.
+    assertThat(myCache.getFile("a")).isEqualTo(file);
+    assertThat(myCache.getDiskHitCount()).isEqualTo(2);
+    assertThat(myDirectory.list()).hasLength(1);
+  }
+
+  @Test
+  public void testFileOfPayloadInMemoryIsWrittenOnce() throws IOException {
+    myCache.put("a", payload('a', 10));
+    File file = myCache.getFile("a");
+    assertThat(file).isNotNull();
+    assertThat(FileUtil.loadFileBytes(file)).isEqualTo(payload('a', 10).toByteArray());
+    assertThat(myCache.getFile("a")).isEqualTo(file);
+    assertThat(myCache.getMemoryHitCount()).isEqualTo(1);
+    assertThat(myCache.getDiskHitCount()).isEqualTo(1);
+    assertThat(myCache.getFile("b")).isNull();
+  }
+
+  @Test
+  public void testPutFileKeepsTheFirstFile() throws IOException {
+    File file = myCache.putFile("a.json", ".json", output -> output.write(payload('a', 10).toByteArray()));
+    assertThat(file.getName()).endsWith(".json");
+    assertThat(myCache.getDiskBytes()).isEqualTo(10);
+    assertThat(myCache.putFile("a.json", ".json", output -> { throw new AssertionError("The file is cached"); })).isEqualTo(file);
+    assertThat(myCache.getFile("a.json")).isEqualTo(file);
+
+    // A file that doesn't fit on disk is handed out, but not cached.
+    File large = myCache.putFile("b", "", output -> output.write(payload('b', 40).toByteArray()));
+    assertThat(large.length()).isEqualTo(40);
+    assertThat(myCache.getFile("b")).isNull();
+    assertThat(myCache.getDiskBytes()).isEqualTo(10);
+    FileUtil.delete(large);
+  }
+
+  @Test
+  public void testEvictedFileIsDeleted() throws IOException {
+    File file = myCache.putFile("a", "", output -> output.write(payload('a', 25).toByteArray()));
+    myCache.put("b", payload('b', 25));
+    assertThat(file.exists()).isFalse();
+    assertThat(myCache.getFile("a")).isNull();
+  }
+
+  @Test
+  public void testLeastRecentlyUsedFileIsDeleted() {
+    for (char c = 'a'; c <= 'f'; c++) {
+      myCache.put(String.valueOf(c), payload(c, 10));
+    }
+    // "e" and "f" are in memory, "b" to "d" on disk and "a" was dropped.
+    assertThat(myCache.getDiskBytes()).isEqualTo(30);
+    assertThat(myDirectory.list()).hasLength(3);
+    assertThat(myCache.get("a")).isNull();
+    assertThat(myCache.get("b")).isEqualTo(payload('b', 10));
+  }
+
+  @Test
+  public void testLargePayloadGoesStraightToDisk() {
+    myCache.put("a", payload('a', 25));
+    assertThat(myCache.getMemoryBytes()).isEqualTo(0);
+    assertThat(myCache.getDiskBytes()).isEqualTo(25);
+
+    // Payloads that don't fit on disk either are not cached at all.
+    myCache.put("b", payload('b', 40));
+    assertThat(myCache.get("b")).isNull();
+    assertThat(myCache.getDiskBytes()).isEqualTo(25);
+  }
+
+  @Test
+  public void testClearDeletesFiles() {
+    myCache.put("a", payload('a', 25));
+    myCache.put("b", payload('b', 10));
+    myCache.clear();
+    assertThat(myDirectory.list()).isEmpty();
+    assertThat(myCache.get("a")).isNull();
+    assertThat(myCache.get("b")).isNull();
+    assertThat(myCache.getMemoryBytes()).isEqualTo(0);
+    assertThat(myCache.getDiskBytes()).isEqualTo(0);
+  }
+
+  private static ByteString payload(char c, int size) {
+    byte[] bytes = new byte[size];
+    for (int i = 0; i < size; i++) {
+      bytes[i] = (byte)c;
+    }
+    return ByteString.copyFrom(bytes);
+  }
+}
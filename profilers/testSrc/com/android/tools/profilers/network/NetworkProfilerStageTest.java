@@ -279,6 +279,30 @@ public class NetworkProfilerStageTest {
     assertEquals(true, connectionChanged[0]);
   }
 
+  @Test
+  public void payloadFileIsCachedAcrossSelectionsAndStages() {
+    HttpData data = new HttpData.Builder(1, 2, 22, 22)
+      .setResponseFields("null  =  HTTP/1.1 302 Found \n Content-Type = image/jpeg; ")
+      .setResponsePayloadId("payloadId")
+      .build();
+    myStage.setSelectedConnection(data);
+    File payloadFile = data.getResponsePayloadFile();
+    assertNotNull(payloadFile);
+    assertTrue(payloadFile.getName().endsWith(".jpg"));
+
+    // Leaving the stage keeps the payloads, so the same file is handed out when the connection is selected again.
+    myStage.getStudioProfilers().setStage(new StudioMonitorStage(myStage.getStudioProfilers()));
+    NetworkProfilerStage stage = new NetworkProfilerStage(myStage.getStudioProfilers());
+    myStage.getStudioProfilers().setStage(stage);
+    HttpData sameData = new HttpData.Builder(2, 2, 22, 22)
+      .setResponseFields("null  =  HTTP/1.1 302 Found \n Content-Type = image/jpeg; ")
+      .setResponsePayloadId("payloadId")
+      .build();
+    stage.setSelectedConnection(sameData);
+    assertEquals(payloadFile, sameData.getResponsePayloadFile());
+    assertEquals(1, stage.getPayloadCache().getDiskHitCount());
+  }
+
   @Test
   public void testSelectedConnectionWhenIdIsEmpty() {
     HttpData.Builder builder = new HttpData.Builder(1, 2, 22, 22);
@@ -80,6 +80,20 @@ public class RpcNetworkConnectionsModelTest {
     assertEquals("Dummy Contents", myModel.requestResponsePayload(data).toStringUtf8());
   }
 
+  @Test
+  public void requestResponsePayloadIsCached() {
+    NetworkPayloadCache cache = new NetworkPayloadCache();
+    NetworkConnectionsModel model = new RpcNetworkConnectionsModel(myProfilers.getClient().getProfilerClient(),
+                                                                   myProfilers.getClient().getNetworkClient(), 12,
+                                                                   ProfilersTestData.SESSION_DATA, cache);
+    myProfilerService.addFile(FAKE_PAYLOAD_ID, ByteString.copyFromUtf8("Dummy Contents"));
+    HttpData data = new HttpData.Builder(0, 0, 0, 0).setResponsePayloadId(FAKE_PAYLOAD_ID).build();
+    assertEquals("Dummy Contents", model.requestResponsePayload(data).toStringUtf8());
+    assertEquals("Dummy Contents", model.requestResponsePayload(data).toStringUtf8());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getMemoryHitCount());
+  }
+
   @Test
   public void emptyRequestResponsePayload() {
     HttpData data = new HttpData.Builder(0, 0, 0, 0).build();